@@ -0,0 +1,101 @@
+package com.empresa.facturacion.service;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.service.cpu.EjecutorCpu;
+import com.empresa.facturacion.service.empaque.EmpaqueZip;
+import com.empresa.facturacion.service.firma.AlgoritmoFirma;
+import com.empresa.facturacion.service.firma.FirmaBenchmarkSupport;
+import com.empresa.facturacion.service.metricas.MetricasFacturacion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Datos y servicios compartidos por los benchmarks JMH. Los servicios se arman sin CDI,
+ * igual que en las pruebas unitarias.
+ */
+final class BenchmarkFixtures {
+
+    // Referencia fuerte: java.util.logging olvida el nivel si el logger se recolecta
+    private static final java.util.logging.Logger LOG_APLICACION =
+            java.util.logging.Logger.getLogger("com.empresa.facturacion");
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Los servicios registran cada envío en INFO; en un benchmark eso mide la consola, no el código.
+     */
+    static void silenciarLogs() {
+        LOG_APLICACION.setLevel(Level.WARNING);
+    }
+
+    static FacturaPruebaRequest factura(int items) {
+        return comprobante("01", items);
+    }
+
+    /**
+     * Comprobante del tipo indicado; las notas (07/08) llevan la factura F001-1 como referencia.
+     * Cumple las reglas de {@link com.empresa.facturacion.service.validacion.ValidadorComprobante}
+     * salvo el plazo de la fecha de emisión, que es fija.
+     */
+    static FacturaPruebaRequest comprobante(String tipoDocumento, int items) {
+        FacturaPruebaRequest request = new FacturaPruebaRequest();
+        request.tipoDocumento = tipoDocumento;
+        request.serie = "03".equals(tipoDocumento) ? "B001" : "F001";
+        if ("07".equals(tipoDocumento) || "08".equals(tipoDocumento)) {
+            request.documentoReferencia = new FacturaPruebaRequest.DocumentoReferenciaDto();
+            request.documentoReferencia.numeroDocumento = "F001-1";
+            request.documentoReferencia.codigoMotivo = "07".equals(tipoDocumento) ? "07" : "02";
+            request.documentoReferencia.motivo = "DEVOLUCION POR ITEM";
+        }
+        request.emisor = new FacturaPruebaRequest.EmisorDto();
+        request.cliente = new FacturaPruebaRequest.ClienteDto();
+        request.correlativo = 1L;
+        request.fechaEmision = LocalDate.of(2026, 1, 15);
+        request.items = new ArrayList<>(items);
+        for (int i = 1; i <= items; i++) {
+            FacturaPruebaRequest.ItemDto item = new FacturaPruebaRequest.ItemDto();
+            item.item = i;
+            item.codigoProducto = "PROD" + i;
+            item.descripcion = "PRODUCTO DE PRUEBA Nº " + i + " - ACERO INOXIDABLE 304";
+            item.cantidad = BigDecimal.valueOf(1 + i % 7);
+            item.valorUnitario = new BigDecimal("125.50");
+            request.items.add(item);
+        }
+        return request;
+    }
+
+    static SunatIntegrationService integracion(AlgoritmoFirma algoritmo) {
+        SunatIntegrationService servicio = new SunatIntegrationService();
+        servicio.xmlGenerator = new XmlGeneratorService();
+        servicio.firmaDigital = FirmaBenchmarkSupport.autofirmado(algoritmo);
+        servicio.empaque = new EmpaqueZip();
+        servicio.metricas = new MetricasFacturacion(new SimpleMeterRegistry(), List.of(0.5, 0.95, 0.99));
+        servicio.cpu = EjecutorCpu.crear(0, 512, new SimpleMeterRegistry());
+        return servicio;
+    }
+
+    /**
+     * Respuesta SOAP grabada de billService, en {@code src/bench/resources/sunat}.
+     */
+    static String respuestaGrabada(String nombre) {
+        String recurso = "/sunat/sendBill-" + nombre + ".xml";
+        try (InputStream in = BenchmarkFixtures.class.getResourceAsStream(recurso)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No existe la respuesta grabada " + recurso);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.empresa.facturacion.service;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.service.firma.AlgoritmoFirma;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Firma XMLDSig y empaquetado ZIP + Base64 del comprobante.
+ * {@code firmar} aísla el costo de las dos pasadas de firma; {@code firmarYComprimir} es el camino completo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FirmaZipBenchmark {
+
+    @Param({"1", "100", "5000"})
+    int items;
+
+    @Param({"SHA1", "SHA256"})
+    AlgoritmoFirma algoritmo;
+
+    private SunatIntegrationService integracion;
+    private FacturaPruebaRequest request;
+
+    @Setup
+    public void preparar() throws IOException {
+        BenchmarkFixtures.silenciarLogs();
+        integracion = BenchmarkFixtures.integracion(algoritmo);
+        request = BenchmarkFixtures.factura(items);
+        // Carga el material de firma fuera de la medición
+        integracion.firmaDigital.firmar(integracion.xmlGenerator.documento(request), OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public String firmar() throws IOException {
+        return integracion.firmaDigital.firmar(integracion.xmlGenerator.documento(request),
+                OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public SunatIntegrationService.CompressedDocument firmarYComprimir() {
+        return integracion.firmarYComprimir(request).await().indefinitely();
+    }
+}
@@ -0,0 +1,228 @@
+package com.empresa.facturacion.service;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.simulador.Latencia;
+import com.empresa.facturacion.simulador.SimuladorSunat;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generador de carga de lazo abierto contra /api/facturacion/prueba-factura, con el simulador de
+ * billService en lugar de SUNAT. Sirve para dimensionar nodos sin tocar e-beta.sunat.gob.pe.
+ *
+ * Las solicitudes salen a la tasa pedida sin esperar a las anteriores, y la latencia se mide desde el
+ * instante en que <em>debía</em> salir cada una: si el servidor se atasca, la espera cuenta en los
+ * percentiles en vez de esconderse (omisión coordinada).
+ *
+ * <pre>
+ * ./mvnw -Pbenchmark test-compile exec:exec@carga -Dcarga.args="--tasa=200 --duracion=60"
+ * </pre>
+ *
+ * El simulador queda escuchando en {@code --simulador-puerto}; la aplicación debe arrancarse con
+ * {@code -Dsunat.conexion.url=<url impresa>}. La carga empieza cuando /ping-sunat responde.
+ */
+public final class GeneradorCarga {
+
+    private static final String RUTA = "/api/facturacion/prueba-factura";
+
+    private final Map<String, String> opciones;
+    private final HttpClient cliente;
+    private final ConcurrentHashMap<String, LongAdder> resultados = new ConcurrentHashMap<>();
+
+    private GeneradorCarga(Map<String, String> opciones) {
+        this.opciones = opciones;
+        this.cliente = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkFixtures.silenciarLogs();
+        GeneradorCarga generador = new GeneradorCarga(leerOpciones(args));
+        SimuladorSunat simulador = generador.opciones.containsKey("sin-simulador") ? null : generador.simulador();
+        try {
+            generador.esperarAplicacion();
+            generador.ejecutar();
+        } finally {
+            if (simulador != null) {
+                System.out.printf("Simulador: %d sendBill, %d fallas inyectadas%n",
+                        simulador.recibidas(SimuladorSunat.Operacion.SEND_BILL), simulador.fallasEmitidas());
+                simulador.close();
+            }
+        }
+    }
+
+    /**
+     * Cada argumento es {@code --clave=valor} o {@code --bandera}. Se separan también por espacios para
+     * aceptar la lista entera en una sola propiedad de Maven.
+     */
+    static Map<String, String> leerOpciones(String[] args) {
+        Map<String, String> opciones = new HashMap<>();
+        for (String arg : args) {
+            for (String parte : arg.trim().split("\\s+")) {
+                if (parte.isEmpty()) {
+                    continue;
+                }
+                if (!parte.startsWith("--")) {
+                    throw new IllegalArgumentException("Opción no reconocida: " + parte);
+                }
+                int igual = parte.indexOf('=');
+                if (igual < 0) {
+                    opciones.put(parte.substring(2), "true");
+                } else {
+                    opciones.put(parte.substring(2, igual), parte.substring(igual + 1));
+                }
+            }
+        }
+        return opciones;
+    }
+
+    private String texto(String clave, String porDefecto) {
+        return opciones.getOrDefault(clave, porDefecto);
+    }
+
+    private long entero(String clave, long porDefecto) {
+        return Long.parseLong(texto(clave, Long.toString(porDefecto)));
+    }
+
+    private double decimal(String clave, double porDefecto) {
+        return Double.parseDouble(texto(clave, Double.toString(porDefecto)));
+    }
+
+    private SimuladorSunat simulador() {
+        SimuladorSunat simulador = new SimuladorSunat()
+                .latencia(Latencia.logNormal(entero("latencia-mediana", 150), entero("latencia-p99", 1_200)))
+                .fallas(decimal("fallas", 0.0), "2335", "0109", "0130")
+                .erroresHttp(decimal("errores-http", 0.0), 503)
+                .iniciar((int) entero("simulador-puerto", 8089));
+        System.out.printf("Simulador de billService en %s%n", simulador.url());
+        System.out.printf("Arrancar la aplicación con -Dsunat.conexion.url=%s%n", simulador.url());
+        return simulador;
+    }
+
+    private void esperarAplicacion() throws InterruptedException {
+        URI ping = URI.create(texto("url", "http://localhost:8080") + "/api/facturacion/ping-sunat");
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(entero("espera", 300));
+        while (System.nanoTime() < limite) {
+            try {
+                HttpResponse<Void> respuesta = cliente.send(HttpRequest.newBuilder(ping).GET().build(),
+                        HttpResponse.BodyHandlers.discarding());
+                if (respuesta.statusCode() == 200) {
+                    return;
+                }
+            } catch (java.io.IOException e) {
+                // La aplicación todavía no escucha
+            }
+            Thread.sleep(1_000);
+        }
+        throw new IllegalStateException("La aplicación no respondió en " + ping);
+    }
+
+    private void ejecutar() throws Exception {
+        double tasa = decimal("tasa", 50);
+        long calentamiento = (long) (tasa * entero("calentamiento", 10));
+        long total = calentamiento + (long) (tasa * entero("duracion", 30));
+        long intervalo = (long) (TimeUnit.SECONDS.toNanos(1) / tasa);
+        Semaphore enVuelo = new Semaphore((int) entero("concurrencia", 1_000));
+
+        FacturaPruebaRequest factura = BenchmarkFixtures.comprobante(texto("tipo", "01"), (int) entero("items", 10));
+        factura.correlativo = null; // lo asigna el servidor
+        factura.fechaEmision = LocalDate.now(); // dentro del plazo de envío que valida el servidor
+        ObjectMapper json = JsonMapper.builder().findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+        HttpRequest solicitud = HttpRequest.newBuilder(URI.create(texto("url", "http://localhost:8080") + RUTA))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(entero("timeout", 180)))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json.writeValueAsBytes(factura)))
+                .build();
+
+        System.out.printf("Enviando %.0f solicitudes/s durante %ds (%d de calentamiento)%n",
+                tasa, entero("duracion", 30), entero("calentamiento", 10));
+        long[] latencias = new long[(int) (total - calentamiento)];
+        CountDownLatch pendientes = new CountDownLatch((int) total);
+        long inicio = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long programada = inicio + i * intervalo;
+            long espera;
+            while ((espera = programada - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(espera);
+            }
+            enVuelo.acquire();
+            int indice = (int) (i - calentamiento);
+            cliente.sendAsync(solicitud, HttpResponse.BodyHandlers.ofByteArray())
+                    .whenComplete((respuesta, error) -> {
+                        long latencia = System.nanoTime() - programada;
+                        enVuelo.release();
+                        if (indice >= 0) {
+                            latencias[indice] = latencia;
+                            resultados.computeIfAbsent(clasificar(json, respuesta, error), k -> new LongAdder()).increment();
+                        }
+                        pendientes.countDown();
+                    });
+        }
+        long emision = System.nanoTime() - inicio;
+        pendientes.await();
+        long fin = System.nanoTime() - inicio;
+        informar(latencias, emision, fin, total - calentamiento);
+    }
+
+    /**
+     * Resultado de una solicitud: el código de SUNAT si la respuesta lo trae, si no el status HTTP o la
+     * excepción del cliente.
+     */
+    private static String clasificar(ObjectMapper json, HttpResponse<byte[]> respuesta, Throwable error) {
+        if (error != null) {
+            Throwable causa = error.getCause() != null ? error.getCause() : error;
+            return causa.getClass().getSimpleName();
+        }
+        try {
+            JsonNode codigo = json.readTree(respuesta.body()).get("codigo_respuesta");
+            if (codigo != null && !codigo.isNull()) {
+                return "codigo " + codigo.asText();
+            }
+        } catch (Exception e) {
+            // Cuerpo que no es JSON
+        }
+        return "HTTP " + respuesta.statusCode();
+    }
+
+    private void informar(long[] latencias, long emision, long fin, long medidas) {
+        Arrays.sort(latencias);
+        System.out.printf("%nSolicitudes medidas: %d, emitidas en %.1fs, completadas en %.1fs%n",
+                medidas, emision / 1e9, fin / 1e9);
+        System.out.printf("Rendimiento: %.1f solicitudes/s%n", latencias.length / (fin / 1e9));
+        System.out.printf("Latencia (ms)  p50 %8.1f  p90 %8.1f  p99 %8.1f  p99.9 %8.1f  máx %8.1f%n",
+                percentil(latencias, 0.50), percentil(latencias, 0.90), percentil(latencias, 0.99),
+                percentil(latencias, 0.999), latencias.length == 0 ? 0 : latencias[latencias.length - 1] / 1e6);
+        System.out.println("Resultados:");
+        new TreeMap<>(resultados).forEach((clave, cuenta) -> System.out.printf("  %-24s %d%n", clave, cuenta.sum()));
+    }
+
+    private static double percentil(long[] ordenadas, double p) {
+        if (ordenadas.length == 0) {
+            return 0;
+        }
+        int indice = (int) Math.ceil(p * ordenadas.length) - 1;
+        return ordenadas[Math.max(0, Math.min(indice, ordenadas.length - 1))] / 1e6;
+    }
+}
@@ -0,0 +1,82 @@
+package com.empresa.facturacion.service;
+
+import com.empresa.facturacion.dto.SunatResponse;
+import com.empresa.facturacion.service.conexion.SobreSoap;
+import com.empresa.facturacion.service.firma.AlgoritmoFirma;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Armado del sobre SOAP de envío y lectura de respuestas grabadas de billService.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SunatSoapBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Envio {
+
+        @Param({"1", "100", "5000"})
+        int items;
+
+        SunatIntegrationService integracion;
+        SunatIntegrationService.CompressedDocument documento;
+
+        @Setup
+        public void preparar() {
+            BenchmarkFixtures.silenciarLogs();
+            integracion = BenchmarkFixtures.integracion(AlgoritmoFirma.SHA1);
+            documento = integracion.firmarYComprimir(BenchmarkFixtures.factura(items)).await().indefinitely();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Respuesta {
+
+        @Param({"aceptado", "observaciones", "fault"})
+        String respuesta;
+
+        SunatIntegrationService integracion;
+        String soap;
+
+        @Setup
+        public void preparar() {
+            BenchmarkFixtures.silenciarLogs();
+            integracion = BenchmarkFixtures.integracion(AlgoritmoFirma.SHA1);
+            soap = BenchmarkFixtures.respuestaGrabada(respuesta);
+        }
+    }
+
+    /**
+     * Arma el sobre y lo escribe entero (prefijo, ZIP en Base64 trozo a trozo y sufijo) en un stream que
+     * descarta, para medir la codificación y la escritura del cuerpo además del prefijo.
+     */
+    @Benchmark
+    public SobreSoap construirSoapEnvelope(Envio estado) throws IOException {
+        SobreSoap sobre = estado.integracion.construirSoapEnvelope("20000000001MODDATOS", "MODDATOS",
+                "20000000001-01-F001-1.ZIP", estado.documento.zip);
+        sobre.escribir(OutputStream.nullOutputStream());
+        return sobre;
+    }
+
+    @Benchmark
+    public SunatResponse procesarRespuestaSunat(Respuesta estado) {
+        return estado.integracion.procesarRespuestaSunat(estado.soap, "hash");
+    }
+}
@@ -0,0 +1,57 @@
+package com.empresa.facturacion.service;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.service.ubl.ContenidoExtension;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generación del XML UBL según el tipo de comprobante y el número de líneas; todos los tipos deberían
+ * costar lo mismo porque comparten el motor de plantillas.
+ * {@code generarXml} incluye el String final; {@code escribirXml} mide solo el streaming.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlGeneratorBenchmark {
+
+    @Param({"01", "03", "07", "08"})
+    String tipoDocumento;
+
+    @Param({"1", "100", "5000"})
+    int items;
+
+    private final XmlGeneratorService generator = new XmlGeneratorService();
+    private FacturaPruebaRequest request;
+
+    @Setup
+    public void preparar() {
+        request = BenchmarkFixtures.comprobante(tipoDocumento, items);
+    }
+
+    @Benchmark
+    public String generarXml() {
+        return generator.generarXml(request);
+    }
+
+    @Benchmark
+    public void escribirXml() throws IOException {
+        generator.escribirXml(request, OutputStream.nullOutputStream(), ContenidoExtension.VACIO);
+    }
+}
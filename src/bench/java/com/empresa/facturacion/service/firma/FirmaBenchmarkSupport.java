@@ -0,0 +1,24 @@
+package com.empresa.facturacion.service.firma;
+
+import java.util.Optional;
+
+/**
+ * Arma un {@link FirmaDigitalService} fuera de CDI para los benchmarks, con certificado
+ * autofirmado en memoria.
+ */
+public final class FirmaBenchmarkSupport {
+
+    private FirmaBenchmarkSupport() {
+    }
+
+    public static FirmaDigitalService autofirmado(AlgoritmoFirma algoritmo) {
+        FirmaDigitalService firma = new FirmaDigitalService();
+        firma.certificadosPath = "target/no-existe";
+        firma.certificadoArchivo = "certificado.p12";
+        firma.certificadoClave = Optional.empty();
+        firma.certificadoAlias = Optional.empty();
+        firma.permitirAutofirmado = true;
+        firma.algoritmo = algoritmo;
+        return firma;
+    }
+}
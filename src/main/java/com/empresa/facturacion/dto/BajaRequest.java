@@ -0,0 +1,40 @@
+package com.empresa.facturacion.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import java.time.LocalDate;
+
+/**
+ * Solicitud de baja de un comprobante. Las boletas (03) se anulan dentro del resumen
+ * diario (RC); el resto de tipos va en una Comunicación de Baja (RA).
+ */
+public class BajaRequest {
+
+    @NotNull
+    @JsonProperty("emisor")
+    public FacturaPruebaRequest.EmisorDto emisor;
+
+    @NotNull
+    @JsonProperty("tipo_documento")
+    public String tipoDocumento = "01";
+
+    @NotNull
+    @JsonProperty("serie")
+    public String serie;
+
+    @NotNull
+    @JsonProperty("correlativo")
+    public Long correlativo;
+
+    @NotNull
+    @JsonProperty("fecha_emision")
+    public LocalDate fechaEmision;
+
+    @NotEmpty
+    @JsonProperty("motivo")
+    public String motivo;
+
+    @JsonProperty("moneda")
+    public String moneda = "PEN";
+}
@@ -1,8 +1,13 @@
 package com.empresa.facturacion.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
@@ -17,17 +22,30 @@ public class FacturaPruebaRequest {
     @JsonProperty("cliente")
     public ClienteDto cliente;
 
+    /** 01 factura, 03 boleta, 07 nota de crédito, 08 nota de débito. */
+    @NotNull
+    @Pattern(regexp = "0[1378]", message = "debe ser 01, 03, 07 u 08")
+    @JsonProperty("tipo_documento")
+    public String tipoDocumento = "01";
+
     @NotNull
     @JsonProperty("serie")
     public String serie = "F001";
 
-    @NotNull
+    /** Opcional: si no se envía, el servidor asigna el siguiente de la serie. */
+    @Positive
     @JsonProperty("correlativo")
     public Long correlativo;
 
     @JsonProperty("fecha_emision")
     public LocalDate fechaEmision = LocalDate.now();
 
+    /** Si la solicitud trajo fecha_emision; si no, la fecha es la del día en que se recibió. */
+    @JsonIgnore
+    public boolean fechaEmisionInformada;
+
+    /** PEN, USD o EUR: las monedas con leyenda en letras. */
+    @Pattern(regexp = "PEN|USD|EUR")
     @JsonProperty("moneda")
     public String moneda = "PEN";
 
@@ -35,6 +53,23 @@ public class FacturaPruebaRequest {
     @JsonProperty("items")
     public List<ItemDto> items;
 
+    /** Comprobante que modifica una nota de crédito o débito. */
+    @Valid
+    @JsonProperty("documento_referencia")
+    public DocumentoReferenciaDto documentoReferencia;
+
+    @JsonProperty("fecha_emision")
+    void informarFechaEmision(LocalDate fechaEmision) {
+        this.fechaEmision = fechaEmision;
+        this.fechaEmisionInformada = true;
+    }
+
+    @JsonIgnore
+    @AssertTrue(message = "las notas de crédito y débito requieren documento_referencia")
+    public boolean isReferenciaCompleta() {
+        return documentoReferencia != null || !("07".equals(tipoDocumento) || "08".equals(tipoDocumento));
+    }
+
     public static class EmisorDto {
         public String ruc = "20000000001"; // RUC de prueba SUNAT
         @JsonProperty("razon_social")
@@ -56,12 +91,29 @@ public class FacturaPruebaRequest {
         @JsonProperty("tipo_documento")
         public String tipoDocumento = "6"; // RUC
         @JsonProperty("numero_documento")
-        public String numeroDocumento = "20123456789";
+        public String numeroDocumento = "20123456786";
         @JsonProperty("razon_social")
         public String razonSocial = "CLIENTE DE PRUEBA SAC";
         public String direccion = "AV. CLIENTE 456 - LIMA";
     }
 
+    public static class DocumentoReferenciaDto {
+        @NotNull
+        @JsonProperty("tipo_documento")
+        public String tipoDocumento = "01";
+        /** Serie-correlativo del comprobante afectado, p.ej. F001-123. */
+        @NotNull
+        @JsonProperty("numero_documento")
+        public String numeroDocumento;
+        /** Catálogo 09 (notas de crédito) o 10 (notas de débito). */
+        @NotNull
+        @JsonProperty("codigo_motivo")
+        public String codigoMotivo;
+        @NotNull
+        @JsonProperty("motivo")
+        public String motivo;
+    }
+
     public static class ItemDto {
         public Integer item = 1;
         @JsonProperty("codigo_producto")
@@ -74,5 +126,8 @@ public class FacturaPruebaRequest {
         public String codigoAfectacionIgv = "10"; // Gravado
         @JsonProperty("unidad_medida")
         public String unidadMedida = "NIU";
+        /** Bolsas plásticas: la cantidad del ítem paga ICBPER (tributo 7152). */
+        @JsonProperty("afecto_icbper")
+        public boolean afectoIcbper;
     }
 }
@@ -0,0 +1,49 @@
+package com.empresa.facturacion.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Resultado de una línea de un lote NDJSON. Las líneas se responden en orden de término,
+ * no de llegada: {@code linea} indica a qué línea del lote corresponde.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResultadoLote {
+    public long linea;
+    @JsonProperty("numero_documento")
+    public String numeroDocumento;
+    public boolean success;
+    @JsonProperty("codigo_respuesta")
+    public String codigoRespuesta;
+    public String descripcion;
+    @JsonProperty("hash_cpe")
+    public String hashCpe;
+    public List<String> observaciones;
+    public List<String> errores;
+
+    public static ResultadoLote de(long linea, FacturaPruebaRequest request, SunatResponse respuesta) {
+        ResultadoLote resultado = new ResultadoLote();
+        resultado.linea = linea;
+        resultado.numeroDocumento = request.serie + "-" + request.correlativo;
+        resultado.success = respuesta.success;
+        resultado.codigoRespuesta = respuesta.codigoRespuesta;
+        resultado.descripcion = respuesta.descripcion;
+        resultado.hashCpe = respuesta.hashCpe;
+        resultado.observaciones = respuesta.observaciones == null || respuesta.observaciones.isEmpty()
+                ? null : respuesta.observaciones;
+        return resultado;
+    }
+
+    public static ResultadoLote invalido(long linea, String numeroDocumento, List<String> errores) {
+        ResultadoLote resultado = new ResultadoLote();
+        resultado.linea = linea;
+        resultado.numeroDocumento = numeroDocumento;
+        resultado.success = false;
+        resultado.codigoRespuesta = "SOLICITUD_INVALIDA";
+        resultado.descripcion = "La línea no es una factura válida";
+        resultado.errores = errores;
+        return resultado;
+    }
+}
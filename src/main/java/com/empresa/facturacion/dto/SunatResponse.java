@@ -1,7 +1,10 @@
 package com.empresa.facturacion.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.List;
+
 public class SunatResponse {
     public boolean success;
     @JsonProperty("codigo_respuesta")
@@ -15,6 +18,14 @@ public class SunatResponse {
     public String hashCpe;
     @JsonProperty("numero_documento")
     public String numeroDocumento;
+    public List<String> observaciones = List.of();
+    /** Motivo por el que el XML firmado y el CDR no se archivaron; el CDR de SUNAT sigue siendo válido. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @JsonProperty("error_archivo")
+    public String errorArchivo;
+    /** Violaciones de la validación local; solo si el comprobante no llegó a enviarse. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public List<String> errores;
 
     public static SunatResponse success(String codigoRespuesta, String descripcion,
                                         String xmlFirmado, String cdrSunat,
@@ -37,4 +48,10 @@ public class SunatResponse {
         response.descripcion = mensaje;
         return response;
     }
+
+    public static SunatResponse invalida(List<String> errores) {
+        SunatResponse response = error("SOLICITUD_INVALIDA", "El comprobante no cumple las validaciones de SUNAT");
+        response.errores = errores;
+        return response;
+    }
 }
@@ -0,0 +1,91 @@
+package com.empresa.facturacion.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+import java.time.Instant;
+
+/**
+ * Comprobante aceptado por la API y pendiente de envío a SUNAT.
+ *
+ * Los workers reclaman filas con {@code SELECT ... FOR UPDATE SKIP LOCKED} y las marcan con un
+ * lease ({@code bloqueadoHasta}); si un nodo cae, el lease vence y otro worker retoma la fila.
+ * Cada nodo reclama solo las filas de las particiones de RUC que tiene asignadas.
+ */
+@Entity
+@Table(name = "comprobante_outbox",
+        uniqueConstraints = @UniqueConstraint(name = "uk_outbox_documento",
+                columnNames = {"ruc", "tipoDocumento", "serie", "correlativo"}),
+        indexes = {
+                @Index(name = "ix_outbox_estado", columnList = "estado, siguienteIntento"),
+                @Index(name = "ix_outbox_particion", columnList = "particion, estado, siguienteIntento")
+        })
+public class ComprobanteOutbox extends PanacheEntity {
+
+    @Column(nullable = false, length = 11)
+    public String ruc;
+
+    @Column(nullable = false, length = 2)
+    public String tipoDocumento;
+
+    @Column(nullable = false, length = 4)
+    public String serie;
+
+    @Column(nullable = false)
+    public Long correlativo;
+
+    /** Partición del RUC emisor; ver {@code ParticionesRuc}. */
+    public int particion;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    public EstadoComprobante estado = EstadoComprobante.PENDIENTE;
+
+    /** Solicitud original serializada en JSON. */
+    @JsonIgnore
+    @Column(nullable = false, columnDefinition = "text")
+    public String payload;
+
+    /** ZIP firmado; permite reenviar sin volver a firmar. Se libera al llegar a un estado final. */
+    @JsonIgnore
+    @Column(columnDefinition = "bytea")
+    public byte[] zip;
+
+    /** CDR en Base64 mientras no se haya podido archivar; junto con el ZIP permite reintentarlo. */
+    @JsonIgnore
+    @Column(columnDefinition = "text")
+    public String cdrSinArchivar;
+
+    public String hashCpe;
+    public String codigoRespuesta;
+
+    @Column(length = Persistencia.LARGO_DESCRIPCION)
+    public String descripcion;
+
+    public int intentos;
+
+    /** Consultas de CDR hechas para conciliar un envío incierto. */
+    public int consultas;
+
+    @Column(nullable = false)
+    public Instant creadoEn = Instant.now();
+
+    @Column(nullable = false)
+    public Instant actualizadoEn = Instant.now();
+
+    @Column(nullable = false)
+    public Instant siguienteIntento = Instant.now();
+
+    public Instant bloqueadoHasta;
+
+    public String numeroDocumento() {
+        return serie + "-" + correlativo;
+    }
+}
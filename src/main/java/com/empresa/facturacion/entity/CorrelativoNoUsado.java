@@ -0,0 +1,45 @@
+package com.empresa.facturacion.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+/**
+ * Rango de correlativos reservado por un nodo que nunca llegó a emitirse (bloque sin agotar al
+ * apagar, o número descartado tras un error). Sirve para justificar los saltos de numeración.
+ */
+@Entity
+@Table(name = "correlativo_no_usado",
+        indexes = @Index(name = "ix_no_usado_serie", columnList = "ruc, tipoDocumento, serie, desde"))
+public class CorrelativoNoUsado extends PanacheEntity {
+
+    @Column(nullable = false, length = 11)
+    public String ruc;
+
+    @Column(nullable = false, length = 2)
+    public String tipoDocumento;
+
+    @Column(nullable = false, length = 4)
+    public String serie;
+
+    /** Primer correlativo del rango, inclusive. */
+    @Column(nullable = false)
+    public long desde;
+
+    /** Último correlativo del rango, inclusive. */
+    @Column(nullable = false)
+    public long hasta;
+
+    @Column(nullable = false, length = 200)
+    public String motivo;
+
+    @Column(nullable = false, length = 100)
+    public String nodo;
+
+    @Column(nullable = false)
+    public Instant registradoEn = Instant.now();
+}
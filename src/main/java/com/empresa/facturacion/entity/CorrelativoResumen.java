@@ -0,0 +1,36 @@
+package com.empresa.facturacion.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+import java.time.LocalDate;
+
+/**
+ * Último número usado en los ID de resumen (RC-AAAAMMDD-N) de un RUC, tipo y día. Se incrementa
+ * bloqueando la fila ({@code SELECT ... FOR UPDATE}), así los ID no se repiten entre nodos ni tras
+ * un reinicio.
+ */
+@Entity
+@Table(name = "resumen_correlativo",
+        uniqueConstraints = @UniqueConstraint(name = "uk_resumen_correlativo",
+                columnNames = {"ruc", "tipo", "fecha"}))
+public class CorrelativoResumen extends PanacheEntity {
+
+    @Column(nullable = false, length = 11)
+    public String ruc;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 2)
+    public TipoResumen tipo;
+
+    @Column(nullable = false)
+    public LocalDate fecha;
+
+    @Column(nullable = false)
+    public int ultimo;
+}
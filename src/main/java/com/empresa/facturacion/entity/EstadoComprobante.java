@@ -0,0 +1,22 @@
+package com.empresa.facturacion.entity;
+
+/**
+ * Ciclo de vida de un comprobante en el outbox:
+ * PENDIENTE → FIRMADO → ENVIADO → ACEPTADO / RECHAZADO.
+ * INCIERTO: el envío falló de forma que SUNAT pudo haberlo recibido (timeout, conexión cortada); se
+ * concilia con getStatusCdr antes de volver a enviarlo.
+ * ERROR indica que se agotaron los reintentos por fallas transitorias.
+ */
+public enum EstadoComprobante {
+    PENDIENTE,
+    FIRMADO,
+    ENVIADO,
+    INCIERTO,
+    ACEPTADO,
+    RECHAZADO,
+    ERROR;
+
+    public boolean esFinal() {
+        return this == ACEPTADO || this == RECHAZADO || this == ERROR;
+    }
+}
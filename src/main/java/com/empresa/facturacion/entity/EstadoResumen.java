@@ -0,0 +1,20 @@
+package com.empresa.facturacion.entity;
+
+/**
+ * Ciclo de vida de un resumen RC o RA:
+ * PREPARADO → EN_PROCESO (SUNAT devolvió ticket) → ACEPTADO / RECHAZADO.
+ * Un PREPARADO cuyo envío falló de forma transitoria se reenvía con el mismo ID y el mismo ZIP.
+ * ERROR indica que se agotaron los reintentos del envío, o que SUNAT ya tenía el archivo pero su ticket
+ * no llegó a registrarse.
+ */
+public enum EstadoResumen {
+    PREPARADO,
+    EN_PROCESO,
+    ACEPTADO,
+    RECHAZADO,
+    ERROR;
+
+    public boolean esFinal() {
+        return this == ACEPTADO || this == RECHAZADO || this == ERROR;
+    }
+}
@@ -0,0 +1,75 @@
+package com.empresa.facturacion.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Boleta o baja aceptada por la API y pendiente de incluirse en un resumen RC o RA. Queda persistida
+ * antes de responder 202, así un reinicio no pierde líneas; al armarse el resumen se le asigna
+ * {@code resumenId}.
+ */
+@Entity
+@Table(name = "resumen_linea",
+        indexes = @Index(name = "ix_resumen_linea_pendiente", columnList = "ruc, tipo, fechaReferencia, resumenId"))
+public class LineaResumenPendiente extends PanacheEntity {
+
+    @Column(nullable = false, length = 11)
+    public String ruc;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 2)
+    public TipoResumen tipo;
+
+    @Column(nullable = false)
+    public LocalDate fechaReferencia;
+
+    /** Emisor serializado en JSON (razón social y credenciales SOL para el envío). */
+    @Column(nullable = false, columnDefinition = "text")
+    public String emisor;
+
+    /** Resumen que incluye la línea; null mientras está pendiente. */
+    public Long resumenId;
+
+    @Column(nullable = false, length = 2)
+    public String tipoDocumento;
+
+    @Column(nullable = false, length = 4)
+    public String serie;
+
+    public long correlativo;
+
+    public String clienteTipoDocumento;
+    public String clienteNumeroDocumento;
+    public int condicion;
+    public String moneda;
+
+    @Column(precision = 15, scale = 2)
+    public BigDecimal total;
+
+    @Column(precision = 15, scale = 2)
+    public BigDecimal gravadas;
+
+    @Column(precision = 15, scale = 2)
+    public BigDecimal exoneradas;
+
+    @Column(precision = 15, scale = 2)
+    public BigDecimal inafectas;
+
+    @Column(precision = 15, scale = 2)
+    public BigDecimal igv;
+
+    @Column(length = 500)
+    public String motivo;
+
+    @Column(nullable = false)
+    public Instant creadoEn = Instant.now();
+}
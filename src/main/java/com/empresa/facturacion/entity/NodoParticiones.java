@@ -0,0 +1,24 @@
+package com.empresa.facturacion.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+/**
+ * Latido de un nodo que procesa el outbox. Los nodos con latido reciente son los que se reparten
+ * las particiones.
+ */
+@Entity
+@Table(name = "nodo_particiones")
+public class NodoParticiones extends PanacheEntityBase {
+
+    @Id
+    public String nodo;
+
+    @Column(nullable = false)
+    public Instant latidoEn;
+}
@@ -0,0 +1,26 @@
+package com.empresa.facturacion.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.Instant;
+
+/**
+ * Lease de una partición de RUC emisores. Solo el nodo dueño reclama los comprobantes de la partición;
+ * si deja de renovar el lease ({@code venceEn} pasado) cualquier otro nodo puede tomarla.
+ */
+@Entity
+@Table(name = "particion_ruc")
+public class ParticionRuc extends PanacheEntityBase {
+
+    /** {@code floorMod(ruc.hashCode(), particiones.total)}. */
+    @Id
+    public int particion;
+
+    /** Nodo dueño; null si está libre. */
+    public String nodo;
+
+    public Instant venceEn;
+}
@@ -0,0 +1,28 @@
+package com.empresa.facturacion.entity;
+
+/**
+ * Constantes y ayudas de persistencia compartidas por los servicios que reclaman filas con
+ * {@code SELECT ... FOR UPDATE SKIP LOCKED} y guardan descripciones de SUNAT.
+ */
+public final class Persistencia {
+
+    /** Hint de Hibernate para el timeout de bloqueo; con {@link #SKIP_LOCKED} salta las filas bloqueadas. */
+    public static final String HINT_LOCK_TIMEOUT = "jakarta.persistence.lock.timeout";
+
+    /** Timeout de bloqueo -2 = SKIP LOCKED en los dialectos que lo soportan. */
+    public static final int SKIP_LOCKED = -2;
+
+    /** Largo de las columnas {@code descripcion}. */
+    public static final int LARGO_DESCRIPCION = 1000;
+
+    private Persistencia() {
+    }
+
+    /**
+     * Recorta {@code texto} al largo de las columnas {@code descripcion}; los faultstring de SUNAT pueden
+     * traer trazas largas.
+     */
+    public static String recortar(String texto) {
+        return texto == null || texto.length() <= LARGO_DESCRIPCION ? texto : texto.substring(0, LARGO_DESCRIPCION);
+    }
+}
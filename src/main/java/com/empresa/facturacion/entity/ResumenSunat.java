@@ -0,0 +1,96 @@
+package com.empresa.facturacion.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Resumen RC o RA armado con un grupo de líneas, su ticket y su estado según getStatus.
+ *
+ * Igual que el outbox, los nodos reclaman filas con {@code FOR UPDATE SKIP LOCKED} y un lease
+ * ({@code bloqueadoHasta}). El ZIP firmado se guarda al primer envío para que un reenvío use el
+ * mismo ID y el mismo archivo: si SUNAT ya había recibido el primero, rechaza el repetido en vez de
+ * declarar dos veces las mismas boletas.
+ */
+@Entity
+@Table(name = "resumen_sunat",
+        uniqueConstraints = @UniqueConstraint(name = "uk_resumen_sunat_id", columnNames = {"ruc", "idResumen"}),
+        indexes = @Index(name = "ix_resumen_sunat_estado", columnList = "estado, siguienteIntento"))
+public class ResumenSunat extends PanacheEntity {
+
+    @Column(nullable = false, length = 11)
+    public String ruc;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 2)
+    public TipoResumen tipo;
+
+    /** RC-AAAAMMDD-N o RA-AAAAMMDD-N. */
+    @JsonProperty("id_resumen")
+    @Column(nullable = false, length = 17)
+    public String idResumen;
+
+    @JsonProperty("fecha_referencia")
+    @Column(nullable = false)
+    public LocalDate fechaReferencia;
+
+    /** Fecha de generación, parte del ID; se conserva para reenviar el mismo documento. */
+    @JsonProperty("fecha_emision")
+    @Column(nullable = false)
+    public LocalDate fechaEmision;
+
+    public int lineas;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    public EstadoResumen estado = EstadoResumen.PREPARADO;
+
+    public String ticket;
+
+    @JsonProperty("codigo_estado")
+    public String codigoEstado;
+
+    @Column(length = Persistencia.LARGO_DESCRIPCION)
+    public String descripcion;
+
+    @JsonProperty("cdr_sunat")
+    @Column(columnDefinition = "text")
+    public String cdrSunat;
+
+    @JsonProperty("enviado_en")
+    public Instant enviadoEn;
+
+    public int intentos;
+
+    public int consultas;
+
+    /** Emisor serializado en JSON, con las credenciales SOL para enviar y consultar. */
+    @JsonIgnore
+    @Column(nullable = false, columnDefinition = "text")
+    public String emisor;
+
+    /** ZIP firmado del primer envío; se libera al llegar a un estado final. */
+    @JsonIgnore
+    @Column(columnDefinition = "bytea")
+    public byte[] zip;
+
+    @JsonIgnore
+    @Column(nullable = false)
+    public Instant siguienteIntento = Instant.now();
+
+    @JsonIgnore
+    public Instant bloqueadoHasta;
+
+    @Column(nullable = false)
+    public Instant creadoEn = Instant.now();
+}
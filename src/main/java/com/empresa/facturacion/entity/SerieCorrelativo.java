@@ -0,0 +1,37 @@
+package com.empresa.facturacion.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+import java.time.Instant;
+
+/**
+ * Contador de correlativos de una serie. Cada nodo reserva bloques completos bloqueando la fila
+ * ({@code SELECT ... FOR UPDATE}) y avanzando {@code siguiente}; los números del bloque se asignan
+ * luego en memoria, sin volver a la base de datos.
+ */
+@Entity
+@Table(name = "serie_correlativo",
+        uniqueConstraints = @UniqueConstraint(name = "uk_serie_correlativo",
+                columnNames = {"ruc", "tipoDocumento", "serie"}))
+public class SerieCorrelativo extends PanacheEntity {
+
+    @Column(nullable = false, length = 11)
+    public String ruc;
+
+    @Column(nullable = false, length = 2)
+    public String tipoDocumento;
+
+    @Column(nullable = false, length = 4)
+    public String serie;
+
+    /** Primer correlativo aún no reservado por ningún nodo. */
+    @Column(nullable = false)
+    public long siguiente;
+
+    @Column(nullable = false)
+    public Instant actualizadoEn = Instant.now();
+}
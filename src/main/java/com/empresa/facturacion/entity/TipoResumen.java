@@ -0,0 +1,11 @@
+package com.empresa.facturacion.entity;
+
+/**
+ * Documentos que SUNAT procesa por ticket (sendSummary / getStatus).
+ */
+public enum TipoResumen {
+    /** Resumen diario de boletas y sus notas. */
+    RC,
+    /** Comunicación de baja. */
+    RA
+}
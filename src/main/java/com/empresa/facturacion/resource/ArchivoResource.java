@@ -0,0 +1,66 @@
+package com.empresa.facturacion.resource;
+
+import com.empresa.facturacion.service.archivo.ArchivoComprobantes;
+import com.empresa.facturacion.service.archivo.TipoArchivo;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.jboss.resteasy.reactive.PathPart;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+@Path("/api/facturacion/archivo")
+@Produces(MediaType.APPLICATION_JSON)
+public class ArchivoResource {
+
+    @Inject
+    ArchivoComprobantes archivo;
+
+    /**
+     * 🗄️ DESCARGA DEL XML FIRMADO O DEL CDR ARCHIVADO
+     * El ZIP se envía directo desde el segmento en disco (sendfile), sin copiarlo a memoria
+     */
+    @GET
+    @Path("/{ruc}/{tipoDocumento}/{serie}/{correlativo}/{archivo}")
+    @Produces({"application/zip", MediaType.APPLICATION_JSON})
+    public Response descargar(@PathParam("ruc") String ruc,
+                              @PathParam("tipoDocumento") String tipoDocumento,
+                              @PathParam("serie") String serie,
+                              @PathParam("correlativo") long correlativo,
+                              @PathParam("archivo") String nombreArchivo,
+                              @HeaderParam(HttpHeaders.IF_NONE_MATCH) String siNoCoincide) {
+        TipoArchivo tipo;
+        try {
+            tipo = TipoArchivo.valueOf(nombreArchivo.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(Map.of("error", "Archivo debe ser xml o cdr"))
+                    .build();
+        }
+
+        String clave = ArchivoComprobantes.clave(ruc, tipoDocumento, serie, correlativo);
+        Optional<ArchivoComprobantes.Ubicacion> ubicacion = archivo.buscar(clave, tipo);
+        if (ubicacion.isEmpty()) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(Map.of("error", "No hay " + nombreArchivo + " archivado para " + clave))
+                    .build();
+        }
+
+        ArchivoComprobantes.Ubicacion u = ubicacion.get();
+        // El contenido se identifica por su SHA-256: sirve directamente como ETag
+        String etag = "\"" + u.sha256() + "\"";
+        if (etag.equals(siNoCoincide)) {
+            return Response.notModified().tag(u.sha256()).build();
+        }
+        return Response.ok(new PathPart(u.segmento(), u.offset(), u.longitud()), "application/zip")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + tipo.nombreZip(clave) + "\"")
+                .header(HttpHeaders.ETAG, etag)
+                .build();
+    }
+}
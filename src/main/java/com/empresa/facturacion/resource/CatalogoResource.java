@@ -0,0 +1,45 @@
+package com.empresa.facturacion.resource;
+
+import com.empresa.facturacion.service.catalogo.Catalogos;
+import com.empresa.facturacion.service.catalogo.JsonPreparado;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.Map;
+
+@Path("/api/facturacion/catalogos")
+@Produces(MediaType.APPLICATION_JSON)
+public class CatalogoResource {
+
+    @Inject
+    Catalogos catalogos;
+
+    /**
+     * 📚 CATÁLOGOS SUNAT DISPONIBLES
+     * Número, nombre, cantidad de códigos y ETag de cada uno; responde 304 si no cambió
+     */
+    @GET
+    public Response indice(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String siNoCoincide) {
+        return catalogos.indice().responder(siNoCoincide);
+    }
+
+    /**
+     * 📖 CÓDIGOS DE UN CATÁLOGO SUNAT
+     * JSON serializado al arrancar: cada consulta solo compara el ETag o escribe los mismos bytes
+     */
+    @GET
+    @Path("/{numero}")
+    public Response catalogo(@PathParam("numero") int numero,
+                             @HeaderParam(HttpHeaders.IF_NONE_MATCH) String siNoCoincide) {
+        JsonPreparado json = catalogos.json(numero);
+        if (json == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity(Map.of("error", "No hay catálogo " + numero))
+                    .build();
+        }
+        return json.responder(siNoCoincide);
+    }
+}
@@ -1,14 +1,39 @@
 package com.empresa.facturacion.resource;
 
 import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.dto.ResultadoLote;
+import com.empresa.facturacion.dto.SunatResponse;
+import com.empresa.facturacion.entity.ComprobanteOutbox;
 import com.empresa.facturacion.service.SunatIntegrationService;
+import com.empresa.facturacion.service.catalogo.Catalogo;
+import com.empresa.facturacion.service.catalogo.Catalogos;
+import com.empresa.facturacion.service.catalogo.JsonPreparado;
+import com.empresa.facturacion.service.conexion.ConexionesSunat;
+import com.empresa.facturacion.service.correlativo.AsignadorCorrelativos;
+import com.empresa.facturacion.service.idempotencia.EnviosIdempotentes;
+import com.empresa.facturacion.service.lote.LoteFacturasService;
+import com.empresa.facturacion.service.outbox.OutboxService;
+import com.empresa.facturacion.service.ubl.TipoComprobante;
+import com.empresa.facturacion.service.validacion.ValidadorComprobante;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.common.annotation.Blocking;
+import jakarta.annotation.PostConstruct;
 import jakarta.inject.Inject;
+import jakarta.persistence.PersistenceException;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+import org.jboss.resteasy.reactive.common.util.RestMediaType;
+
+import java.io.InputStream;
+import java.util.List;
 import java.util.Map;
 
 @Path("/api/facturacion")
@@ -21,6 +46,37 @@ public class FacturacionResource {
     @Inject
     SunatIntegrationService sunatService;
 
+    @Inject
+    OutboxService outbox;
+
+    @Inject
+    LoteFacturasService loteService;
+
+    @Inject
+    AsignadorCorrelativos asignador;
+
+    @Inject
+    EnviosIdempotentes idempotencia;
+
+    @Inject
+    ConexionesSunat conexiones;
+
+    @Inject
+    ValidadorComprobante validador;
+
+    @Inject
+    Catalogos catalogos;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @ConfigProperty(name = "sunat.ambiente")
+    String ambiente;
+
+    private JsonPreparado datosPrueba;
+    private JsonPreparado estadisticas;
+    private JsonPreparado codigosAfectacion;
+
     @GET
     @Path("/health")
     public Response health() {
@@ -43,40 +99,8 @@ public class FacturacionResource {
 
     @GET
     @Path("/datos-prueba")
-    public Response obtenerDatosPrueba() {
-        // Datos de prueba oficiales de SUNAT
-        return Response.ok(Map.of(
-                "emisor", Map.of(
-                        "ruc", "20000000001",
-                        "razon_social", "EMPRESA DE PRUEBA SAC",
-                        "nombre_comercial", "EMPRESA PRUEBA",
-                        "direccion", "AV. PRUEBA 123 - LIMA - LIMA - LIMA",
-                        "ubigeo", "150101",
-                        "departamento", "LIMA",
-                        "provincia", "LIMA",
-                        "distrito", "LIMA",
-                        "usuario_sol", "MODDATOS",
-                        "clave_sol", "MODDATOS"
-                ),
-                "cliente", Map.of(
-                        "tipo_documento", "6",
-                        "numero_documento", "20123456789",
-                        "razon_social", "CLIENTE DE PRUEBA SAC",
-                        "direccion", "AV. CLIENTE 456 - LIMA"
-                ),
-                "serie", "F001",
-                "correlativo", System.currentTimeMillis() % 100000,
-                "moneda", "PEN",
-                "items", java.util.List.of(Map.of(
-                        "item", 1,
-                        "codigo_producto", "PROD001",
-                        "descripcion", "PRODUCTO DE PRUEBA",
-                        "cantidad", 1,
-                        "valor_unitario", 100.00,
-                        "codigo_afectacion_igv", "10",
-                        "unidad_medida", "NIU"
-                ))
-        )).build();
+    public Response obtenerDatosPrueba(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String siNoCoincide) {
+        return datosPrueba.responder(siNoCoincide);
     }
 
     /**
@@ -86,13 +110,24 @@ public class FacturacionResource {
     @POST
     @Path("/prueba-factura")
     public Uni<Response> pruebaFactura(@Valid FacturaPruebaRequest request) {
-        LOG.infof("🚀 Recibida solicitud de prueba factura: %s-%d", request.serie, request.correlativo);
-
-        return sunatService.enviarFactura(request)
+        // Antes de asignar correlativo: un comprobante que SUNAT rechazaría no consume número
+        ValidadorComprobante.Validacion validacion = validador.revisar(request);
+        if (!validacion.valida()) {
+            LOG.warnf("⚠️ Comprobante %s rechazado por validación local: %s", request.serie, validacion.errores());
+            return Uni.createFrom().item(Response.status(Response.Status.BAD_REQUEST)
+                    .entity(SunatResponse.invalida(validacion.errores())).build());
+        }
+        // Reintentos del mismo comprobante: se agrupan con el envío en curso o reciben el CDR ya emitido
+        return idempotencia.enviar(request, () -> asignador.completar(request)
+                        .invoke(completa -> LOG.infof("🚀 Recibida solicitud de prueba comprobante %s: %s-%d",
+                                completa.tipoDocumento, completa.serie, completa.correlativo))
+                        .onItem().transformToUni(completa -> sunatService.enviarFactura(completa, validacion.totales())))
                 .onItem().transform(result -> {
                     if (result.success) {
                         LOG.infof("✅ Factura enviada exitosamente: %s", result.descripcion);
                         return Response.ok(result).build();
+                    } else if (EnviosIdempotentes.CONFLICTO.equals(result.codigoRespuesta)) {
+                        return Response.status(Response.Status.CONFLICT).entity(result).build();
                     } else {
                         LOG.errorf("❌ Error enviando factura: %s", result.descripcion);
                         return Response.status(Response.Status.BAD_REQUEST).entity(result).build();
@@ -109,6 +144,74 @@ public class FacturacionResource {
                 });
     }
 
+    /**
+     * 📦 ENDPOINT DE LOTES NDJSON
+     * Una factura JSON por línea; devuelve un resultado NDJSON por factura a medida que van terminando
+     */
+    @POST
+    @Path("/lote")
+    @Blocking
+    @Consumes(RestMediaType.APPLICATION_NDJSON)
+    @Produces(RestMediaType.APPLICATION_NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<ResultadoLote> procesarLote(InputStream cuerpo) {
+        LOG.info("📦 Recibido lote NDJSON de facturas");
+        return loteService.procesar(cuerpo);
+    }
+
+    /**
+     * 📥 ENDPOINT DE INGESTA ASÍNCRONA
+     * Persiste el comprobante en el outbox y responde de inmediato (202); los workers lo envían a SUNAT
+     */
+    @POST
+    @Path("/comprobantes")
+    public Response encolarComprobante(@Valid FacturaPruebaRequest request) {
+        List<String> errores = validador.validar(request);
+        if (!errores.isEmpty()) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(SunatResponse.invalida(errores)).build();
+        }
+        asignador.asignar(request);
+        if (outbox.existe(request)) {
+            return yaRecibido(request);
+        }
+        ComprobanteOutbox comprobante;
+        try {
+            comprobante = outbox.encolar(request);
+        } catch (PersistenceException e) {
+            // Dos solicitudes del mismo comprobante pasaron a la vez la verificación: la segunda choca
+            // con uk_outbox_documento
+            if (outbox.existe(request)) {
+                return yaRecibido(request);
+            }
+            throw e;
+        }
+        LOG.infof("📥 Comprobante %s encolado con id %d", comprobante.numeroDocumento(), comprobante.id);
+        return Response.accepted(Map.of(
+                "id", comprobante.id,
+                "estado", comprobante.estado,
+                "numero_documento", comprobante.numeroDocumento()
+        )).location(java.net.URI.create("/api/facturacion/comprobantes/" + comprobante.id)).build();
+    }
+
+    private static Response yaRecibido(FacturaPruebaRequest request) {
+        return Response.status(Response.Status.CONFLICT)
+                .entity(Map.of("error", "El comprobante " + request.serie + "-" + request.correlativo + " ya fue recibido"))
+                .build();
+    }
+
+    /**
+     * 🔎 ESTADO DE UN COMPROBANTE ENCOLADO
+     */
+    @GET
+    @Path("/comprobantes/{id}")
+    public Response estadoComprobante(@PathParam("id") long id) {
+        ComprobanteOutbox comprobante = outbox.buscar(id);
+        if (comprobante == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        return Response.ok(comprobante).build();
+    }
+
     /**
      * 📄 ENDPOINT PARA GENERAR XML (Solo para debugging)
      * Útil para ver cómo se ve el XML que se generará antes del envío
@@ -135,21 +238,8 @@ public class FacturacionResource {
      */
     @GET
     @Path("/stats")
-    public Response obtenerEstadisticas() {
-        return Response.ok(Map.of(
-                "sistema", "Sistema de Facturación Electrónica",
-                "ambiente_sunat", "BETA (Pruebas)",
-                "url_sunat", "https://e-beta.sunat.gob.pe/ol-ti-itcpfegem-beta/billService",
-                "tipos_documento_soportados", java.util.List.of(
-                        Map.of("codigo", "01", "descripcion", "Factura"),
-                        Map.of("codigo", "03", "descripcion", "Boleta"),
-                        Map.of("codigo", "07", "descripcion", "Nota de Crédito"),
-                        Map.of("codigo", "08", "descripcion", "Nota de Débito")
-                ),
-                "version_ubl", "2.1",
-                "framework", "Quarkus 3.24.3",
-                "java_version", System.getProperty("java.version")
-        )).build();
+    public Response obtenerEstadisticas(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String siNoCoincide) {
+        return estadisticas.responder(siNoCoincide);
     }
 
     /**
@@ -158,47 +248,104 @@ public class FacturacionResource {
     @GET
     @Path("/ping-sunat")
     public Uni<Response> pingSunat() {
-        // Aquí podrías hacer una verificación simple de conectividad
-        return Uni.createFrom().item(() -> {
-            try {
-                // Simulamos verificación de conectividad
+        // GET del WSDL por el pool de conexiones de los envíos: mide la latencia real hacia SUNAT
+        return conexiones.sondear().onItem().transform(sondeo -> {
+            if (sondeo.accesible()) {
                 return Response.ok(Map.of(
                         "sunat_accesible", true,
-                        "ambiente", "BETA",
+                        "ambiente", ambiente,
+                        "destino", conexiones.destino(),
+                        "latencia_ms", sondeo.latenciaMs(),
+                        "conexion", sondeo.conexionNueva() ? "nueva" : "reutilizada",
                         "mensaje", "Conectividad con SUNAT OK",
                         "timestamp", java.time.LocalDateTime.now().toString()
                 )).build();
-            } catch (Exception e) {
-                return Response.status(Response.Status.SERVICE_UNAVAILABLE)
-                        .entity(Map.of(
-                                "sunat_accesible", false,
-                                "error", e.getMessage(),
-                                "timestamp", java.time.LocalDateTime.now().toString()
-                        )).build();
             }
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .entity(Map.of(
+                            "sunat_accesible", false,
+                            "ambiente", ambiente,
+                            "destino", conexiones.destino(),
+                            "latencia_ms", sondeo.latenciaMs(),
+                            "estado_http", sondeo.estadoHttp(),
+                            "error", sondeo.error() != null ? sondeo.error() : "HTTP " + sondeo.estadoHttp(),
+                            "timestamp", java.time.LocalDateTime.now().toString()
+                    )).build();
         });
     }
 
     /**
      * 📋 ENDPOINT PARA LISTAR CÓDIGOS DE AFECTACIÓN IGV
+     * Catálogos 07 y 03 completos; el detalle de cada catálogo está en /catalogos/{numero}
      */
     @GET
     @Path("/codigos-afectacion")
-    public Response obtenerCodigosAfectacion() {
-        return Response.ok(Map.of(
-                "codigos_afectacion_igv", java.util.List.of(
-                        Map.of("codigo", "10", "descripcion", "Gravado - Operación Onerosa", "porcentaje", 18),
-                        Map.of("codigo", "20", "descripcion", "Exonerado - Operación Onerosa", "porcentaje", 0),
-                        Map.of("codigo", "30", "descripcion", "Inafecto - Operación Onerosa", "porcentaje", 0),
-                        Map.of("codigo", "40", "descripcion", "Exportación", "porcentaje", 0)
+    public Response obtenerCodigosAfectacion(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String siNoCoincide) {
+        return codigosAfectacion.responder(siNoCoincide);
+    }
+
+    /**
+     * Las respuestas de consulta no cambian mientras el proceso vive: se serializan una vez aquí.
+     */
+    @PostConstruct
+    void preparar() {
+        // Datos de prueba oficiales de SUNAT; el correlativo lo asigna el servidor al enviar
+        datosPrueba = JsonPreparado.de(objectMapper, Map.of(
+                "emisor", Map.of(
+                        "ruc", "20000000001",
+                        "razon_social", "EMPRESA DE PRUEBA SAC",
+                        "nombre_comercial", "EMPRESA PRUEBA",
+                        "direccion", "AV. PRUEBA 123 - LIMA - LIMA - LIMA",
+                        "ubigeo", "150101",
+                        "departamento", "LIMA",
+                        "provincia", "LIMA",
+                        "distrito", "LIMA",
+                        "usuario_sol", "MODDATOS",
+                        "clave_sol", "MODDATOS"
                 ),
-                "unidades_medida_comunes", java.util.List.of(
-                        Map.of("codigo", "NIU", "descripcion", "Unidad"),
-                        Map.of("codigo", "KGM", "descripcion", "Kilogramo"),
-                        Map.of("codigo", "MTR", "descripcion", "Metro"),
-                        Map.of("codigo", "LTR", "descripcion", "Litro"),
-                        Map.of("codigo", "ZZ", "descripcion", "Unidad (Servicios)")
-                )
-        )).build();
+                "cliente", Map.of(
+                        "tipo_documento", "6",
+                        "numero_documento", "20123456786",
+                        "razon_social", "CLIENTE DE PRUEBA SAC",
+                        "direccion", "AV. CLIENTE 456 - LIMA"
+                ),
+                "serie", "F001",
+                "moneda", "PEN",
+                "items", List.of(Map.of(
+                        "item", 1,
+                        "codigo_producto", "PROD001",
+                        "descripcion", "PRODUCTO DE PRUEBA",
+                        "cantidad", 1,
+                        "valor_unitario", 100.00,
+                        "codigo_afectacion_igv", "10",
+                        "unidad_medida", "NIU"
+                ))
+        ));
+
+        Catalogo tiposDocumento = catalogos.requerido(1);
+        estadisticas = JsonPreparado.de(objectMapper, Map.of(
+                "sistema", "Sistema de Facturación Electrónica",
+                "ambiente_sunat", "BETA (Pruebas)",
+                "url_sunat", "https://e-beta.sunat.gob.pe/ol-ti-itcpfegem-beta/billService",
+                "tipos_documento_soportados", java.util.Arrays.stream(TipoComprobante.values())
+                        .map(tipo -> Map.of("codigo", tipo.codigo, "descripcion", tiposDocumento.descripcion(tipo.codigo)))
+                        .toList(),
+                "version_ubl", "2.1",
+                "framework", "Quarkus 3.24.3",
+                "java_version", System.getProperty("java.version")
+        ));
+
+        Catalogo afectaciones = catalogos.requerido(7);
+        codigosAfectacion = JsonPreparado.de(objectMapper, Map.of(
+                "codigos_afectacion_igv", Catalogos.filas(afectaciones).stream()
+                        .map(fila -> Map.of(
+                                "codigo", fila.get("codigo"),
+                                "descripcion", fila.get("descripcion"),
+                                "porcentaje", new java.math.BigDecimal(fila.get("porcentaje"))))
+                        .toList(),
+                "unidades_medida_comunes", Catalogos.filas(catalogos.requerido(3)).stream()
+                        .map(fila -> Map.of("codigo", fila.get("codigo"), "descripcion", fila.get("descripcion")))
+                        .toList()
+        ));
     }
 }
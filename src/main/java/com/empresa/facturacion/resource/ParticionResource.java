@@ -0,0 +1,26 @@
+package com.empresa.facturacion.resource;
+
+import com.empresa.facturacion.service.particion.Asignacion;
+import com.empresa.facturacion.service.particion.ParticionesRuc;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+
+@Path("/api/facturacion/particiones")
+@Produces(MediaType.APPLICATION_JSON)
+public class ParticionResource {
+
+    @Inject
+    ParticionesRuc particiones;
+
+    /**
+     * 🧩 PARTICIONES DE ESTE NODO
+     * Particiones de RUC con lease, nodos vivos y vigencia del último latido
+     */
+    @GET
+    public Asignacion asignacion() {
+        return particiones.asignacion();
+    }
+}
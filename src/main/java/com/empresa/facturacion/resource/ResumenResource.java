@@ -0,0 +1,87 @@
+package com.empresa.facturacion.resource;
+
+import com.empresa.facturacion.dto.BajaRequest;
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.service.correlativo.AsignadorCorrelativos;
+import com.empresa.facturacion.service.resumen.ResumenDiarioService;
+import com.empresa.facturacion.service.ubl.TipoComprobante;
+import io.smallrye.mutiny.Uni;
+import jakarta.inject.Inject;
+import jakarta.validation.Valid;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.jboss.logging.Logger;
+
+import java.util.Map;
+
+@Path("/api/facturacion/resumen")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class ResumenResource {
+
+    private static final Logger LOG = Logger.getLogger(ResumenResource.class);
+
+    @Inject
+    ResumenDiarioService resumenService;
+
+    @Inject
+    AsignadorCorrelativos asignador;
+
+    /**
+     * 🧾 ENCOLA UNA BOLETA PARA EL RESUMEN DIARIO (RC)
+     * No se envía por sendBill: se agrupa con las demás boletas del día y se envía por ticket
+     */
+    @POST
+    @Path("/boletas")
+    public Response registrarBoleta(@Valid FacturaPruebaRequest boleta) {
+        if (!boleta.serie.startsWith("B")) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of("error", "Las boletas deben usar series que empiezan con B"))
+                    .build();
+        }
+        boleta.tipoDocumento = TipoComprobante.BOLETA.codigo;
+        asignador.asignar(boleta);
+        resumenService.registrarBoleta(boleta);
+        LOG.debugf("Boleta %s-%d encolada para resumen diario", boleta.serie, boleta.correlativo);
+        return Response.accepted(Map.of(
+                "numero_documento", boleta.serie + "-" + boleta.correlativo,
+                "lineas_pendientes", resumenService.lineasPendientes()
+        )).build();
+    }
+
+    /**
+     * 🗑️ ENCOLA UNA BAJA (RA, o RC con estado 3 si es boleta)
+     */
+    @POST
+    @Path("/bajas")
+    public Response registrarBaja(@Valid BajaRequest baja) {
+        resumenService.registrarBaja(baja);
+        return Response.accepted(Map.of(
+                "numero_documento", baja.serie + "-" + baja.correlativo,
+                "lineas_pendientes", resumenService.lineasPendientes()
+        )).build();
+    }
+
+    /**
+     * 🚚 FUERZA EL ENVÍO DE TODOS LOS LOTES ACUMULADOS
+     */
+    @POST
+    @Path("/enviar")
+    public Uni<Response> enviar() {
+        return resumenService.vaciarLotes()
+                .onItem().transform(ignorado -> Response.ok(Map.of("tickets", resumenService.tickets())).build());
+    }
+
+    /**
+     * 🎫 ESTADO DE LOS TICKETS
+     */
+    @GET
+    @Path("/tickets")
+    public Response tickets() {
+        return Response.ok(Map.of(
+                "tickets", resumenService.tickets(),
+                "lineas_pendientes", resumenService.lineasPendientes()
+        )).build();
+    }
+}
@@ -2,78 +2,200 @@ package com.empresa.facturacion.service;
 
 import com.empresa.facturacion.dto.FacturaPruebaRequest;
 import com.empresa.facturacion.dto.SunatResponse;
+import com.empresa.facturacion.service.archivo.ArchivoComprobantes;
+import com.empresa.facturacion.service.archivo.TipoArchivo;
+import com.empresa.facturacion.service.cdr.LectorRespuestaSunat;
+import com.empresa.facturacion.service.cdr.RespuestaSunat;
+import com.empresa.facturacion.service.conexion.ConexionesSunat;
+import com.empresa.facturacion.service.conexion.SobreSoap;
+import com.empresa.facturacion.service.cpu.EjecutorCpu;
+import com.empresa.facturacion.service.empaque.EmpaqueZip;
+import com.empresa.facturacion.service.firma.FirmaDigitalService;
+import com.empresa.facturacion.service.metricas.MetricasFacturacion;
+import com.empresa.facturacion.service.metricas.MetricasFacturacion.Etapa;
+import com.empresa.facturacion.service.trafico.ControlTraficoSunat;
+import com.empresa.facturacion.service.trafico.TraficoSunatException;
+import com.empresa.facturacion.service.totales.TotalesComprobante;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
 import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 // IMPORTS CORREGIDOS PARA QUARKUS 3.24.3
-import org.eclipse.microprofile.faulttolerance.Retry;
 import org.eclipse.microprofile.faulttolerance.Timeout;
-import org.eclipse.microprofile.rest.client.inject.RestClient;
 import org.jboss.logging.Logger;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.temporal.ChronoUnit;
 import java.util.Base64;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 @ApplicationScoped
 public class SunatIntegrationService {
 
     private static final Logger LOG = Logger.getLogger(SunatIntegrationService.class);
 
+    private static final String CIERRE_SEND_BILL = "</contentFile></ser:sendBill>" + SobreSoap.CIERRE_ENVELOPE;
+
     @Inject
-    @RestClient
-    SunatSoapClient sunatClient;
+    ConexionesSunat conexiones;
 
     @Inject
     XmlGeneratorService xmlGenerator;
 
-    @Retry(maxRetries = 3, delay = 2000)
+    @Inject
+    FirmaDigitalService firmaDigital;
+
+    @Inject
+    MetricasFacturacion metricas;
+
+    @Inject
+    ControlTraficoSunat trafico;
+
+    @Inject
+    ArchivoComprobantes archivo;
+
+    @Inject
+    EmpaqueZip empaque;
+
+    @Inject
+    EjecutorCpu cpu;
+
     @Timeout(value = 120, unit = ChronoUnit.SECONDS)
     public Uni<SunatResponse> enviarFactura(FacturaPruebaRequest request) {
-        LOG.infof("Iniciando envío de factura %s-%d a SUNAT", request.serie, request.correlativo);
+        return enviarFactura(request, null);
+    }
+
+    /**
+     * Como {@link #enviarFactura(FacturaPruebaRequest)}, reutilizando los totales calculados al validar
+     * ({@code null} para calcularlos al generar el XML).
+     */
+    @Timeout(value = 120, unit = ChronoUnit.SECONDS)
+    public Uni<SunatResponse> enviarFactura(FacturaPruebaRequest request, TotalesComprobante totales) {
+        LOG.infof("Iniciando envío de comprobante %s %s-%d a SUNAT",
+                request.tipoDocumento, request.serie, request.correlativo);
+
+        MetricasFacturacion.Emisor medidores = metricas.emisor(request.emisor.ruc, request.tipoDocumento);
+        return metricas.enCurso(firmarYComprimir(request, totales)
+                .onItem().transformToUni(doc -> enviarFirmado(doc, request))
+                .onFailure().recoverWithItem(error ->
+                        medidores.respuesta(medidores.medir(Etapa.ERROR, () -> manejarError(error)))));
+    }
 
-        return Uni.createFrom().item(request)
-                .onItem().transform(xmlGenerator::generarXmlFactura)
-                .onItem().invoke(xml -> LOG.debugf("XML generado: %s", xml.substring(0, Math.min(200, xml.length()))))
-                .onItem().transformToUni(this::simularFirmaYComprimir)
-                .onItem().transformToUni(zipData -> construirYEnviarSoap(zipData, request))
-                .onItem().transform(this::procesarRespuestaSunat)
-                .onFailure().recoverWithItem(this::manejarError);
+    /**
+     * Envía un documento ya firmado y comprimido. Permite reenviar sin volver a generar ni firmar.
+     */
+    public Uni<SunatResponse> enviarFirmado(CompressedDocument doc, FacturaPruebaRequest request) {
+        return enviarFirmado(doc, request, null);
     }
 
-    private Uni<CompressedDocument> simularFirmaYComprimir(String xmlContent) {
-        return Uni.createFrom().item(() -> {
-            try {
-                // Simulamos firma digital agregando un hash
-                String hashCpe = "simulado_hash_" + System.currentTimeMillis();
+    /**
+     * Como {@link #enviarFirmado(CompressedDocument, FacturaPruebaRequest)}, avisando a {@code alSalir} (en
+     * un hilo worker, una sola vez) cuando el control de tráfico deja salir la petición hacia SUNAT. Si no
+     * se llama, la petición no salió: el control de tráfico la rechazó antes (circuito abierto, cuota,
+     * saturación).
+     */
+    public Uni<SunatResponse> enviarFirmado(CompressedDocument doc, FacturaPruebaRequest request, Runnable alSalir) {
+        MetricasFacturacion.Emisor medidores = metricas.emisor(request.emisor.ruc, request.tipoDocumento);
+        return medidores.medir(Etapa.SOAP, Uni.createFrom().deferred(() -> construirYEnviarSoap(doc, request, alSalir)))
+                .onItem().transformToUni(respuesta -> cpu.completar(() ->
+                        medidores.medir(Etapa.RESPUESTA, () -> procesarRespuestaSunat(respuesta, doc.hashCpe))))
+                .onFailure().recoverWithItem(error -> medidores.medir(Etapa.ERROR, () -> manejarError(error)))
+                .onItem().transform(medidores::respuesta)
+                .call(respuesta -> archivar(doc, request, respuesta));
+    }
+
+    /**
+     * Consulta a SUNAT (getStatusCdr) la constancia de un documento ya enviado cuya respuesta no llegó.
+     * La consulta pasa por el mismo control de tráfico del RUC que los envíos. Si SUNAT tiene el CDR la
+     * respuesta es la misma que habría dado sendBill, y se archiva; si no, lleva el statusCode de la
+     * consulta y ningún CDR.
+     */
+    public Uni<SunatResponse> consultarCdr(CompressedDocument doc, FacturaPruebaRequest request) {
+        String sobre = SobreSoap.cabecera(request.emisor.ruc + request.emisor.usuarioSol, request.emisor.claveSol)
+                + "<ser:getStatusCdr><rucComprobante>" + request.emisor.ruc + "</rucComprobante>"
+                + "<tipoComprobante>" + request.tipoDocumento + "</tipoComprobante>"
+                + "<serieComprobante>" + request.serie + "</serieComprobante>"
+                + "<numeroComprobante>" + request.correlativo + "</numeroComprobante>"
+                + "</ser:getStatusCdr>" + SobreSoap.CIERRE_ENVELOPE;
+        return trafico.consultar(request.emisor.ruc, () -> conexiones.consultar(sobre))
+                .onItem().transformToUni(soap -> cpu.completar(() -> {
+                    RespuestaSunat respuesta = LectorRespuestaSunat.leerConsulta(soap);
+                    return respuesta.fault() || respuesta.cdrBase64() != null
+                            ? convertir(respuesta, doc.hashCpe)
+                            : SunatResponse.error(respuesta.codigo(), respuesta.descripcion());
+                }))
+                .onFailure().recoverWithItem(this::manejarError)
+                .call(respuesta -> archivar(doc, request, respuesta));
+    }
+
+    /**
+     * Guarda el XML firmado y el CDR cuando SUNAT devolvió constancia. La escritura en disco va al pool
+     * de workers. Si sale bien, {@code xml_firmado} lleva la ruta de descarga del XML archivado; si falla,
+     * la respuesta de SUNAT no cambia pero lleva {@code error_archivo}, y el outbox conserva el ZIP y el
+     * CDR para reintentarlo.
+     */
+    private Uni<Void> archivar(CompressedDocument doc, FacturaPruebaRequest request, SunatResponse respuesta) {
+        if (respuesta.cdrSunat == null || respuesta.cdrSunat.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return Uni.createFrom().<Void>item(() -> {
+                    try {
+                        respuesta.xmlFirmado = archivar(request, doc.zip, respuesta.cdrSunat);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return null;
+                })
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                .onFailure().invoke(error -> {
+                    LOG.errorf(error, "No se pudo archivar %s-%d", request.serie, request.correlativo);
+                    respuesta.errorArchivo = "No se pudo archivar el XML firmado y el CDR: " + error.getMessage();
+                })
+                .onFailure().recoverWithNull();
+    }
 
-                // XML "firmado" (insertamos estructura de firma simulada)
-                String xmlFirmado = xmlContent.replace(
-                        "<ext:ExtensionContent/>",
-                        "<ext:ExtensionContent>" + generarEstructuraFirmaSimulada(hashCpe) + "</ext:ExtensionContent>"
-                );
+    /**
+     * Guarda el XML firmado ({@code zip}) y el CDR de un comprobante en el archivo.
+     *
+     * @return ruta de descarga del XML archivado
+     */
+    public String archivar(FacturaPruebaRequest request, byte[] zip, String cdrBase64) throws IOException {
+        String clave = ArchivoComprobantes.clave(request.emisor.ruc, request.tipoDocumento, request.serie, request.correlativo);
+        archivo.guardar(clave, TipoArchivo.XML, zip);
+        archivo.guardar(clave, TipoArchivo.CDR, Base64.getMimeDecoder().decode(cdrBase64));
+        return "/api/facturacion/archivo/" + request.emisor.ruc + "/" + request.tipoDocumento + "/" + request.serie
+                + "/" + request.correlativo + "/xml";
+    }
 
-                // Comprimir en ZIP
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                ZipOutputStream zos = new ZipOutputStream(baos);
+    /**
+     * Genera, firma y comprime en el pool de CPU. Falla con {@link TraficoSunatException} si el pool
+     * está saturado.
+     */
+    public Uni<CompressedDocument> firmarYComprimir(FacturaPruebaRequest request) {
+        return firmarYComprimir(request, null);
+    }
 
-                String fileName = "documento.xml";
-                ZipEntry entry = new ZipEntry(fileName);
-                zos.putNextEntry(entry);
-                zos.write(xmlFirmado.getBytes("UTF-8"));
-                zos.closeEntry();
-                zos.close();
+    private Uni<CompressedDocument> firmarYComprimir(FacturaPruebaRequest request, TotalesComprobante totales) {
+        return cpu.ejecutar(() -> {
+            MetricasFacturacion.Emisor medidores = metricas.emisor(request.emisor.ruc, request.tipoDocumento);
+            try {
+                long inicio = System.nanoTime();
+                // El XML firmado se comprime a medida que se escribe, sin String intermedio
+                String fileName = nombreArchivo(request) + ".xml";
+                EmpaqueZip.Empaquetado<String> zip = empaque.comprimir(fileName,
+                        salida -> firmaDigital.firmar(totales != null
+                                ? xmlGenerator.documento(request, totales)
+                                : xmlGenerator.documento(request), salida));
+                medidores.registrar(Etapa.FIRMA, System.nanoTime() - inicio);
 
-                String zipBase64 = Base64.getEncoder().encodeToString(baos.toByteArray());
+                LOG.debugf("ZIP generado para %s-%d: %d bytes, hash %s",
+                        request.serie, request.correlativo, zip.zip().length, zip.resultado());
+                medidores.tamanos(zip.original(), zip.zip().length, SobreSoap.longitudBase64(zip.zip().length));
 
-                return new CompressedDocument(xmlFirmado, hashCpe, zipBase64, fileName);
+                return new CompressedDocument(zip.resultado(), zip.zip(), fileName);
 
             } catch (Exception e) {
                 throw new RuntimeException("Error procesando documento", e);
@@ -81,160 +203,128 @@ public class SunatIntegrationService {
         });
     }
 
-    private String generarEstructuraFirmaSimulada(String hashCpe) {
-        return String.format("""
-            <ds:Signature xmlns:ds="http://www.w3.org/2000/09/xmldsig#" Id="SignatureSP">
-              <ds:SignedInfo>
-                <ds:CanonicalizationMethod Algorithm="http://www.w3.org/TR/2001/REC-xml-c14n-20010315"/>
-                <ds:SignatureMethod Algorithm="http://www.w3.org/2000/09/xmldsig#rsa-sha1"/>
-                <ds:Reference URI="">
-                  <ds:Transforms>
-                    <ds:Transform Algorithm="http://www.w3.org/2000/09/xmldsig#enveloped-signature"/>
-                  </ds:Transforms>
-                  <ds:DigestMethod Algorithm="http://www.w3.org/2000/09/xmldsig#sha1"/>
-                  <ds:DigestValue>%s</ds:DigestValue>
-                </ds:Reference>
-              </ds:SignedInfo>
-              <ds:SignatureValue>SIGNATURE_VALUE_SIMULADO_PARA_PRUEBA</ds:SignatureValue>
-              <ds:KeyInfo>
-                <ds:X509Data>
-                  <ds:X509Certificate>CERTIFICADO_SIMULADO_PARA_PRUEBA</ds:X509Certificate>
-                </ds:X509Data>
-              </ds:KeyInfo>
-            </ds:Signature>
-            """, hashCpe);
-    }
-
-    private Uni<String> construirYEnviarSoap(CompressedDocument doc, FacturaPruebaRequest request) {
-        String numeroDocumento = request.serie + "-" + request.correlativo;
-        String fileName = request.emisor.ruc + "-01-" + numeroDocumento + ".ZIP";
-
-        String soapEnvelope = construirSoapEnvelope(
+    private Uni<String> construirYEnviarSoap(CompressedDocument doc, FacturaPruebaRequest request, Runnable alSalir) {
+        String fileName = nombreArchivo(request) + ".ZIP";
+
+        SobreSoap soapEnvelope = construirSoapEnvelope(
                 request.emisor.ruc + request.emisor.usuarioSol,
                 request.emisor.claveSol,
                 fileName,
-                doc.zipBase64
+                doc.zip
         );
 
-        LOG.infof("Enviando SOAP a SUNAT: %s", fileName);
-        LOG.debugf("SOAP Envelope: %s", soapEnvelope.substring(0, Math.min(500, soapEnvelope.length())));
-
-        return sunatClient.enviarDocumento(
-                "text/xml; charset=utf-8",
-                "\"\"", // SOAPAction vacío
-                "text/xml",
-                "Quarkus-SUNAT-Client/1.0",
-                soapEnvelope
-        ).onFailure().invoke(failure -> {
-            LOG.errorf("Error en llamada SOAP: %s", failure.getMessage());
-        });
+        LOG.infof("Enviando SOAP a SUNAT: %s (%d bytes)", fileName, soapEnvelope.longitud());
+
+        Supplier<Uni<String>> llamada = () -> conexiones.enviar(soapEnvelope);
+        if (alSalir != null) {
+            // El permiso puede llegar en un hilo de I/O y alSalir suele escribir en la base
+            AtomicBoolean avisado = new AtomicBoolean();
+            Supplier<Uni<String>> directa = llamada;
+            llamada = () -> avisado.getAndSet(true) ? directa.get() : Uni.createFrom().voidItem()
+                    .invoke(alSalir)
+                    .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                    .chain(directa::get);
+        }
+
+        // Cuota del RUC, concurrencia adaptativa, circuit breaker y reintentos con backoff
+        return trafico.enviar(request.emisor.ruc, llamada)
+                .onFailure().invoke(failure -> LOG.errorf("Error en llamada SOAP: %s", failure.getMessage()));
     }
 
-    private String construirSoapEnvelope(String username, String password, String fileName, String zipContent) {
-        return String.format("""
-            <soapenv:Envelope xmlns:soapenv="http://schemas.xmlsoap.org/soap/envelope/" 
-                              xmlns:ser="http://service.sunat.gob.pe" 
-                              xmlns:wsse="http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-secext-1.0.xsd">
-              <soapenv:Header>
-                <wsse:Security>
-                  <wsse:UsernameToken>
-                    <wsse:Username>%s</wsse:Username>
-                    <wsse:Password>%s</wsse:Password>
-                  </wsse:UsernameToken>
-                </wsse:Security>
-              </soapenv:Header>
-              <soapenv:Body>
-                <ser:sendBill>
-                  <fileName>%s</fileName>
-                  <contentFile>%s</contentFile>
-                </ser:sendBill>
-              </soapenv:Body>
-            </soapenv:Envelope>
-            """, username, password, fileName, zipContent);
-    }
-
-    private SunatResponse procesarRespuestaSunat(String soapResponse) {
-        try {
-            LOG.infof("Respuesta SUNAT recibida (primeros 200 chars): %s",
-                    soapResponse.substring(0, Math.min(200, soapResponse.length())));
-
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware(true);
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document doc = builder.parse(new ByteArrayInputStream(soapResponse.getBytes()));
-
-            // Verificar si hay CDR (respuesta exitosa)
-            NodeList applicationResponse = doc.getElementsByTagName("applicationResponse");
-            if (applicationResponse.getLength() > 0) {
-                String cdrBase64 = applicationResponse.item(0).getTextContent();
-
-                LOG.infof("Documento aceptado por SUNAT - CDR recibido");
-
-                return SunatResponse.success(
-                        "0",
-                        "La Factura ha sido aceptada",
-                        "", // xmlFirmado
-                        cdrBase64, // cdrSunat
-                        "hash_simulado", // hashCpe
-                        "documento_enviado" // numeroDocumento
-                );
-            } else {
-                // Verificar errores SOAP
-                NodeList faultCode = doc.getElementsByTagName("faultcode");
-                NodeList faultString = doc.getElementsByTagName("faultstring");
-
-                if (faultCode.getLength() > 0) {
-                    String codigo = faultCode.item(0).getTextContent();
-                    String mensaje = faultString.item(0).getTextContent();
-
-                    LOG.errorf("Error SUNAT - Código: %s, Mensaje: %s", codigo, mensaje);
-
-                    return SunatResponse.error(codigo, mensaje);
-                }
-            }
+    /**
+     * Nombre que SUNAT exige para el ZIP y el XML: RUC-TIPO-SERIE-CORRELATIVO.
+     */
+    static String nombreArchivo(FacturaPruebaRequest request) {
+        return request.emisor.ruc + "-" + request.tipoDocumento + "-" + request.serie + "-" + request.correlativo;
+    }
 
-            throw new RuntimeException("Respuesta SUNAT no reconocida");
+    /**
+     * Sobre de sendBill; el ZIP se codifica en Base64 recién al escribirlo en la conexión.
+     */
+    SobreSoap construirSoapEnvelope(String username, String password, String fileName, byte[] zip) {
+        String prefijo = SobreSoap.cabecera(username, password)
+                + "<ser:sendBill><fileName>" + fileName + "</fileName><contentFile>";
+        return new SobreSoap(prefijo, zip, CIERRE_SEND_BILL);
+    }
 
+    SunatResponse procesarRespuestaSunat(String soapResponse, String hashCpe) {
+        try {
+            return convertir(LectorRespuestaSunat.leer(soapResponse), hashCpe);
         } catch (Exception e) {
             LOG.errorf(e, "Error procesando respuesta SUNAT");
             return SunatResponse.error("PARSE_ERROR", "Error procesando respuesta: " + e.getMessage());
         }
     }
 
+    private static SunatResponse convertir(RespuestaSunat respuesta, String hashCpe) {
+        if (respuesta.fault()) {
+            LOG.errorf("Error SUNAT - Código: %s, Mensaje: %s", respuesta.codigo(), respuesta.descripcion());
+            return SunatResponse.error(respuesta.codigo(), respuesta.descripcion());
+        }
+
+        SunatResponse resultado;
+        if (respuesta.aceptado()) {
+            LOG.infof("Documento %s aceptado por SUNAT - CDR %s con %d observaciones",
+                    respuesta.referencia(), respuesta.codigo(), respuesta.observaciones().size());
+            resultado = SunatResponse.success(
+                    respuesta.codigo(),
+                    respuesta.descripcion(),
+                    null, // xml_firmado: ruta en el archivo, se completa al archivar
+                    respuesta.cdrBase64(),
+                    hashCpe,
+                    respuesta.referencia()
+            );
+        } else {
+            LOG.errorf("Documento %s rechazado por SUNAT - Código: %s, Mensaje: %s",
+                    respuesta.referencia(), respuesta.codigo(), respuesta.descripcion());
+            resultado = SunatResponse.error(respuesta.codigo(), respuesta.descripcion());
+            resultado.cdrSunat = respuesta.cdrBase64();
+            resultado.hashCpe = hashCpe;
+            resultado.numeroDocumento = respuesta.referencia();
+        }
+        resultado.observaciones = respuesta.observaciones();
+        return resultado;
+    }
+
     private SunatResponse manejarError(Throwable throwable) {
+        if (throwable instanceof TraficoSunatException trafico) {
+            LOG.warnf("Envío a SUNAT no realizado: %s", trafico.getMessage());
+            return SunatResponse.error(trafico.codigo, trafico.getMessage());
+        }
+
         LOG.errorf(throwable, "Error en integración SUNAT");
 
-        String mensaje = throwable.getMessage();
-
-        // Analizar tipos de errores comunes
-        if (mensaje.contains("status code 500")) {
-            return SunatResponse.error("SUNAT_500",
-                    "Error en servidor SUNAT (500) - Posible problema con firma digital o formato XML");
-        } else if (mensaje.contains("status code 401")) {
-            return SunatResponse.error("SUNAT_401",
-                    "Error de autenticación - Verificar credenciales SOL");
-        } else if (mensaje.contains("status code 404")) {
-            return SunatResponse.error("SUNAT_404",
-                    "Servicio SUNAT no encontrado - Verificar URL");
-        } else if (mensaje.contains("ConnectException") || mensaje.contains("timeout")) {
+        // Se clasifica por tipo y estado HTTP: el mensaje puede ser null (NPE, timeouts de Vert.x)
+        if (throwable instanceof WebApplicationException web) {
+            int estado = web.getResponse().getStatus();
+            if (estado == 401 || estado == 403) {
+                return SunatResponse.error("SUNAT_401",
+                        "Error de autenticación - Verificar credenciales SOL");
+            } else if (estado == 404) {
+                return SunatResponse.error("SUNAT_404",
+                        "Servicio SUNAT no encontrado - Verificar URL");
+            } else if (estado >= 500) {
+                return SunatResponse.error("SUNAT_500",
+                        "Error en servidor SUNAT (" + estado + ") - Servicio temporalmente no disponible");
+            }
+        }
+        if (ControlTraficoSunat.esSobrecarga(throwable)) {
             return SunatResponse.error("SUNAT_CONECTIVIDAD",
                     "Error de conectividad con SUNAT - Servicio temporalmente no disponible");
-        } else {
-            return SunatResponse.error("ERROR_INTERNO", "Error interno: " + mensaje);
         }
+        String mensaje = throwable.getMessage() != null ? throwable.getMessage() : throwable.getClass().getSimpleName();
+        return SunatResponse.error("ERROR_INTERNO", "Error interno: " + mensaje);
     }
 
     // Clase auxiliar
-    private static class CompressedDocument {
-        final String xmlFirmado;
-        final String hashCpe;
-        final String zipBase64;
-        final String fileName;
-
-        CompressedDocument(String xmlFirmado, String hashCpe, String zipBase64, String fileName) {
-            this.xmlFirmado = xmlFirmado;
+    public static class CompressedDocument {
+        public final String hashCpe;
+        public final byte[] zip;
+        public final String fileName;
+
+        public CompressedDocument(String hashCpe, byte[] zip, String fileName) {
             this.hashCpe = hashCpe;
-            this.zipBase64 = zipBase64;
+            this.zip = zip;
             this.fileName = fileName;
         }
     }
@@ -1,235 +1,416 @@
 package com.empresa.facturacion.service;
 
 import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.service.totales.CalculadoraTotales;
+import com.empresa.facturacion.service.totales.Categoria;
+import com.empresa.facturacion.service.totales.ImporteEnLetras;
+import com.empresa.facturacion.service.totales.Monto;
+import com.empresa.facturacion.service.totales.TotalesComprobante;
+import com.empresa.facturacion.service.ubl.ContenidoExtension;
+import com.empresa.facturacion.service.ubl.DocumentoUbl;
+import com.empresa.facturacion.service.ubl.PlantillaUbl;
+import com.empresa.facturacion.service.ubl.PlantillaUbl.Campo;
+import com.empresa.facturacion.service.ubl.TipoComprobante;
+import com.empresa.facturacion.service.ubl.UblWriter;
 import jakarta.enterprise.context.ApplicationScoped;
-import java.math.BigDecimal;
-import java.time.LocalDate;
+import jakarta.inject.Inject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
 
+import static com.empresa.facturacion.service.ubl.UblWriter.utf8;
+
+/**
+ * Genera facturas, boletas y notas de crédito/débito UBL 2.1 con un único motor de plantillas.
+ *
+ * Las plantillas se compilan al cargar la clase: el texto fijo (namespaces, {@code TaxScheme},
+ * {@code UBLExtensions}...) queda pre-codificado en UTF-8 y en runtime solo se escriben los valores
+ * variables. Los cuatro tipos comparten las secciones comunes y difieren en la raíz, la cabecera y el
+ * nombre de las líneas.
+ *
+ * Los importes vienen de {@link CalculadoraTotales}, calculados una sola vez como {@code long} a
+ * escala fija, y se escriben sin convertirlos a {@code BigDecimal}.
+ */
 @ApplicationScoped
 public class XmlGeneratorService {
 
-    public String generarXmlFactura(FacturaPruebaRequest request) {
-        String numeroDocumento = request.serie + "-" + request.correlativo;
-        String fechaEmision = request.fechaEmision.toString();
-
-        // Calcular totales
-        BigDecimal totalGravadas = request.items.stream()
-                .filter(item -> "10".equals(item.codigoAfectacionIgv))
-                .map(item -> item.valorUnitario.multiply(item.cantidad))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal totalIgv = totalGravadas.multiply(new BigDecimal("0.18"));
-        BigDecimal totalDocumento = totalGravadas.add(totalIgv);
-
-        String totalLetras = convertirALetras(totalDocumento);
-
-        return String.format("""
-            <?xml version="1.0" encoding="UTF-8"?>
-            <Invoice xmlns="urn:oasis:names:specification:ubl:schema:xsd:Invoice-2" 
-                     xmlns:cac="urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2" 
-                     xmlns:cbc="urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2" 
-                     xmlns:ds="http://www.w3.org/2000/09/xmldsig#" 
-                     xmlns:ext="urn:oasis:names:specification:ubl:schema:xsd:CommonExtensionComponents-2">
-              <ext:UBLExtensions>
-                <ext:UBLExtension>
-                  <ext:ExtensionContent/>
-                </ext:UBLExtension>
-              </ext:UBLExtensions>
+    private static final String NAMESPACES_COMUNES =
+            " xmlns:cac=\"urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2\""
+            + " xmlns:cbc=\"urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2\""
+            + " xmlns:ds=\"http://www.w3.org/2000/09/xmldsig#\""
+            + " xmlns:ext=\"urn:oasis:names:specification:ubl:schema:xsd:CommonExtensionComponents-2\"";
+
+    // %1$s raíz, %2$s namespaces, %3$s cabecera propia del tipo, %4$s referencias de la nota,
+    // %5$s elemento de totales
+    private static final String DOCUMENTO = """
+            <%1$s%2$s>
+              <ext:UBLExtensions><ext:UBLExtension><ext:ExtensionContent>{{firma}}</ext:ExtensionContent></ext:UBLExtension></ext:UBLExtensions>
               <cbc:UBLVersionID>2.1</cbc:UBLVersionID>
               <cbc:CustomizationID>2.0</cbc:CustomizationID>
-              <cbc:ID>%s</cbc:ID>
-              <cbc:IssueDate>%s</cbc:IssueDate>
+              <cbc:ID>{{numero}}</cbc:ID>
+              <cbc:IssueDate>{{fecha}}</cbc:IssueDate>
               <cbc:IssueTime>00:00:00</cbc:IssueTime>
-              <cbc:DueDate>%s</cbc:DueDate>
-              <cbc:InvoiceTypeCode listID="0101">01</cbc:InvoiceTypeCode>
-              <cbc:Note languageLocaleID="1000"><![CDATA[%s]]></cbc:Note>
-              <cbc:DocumentCurrencyCode>%s</cbc:DocumentCurrencyCode>
-              %s
-              %s
-              %s
-              %s
-              %s
-              %s
-            </Invoice>
-            """,
-                numeroDocumento, fechaEmision, fechaEmision, totalLetras, request.moneda,
-                generarSeccionFirma(request.emisor),
-                generarSeccionEmisor(request.emisor),
-                generarSeccionCliente(request.cliente),
-                generarSeccionImpuestos(totalGravadas, totalIgv, request.moneda),
-                generarSeccionTotales(totalGravadas, totalDocumento, request.moneda),
-                generarLineasDetalle(request.items, request.moneda)
-        );
-    }
-
-    private String generarSeccionFirma(FacturaPruebaRequest.EmisorDto emisor) {
-        return String.format("""
-            <cac:Signature>
-              <cbc:ID>%s</cbc:ID>
-              <cbc:Note><![CDATA[%s]]></cbc:Note>
-              <cac:SignatoryParty>
-                <cac:PartyIdentification>
-                  <cbc:ID>%s</cbc:ID>
-                </cac:PartyIdentification>
-                <cac:PartyName>
-                  <cbc:Name><![CDATA[%s]]></cbc:Name>
-                </cac:PartyName>
-              </cac:SignatoryParty>
-              <cac:DigitalSignatureAttachment>
-                <cac:ExternalReference>
-                  <cbc:URI>#SignatureSP</cbc:URI>
-                </cac:ExternalReference>
-              </cac:DigitalSignatureAttachment>
-            </cac:Signature>
-            """, emisor.ruc, emisor.nombreComercial, emisor.ruc, emisor.razonSocial);
-    }
-
-    private String generarSeccionEmisor(FacturaPruebaRequest.EmisorDto emisor) {
-        return String.format("""
-            <cac:AccountingSupplierParty>
-              <cac:Party>
-                <cac:PartyIdentification>
-                  <cbc:ID schemeID="6">%s</cbc:ID>
-                </cac:PartyIdentification>
-                <cac:PartyName>
-                  <cbc:Name><![CDATA[%s]]></cbc:Name>
-                </cac:PartyName>
+              %3$s
+              <cbc:Note languageLocaleID="1000">{{leyenda}}</cbc:Note>
+              <cbc:DocumentCurrencyCode>{{moneda}}</cbc:DocumentCurrencyCode>
+              %4$s
+              <cac:Signature>
+                <cbc:ID>{{ruc}}</cbc:ID>
+                <cbc:Note>{{nombreComercial}}</cbc:Note>
+                <cac:SignatoryParty>
+                  <cac:PartyIdentification><cbc:ID>{{ruc}}</cbc:ID></cac:PartyIdentification>
+                  <cac:PartyName><cbc:Name>{{razonSocial}}</cbc:Name></cac:PartyName>
+                </cac:SignatoryParty>
+                <cac:DigitalSignatureAttachment><cac:ExternalReference><cbc:URI>#SignatureSP</cbc:URI></cac:ExternalReference></cac:DigitalSignatureAttachment>
+              </cac:Signature>
+              <cac:AccountingSupplierParty><cac:Party>
+                <cac:PartyIdentification><cbc:ID schemeID="6">{{ruc}}</cbc:ID></cac:PartyIdentification>
+                <cac:PartyName><cbc:Name>{{nombreComercial}}</cbc:Name></cac:PartyName>
                 <cac:PartyLegalEntity>
-                  <cbc:RegistrationName><![CDATA[%s]]></cbc:RegistrationName>
+                  <cbc:RegistrationName>{{razonSocial}}</cbc:RegistrationName>
                   <cac:RegistrationAddress>
-                    <cbc:ID>%s</cbc:ID>
+                    <cbc:ID>{{ubigeo}}</cbc:ID>
                     <cbc:AddressTypeCode>0000</cbc:AddressTypeCode>
                     <cbc:CitySubdivisionName>NONE</cbc:CitySubdivisionName>
-                    <cbc:CityName>%s</cbc:CityName>
-                    <cbc:CountrySubentity>%s</cbc:CountrySubentity>
-                    <cbc:District>%s</cbc:District>
-                    <cac:AddressLine>
-                      <cbc:Line><![CDATA[%s]]></cbc:Line>
-                    </cac:AddressLine>
-                    <cac:Country>
-                      <cbc:IdentificationCode>PE</cbc:IdentificationCode>
-                    </cac:Country>
+                    <cbc:CityName>{{provincia}}</cbc:CityName>
+                    <cbc:CountrySubentity>{{departamento}}</cbc:CountrySubentity>
+                    <cbc:District>{{distrito}}</cbc:District>
+                    <cac:AddressLine><cbc:Line>{{direccion}}</cbc:Line></cac:AddressLine>
+                    <cac:Country><cbc:IdentificationCode>PE</cbc:IdentificationCode></cac:Country>
                   </cac:RegistrationAddress>
                 </cac:PartyLegalEntity>
-              </cac:Party>
-            </cac:AccountingSupplierParty>
-            """, emisor.ruc, emisor.nombreComercial, emisor.razonSocial,
-                emisor.ubigeo, emisor.provincia, emisor.departamento, emisor.distrito, emisor.direccion);
-    }
-
-    private String generarSeccionCliente(FacturaPruebaRequest.ClienteDto cliente) {
-        return String.format("""
-            <cac:AccountingCustomerParty>
-              <cac:Party>
-                <cac:PartyIdentification>
-                  <cbc:ID schemeID="%s">%s</cbc:ID>
-                </cac:PartyIdentification>
+              </cac:Party></cac:AccountingSupplierParty>
+              <cac:AccountingCustomerParty><cac:Party>
+                <cac:PartyIdentification><cbc:ID schemeID="{{clienteTipoDocumento}}">{{clienteNumeroDocumento}}</cbc:ID></cac:PartyIdentification>
                 <cac:PartyLegalEntity>
-                  <cbc:RegistrationName><![CDATA[%s]]></cbc:RegistrationName>
+                  <cbc:RegistrationName>{{clienteRazonSocial}}</cbc:RegistrationName>
                   <cac:RegistrationAddress>
-                    <cac:AddressLine>
-                      <cbc:Line><![CDATA[%s]]></cbc:Line>
-                    </cac:AddressLine>
-                    <cac:Country>
-                      <cbc:IdentificationCode>PE</cbc:IdentificationCode>
-                    </cac:Country>
+                    <cac:AddressLine><cbc:Line>{{clienteDireccion}}</cbc:Line></cac:AddressLine>
+                    <cac:Country><cbc:IdentificationCode>PE</cbc:IdentificationCode></cac:Country>
                   </cac:RegistrationAddress>
                 </cac:PartyLegalEntity>
-              </cac:Party>
-            </cac:AccountingCustomerParty>
-            """, cliente.tipoDocumento, cliente.numeroDocumento, cliente.razonSocial, cliente.direccion);
+              </cac:Party></cac:AccountingCustomerParty>
+              <cac:TaxTotal>
+                <cbc:TaxAmount currencyID="{{moneda}}">{{totalImpuestos}}</cbc:TaxAmount>
+                {{subtotales}}
+                {{subtotalIcbper}}
+              </cac:TaxTotal>
+              <cac:%5$s>
+                <cbc:LineExtensionAmount currencyID="{{moneda}}">{{totalValorVenta}}</cbc:LineExtensionAmount>
+                <cbc:TaxInclusiveAmount currencyID="{{moneda}}">{{totalDocumento}}</cbc:TaxInclusiveAmount>
+                <cbc:PayableAmount currencyID="{{moneda}}">{{totalDocumento}}</cbc:PayableAmount>
+              </cac:%5$s>
+              {{lineas}}
+            </%1$s>
+            """;
+
+    private static final String CABECERA_FACTURA = """
+            <cbc:DueDate>{{fecha}}</cbc:DueDate>
+            <cbc:InvoiceTypeCode listID="0101">{{tipoDocumento}}</cbc:InvoiceTypeCode>
+            """;
+
+    private static final String REFERENCIAS_NOTA = """
+            <cac:DiscrepancyResponse>
+              <cbc:ReferenceID>{{referenciaNumero}}</cbc:ReferenceID>
+              <cbc:ResponseCode>{{referenciaMotivoCodigo}}</cbc:ResponseCode>
+              <cbc:Description>{{referenciaMotivo}}</cbc:Description>
+            </cac:DiscrepancyResponse>
+            <cac:BillingReference><cac:InvoiceDocumentReference>
+              <cbc:ID>{{referenciaNumero}}</cbc:ID>
+              <cbc:DocumentTypeCode>{{referenciaTipo}}</cbc:DocumentTypeCode>
+            </cac:InvoiceDocumentReference></cac:BillingReference>
+            """;
+
+    // Un subtotal por cada categoría de afectación presente en el comprobante
+    private static final String SUBTOTAL = """
+            <cac:TaxSubtotal>
+              <cbc:TaxableAmount currencyID="{{moneda}}">{{baseCategoria}}</cbc:TaxableAmount>
+              <cbc:TaxAmount currencyID="{{moneda}}">{{impuestoCategoria}}</cbc:TaxAmount>
+              <cac:TaxCategory>{{esquema}}</cac:TaxCategory>
+            </cac:TaxSubtotal>
+            """;
+
+    private static final String ESQUEMA_ICBPER = "<cac:TaxScheme><cbc:ID>7152</cbc:ID><cbc:Name>ICBPER</cbc:Name>"
+            + "<cbc:TaxTypeCode>OTH</cbc:TaxTypeCode></cac:TaxScheme>";
+
+    private static final String SUBTOTAL_ICBPER = """
+            <cac:TaxSubtotal>
+              <cbc:TaxAmount currencyID="{{moneda}}">{{totalIcbper}}</cbc:TaxAmount>
+              <cac:TaxCategory>%s</cac:TaxCategory>
+            </cac:TaxSubtotal>
+            """.formatted(ESQUEMA_ICBPER);
+
+    private static final String ICBPER_LINEA = """
+            <cac:TaxSubtotal>
+              <cbc:TaxAmount currencyID="{{moneda}}">{{icbperLinea}}</cbc:TaxAmount>
+              <cbc:BaseUnitMeasure unitCode="{{unidadMedida}}">{{cantidad}}</cbc:BaseUnitMeasure>
+              <cac:TaxCategory>
+                <cbc:PerUnitAmount currencyID="{{moneda}}">{{montoIcbper}}</cbc:PerUnitAmount>
+                %s
+              </cac:TaxCategory>
+            </cac:TaxSubtotal>
+            """.formatted(ESQUEMA_ICBPER);
+
+    // %1$s elemento de la línea, %2$s elemento de la cantidad
+    private static final String LINEA = """
+            <cac:%1$s>
+              <cbc:ID>{{item}}</cbc:ID>
+              <cbc:%2$s unitCode="{{unidadMedida}}">{{cantidad}}</cbc:%2$s>
+              <cbc:LineExtensionAmount currencyID="{{moneda}}">{{valorLinea}}</cbc:LineExtensionAmount>
+              <cac:PricingReference><cac:AlternativeConditionPrice>
+                <cbc:PriceAmount currencyID="{{moneda}}">{{precioUnitario}}</cbc:PriceAmount>
+                <cbc:PriceTypeCode>{{tipoPrecio}}</cbc:PriceTypeCode>
+              </cac:AlternativeConditionPrice></cac:PricingReference>
+              <cac:TaxTotal>
+                <cbc:TaxAmount currencyID="{{moneda}}">{{impuestosLinea}}</cbc:TaxAmount>
+                <cac:TaxSubtotal>
+                  <cbc:TaxableAmount currencyID="{{moneda}}">{{valorLinea}}</cbc:TaxableAmount>
+                  <cbc:TaxAmount currencyID="{{moneda}}">{{igvLinea}}</cbc:TaxAmount>
+                  <cac:TaxCategory>
+                    <cbc:Percent>{{porcentajeLinea}}</cbc:Percent>
+                    <cbc:TaxExemptionReasonCode>{{afectacion}}</cbc:TaxExemptionReasonCode>
+                    {{esquema}}
+                  </cac:TaxCategory>
+                </cac:TaxSubtotal>
+                {{subtotalIcbperLinea}}
+              </cac:TaxTotal>
+              <cac:Item>
+                <cbc:Description>{{descripcion}}</cbc:Description>
+                <cac:SellersItemIdentification><cbc:ID>{{codigoProducto}}</cbc:ID></cac:SellersItemIdentification>
+              </cac:Item>
+              <cac:Price><cbc:PriceAmount currencyID="{{moneda}}">{{precioVenta}}</cbc:PriceAmount></cac:Price>
+            </cac:%1$s>
+            """;
+
+    private static final byte[][] ESQUEMAS = esquemas();
+    private static final Map<String, Campo<Contexto>> CAMPOS = campos();
+    private static final Map<TipoComprobante, Compilada> PLANTILLAS = compilarPlantillas();
+
+    private final CalculadoraTotales calculadora;
+
+    /**
+     * Con las tasas vigentes; para usar el generador fuera de CDI (pruebas, benchmarks).
+     */
+    public XmlGeneratorService() {
+        this(new CalculadoraTotales());
     }
 
-    private String generarSeccionImpuestos(BigDecimal totalGravadas, BigDecimal totalIgv, String moneda) {
-        return String.format("""
-            <cac:TaxTotal>
-              <cbc:TaxAmount currencyID="%s">%s</cbc:TaxAmount>
-              <cac:TaxSubtotal>
-                <cbc:TaxableAmount currencyID="%s">%s</cbc:TaxableAmount>
-                <cbc:TaxAmount currencyID="%s">%s</cbc:TaxAmount>
-                <cac:TaxCategory>
-                  <cac:TaxScheme>
-                    <cbc:ID>1000</cbc:ID>
-                    <cbc:Name>IGV</cbc:Name>
-                    <cbc:TaxTypeCode>VAT</cbc:TaxTypeCode>
-                  </cac:TaxScheme>
-                </cac:TaxCategory>
-              </cac:TaxSubtotal>
-            </cac:TaxTotal>
-            """, moneda, totalIgv, moneda, totalGravadas, moneda, totalIgv);
+    @Inject
+    public XmlGeneratorService(CalculadoraTotales calculadora) {
+        this.calculadora = calculadora;
     }
 
-    private String generarSeccionTotales(BigDecimal totalGravadas, BigDecimal totalDocumento, String moneda) {
-        return String.format("""
-            <cac:LegalMonetaryTotal>
-              <cbc:LineExtensionAmount currencyID="%s">%s</cbc:LineExtensionAmount>
-              <cbc:TaxInclusiveAmount currencyID="%s">%s</cbc:TaxInclusiveAmount>
-              <cbc:PayableAmount currencyID="%s">%s</cbc:PayableAmount>
-            </cac:LegalMonetaryTotal>
-            """, moneda, totalGravadas, moneda, totalDocumento, moneda, totalDocumento);
+    /**
+     * Envoltorio de compatibilidad: genera el XML completo como String.
+     * Para el envío real usar {@link #escribirXml} sobre el stream destino.
+     */
+    public String generarXml(FacturaPruebaRequest request) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(4096);
+        try {
+            escribirXml(request, baos, ContenidoExtension.VACIO);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return baos.toString(StandardCharsets.UTF_8);
     }
 
-    private String generarLineasDetalle(java.util.List<FacturaPruebaRequest.ItemDto> items, String moneda) {
-        StringBuilder xml = new StringBuilder();
-
-        for (FacturaPruebaRequest.ItemDto item : items) {
-            BigDecimal valorTotal = item.valorUnitario.multiply(item.cantidad);
-            BigDecimal igv = "10".equals(item.codigoAfectacionIgv) ?
-                    valorTotal.multiply(new BigDecimal("0.18")) : BigDecimal.ZERO;
-            BigDecimal precioUnitario = item.valorUnitario.add(
-                    igv.divide(item.cantidad, 2, java.math.RoundingMode.HALF_UP));
-
-            xml.append(String.format("""
-                <cac:InvoiceLine>
-                  <cbc:ID>%d</cbc:ID>
-                  <cbc:InvoicedQuantity unitCode="%s">%s</cbc:InvoicedQuantity>
-                  <cbc:LineExtensionAmount currencyID="%s">%s</cbc:LineExtensionAmount>
-                  <cac:PricingReference>
-                    <cac:AlternativeConditionPrice>
-                      <cbc:PriceAmount currencyID="%s">%s</cbc:PriceAmount>
-                      <cbc:PriceTypeCode>01</cbc:PriceTypeCode>
-                    </cac:AlternativeConditionPrice>
-                  </cac:PricingReference>
-                  <cac:TaxTotal>
-                    <cbc:TaxAmount currencyID="%s">%s</cbc:TaxAmount>
-                    <cac:TaxSubtotal>
-                      <cbc:TaxableAmount currencyID="%s">%s</cbc:TaxableAmount>
-                      <cbc:TaxAmount currencyID="%s">%s</cbc:TaxAmount>
-                      <cac:TaxCategory>
-                        <cbc:Percent>18.00</cbc:Percent>
-                        <cbc:TaxExemptionReasonCode>%s</cbc:TaxExemptionReasonCode>
-                        <cac:TaxScheme>
-                          <cbc:ID>1000</cbc:ID>
-                          <cbc:Name>IGV</cbc:Name>
-                          <cbc:TaxTypeCode>VAT</cbc:TaxTypeCode>
-                        </cac:TaxScheme>
-                      </cac:TaxCategory>
-                    </cac:TaxSubtotal>
-                  </cac:TaxTotal>
-                  <cac:Item>
-                    <cbc:Description><![CDATA[%s]]></cbc:Description>
-                    <cac:SellersItemIdentification>
-                      <cbc:ID>%s</cbc:ID>
-                    </cac:SellersItemIdentification>
-                  </cac:Item>
-                  <cac:Price>
-                    <cbc:PriceAmount currencyID="%s">%s</cbc:PriceAmount>
-                  </cac:Price>
-                </cac:InvoiceLine>
-                """,
-                    item.item, item.unidadMedida, item.cantidad, moneda, valorTotal,
-                    moneda, precioUnitario,
-                    moneda, igv, moneda, valorTotal, moneda, igv, item.codigoAfectacionIgv,
-                    item.descripcion, item.codigoProducto,
-                    moneda, item.valorUnitario
-            ));
+    /**
+     * Nombre anterior a que el generador cubriera boletas y notas; delega en {@link #generarXml}.
+     *
+     * @deprecated usar {@link #generarXml}, que genera el XML de cualquier tipo de comprobante.
+     */
+    @Deprecated
+    public String generarXmlFactura(FacturaPruebaRequest request) {
+        return generarXml(request);
+    }
+
+    /**
+     * Escribe el comprobante UBL 2.1 directamente en {@code out} (p.ej. la entrada del ZIP).
+     * {@code extension} escribe el contenido de {@code <ext:ExtensionContent>}, normalmente la firma.
+     */
+    public void escribirXml(FacturaPruebaRequest request, OutputStream out,
+                            ContenidoExtension extension) throws IOException {
+        UblWriter w = new UblWriter(out);
+        w.declaracion();
+        documento(request).escribir(w, extension);
+        w.flush();
+    }
+
+    /**
+     * Vista del comprobante como {@link DocumentoUbl}, para firmarlo en streaming. Los totales se
+     * calculan una vez y se reutilizan en cada escritura del documento.
+     */
+    public DocumentoUbl documento(FacturaPruebaRequest request) {
+        return documento(request, calculadora.calcular(request.items));
+    }
+
+    /**
+     * Como {@link #documento(FacturaPruebaRequest)}, con los totales ya calculados (p.ej. por el validador).
+     */
+    public DocumentoUbl documento(FacturaPruebaRequest request, TotalesComprobante totales) {
+        Compilada compilada = PLANTILLAS.get(TipoComprobante.de(request.tipoDocumento));
+        return new DocumentoUbl() {
+            @Override
+            public byte[] namespacesRaiz() {
+                return compilada.namespaces();
+            }
+
+            @Override
+            public void escribir(UblWriter writer, ContenidoExtension extension) throws IOException {
+                compilada.plantilla().escribir(writer, new Contexto(request, extension, totales));
+            }
+        };
+    }
+
+    private record Compilada(byte[] namespaces, PlantillaUbl<Contexto> plantilla) {
+    }
+
+    private static Map<TipoComprobante, Compilada> compilarPlantillas() {
+        Map<TipoComprobante, Compilada> plantillas = new EnumMap<>(TipoComprobante.class);
+        for (TipoComprobante tipo : TipoComprobante.values()) {
+            String namespaces = " xmlns=\"urn:oasis:names:specification:ubl:schema:xsd:" + tipo.raiz + "-2\""
+                    + NAMESPACES_COMUNES;
+            String elementoLinea = tipo.raiz + "Line";
+            String cantidad = switch (tipo) {
+                case FACTURA, BOLETA -> "InvoicedQuantity";
+                case NOTA_CREDITO -> "CreditedQuantity";
+                case NOTA_DEBITO -> "DebitedQuantity";
+            };
+            // La nota de débito informa sus totales en RequestedMonetaryTotal
+            String totales = tipo == TipoComprobante.NOTA_DEBITO ? "RequestedMonetaryTotal" : "LegalMonetaryTotal";
+
+            Map<String, Campo<Contexto>> campos = new HashMap<>(CAMPOS);
+            campos.put("lineas", Campo.repetir(c -> c.totales.lineas(), Contexto::posicionarLinea,
+                    PlantillaUbl.compilar(LINEA.formatted(elementoLinea, cantidad), CAMPOS)));
+            PlantillaUbl<Contexto> plantilla = PlantillaUbl.compilar(DOCUMENTO.formatted(tipo.raiz, namespaces,
+                    tipo.esNota() ? "" : CABECERA_FACTURA, tipo.esNota() ? REFERENCIAS_NOTA : "",
+                    totales), campos);
+            plantillas.put(tipo, new Compilada(utf8(namespaces), plantilla));
         }
+        return plantillas;
+    }
+
+    private static Map<String, Campo<Contexto>> campos() {
+        Map<String, Campo<Contexto>> campos = new HashMap<>();
+        campos.put("firma", (w, c, atributo) -> c.extension.escribir(w));
+        campos.put("numero", (w, c, atributo) -> w.texto(c.request.serie).texto("-").entero(c.request.correlativo));
+        campos.put("tipoDocumento", Campo.texto(c -> c.request.tipoDocumento));
+        campos.put("fecha", Campo.texto(c -> c.fechaEmision));
+        campos.put("leyenda", (w, c, atributo) -> ImporteEnLetras.escribir(c.totales.total(), c.request.moneda, w));
+        campos.put("moneda", Campo.texto(c -> c.request.moneda));
+
+        campos.put("ruc", Campo.texto(c -> c.request.emisor.ruc));
+        campos.put("nombreComercial", Campo.texto(c -> c.request.emisor.nombreComercial));
+        campos.put("razonSocial", Campo.texto(c -> c.request.emisor.razonSocial));
+        campos.put("ubigeo", Campo.texto(c -> c.request.emisor.ubigeo));
+        campos.put("provincia", Campo.texto(c -> c.request.emisor.provincia));
+        campos.put("departamento", Campo.texto(c -> c.request.emisor.departamento));
+        campos.put("distrito", Campo.texto(c -> c.request.emisor.distrito));
+        campos.put("direccion", Campo.texto(c -> c.request.emisor.direccion));
+
+        campos.put("clienteTipoDocumento", Campo.texto(c -> c.request.cliente.tipoDocumento));
+        campos.put("clienteNumeroDocumento", Campo.texto(c -> c.request.cliente.numeroDocumento));
+        campos.put("clienteRazonSocial", Campo.texto(c -> c.request.cliente.razonSocial));
+        campos.put("clienteDireccion", Campo.texto(c -> c.request.cliente.direccion));
+
+        campos.put("referenciaNumero", Campo.texto(c -> c.request.documentoReferencia.numeroDocumento));
+        campos.put("referenciaTipo", Campo.texto(c -> c.request.documentoReferencia.tipoDocumento));
+        campos.put("referenciaMotivoCodigo", Campo.texto(c -> c.request.documentoReferencia.codigoMotivo));
+        campos.put("referenciaMotivo", Campo.texto(c -> c.request.documentoReferencia.motivo));
+
+        campos.put("esquema", (w, c, atributo) -> w.raw(ESQUEMAS[c.categoria.ordinal()]));
+        campos.put("totalImpuestos", importe(c -> c.totales.impuestos()));
+        campos.put("totalValorVenta", importe(c -> c.totales.valorVentaTotal()));
+        campos.put("totalDocumento", importe(c -> c.totales.total()));
+        campos.put("totalIcbper", importe(c -> c.totales.icbper()));
+        campos.put("montoIcbper", importe(c -> c.totales.montoIcbper()));
+        campos.put("baseCategoria", importe(c -> c.totales.base(c.categoria)));
+        campos.put("impuestoCategoria", importe(c -> c.totales.impuesto(c.categoria)));
+        campos.put("subtotales", Campo.repetir(c -> c.totales.categorias().length, Contexto::posicionarCategoria,
+                PlantillaUbl.compilar(SUBTOTAL, campos)));
+        campos.put("subtotalIcbper", Campo.si(c -> c.totales.icbper() != 0,
+                PlantillaUbl.compilar(SUBTOTAL_ICBPER, campos)));
 
-        return xml.toString();
+        campos.put("item", Campo.entero(c -> c.item.item));
+        campos.put("unidadMedida", Campo.texto(c -> c.item.unidadMedida));
+        campos.put("cantidad", (w, c, atributo) ->
+                w.decimal(c.totales.cantidad(c.linea), c.totales.escalaCantidad(c.linea)));
+        campos.put("valorLinea", importe(c -> c.totales.valorVenta(c.linea)));
+        campos.put("precioUnitario", (w, c, atributo) ->
+                w.decimal(c.totales.precioUnitario(c.linea), c.totales.escalaPrecio(c.linea)));
+        // 01 precio con IGV; 02 valor referencial de una operación gratuita
+        campos.put("tipoPrecio", Campo.texto(c -> c.categoria == Categoria.GRATUITA ? "02" : "01"));
+        campos.put("impuestosLinea", importe(c -> c.totales.igv(c.linea) + c.totales.icbper(c.linea)));
+        campos.put("igvLinea", importe(c -> c.totales.igv(c.linea)));
+        campos.put("porcentajeLinea", importe(c -> c.totales.porcentaje(c.linea)));
+        campos.put("icbperLinea", importe(c -> c.totales.icbper(c.linea)));
+        campos.put("subtotalIcbperLinea", Campo.si(c -> c.totales.icbper(c.linea) != 0,
+                PlantillaUbl.compilar(ICBPER_LINEA, campos)));
+        campos.put("afectacion", Campo.texto(c -> c.item.codigoAfectacionIgv));
+        campos.put("descripcion", Campo.texto(c -> c.item.descripcion));
+        campos.put("codigoProducto", Campo.texto(c -> c.item.codigoProducto));
+        // Las operaciones gratuitas no tienen valor de venta: el referencial va en PricingReference
+        campos.put("precioVenta", (w, c, atributo) -> {
+            if (c.categoria == Categoria.GRATUITA) {
+                w.decimal(0, Monto.ESCALA);
+            } else {
+                w.decimal(c.totales.valorUnitario(c.linea), c.totales.escalaValorUnitario(c.linea));
+            }
+        });
+        return campos;
     }
 
-    private String convertirALetras(BigDecimal total) {
-        // Implementación simple para prueba
-        return "CIENTO DIECIOCHO CON 00/100 SOLES";
+    private static Campo<Contexto> importe(ToLongFunction<Contexto> valor) {
+        return (w, c, atributo) -> w.decimal(valor.applyAsLong(c), Monto.ESCALA);
+    }
+
+    private static byte[][] esquemas() {
+        Categoria[] categorias = Categoria.values();
+        byte[][] esquemas = new byte[categorias.length][];
+        for (Categoria categoria : categorias) {
+            esquemas[categoria.ordinal()] = utf8("<cac:TaxScheme><cbc:ID>" + categoria.codigoTributo
+                    + "</cbc:ID><cbc:Name>" + categoria.nombreTributo + "</cbc:Name><cbc:TaxTypeCode>"
+                    + categoria.codigoInternacional + "</cbc:TaxTypeCode></cac:TaxScheme>");
+        }
+        return esquemas;
+    }
+
+    /**
+     * Estado de un documento mientras se escribe; {@link #posicionarLinea} y
+     * {@link #posicionarCategoria} lo mueven por el detalle y los subtotales para que las plantillas
+     * repetidas no necesiten un objeto por elemento.
+     */
+    private static final class Contexto {
+        final FacturaPruebaRequest request;
+        final ContenidoExtension extension;
+        final TotalesComprobante totales;
+        final String fechaEmision;
+
+        int linea;
+        FacturaPruebaRequest.ItemDto item;
+        Categoria categoria;
+
+        Contexto(FacturaPruebaRequest request, ContenidoExtension extension, TotalesComprobante totales) {
+            this.request = request;
+            this.extension = extension;
+            this.totales = totales;
+            this.fechaEmision = request.fechaEmision.toString();
+        }
+
+        void posicionarLinea(int indice) {
+            linea = indice;
+            item = request.items.get(indice);
+            categoria = totales.categoria(indice);
+        }
+
+        void posicionarCategoria(int indice) {
+            categoria = totales.categorias()[indice];
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,340 @@
+package com.empresa.facturacion.service.archivo;
+
+import io.quarkus.runtime.configuration.MemorySize;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Archivo de XML firmados y CDR, sin columnas blob en la base de datos.
+ *
+ * Los ZIP se agregan al final de archivos de segmento ({@code segmento-000001.dat}, …) que rotan al
+ * llegar a {@code archivo.tamano-segmento}. Cada registro lleva su clave completa y su SHA-256, así los
+ * segmentos bastan para reconstruir el índice. El índice ({@link IndiceMapeado}) es una tabla hash
+ * mapeada en memoria por {@code ruc-tipo-serie-correlativo} + tipo de archivo, que se duplica al
+ * llenarse al 70%; buscar no toca la base ni toma locks.
+ *
+ * Durabilidad: el registro se escribe (y opcionalmente se sincroniza) antes de indexarlo, y cada
+ * {@code archivo.confirmar-cada} escrituras el índice se fuerza a disco y guarda hasta dónde está
+ * completo. Al abrir se reindexa lo que haya en los segmentos después de esa marca.
+ */
+@ApplicationScoped
+public class ArchivoComprobantes {
+
+    private static final Logger LOG = Logger.getLogger(ArchivoComprobantes.class);
+
+    static final String INDICE = "indice.idx";
+
+    private static final int MAGICO_REGISTRO = 0x41524352; // "ARCR"
+    // magico(4) + tipo(1) + longitud clave(2) + longitud blob(4) + sha256(32)
+    private static final int CABECERA_REGISTRO = 4 + 1 + 2 + 4 + IndiceMapeado.BYTES_HUELLA_SHA;
+    private static final double CARGA_MAXIMA = 0.7;
+
+    @ConfigProperty(name = "archivo.path", defaultValue = "archivo")
+    Path directorio;
+
+    @ConfigProperty(name = "archivo.tamano-segmento", defaultValue = "1G")
+    MemorySize tamanoSegmento;
+
+    @ConfigProperty(name = "archivo.capacidad-inicial", defaultValue = "1048576")
+    long capacidadInicial;
+
+    @ConfigProperty(name = "archivo.sincronizar", defaultValue = "true")
+    boolean sincronizar;
+
+    @ConfigProperty(name = "archivo.confirmar-cada", defaultValue = "1000")
+    int confirmarCada;
+
+    private volatile IndiceMapeado indice;
+    private final Map<Integer, FileChannel> lectores = new ConcurrentHashMap<>();
+
+    // Estado del escritor, protegido por el monitor de la instancia
+    private FileChannel escritor;
+    private int segmentoActual;
+    private long posicionActual;
+    private int sinConfirmar;
+
+    /**
+     * Ubicación de un archivo guardado, lista para enviarse con transferencia zero-copy.
+     */
+    public record Ubicacion(Path segmento, long offset, int longitud, String sha256) {
+    }
+
+    public static String clave(String ruc, String tipoDocumento, String serie, long correlativo) {
+        return ruc + "-" + tipoDocumento + "-" + serie + "-" + correlativo;
+    }
+
+    @PostConstruct
+    synchronized void abrir() {
+        try {
+            Files.createDirectories(directorio);
+            indice = IndiceMapeado.abrir(directorio.resolve(INDICE), capacidadInicial);
+            long[] confirmado = indice.confirmado();
+            int ultimo = ultimoSegmento();
+            segmentoActual = Math.max(ultimo, 1);
+            for (int segmento = Math.max((int) confirmado[0], 1); segmento <= ultimo; segmento++) {
+                reindexar(segmento, segmento == confirmado[0] ? confirmado[1] : 0, segmento == ultimo);
+            }
+            abrirEscritor(segmentoActual);
+            indice.confirmar(segmentoActual, posicionActual);
+            LOG.infof("Archivo de comprobantes en %s: %d entradas, segmento %d", directorio,
+                    indice.ocupadas(), segmentoActual);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo abrir el archivo de comprobantes en " + directorio, e);
+        }
+    }
+
+    @PreDestroy
+    synchronized void cerrar() {
+        try {
+            if (escritor != null) {
+                escritor.force(true);
+                indice.confirmar(segmentoActual, posicionActual);
+                indice.forzar();
+                escritor.close();
+                escritor = null;
+            }
+            for (FileChannel lector : lectores.values()) {
+                lector.close();
+            }
+            lectores.clear();
+        } catch (IOException e) {
+            LOG.errorf(e, "Error cerrando el archivo de comprobantes");
+        }
+    }
+
+    /**
+     * Guarda (o reemplaza) el ZIP del comprobante.
+     */
+    public synchronized Ubicacion guardar(String clave, TipoArchivo tipo, byte[] contenido) throws IOException {
+        byte[] claveBytes = clave.getBytes(StandardCharsets.UTF_8);
+        byte[] sha = sha256(contenido);
+        long tamanoRegistro = (long) CABECERA_REGISTRO + claveBytes.length + contenido.length;
+        if (posicionActual > 0 && posicionActual + tamanoRegistro > tamanoSegmento.asLongValue()) {
+            rotar();
+        }
+
+        ByteBuffer cabecera = ByteBuffer.allocate(CABECERA_REGISTRO + claveBytes.length);
+        cabecera.putInt(MAGICO_REGISTRO).put(tipo.codigo).putShort((short) claveBytes.length)
+                .putInt(contenido.length).put(sha).put(claveBytes).flip();
+        ByteBuffer[] registro = {cabecera, ByteBuffer.wrap(contenido)};
+        long inicio = posicionActual;
+        while (registro[1].hasRemaining()) {
+            escritor.write(registro);
+        }
+        posicionActual += tamanoRegistro;
+        if (sincronizar) {
+            escritor.force(false);
+        }
+
+        IndiceMapeado.Entrada entrada = new IndiceMapeado.Entrada(huella(tipo, claveBytes), segmentoActual,
+                inicio + CABECERA_REGISTRO + claveBytes.length, contenido.length, sha);
+        indexar(entrada, tipo, claveBytes);
+        if (++sinConfirmar >= confirmarCada) {
+            indice.confirmar(segmentoActual, posicionActual);
+            sinConfirmar = 0;
+        }
+        return ubicacion(entrada);
+    }
+
+    public Optional<Ubicacion> buscar(String clave, TipoArchivo tipo) {
+        byte[] claveBytes = clave.getBytes(StandardCharsets.UTF_8);
+        IndiceMapeado.Entrada entrada = indice.buscar(huella(tipo, claveBytes), e -> esDe(e, tipo, claveBytes));
+        return Optional.ofNullable(entrada).map(this::ubicacion);
+    }
+
+    public long cantidad() {
+        return indice.ocupadas();
+    }
+
+    private void indexar(IndiceMapeado.Entrada entrada, TipoArchivo tipo, byte[] claveBytes) throws IOException {
+        if (indice.ocupadas() + 1 > indice.capacidad() * CARGA_MAXIMA) {
+            crecer();
+        }
+        if (!indice.poner(entrada, e -> esDe(e, tipo, claveBytes))) {
+            throw new IOException("Índice de archivo lleno");
+        }
+    }
+
+    /**
+     * Copia el índice a uno del doble de capacidad y lo reemplaza. Los lectores que aún usan el
+     * anterior siguen viendo un mapeo válido hasta que lo suelten.
+     */
+    private void crecer() throws IOException {
+        IndiceMapeado anterior = indice;
+        Path temporal = directorio.resolve(INDICE + ".nuevo");
+        Files.deleteIfExists(temporal);
+        IndiceMapeado nuevo = IndiceMapeado.abrir(temporal, anterior.capacidad() * 2);
+        // Entradas distintas pueden compartir huella: se copian todas sin reemplazar
+        anterior.recorrer(entrada -> nuevo.poner(entrada, e -> false));
+        long[] confirmado = anterior.confirmado();
+        nuevo.confirmar((int) confirmado[0], confirmado[1]);
+        nuevo.forzar();
+        Files.move(temporal, directorio.resolve(INDICE), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        indice = IndiceMapeado.abrir(directorio.resolve(INDICE), nuevo.capacidad());
+        LOG.infof("Índice de archivo ampliado a %d ranuras (%d entradas)", indice.capacidad(), indice.ocupadas());
+    }
+
+    /**
+     * Vuelve a indexar los registros del segmento desde {@code desde}. En el último segmento, un registro
+     * incompleto (caída a mitad de escritura) se descarta truncando el archivo.
+     */
+    private void reindexar(int segmento, long desde, boolean ultimo) throws IOException {
+        Path ruta = rutaSegmento(segmento);
+        try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long tamano = canal.size();
+            long posicion = desde;
+            int reindexados = 0;
+            ByteBuffer cabecera = ByteBuffer.allocate(CABECERA_REGISTRO);
+            while (posicion + CABECERA_REGISTRO <= tamano) {
+                cabecera.clear();
+                leerCompleto(canal, cabecera, posicion);
+                cabecera.flip();
+                if (cabecera.getInt() != MAGICO_REGISTRO) {
+                    break;
+                }
+                TipoArchivo tipo = TipoArchivo.deCodigo(cabecera.get());
+                int longitudClave = cabecera.getShort() & 0xFFFF;
+                int longitud = cabecera.getInt();
+                byte[] sha = new byte[IndiceMapeado.BYTES_HUELLA_SHA];
+                cabecera.get(sha);
+                long offsetBlob = posicion + CABECERA_REGISTRO + longitudClave;
+                if (offsetBlob + longitud > tamano) {
+                    break;
+                }
+                ByteBuffer clave = ByteBuffer.allocate(longitudClave);
+                leerCompleto(canal, clave, posicion + CABECERA_REGISTRO);
+                byte[] claveBytes = clave.array();
+                indexar(new IndiceMapeado.Entrada(huella(tipo, claveBytes), segmento, offsetBlob, longitud, sha),
+                        tipo, claveBytes);
+                posicion = offsetBlob + longitud;
+                reindexados++;
+            }
+            if (posicion < tamano) {
+                if (!ultimo) {
+                    throw new IOException("Segmento " + ruta + " corrupto en la posición " + posicion);
+                }
+                LOG.warnf("Segmento %s: se descartan %d bytes de un registro incompleto", ruta, tamano - posicion);
+                canal.truncate(posicion);
+            }
+            if (reindexados > 0) {
+                LOG.infof("Segmento %s: %d registros reindexados", ruta, reindexados);
+            }
+        }
+    }
+
+    private void rotar() throws IOException {
+        escritor.force(true);
+        escritor.close();
+        abrirEscritor(segmentoActual + 1);
+        indice.confirmar(segmentoActual, 0);
+        sinConfirmar = 0;
+    }
+
+    private void abrirEscritor(int segmento) throws IOException {
+        segmentoActual = segmento;
+        escritor = FileChannel.open(rutaSegmento(segmento), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        posicionActual = escritor.size();
+    }
+
+    private int ultimoSegmento() throws IOException {
+        try (var archivos = Files.list(directorio)) {
+            return archivos.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith("segmento-") && n.endsWith(".dat"))
+                    .mapToInt(n -> Integer.parseInt(n.substring("segmento-".length(), n.length() - ".dat".length())))
+                    .max().orElse(0);
+        }
+    }
+
+    private boolean esDe(IndiceMapeado.Entrada entrada, TipoArchivo tipo, byte[] claveBytes) {
+        long inicio = entrada.offset() - claveBytes.length - CABECERA_REGISTRO;
+        if (inicio < 0) {
+            return false;
+        }
+        ByteBuffer cabecera = ByteBuffer.allocate(CABECERA_REGISTRO + claveBytes.length);
+        try {
+            leerCompleto(lector(entrada.segmento()), cabecera, inicio);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error leyendo el segmento " + entrada.segmento(), e);
+        }
+        cabecera.flip();
+        return cabecera.getInt() == MAGICO_REGISTRO
+                && cabecera.get() == tipo.codigo
+                && (cabecera.getShort() & 0xFFFF) == claveBytes.length
+                && Arrays.equals(cabecera.array(), CABECERA_REGISTRO, cabecera.limit(), claveBytes, 0, claveBytes.length);
+    }
+
+    private FileChannel lector(int segmento) {
+        return lectores.computeIfAbsent(segmento, s -> {
+            try {
+                return FileChannel.open(rutaSegmento(s), StandardOpenOption.READ);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private Ubicacion ubicacion(IndiceMapeado.Entrada entrada) {
+        return new Ubicacion(rutaSegmento(entrada.segmento()), entrada.offset(), entrada.longitud(),
+                HexFormat.of().formatHex(entrada.sha256()));
+    }
+
+    private Path rutaSegmento(int segmento) {
+        return directorio.resolve(String.format("segmento-%06d.dat", segmento));
+    }
+
+    private static void leerCompleto(FileChannel canal, ByteBuffer destino, long posicion) throws IOException {
+        while (destino.hasRemaining()) {
+            int leidos = canal.read(destino, posicion + destino.position());
+            if (leidos < 0) {
+                throw new IOException("Fin de segmento inesperado");
+            }
+        }
+    }
+
+    /**
+     * FNV-1a de 64 bits con el mezclador final de MurmurHash3; 0 queda reservado para ranura vacía.
+     */
+    static long huella(TipoArchivo tipo, byte[] clave) {
+        long h = 0xcbf29ce484222325L;
+        h = (h ^ tipo.codigo) * 0x100000001b3L;
+        for (byte b : clave) {
+            h = (h ^ (b & 0xFF)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    private static byte[] sha256(byte[] contenido) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(contenido);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
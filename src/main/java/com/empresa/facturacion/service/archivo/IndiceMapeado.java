@@ -0,0 +1,257 @@
+package com.empresa.facturacion.service.archivo;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Tabla hash de direccionamiento abierto sobre un archivo mapeado en memoria.
+ *
+ * Cada entrada ocupa una ranura de 64 bytes: huella de 64 bits de la clave, versión (seqlock),
+ * segmento, offset y longitud del blob y su SHA-256. La ranura 0 es la cabecera del archivo.
+ * El archivo se mapea en trozos de 1 GiB porque un {@link MappedByteBuffer} no pasa de 2 GiB.
+ *
+ * Hay un solo escritor (las llamadas a {@link #poner} se serializan afuera); los lectores no toman
+ * locks: leen la versión antes y después de la ranura y reintentan si cambió o era impar.
+ * La huella no es la clave: quien lee confirma la clave completa contra la cabecera del segmento.
+ */
+final class IndiceMapeado {
+
+    static final int BYTES_RANURA = 64;
+    static final int BYTES_HUELLA_SHA = 32;
+
+    private static final int MAGICO = 0x41524349; // "ARCI"
+    private static final int VERSION_FORMATO = 1;
+
+    private static final int RANURAS_POR_TROZO_LOG = 24;
+    private static final int RANURAS_POR_TROZO = 1 << RANURAS_POR_TROZO_LOG;
+
+    // Campos de la ranura
+    private static final int HUELLA = 0;
+    private static final int VERSION = 8;
+    private static final int SEGMENTO = 12;
+    private static final int OFFSET = 16;
+    private static final int LONGITUD = 24;
+    private static final int SHA256 = 28;
+
+    // Campos de la cabecera
+    private static final int CAB_MAGICO = 0;
+    private static final int CAB_FORMATO = 4;
+    private static final int CAB_CAPACIDAD = 8;
+    private static final int CAB_OCUPADAS = 16;
+    private static final int CAB_SEGMENTO_CONFIRMADO = 24;
+    private static final int CAB_OFFSET_CONFIRMADO = 32;
+
+    private static final VarHandle LARGOS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle ENTEROS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path archivo;
+    private final MappedByteBuffer[] trozos;
+    private final long capacidad;
+    private final long mascara;
+    private long ocupadas;
+
+    private IndiceMapeado(Path archivo, MappedByteBuffer[] trozos, long capacidad, long ocupadas) {
+        this.archivo = archivo;
+        this.trozos = trozos;
+        this.capacidad = capacidad;
+        this.mascara = capacidad - 1;
+        this.ocupadas = ocupadas;
+    }
+
+    /**
+     * Abre el índice o lo crea vacío con la capacidad indicada (potencia de 2).
+     */
+    static IndiceMapeado abrir(Path archivo, long capacidadNueva) throws IOException {
+        if (Long.bitCount(capacidadNueva) != 1) {
+            throw new IllegalArgumentException("La capacidad del índice debe ser potencia de 2: " + capacidadNueva);
+        }
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            boolean nuevo = canal.size() == 0;
+            long capacidad = capacidadNueva;
+            if (!nuevo) {
+                MappedByteBuffer cabecera = canal.map(FileChannel.MapMode.READ_ONLY, 0, BYTES_RANURA);
+                cabecera.order(ByteOrder.LITTLE_ENDIAN);
+                if (cabecera.getInt(CAB_MAGICO) != MAGICO || cabecera.getInt(CAB_FORMATO) != VERSION_FORMATO) {
+                    throw new IOException("Índice de archivo con formato desconocido: " + archivo);
+                }
+                capacidad = cabecera.getLong(CAB_CAPACIDAD);
+            }
+            // Ranura extra para la cabecera; el archivo queda disperso hasta que se escriben ranuras
+            long bytes = (capacidad + 1) * BYTES_RANURA;
+            int cantidadTrozos = (int) ((capacidad + 1 + RANURAS_POR_TROZO - 1) >>> RANURAS_POR_TROZO_LOG);
+            MappedByteBuffer[] trozos = new MappedByteBuffer[cantidadTrozos];
+            for (int i = 0; i < cantidadTrozos; i++) {
+                long desde = (long) i * RANURAS_POR_TROZO * BYTES_RANURA;
+                trozos[i] = canal.map(FileChannel.MapMode.READ_WRITE, desde, Math.min(bytes - desde,
+                        (long) RANURAS_POR_TROZO * BYTES_RANURA));
+                trozos[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            MappedByteBuffer cabecera = trozos[0];
+            if (nuevo) {
+                cabecera.putInt(CAB_MAGICO, MAGICO);
+                cabecera.putInt(CAB_FORMATO, VERSION_FORMATO);
+                cabecera.putLong(CAB_CAPACIDAD, capacidad);
+                cabecera.putLong(CAB_OCUPADAS, 0);
+            }
+            return new IndiceMapeado(archivo, trozos, capacidad, cabecera.getLong(CAB_OCUPADAS));
+        }
+    }
+
+    Path archivo() {
+        return archivo;
+    }
+
+    long capacidad() {
+        return capacidad;
+    }
+
+    long ocupadas() {
+        return ocupadas;
+    }
+
+    /**
+     * Posición de los segmentos hasta la que el índice es durable: al abrir se reindexa desde ahí.
+     */
+    long[] confirmado() {
+        return new long[] {trozos[0].getInt(CAB_SEGMENTO_CONFIRMADO), trozos[0].getLong(CAB_OFFSET_CONFIRMADO)};
+    }
+
+    /**
+     * Fuerza las ranuras a disco y recién entonces registra la posición como confirmada.
+     * La cabecera se persiste en la siguiente confirmación, así nunca apunta más allá de lo durable.
+     */
+    void confirmar(int segmento, long offset) {
+        forzar();
+        trozos[0].putInt(CAB_SEGMENTO_CONFIRMADO, segmento);
+        trozos[0].putLong(CAB_OFFSET_CONFIRMADO, offset);
+    }
+
+    /**
+     * Busca la entrada de la huella que cumple {@code esLaClave}; las huellas pueden colisionar.
+     * Devuelve null si no existe.
+     */
+    Entrada buscar(long huella, Predicate<Entrada> esLaClave) {
+        for (long i = huella & mascara, intentos = 0; intentos < capacidad; i = (i + 1) & mascara, intentos++) {
+            MappedByteBuffer trozo = trozo(i);
+            int base = posicion(i);
+            long actual = (long) LARGOS.getAcquire(trozo, base + HUELLA);
+            if (actual == 0) {
+                return null;
+            }
+            if (actual == huella) {
+                Entrada entrada = leer(trozo, base, huella);
+                if (esLaClave.test(entrada)) {
+                    return entrada;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Inserta la entrada, o reemplaza la existente con la misma huella que cumpla {@code mismaClave}.
+     * Solo un escritor a la vez.
+     *
+     * @return false si la tabla está llena
+     */
+    boolean poner(Entrada entrada, Predicate<Entrada> mismaClave) {
+        for (long i = entrada.huella() & mascara, intentos = 0; intentos < capacidad; i = (i + 1) & mascara, intentos++) {
+            MappedByteBuffer trozo = trozo(i);
+            int base = posicion(i);
+            long actual = (long) LARGOS.getAcquire(trozo, base + HUELLA);
+            if (actual == entrada.huella() && mismaClave.test(leer(trozo, base, actual))) {
+                escribir(trozo, base, entrada);
+                return true;
+            }
+            if (actual == 0) {
+                escribir(trozo, base, entrada);
+                // La huella se publica al final: un lector nunca ve una ranura nueva a medio escribir
+                LARGOS.setRelease(trozo, base + HUELLA, entrada.huella());
+                ocupadas++;
+                trozos[0].putLong(CAB_OCUPADAS, ocupadas);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Recorre todas las entradas (para copiar a un índice más grande).
+     */
+    void recorrer(Consumer<Entrada> accion) {
+        for (long i = 0; i < capacidad; i++) {
+            MappedByteBuffer trozo = trozo(i);
+            int base = posicion(i);
+            long huella = (long) LARGOS.getAcquire(trozo, base + HUELLA);
+            if (huella != 0) {
+                accion.accept(leer(trozo, base, huella));
+            }
+        }
+    }
+
+    void forzar() {
+        for (MappedByteBuffer trozo : trozos) {
+            trozo.force();
+        }
+    }
+
+    private Entrada leer(MappedByteBuffer trozo, int base, long huella) {
+        byte[] sha = new byte[BYTES_HUELLA_SHA];
+        while (true) {
+            int antes = (int) ENTEROS.getAcquire(trozo, base + VERSION);
+            if ((antes & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int segmento = trozo.getInt(base + SEGMENTO);
+            long offset = trozo.getLong(base + OFFSET);
+            int longitud = trozo.getInt(base + LONGITUD);
+            trozo.get(base + SHA256, sha);
+            VarHandle.acquireFence();
+            if ((int) ENTEROS.getAcquire(trozo, base + VERSION) == antes) {
+                return new Entrada(huella, segmento, offset, longitud, sha);
+            }
+        }
+    }
+
+    private static void escribir(MappedByteBuffer trozo, int base, Entrada entrada) {
+        int version = trozo.getInt(base + VERSION);
+        ENTEROS.setRelease(trozo, base + VERSION, version + 1);
+        VarHandle.releaseFence();
+        trozo.putInt(base + SEGMENTO, entrada.segmento());
+        trozo.putLong(base + OFFSET, entrada.offset());
+        trozo.putInt(base + LONGITUD, entrada.longitud());
+        trozo.put(base + SHA256, entrada.sha256());
+        ENTEROS.setRelease(trozo, base + VERSION, version + 2);
+    }
+
+    private MappedByteBuffer trozo(long ranura) {
+        // +1: la ranura 0 del archivo es la cabecera
+        return trozos[(int) ((ranura + 1) >>> RANURAS_POR_TROZO_LOG)];
+    }
+
+    private static int posicion(long ranura) {
+        return (int) (((ranura + 1) & (RANURAS_POR_TROZO - 1)) * BYTES_RANURA);
+    }
+
+    /**
+     * Ubicación de un blob en los segmentos.
+     *
+     * @param huella   hash de 64 bits de la clave (nunca 0)
+     * @param segmento número del archivo de segmento
+     * @param offset   posición del primer byte del blob (después de la cabecera del registro)
+     * @param longitud bytes del blob
+     * @param sha256   resumen del contenido
+     */
+    record Entrada(long huella, int segmento, long offset, int longitud, byte[] sha256) {
+    }
+}
@@ -0,0 +1,35 @@
+package com.empresa.facturacion.service.archivo;
+
+/**
+ * Archivos que se conservan de cada comprobante. Ambos se guardan como el ZIP que viaja a/desde SUNAT.
+ */
+public enum TipoArchivo {
+    /** XML firmado enviado a SUNAT. */
+    XML((byte) 1, ""),
+    /** Constancia de recepción devuelta por SUNAT. */
+    CDR((byte) 2, "R-");
+
+    final byte codigo;
+    final String prefijo;
+
+    TipoArchivo(byte codigo, String prefijo) {
+        this.codigo = codigo;
+        this.prefijo = prefijo;
+    }
+
+    static TipoArchivo deCodigo(byte codigo) {
+        for (TipoArchivo tipo : values()) {
+            if (tipo.codigo == codigo) {
+                return tipo;
+            }
+        }
+        throw new IllegalArgumentException("Tipo de archivo desconocido: " + codigo);
+    }
+
+    /**
+     * Nombre con el que SUNAT nombra el ZIP: {@code 20000000001-01-F001-1.zip} o {@code R-20000000001-01-F001-1.zip}.
+     */
+    public String nombreZip(String clave) {
+        return prefijo + clave + ".zip";
+    }
+}
@@ -0,0 +1,151 @@
+package com.empresa.facturacion.service.catalogo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Un catálogo de SUNAT leído de {@code catalogos/catalogo-NN.tsv}: una línea {@code # nombre}, la
+ * cabecera de columnas (siempre empieza con {@code codigo} y {@code descripcion}) y una fila por código.
+ * Una línea {@code # parcial} marca el archivo como un subconjunto del catálogo oficial: un código que
+ * no está puede ser válido igual.
+ *
+ * Las filas se guardan en arreglos paralelos en el orden de las claves de {@link TablaCodigos}: buscar
+ * un código es una búsqueda binaria sobre un {@code long[]} y el resto se lee por índice.
+ */
+public final class Catalogo {
+
+    private final String numero;
+    private final String nombre;
+    private final String[] columnas;
+    private final TablaCodigos tabla;
+    private final String[][] valores;
+    private final boolean parcial;
+
+    private Catalogo(String numero, String nombre, String[] columnas, TablaCodigos tabla, String[][] valores,
+                     boolean parcial) {
+        this.numero = numero;
+        this.nombre = nombre;
+        this.columnas = columnas;
+        this.tabla = tabla;
+        this.valores = valores;
+        this.parcial = parcial;
+    }
+
+    /**
+     * @throws IllegalStateException si el archivo no tiene el formato esperado o repite un código
+     */
+    static Catalogo leer(String numero, BufferedReader lector) throws IOException {
+        String linea = lector.readLine();
+        if (linea == null || !linea.startsWith("#")) {
+            throw new IllegalStateException("El catálogo " + numero + " no empieza con # nombre");
+        }
+        String nombre = linea.substring(1).trim();
+        int dosPuntos = nombre.indexOf(':');
+        if (dosPuntos >= 0) {
+            nombre = nombre.substring(dosPuntos + 1).trim();
+        }
+        String cabecera = lector.readLine();
+        String[] columnas = cabecera == null ? new String[0] : cabecera.split("\t");
+        if (columnas.length < 2 || !"codigo".equals(columnas[0]) || !"descripcion".equals(columnas[1])) {
+            throw new IllegalStateException("El catálogo " + numero + " debe empezar con las columnas codigo y descripcion");
+        }
+
+        List<String[]> filas = new ArrayList<>();
+        boolean parcial = false;
+        while ((linea = lector.readLine()) != null) {
+            if (linea.startsWith("#")) {
+                parcial |= linea.substring(1).trim().startsWith("parcial");
+                continue;
+            }
+            if (linea.isBlank()) {
+                continue;
+            }
+            String[] fila = linea.split("\t", -1);
+            if (fila.length != columnas.length) {
+                throw new IllegalStateException("Catálogo " + numero + ": la fila '" + linea + "' no tiene "
+                        + columnas.length + " columnas");
+            }
+            if (TablaCodigos.clave(fila[0]) < 0) {
+                throw new IllegalStateException("Catálogo " + numero + ": código no representable " + fila[0]);
+            }
+            filas.add(fila);
+        }
+        filas.sort(Comparator.comparingLong(fila -> TablaCodigos.clave(fila[0])));
+
+        long[] claves = new long[filas.size()];
+        String[][] valores = new String[columnas.length][filas.size()];
+        for (int i = 0; i < claves.length; i++) {
+            String[] fila = filas.get(i);
+            claves[i] = TablaCodigos.clave(fila[0]);
+            if (i > 0 && claves[i] == claves[i - 1]) {
+                throw new IllegalStateException("Catálogo " + numero + ": código repetido " + fila[0]);
+            }
+            for (int c = 0; c < columnas.length; c++) {
+                valores[c][i] = fila[c];
+            }
+        }
+        return new Catalogo(numero, nombre, columnas, new TablaCodigos(claves), valores, parcial);
+    }
+
+    /** Número de dos dígitos, p.ej. {@code "07"}. */
+    public String numero() {
+        return numero;
+    }
+
+    public String nombre() {
+        return nombre;
+    }
+
+    public int tamano() {
+        return tabla.tamano();
+    }
+
+    /** Si el archivo incluye solo parte de los códigos oficiales. */
+    public boolean parcial() {
+        return parcial;
+    }
+
+    public boolean contiene(CharSequence codigo) {
+        return tabla.contiene(codigo);
+    }
+
+    /**
+     * Descripción de {@code codigo}, o null si no está en el catálogo.
+     */
+    public String descripcion(CharSequence codigo) {
+        return valor(codigo, 1);
+    }
+
+    /**
+     * Valor de la columna {@code columna} para {@code codigo}, o null si el código no está.
+     *
+     * @throws IllegalArgumentException si el catálogo no tiene esa columna
+     */
+    public String valor(CharSequence codigo, String columna) {
+        int c = Arrays.asList(columnas).indexOf(columna);
+        if (c < 0) {
+            throw new IllegalArgumentException("El catálogo " + numero + " no tiene la columna " + columna);
+        }
+        return valor(codigo, c);
+    }
+
+    private String valor(CharSequence codigo, int columna) {
+        int indice = tabla.indice(codigo);
+        return indice < 0 ? null : valores[columna][indice];
+    }
+
+    String[] columnas() {
+        return columnas;
+    }
+
+    /**
+     * Valor de la fila {@code fila} (en orden de clave) y la columna {@code columna}.
+     */
+    String valor(int fila, int columna) {
+        return valores[columna][fila];
+    }
+}
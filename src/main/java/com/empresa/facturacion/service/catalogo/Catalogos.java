@@ -0,0 +1,148 @@
+package com.empresa.facturacion.service.catalogo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Catálogos de SUNAT (01 a 59) cargados al arrancar desde {@code catalogos/catalogo-NN.tsv} en el
+ * classpath. Los números sin archivo simplemente no están; agregar un catálogo es agregar su archivo.
+ *
+ * Cada catálogo queda indexado para las validaciones y el XML ({@link Catalogo}) y serializado una vez
+ * para los endpoints ({@link JsonPreparado}).
+ */
+@Startup
+@ApplicationScoped
+public class Catalogos {
+
+    private static final Logger LOG = Logger.getLogger(Catalogos.class);
+
+    static final String RUTA = "catalogos/catalogo-%02d.tsv";
+    static final int ULTIMO = 59;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    private final Catalogo[] porNumero = new Catalogo[ULTIMO + 1];
+    private final JsonPreparado[] json = new JsonPreparado[ULTIMO + 1];
+    private JsonPreparado indice;
+
+    /**
+     * Catálogos cargados sin CDI, para pruebas y benchmarks.
+     */
+    public static Catalogos crear() {
+        Catalogos catalogos = new Catalogos();
+        catalogos.objectMapper = new ObjectMapper();
+        catalogos.iniciar();
+        return catalogos;
+    }
+
+    @PostConstruct
+    void iniciar() {
+        List<Map<String, Object>> resumen = new ArrayList<>();
+        int codigos = 0;
+        for (int numero = 1; numero <= ULTIMO; numero++) {
+            Catalogo catalogo = cargar(numero);
+            if (catalogo == null) {
+                continue;
+            }
+            porNumero[numero] = catalogo;
+            json[numero] = JsonPreparado.de(objectMapper, aMapa(catalogo));
+            codigos += catalogo.tamano();
+
+            Map<String, Object> entrada = new LinkedHashMap<>();
+            entrada.put("numero", catalogo.numero());
+            entrada.put("nombre", catalogo.nombre());
+            entrada.put("codigos", catalogo.tamano());
+            entrada.put("parcial", catalogo.parcial());
+            entrada.put("etag", json[numero].etag());
+            resumen.add(entrada);
+        }
+        indice = JsonPreparado.de(objectMapper, Map.of("catalogos", resumen));
+        LOG.infof("%d catálogos SUNAT cargados con %d códigos", resumen.size(), codigos);
+    }
+
+    /**
+     * El catálogo {@code numero}, o null si no se incluyó su archivo.
+     */
+    public Catalogo catalogo(int numero) {
+        return numero >= 1 && numero <= ULTIMO ? porNumero[numero] : null;
+    }
+
+    /**
+     * @throws IllegalStateException si el catálogo no se incluyó: el código que lo usa no puede funcionar sin él
+     */
+    public Catalogo requerido(int numero) {
+        Catalogo catalogo = catalogo(numero);
+        if (catalogo == null) {
+            throw new IllegalStateException("Falta el archivo del catálogo " + String.format(RUTA, numero));
+        }
+        return catalogo;
+    }
+
+    /**
+     * JSON del catálogo {@code numero}, o null si no está.
+     */
+    public JsonPreparado json(int numero) {
+        return numero >= 1 && numero <= ULTIMO ? json[numero] : null;
+    }
+
+    /**
+     * JSON con número, nombre, cantidad de códigos y ETag de cada catálogo cargado.
+     */
+    public JsonPreparado indice() {
+        return indice;
+    }
+
+    /**
+     * Filas del catálogo como mapas columna → valor, en el orden del índice.
+     */
+    public static List<Map<String, String>> filas(Catalogo catalogo) {
+        String[] columnas = catalogo.columnas();
+        List<Map<String, String>> filas = new ArrayList<>(catalogo.tamano());
+        for (int i = 0; i < catalogo.tamano(); i++) {
+            Map<String, String> fila = new LinkedHashMap<>();
+            for (int c = 0; c < columnas.length; c++) {
+                fila.put(columnas[c], catalogo.valor(i, c));
+            }
+            filas.add(fila);
+        }
+        return filas;
+    }
+
+    private static Map<String, Object> aMapa(Catalogo catalogo) {
+        Map<String, Object> mapa = new LinkedHashMap<>();
+        mapa.put("numero", catalogo.numero());
+        mapa.put("nombre", catalogo.nombre());
+        mapa.put("parcial", catalogo.parcial());
+        mapa.put("codigos", filas(catalogo));
+        return mapa;
+    }
+
+    private static Catalogo cargar(int numero) {
+        String ruta = String.format(RUTA, numero);
+        InputStream recurso = Catalogos.class.getClassLoader().getResourceAsStream(ruta);
+        if (recurso == null) {
+            return null;
+        }
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(recurso, StandardCharsets.UTF_8))) {
+            return Catalogo.leer(String.format("%02d", numero), lector);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error leyendo " + ruta, e);
+        }
+    }
+}
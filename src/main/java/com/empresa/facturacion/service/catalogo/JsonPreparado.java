@@ -0,0 +1,84 @@
+package com.empresa.facturacion.service.catalogo;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Respuesta JSON que no cambia mientras el proceso vive, serializada una sola vez, con un ETag fuerte
+ * (SHA-256 del cuerpo). Atender una consulta es comparar el {@code If-None-Match} y, si no coincide,
+ * escribir los mismos bytes: sin Jackson ni objetos por solicitud.
+ */
+public final class JsonPreparado {
+
+    private final byte[] cuerpo;
+    private final String etag;
+
+    private JsonPreparado(byte[] cuerpo, String etag) {
+        this.cuerpo = cuerpo;
+        this.etag = etag;
+    }
+
+    public static JsonPreparado de(ObjectMapper objectMapper, Object valor) {
+        byte[] cuerpo;
+        try {
+            cuerpo = objectMapper.writeValueAsBytes(valor);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar la respuesta", e);
+        }
+        try {
+            String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(cuerpo));
+            return new JsonPreparado(cuerpo, "\"" + hash + "\"");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 es obligatorio en toda JVM
+        }
+    }
+
+    public byte[] cuerpo() {
+        return cuerpo;
+    }
+
+    /** ETag entre comillas, tal como va en la cabecera. */
+    public String etag() {
+        return etag;
+    }
+
+    /**
+     * Si el cliente ya tiene esta versión según su {@code If-None-Match}: una lista de ETags separados
+     * por coma o {@code *}. La comparación es la débil de RFC 9110, que ignora el prefijo {@code W/}.
+     */
+    public boolean vigente(String siNoCoincide) {
+        if (siNoCoincide == null) {
+            return false;
+        }
+        for (String candidato : siNoCoincide.split(",")) {
+            String etiqueta = candidato.trim();
+            if (etiqueta.startsWith("W/")) {
+                etiqueta = etiqueta.substring(2);
+            }
+            if (etiqueta.equals("*") || etiqueta.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 304 sin cuerpo si el cliente tiene la versión vigente; 200 con los bytes si no. {@code no-cache}
+     * obliga a revalidar en cada consulta, que cuesta solo la comparación del ETag.
+     */
+    public Response responder(String siNoCoincide) {
+        Response.ResponseBuilder respuesta = vigente(siNoCoincide)
+                ? Response.notModified()
+                : Response.ok(cuerpo, MediaType.APPLICATION_JSON_TYPE);
+        return respuesta.header(HttpHeaders.ETAG, etag)
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .build();
+    }
+}
@@ -0,0 +1,86 @@
+package com.empresa.facturacion.service.catalogo;
+
+import java.util.Arrays;
+
+/**
+ * Conjunto inmutable de códigos de catálogo (dígitos y mayúsculas, hasta 12 caracteres) para
+ * consultas de pertenencia sin objetos.
+ *
+ * Cada código se codifica en base 37 en un {@code long}, con el 0 reservado para "sin carácter" y así
+ * {@code "1"} y {@code "01"} dan claves distintas. Las claves se guardan ordenadas en un {@code long[]}
+ * y {@link #contiene} es una búsqueda binaria sobre la clave calculada al vuelo, sin crear Strings.
+ */
+public final class TablaCodigos {
+
+    /** 37^12 cabe en un long; 37^13 no. */
+    static final int LARGO_MAXIMO = 12;
+
+    private final long[] claves;
+
+    /**
+     * @param claves claves de {@link #clave} ordenadas y sin repetir
+     */
+    TablaCodigos(long[] claves) {
+        this.claves = claves;
+    }
+
+    /**
+     * @throws IllegalArgumentException si algún código tiene caracteres fuera de [0-9A-Z] o más de 12
+     */
+    public static TablaCodigos de(String... codigos) {
+        long[] claves = new long[codigos.length];
+        for (int i = 0; i < codigos.length; i++) {
+            claves[i] = clave(codigos[i]);
+            if (claves[i] < 0) {
+                throw new IllegalArgumentException("Código de catálogo no representable: " + codigos[i]);
+            }
+        }
+        Arrays.sort(claves);
+        return new TablaCodigos(Arrays.stream(claves).distinct().toArray());
+    }
+
+    public boolean contiene(CharSequence codigo) {
+        return indice(codigo) >= 0;
+    }
+
+    /**
+     * Posición de {@code codigo} en el orden de las claves, o -1 si no está. Permite guardar datos por
+     * código en arreglos paralelos.
+     */
+    public int indice(CharSequence codigo) {
+        if (codigo == null) {
+            return -1;
+        }
+        long clave = clave(codigo);
+        int indice = clave >= 0 ? Arrays.binarySearch(claves, clave) : -1;
+        return Math.max(indice, -1);
+    }
+
+    public int tamano() {
+        return claves.length;
+    }
+
+    /**
+     * Clave base 37 de {@code codigo}, o -1 si no es representable.
+     */
+    static long clave(CharSequence codigo) {
+        int largo = codigo.length();
+        if (largo == 0 || largo > LARGO_MAXIMO) {
+            return -1;
+        }
+        long clave = 0;
+        for (int i = 0; i < largo; i++) {
+            char c = codigo.charAt(i);
+            int digito;
+            if (c >= '0' && c <= '9') {
+                digito = c - '0' + 1;
+            } else if (c >= 'A' && c <= 'Z') {
+                digito = c - 'A' + 11;
+            } else {
+                return -1;
+            }
+            clave = clave * 37 + digito;
+        }
+        return clave;
+    }
+}
@@ -0,0 +1,82 @@
+package com.empresa.facturacion.service.cdr;
+
+/**
+ * Clasificación de los códigos de respuesta de SUNAT (faultcode o ResponseCode del CDR) según lo que
+ * corresponde hacer con el comprobante.
+ *
+ * La tabla se arma una vez y clasificar es leer una posición de un arreglo. Del rango 0100-0199 solo
+ * son transitorios los "El sistema no puede responder su solicitud": los demás son credenciales,
+ * perfil del usuario o un ZIP mal armado, que reenviar no corrige. Los de "ya presentado" no son un
+ * error del envío: SUNAT tiene el documento de un envío anterior y el resultado se obtiene consultándolo.
+ */
+public enum ClaseCodigoSunat {
+
+    /** 0: comprobante aceptado sin observaciones. */
+    ACEPTADO,
+    /** Servicio de SUNAT no disponible: el mismo envío puede repetirse. */
+    REINTENTABLE,
+    /** Error de la solicitud (0001-1999 salvo los transitorios): no hay CDR y reenviar igual falla igual. */
+    ERROR,
+    /** 2000-3999: SUNAT rechaza el comprobante; el número queda usado. */
+    RECHAZO,
+    /** 4000 en adelante: aceptado con observaciones. */
+    OBSERVACION,
+    /**
+     * 1033 (comprobante registrado previamente) y 2223 (archivo ya presentado): un envío anterior llegó
+     * aunque su respuesta no; se concilia con getStatusCdr o con el ticket en lugar de darlo por rechazado.
+     */
+    PRESENTADO;
+
+    private static final int CODIGOS = 10_000;
+    private static final ClaseCodigoSunat[] TABLA = new ClaseCodigoSunat[CODIGOS];
+
+    static {
+        TABLA[0] = ACEPTADO;
+        for (int codigo = 1; codigo < 2000; codigo++) {
+            TABLA[codigo] = ERROR;
+        }
+        for (int codigo = 2000; codigo < 4000; codigo++) {
+            TABLA[codigo] = RECHAZO;
+        }
+        for (int codigo = 4000; codigo < CODIGOS; codigo++) {
+            TABLA[codigo] = OBSERVACION;
+        }
+        // 0100 sistema no disponible, 0109 autenticación no disponible, 0130-0139 errores internos
+        // (ticket, archivo de respuesta, storage, cola, batch, base de datos), 0200-0203 errores del batch
+        marcar(100, 100);
+        marcar(109, 109);
+        marcar(130, 139);
+        marcar(200, 203);
+        TABLA[1033] = PRESENTADO;
+        TABLA[2223] = PRESENTADO;
+    }
+
+    private static void marcar(int desde, int hasta) {
+        for (int codigo = desde; codigo <= hasta; codigo++) {
+            TABLA[codigo] = REINTENTABLE;
+        }
+    }
+
+    /**
+     * Clase de {@code codigo}; los códigos no numéricos o fuera de rango son {@link #ERROR}.
+     */
+    public static ClaseCodigoSunat de(String codigo) {
+        if (codigo == null || codigo.isEmpty() || codigo.length() > 4) {
+            return ERROR;
+        }
+        int valor = 0;
+        for (int i = 0; i < codigo.length(); i++) {
+            char c = codigo.charAt(i);
+            if (c < '0' || c > '9') {
+                return ERROR;
+            }
+            valor = valor * 10 + c - '0';
+        }
+        return TABLA[valor];
+    }
+
+    /** Si SUNAT emitió CDR de aceptación. */
+    public boolean aceptado() {
+        return this == ACEPTADO || this == OBSERVACION;
+    }
+}
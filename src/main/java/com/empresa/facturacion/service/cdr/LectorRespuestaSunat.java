@@ -0,0 +1,438 @@
+package com.empresa.facturacion.service.cdr;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Lector de respuestas SOAP de SUNAT basado en StAX.
+ *
+ * Recorre el sobre hasta encontrar {@code applicationResponse} o {@code faultcode} y se detiene ahí.
+ * El CDR se decodifica de Base64 y se descomprime en streaming directamente hacia otro lector StAX,
+ * así ni el sobre ni el ApplicationResponse llegan a existir como DOM ni como XML descomprimido
+ * completo en memoria. Cada hilo reutiliza su propio {@link Inflater} y sus buffers.
+ */
+public final class LectorRespuestaSunat {
+
+    private static final XMLInputFactory XML_INPUT = crearFactory();
+
+    private static final String NS_CBC = "urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2";
+
+    private static final int FIRMA_ENTRADA_ZIP = 0x04034b50;
+    private static final int METODO_STORED = 0;
+    private static final int METODO_DEFLATED = 8;
+    private static final int FLAG_DESCRIPTOR = 0x08;
+    private static final int FIRMA_DESCRIPTOR = 0x08074b50;
+
+    private static final ThreadLocal<Descompresor> DESCOMPRESORES = ThreadLocal.withInitial(Descompresor::new);
+
+    private LectorRespuestaSunat() {
+    }
+
+    /**
+     * Lee la respuesta de sendBill. Lanza {@link IllegalStateException} si no es XML válido o si no trae
+     * ni CDR ni fault.
+     */
+    public static RespuestaSunat leer(String soap) {
+        try {
+            XMLStreamReader reader = XML_INPUT.createXMLStreamReader(new StringReader(soap));
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    String nombre = reader.getLocalName();
+                    if ("applicationResponse".equals(nombre)) {
+                        return leerCdr(reader.getElementText());
+                    }
+                    if ("faultcode".equals(nombre)) {
+                        return leerFault(reader);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Respuesta SUNAT no es XML válido", e);
+        }
+        throw new IllegalStateException("Respuesta SUNAT no reconocida: no contiene CDR ni SOAP Fault");
+    }
+
+    /**
+     * Lee la respuesta de getStatusCdr. Si SUNAT tiene la constancia ({@code content}) se lee el CDR; si
+     * no, queda el statusCode y el statusMessage de la consulta, sin CDR. Los SOAP Fault se leen igual que
+     * en {@link #leer(String)}.
+     */
+    public static RespuestaSunat leerConsulta(String soap) {
+        String codigo = null;
+        String mensaje = null;
+        try {
+            XMLStreamReader reader = XML_INPUT.createXMLStreamReader(new StringReader(soap));
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    switch (reader.getLocalName()) {
+                        case "content" -> {
+                            String cdr = reader.getElementText().trim();
+                            if (!cdr.isEmpty()) {
+                                return leerCdr(cdr);
+                            }
+                        }
+                        case "statusCode" -> codigo = reader.getElementText().trim();
+                        case "statusMessage" -> mensaje = reader.getElementText().trim();
+                        case "faultcode" -> {
+                            return leerFault(reader);
+                        }
+                        default -> { }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Respuesta SUNAT no es XML válido", e);
+        }
+        if (codigo == null) {
+            throw new IllegalStateException("Respuesta de getStatusCdr no reconocida: no contiene statusCode");
+        }
+        return new RespuestaSunat(false, codigo, mensaje, null, List.of(), null);
+    }
+
+    /**
+     * Lee el ZIP del CDR en Base64 (applicationResponse de sendBill, content de getStatus).
+     */
+    public static RespuestaSunat leerCdr(String cdrBase64) {
+        Descompresor descompresor = DESCOMPRESORES.get();
+        try (InputStream zip = Base64.getMimeDecoder().wrap(new AsciiInputStream(cdrBase64))) {
+            descompresor.iniciar(zip);
+            try (InputStream xml = descompresor.abrirXml()) {
+                return leerApplicationResponse(xml, cdrBase64);
+            }
+        } catch (IOException | XMLStreamException e) {
+            throw new IllegalStateException("CDR de SUNAT ilegible", e);
+        } finally {
+            descompresor.liberar();
+        }
+    }
+
+    private static RespuestaSunat leerFault(XMLStreamReader reader) throws XMLStreamException {
+        String codigo = codigoFault(reader.getElementText().trim());
+        String mensaje = null;
+        // faultstring va inmediatamente después de faultcode
+        while (reader.hasNext()) {
+            int evento = reader.next();
+            if (evento == XMLStreamConstants.START_ELEMENT && "faultstring".equals(reader.getLocalName())) {
+                mensaje = reader.getElementText().trim();
+                break;
+            }
+            if (evento == XMLStreamConstants.END_ELEMENT && "Fault".equals(reader.getLocalName())) {
+                break;
+            }
+        }
+        return new RespuestaSunat(true, codigo, mensaje, null, List.of(), null);
+    }
+
+    /**
+     * SUNAT informa el error como {@code soap-env:Client.2335}; el código útil es el número final.
+     */
+    static String codigoFault(String faultcode) {
+        int punto = faultcode.lastIndexOf('.');
+        String sufijo = punto >= 0 ? faultcode.substring(punto + 1) : faultcode;
+        for (int i = 0; i < sufijo.length(); i++) {
+            if (!Character.isDigit(sufijo.charAt(i))) {
+                return faultcode;
+            }
+        }
+        return sufijo.isEmpty() ? faultcode : sufijo;
+    }
+
+    private static RespuestaSunat leerApplicationResponse(InputStream xml, String cdrBase64)
+            throws XMLStreamException {
+        XMLStreamReader reader = XML_INPUT.createXMLStreamReader(xml);
+        List<String> observaciones = new ArrayList<>();
+        String referencia = null;
+        String codigo = null;
+        String descripcion = null;
+        try {
+            // Los Note van antes de DocumentResponse: al tener ResponseCode y Description ya está todo
+            while (reader.hasNext() && (codigo == null || descripcion == null)) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT || !NS_CBC.equals(reader.getNamespaceURI())) {
+                    continue;
+                }
+                switch (reader.getLocalName()) {
+                    case "Note" -> observaciones.add(reader.getElementText().trim());
+                    case "ReferenceID" -> referencia = reader.getElementText().trim();
+                    case "ResponseCode" -> codigo = reader.getElementText().trim();
+                    case "Description" -> descripcion = reader.getElementText().trim();
+                    default -> { }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        if (codigo == null) {
+            throw new IllegalStateException("CDR sin ResponseCode");
+        }
+        return new RespuestaSunat(false, codigo, descripcion, referencia, List.copyOf(observaciones), cdrBase64);
+    }
+
+    private static XMLInputFactory crearFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * Lee las entradas locales del ZIP del CDR sin {@code ZipInputStream}, saltando la carpeta
+     * {@code dummy/} que SUNAT incluye, e infla la primera entrada {@code .xml} bajo demanda.
+     */
+    private static final class Descompresor {
+
+        private final Inflater inflater = new Inflater(true);
+        private final byte[] entrada = new byte[8192];
+        private final byte[] nombre = new byte[512];
+        private InputStream origen;
+        private int posicion;
+        private int limite;
+
+        void iniciar(InputStream origen) {
+            this.origen = origen;
+            this.posicion = 0;
+            this.limite = 0;
+            inflater.reset();
+        }
+
+        void liberar() {
+            origen = null;
+            inflater.reset();
+        }
+
+        InputStream abrirXml() throws IOException {
+            while (true) {
+                if (leerEntero() != FIRMA_ENTRADA_ZIP) {
+                    throw new ZipException("El CDR no contiene un XML");
+                }
+                saltar(2);
+                int flags = leerCorto();
+                int metodo = leerCorto();
+                saltar(8);
+                long comprimido = leerEntero() & 0xFFFFFFFFL;
+                saltar(4);
+                int longitudNombre = leerCorto();
+                int longitudExtra = leerCorto();
+                boolean esXml = leerNombreXml(longitudNombre);
+                saltar(longitudExtra);
+
+                boolean conDescriptor = (flags & FLAG_DESCRIPTOR) != 0;
+                if (metodo != METODO_DEFLATED && metodo != METODO_STORED) {
+                    throw new ZipException("Método de compresión no soportado en CDR: " + metodo);
+                }
+                if (metodo == METODO_STORED && conDescriptor) {
+                    throw new ZipException("Entrada STORED con descriptor de datos en CDR");
+                }
+                if (esXml) {
+                    return metodo == METODO_DEFLATED ? new Inflado() : new Almacenado(comprimido);
+                }
+                if (metodo == METODO_DEFLATED) {
+                    descartarInflado();
+                } else {
+                    saltar(comprimido);
+                }
+                if (conDescriptor) {
+                    saltarDescriptor();
+                }
+            }
+        }
+
+        private boolean leerNombreXml(int longitud) throws IOException {
+            int guardados = Math.min(longitud, nombre.length);
+            for (int i = 0; i < longitud; i++) {
+                int b = leerByte();
+                if (i < guardados) {
+                    nombre[i] = (byte) b;
+                }
+            }
+            return guardados >= 4 && guardados == longitud
+                    && (nombre[guardados - 4] == '.')
+                    && (nombre[guardados - 3] | 0x20) == 'x'
+                    && (nombre[guardados - 2] | 0x20) == 'm'
+                    && (nombre[guardados - 1] | 0x20) == 'l';
+        }
+
+        private void descartarInflado() throws IOException {
+            byte[] descarte = new byte[512];
+            inflater.setInput(entrada, posicion, limite - posicion);
+            while (inflar(descarte, 0, descarte.length) >= 0) {
+                // solo avanza el stream hasta el final de la entrada
+            }
+            inflater.reset();
+        }
+
+        private void saltarDescriptor() throws IOException {
+            // La firma del descriptor es opcional: crc(4) + comprimido(4) + original(4)
+            if (leerEntero() == FIRMA_DESCRIPTOR) {
+                saltar(4);
+            }
+            saltar(8);
+        }
+
+        /**
+         * Infla hasta {@code longitud} bytes de la entrada actual; -1 al terminar la entrada.
+         * Los bytes sobrantes del buffer vuelven a quedar disponibles para la siguiente cabecera.
+         */
+        private int inflar(byte[] destino, int desde, int longitud) throws IOException {
+            try {
+                while (true) {
+                    if (inflater.finished()) {
+                        posicion = limite - inflater.getRemaining();
+                        inflater.setInput(entrada, 0, 0);
+                        return -1;
+                    }
+                    int n = inflater.inflate(destino, desde, longitud);
+                    if (n > 0) {
+                        return n;
+                    }
+                    if (inflater.needsInput()) {
+                        if (!llenar()) {
+                            throw new ZipException("CDR truncado");
+                        }
+                        inflater.setInput(entrada, 0, limite);
+                    } else if (inflater.needsDictionary()) {
+                        throw new ZipException("CDR con diccionario DEFLATE no soportado");
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException("CDR corrupto: " + e.getMessage());
+            }
+        }
+
+        private boolean llenar() throws IOException {
+            int n = origen.readNBytes(entrada, 0, entrada.length);
+            posicion = 0;
+            limite = n;
+            return n > 0;
+        }
+
+        private int leerByte() throws IOException {
+            if (posicion == limite && !llenar()) {
+                throw new ZipException("CDR truncado");
+            }
+            return entrada[posicion++] & 0xFF;
+        }
+
+        private int leerCorto() throws IOException {
+            return leerByte() | (leerByte() << 8);
+        }
+
+        private int leerEntero() throws IOException {
+            return leerCorto() | (leerCorto() << 16);
+        }
+
+        private void saltar(long bytes) throws IOException {
+            while (bytes > 0) {
+                if (posicion == limite && !llenar()) {
+                    throw new ZipException("CDR truncado");
+                }
+                int n = (int) Math.min(bytes, limite - posicion);
+                posicion += n;
+                bytes -= n;
+            }
+        }
+
+        private final class Inflado extends InputStream {
+
+            private final byte[] unByte = new byte[1];
+
+            Inflado() {
+                inflater.setInput(entrada, posicion, limite - posicion);
+            }
+
+            @Override
+            public int read() throws IOException {
+                return read(unByte, 0, 1) < 0 ? -1 : unByte[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] destino, int desde, int longitud) throws IOException {
+                return longitud == 0 ? 0 : inflar(destino, desde, longitud);
+            }
+        }
+
+        private final class Almacenado extends InputStream {
+
+            private long restante;
+
+            Almacenado(long longitud) {
+                this.restante = longitud;
+            }
+
+            @Override
+            public int read() throws IOException {
+                if (restante == 0) {
+                    return -1;
+                }
+                restante--;
+                return leerByte();
+            }
+
+            @Override
+            public int read(byte[] destino, int desde, int longitud) throws IOException {
+                if (restante == 0) {
+                    return -1;
+                }
+                if (posicion == limite && !llenar()) {
+                    throw new ZipException("CDR truncado");
+                }
+                int n = (int) Math.min(Math.min(longitud, restante), limite - posicion);
+                System.arraycopy(entrada, posicion, destino, desde, n);
+                posicion += n;
+                restante -= n;
+                return n;
+            }
+        }
+    }
+
+    /**
+     * Expone un texto ASCII (el Base64 del CDR) como bytes sin copiarlo.
+     */
+    private static final class AsciiInputStream extends InputStream {
+
+        private final String texto;
+        private int posicion;
+
+        AsciiInputStream(String texto) {
+            this.texto = texto;
+        }
+
+        @Override
+        public int read() {
+            return posicion < texto.length() ? texto.charAt(posicion++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] destino, int desde, int longitud) {
+            if (posicion >= texto.length()) {
+                return -1;
+            }
+            int n = Math.min(longitud, texto.length() - posicion);
+            for (int i = 0; i < n; i++) {
+                destino[desde + i] = (byte) texto.charAt(posicion++);
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.empresa.facturacion.service.cdr;
+
+import java.util.List;
+
+/**
+ * Resultado de leer una respuesta de billService: un SOAP Fault o el CDR (ApplicationResponse).
+ *
+ * @param fault          true si SUNAT respondió con {@code soap:Fault}
+ * @param codigo         ResponseCode del CDR, o el código numérico del faultcode
+ * @param descripcion    Description del CDR o faultstring
+ * @param referencia     ReferenceID del CDR (serie-correlativo), null en un fault
+ * @param observaciones  textos de {@code cbc:Note} del CDR, en orden
+ * @param cdrBase64      ZIP del CDR tal como llegó, null en un fault
+ */
+public record RespuestaSunat(boolean fault, String codigo, String descripcion, String referencia,
+                             List<String> observaciones, String cdrBase64) {
+
+    /**
+     * El CDR acepta el comprobante con código 0, o con observaciones desde el 4000.
+     * Los códigos 2000-3999 son rechazos.
+     */
+    public boolean aceptado() {
+        return !fault && clase().aceptado();
+    }
+
+    public ClaseCodigoSunat clase() {
+        return ClaseCodigoSunat.de(codigo);
+    }
+}
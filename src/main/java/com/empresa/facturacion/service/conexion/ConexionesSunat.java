@@ -0,0 +1,334 @@
+package com.empresa.facturacion.service.conexion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.vertx.UniHelper;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpConnection;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.core.http.RequestOptions;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.WebApplicationException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Conexiones HTTP hacia billService de SUNAT y hacia billConsultService (consulta de CDR).
+ *
+ * Un único {@link HttpClient} de Vert.x con un pool de conexiones keep-alive: las conexiones se
+ * abren (TCP + TLS) al arrancar y se reutilizan entre envíos, así el handshake no cae en la latencia
+ * de un comprobante. Al compartir el mismo contexto TLS, las conexiones nuevas hacia el mismo host
+ * reanudan la sesión TLS guardada por la JVM en lugar de hacer el handshake completo.
+ *
+ * Publica las conexiones activas/ociosas y el tiempo de establecimiento (conexión + handshake).
+ */
+@ApplicationScoped
+public class ConexionesSunat {
+
+    private static final Logger LOG = Logger.getLogger(ConexionesSunat.class);
+
+    private static final String CONTENT_TYPE = "text/xml; charset=utf-8";
+    private static final String USER_AGENT = "Quarkus-SUNAT-Client/1.0";
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "sunat.conexion.url")
+    String url;
+
+    /** billConsultService (getStatusCdr). */
+    @ConfigProperty(name = "sunat.conexion.url-consulta")
+    String urlConsulta;
+
+    @ConfigProperty(name = "sunat.conexion.pool", defaultValue = "20")
+    int tamanoPool;
+
+    @ConfigProperty(name = "sunat.conexion.precalentar", defaultValue = "4")
+    int conexionesIniciales;
+
+    @ConfigProperty(name = "sunat.conexion.keep-alive", defaultValue = "60S")
+    Duration keepAlive;
+
+    @ConfigProperty(name = "sunat.conexion.connect-timeout", defaultValue = "30S")
+    Duration connectTimeout;
+
+    @ConfigProperty(name = "sunat.conexion.read-timeout", defaultValue = "120S")
+    Duration readTimeout;
+
+    @ConfigProperty(name = "sunat.conexion.trust-all", defaultValue = "false")
+    boolean trustAll;
+
+    @ConfigProperty(name = "sunat.conexion.verify-host", defaultValue = "true")
+    boolean verifyHost;
+
+    private HttpClient cliente;
+    private Destino billService;
+    private Destino consultService;
+
+    private final Set<HttpConnection> abiertas = ConcurrentHashMap.newKeySet();
+    private final Set<HttpConnection> nuevas = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger activas = new AtomicInteger();
+    private Timer establecimiento;
+    private Counter usosNuevas;
+    private Counter usosReutilizadas;
+
+    @PostConstruct
+    void iniciar() {
+        billService = Destino.de(url);
+        consultService = urlConsulta == null ? billService : Destino.de(urlConsulta);
+
+        HttpClientOptions opciones = new HttpClientOptions()
+                .setKeepAlive(true)
+                .setKeepAliveTimeout((int) Math.max(1, keepAlive.toSeconds()))
+                .setPipelining(false)
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setSsl(billService.ssl())
+                .setTrustAll(trustAll)
+                .setVerifyHost(verifyHost)
+                .setSslHandshakeTimeout(connectTimeout.toMillis())
+                .setSslHandshakeTimeoutUnit(TimeUnit.MILLISECONDS)
+                .setDecompressionSupported(true);
+        cliente = vertx.httpClientBuilder()
+                .with(opciones)
+                .with(new PoolOptions().setHttp1MaxSize(tamanoPool))
+                .withConnectHandler(this::conexionAbierta)
+                .build();
+
+        Gauge.builder("sunat.conexiones", activas, AtomicInteger::get)
+                .description("Conexiones a SUNAT por estado").tag("estado", "activa").register(registry);
+        Gauge.builder("sunat.conexiones", this, ConexionesSunat::ociosas)
+                .description("Conexiones a SUNAT por estado").tag("estado", "ociosa").register(registry);
+        establecimiento = Timer.builder("sunat.conexion.establecimiento")
+                .description("Tiempo para abrir una conexión a SUNAT: TCP + handshake TLS")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        usosNuevas = Counter.builder("sunat.conexion.solicitudes").tag("conexion", "nueva")
+                .description("Solicitudes a SUNAT según la conexión que usaron").register(registry);
+        usosReutilizadas = Counter.builder("sunat.conexion.solicitudes").tag("conexion", "reutilizada")
+                .description("Solicitudes a SUNAT según la conexión que usaron").register(registry);
+    }
+
+    /**
+     * Abre {@code sunat.conexion.precalentar} conexiones en paralelo al arrancar; quedan ociosas en el pool
+     * para los primeros envíos. Si SUNAT no responde solo se registra: el arranque no espera.
+     */
+    void precalentar(@Observes StartupEvent event) {
+        if (conexionesIniciales <= 0) {
+            return;
+        }
+        precalentar(conexionesIniciales).subscribe().with(
+                abiertasOk -> LOG.infof("Conexiones a SUNAT precalentadas: %d de %d (%s:%d)",
+                        abiertasOk, conexionesIniciales, billService.host(), billService.puerto()),
+                error -> LOG.warnf("No se pudieron precalentar conexiones a SUNAT: %s", error.getMessage()));
+    }
+
+    Uni<Integer> precalentar(int cantidad) {
+        if (cantidad <= 0) {
+            return Uni.createFrom().item(0);
+        }
+        List<Uni<Sondeo>> sondeos = new ArrayList<>(cantidad);
+        for (int i = 0; i < Math.min(cantidad, tamanoPool); i++) {
+            sondeos.add(sondear());
+        }
+        return Uni.join().all(sondeos).andCollectFailures()
+                .onItem().transform(resultados -> (int) resultados.stream().filter(Sondeo::accesible).count());
+    }
+
+    @PreDestroy
+    void cerrar() {
+        if (cliente != null) {
+            cliente.close();
+        }
+    }
+
+    /**
+     * POST del sobre SOAP a billService. SUNAT devuelve sus SOAP Fault con HTTP 500: en ese caso el
+     * fault es la respuesta. Otros estados fallan con {@link WebApplicationException}.
+     */
+    public Uni<String> enviar(String sobreSoap) {
+        Buffer cuerpo = Buffer.buffer(sobreSoap, StandardCharsets.UTF_8.name());
+        return enviarSoap(billService, solicitud -> solicitud.send(cuerpo));
+    }
+
+    /**
+     * POST del sobre SOAP a billConsultService (getStatusCdr), por el mismo pool de conexiones. Los
+     * SOAP Fault se devuelven como respuesta igual que en {@link #enviar(String)}.
+     */
+    public Uni<String> consultar(String sobreSoap) {
+        Buffer cuerpo = Buffer.buffer(sobreSoap, StandardCharsets.UTF_8.name());
+        return enviarSoap(consultService, solicitud -> solicitud.send(cuerpo));
+    }
+
+    /**
+     * Igual que {@link #enviar(String)}, pero el sobre se escribe en la conexión por partes: el
+     * prefijo, el ZIP en Base64 trozo a trozo y el sufijo, con {@code Content-Length} conocido de antemano.
+     */
+    public Uni<String> enviar(SobreSoap sobre) {
+        return enviarSoap(billService, solicitud -> {
+            solicitud.putHeader(HttpHeaders.CONTENT_LENGTH, Long.toString(sobre.longitud()));
+            solicitud.write(sobre.prefijo());
+            escribir(solicitud, sobre, 0);
+            return solicitud.response();
+        });
+    }
+
+    private Uni<String> enviarSoap(Destino destino, Function<HttpClientRequest, Future<HttpClientResponse>> envio) {
+        RequestOptions opciones = solicitud(destino, HttpMethod.POST, destino.ruta())
+                .putHeader(HttpHeaders.CONTENT_TYPE, CONTENT_TYPE)
+                .putHeader("SOAPAction", "\"\"")
+                .putHeader(HttpHeaders.ACCEPT, "text/xml");
+        return UniHelper.toUni(ejecutar(opciones, envio).compose(respuesta -> {
+            String texto = respuesta.cuerpo.toString(StandardCharsets.UTF_8);
+            if (respuesta.estado / 100 == 2 || (respuesta.estado == 500 && texto.contains("faultcode"))) {
+                return Future.succeededFuture(texto);
+            }
+            return Future.failedFuture(new WebApplicationException(
+                    "SUNAT respondió con status code " + respuesta.estado, respuesta.estado));
+        }));
+    }
+
+    /**
+     * Escribe los trozos desde {@code desde}. Si la cola de escritura de la conexión se llena, el resto
+     * espera al drainHandler: el Base64 se codifica al ritmo de la red y en memoria quedan solo los
+     * trozos en tránsito.
+     */
+    private static void escribir(HttpClientRequest solicitud, SobreSoap sobre, int desde) {
+        int trozo = desde;
+        while (trozo < sobre.trozos()) {
+            solicitud.write(sobre.trozo(trozo++));
+            if (solicitud.writeQueueFull()) {
+                int siguiente = trozo;
+                solicitud.drainHandler(v -> escribir(solicitud, sobre, siguiente));
+                return;
+            }
+        }
+        solicitud.end(sobre.sufijo());
+    }
+
+    /**
+     * Sonda liviana: GET del WSDL de billService por el mismo pool que los envíos.
+     */
+    public Uni<Sondeo> sondear() {
+        long inicio = System.nanoTime();
+        return UniHelper.toUni(ejecutar(solicitud(billService, HttpMethod.GET, billService.ruta() + "?wsdl"),
+                        HttpClientRequest::send))
+                .onItem().transform(respuesta -> new Sondeo(respuesta.estado / 100 == 2, respuesta.estado,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio), respuesta.conexionNueva, null))
+                .onFailure().recoverWithItem(error -> new Sondeo(false, 0,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio), false,
+                        String.valueOf(error.getMessage())));
+    }
+
+    public String destino() {
+        return billService.url();
+    }
+
+    private RequestOptions solicitud(Destino destino, HttpMethod metodo, String uri) {
+        return new RequestOptions()
+                .setMethod(metodo)
+                .setHost(destino.host())
+                .setPort(destino.puerto())
+                .setSsl(destino.ssl())
+                .setURI(uri)
+                .setIdleTimeout(readTimeout.toMillis())
+                .putHeader(HttpHeaders.USER_AGENT, USER_AGENT);
+    }
+
+    private Future<Respuesta> ejecutar(RequestOptions opciones,
+                                       Function<HttpClientRequest, Future<HttpClientResponse>> envio) {
+        long inicio = System.nanoTime();
+        return cliente.request(opciones).compose(solicitud -> {
+            boolean nueva = usar(solicitud, inicio);
+            activas.incrementAndGet();
+            return envio.apply(solicitud)
+                    .compose(respuesta -> respuesta.body()
+                            .map(contenido -> new Respuesta(respuesta.statusCode(), contenido, nueva)))
+                    .onComplete(r -> activas.decrementAndGet());
+        });
+    }
+
+    /**
+     * Registra si la solicitud obtuvo una conexión recién abierta; de ser así, el tiempo hasta aquí es
+     * el de la conexión TCP y el handshake TLS.
+     */
+    private boolean usar(HttpClientRequest solicitud, long inicio) {
+        if (nuevas.remove(solicitud.connection())) {
+            establecimiento.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+            usosNuevas.increment();
+            return true;
+        }
+        usosReutilizadas.increment();
+        return false;
+    }
+
+    private void conexionAbierta(HttpConnection conexion) {
+        abiertas.add(conexion);
+        nuevas.add(conexion);
+        conexion.closeHandler(v -> {
+            abiertas.remove(conexion);
+            nuevas.remove(conexion);
+        });
+    }
+
+    int abiertas() {
+        return abiertas.size();
+    }
+
+    double ociosas() {
+        return Math.max(0, abiertas.size() - activas.get());
+    }
+
+    private record Respuesta(int estado, Buffer cuerpo, boolean conexionNueva) {
+    }
+
+    private record Destino(String host, int puerto, boolean ssl, String ruta) {
+
+        static Destino de(String url) {
+            URI uri = URI.create(url);
+            boolean ssl = "https".equalsIgnoreCase(uri.getScheme());
+            return new Destino(uri.getHost(), uri.getPort() > 0 ? uri.getPort() : ssl ? 443 : 80, ssl,
+                    uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath());
+        }
+
+        String url() {
+            return (ssl ? "https://" : "http://") + host + ":" + puerto + ruta;
+        }
+    }
+
+    /**
+     * Resultado de {@link #sondear()}: si SUNAT respondió 2xx, el estado HTTP, la latencia y si hubo
+     * que abrir una conexión (handshake incluido en la latencia).
+     */
+    public record Sondeo(boolean accesible, int estadoHttp, long latenciaMs, boolean conexionNueva, String error) {
+    }
+}
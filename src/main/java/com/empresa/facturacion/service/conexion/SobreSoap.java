@@ -0,0 +1,152 @@
+package com.empresa.facturacion.service.conexion;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Sobre SOAP de sendBill/sendSummary sin armar: el texto antes y después del {@code contentFile} y el
+ * ZIP, que {@link ConexionesSunat} codifica en Base64 trozo a trozo mientras lo escribe en la conexión.
+ * El sobre completo nunca está en memoria, y el mismo sobre puede escribirse de nuevo en un reintento.
+ */
+public final class SobreSoap {
+
+    /** Cierre de los sobres que abre {@link #cabecera(String, String)}. */
+    public static final String CIERRE_ENVELOPE = "</soapenv:Body></soapenv:Envelope>";
+
+    /** Bytes del ZIP por trozo; múltiplo de 3 para que solo el último trozo lleve relleno Base64. */
+    static final int BYTES_POR_TROZO = 48 * 1024;
+
+    private final byte[] prefijo;
+    private final byte[] contenido;
+    private final byte[] sufijo;
+
+    public SobreSoap(String prefijo, byte[] contenido, String sufijo) {
+        this.prefijo = prefijo.getBytes(StandardCharsets.UTF_8);
+        this.contenido = contenido;
+        this.sufijo = sufijo.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Longitud del Base64 (con relleno) de {@code bytes} bytes.
+     */
+    public static int longitudBase64(int bytes) {
+        return 4 * ((bytes + 2) / 3);
+    }
+
+    /**
+     * Apertura de un sobre SOAP de SUNAT hasta {@code <soapenv:Body>}, con el UsernameToken de WS-Security
+     * (RUC + usuario SOL y clave SOL).
+     */
+    public static String cabecera(String username, String password) {
+        return String.format("""
+            <soapenv:Envelope xmlns:soapenv="http://schemas.xmlsoap.org/soap/envelope/" \
+            xmlns:ser="http://service.sunat.gob.pe" \
+            xmlns:wsse="http://docs.oasis-open.org/wss/2004/01/oasis-200401-wss-wssecurity-secext-1.0.xsd">\
+            <soapenv:Header><wsse:Security><wsse:UsernameToken>\
+            <wsse:Username>%s</wsse:Username><wsse:Password>%s</wsse:Password>\
+            </wsse:UsernameToken></wsse:Security></soapenv:Header>\
+            <soapenv:Body>""", username, password);
+    }
+
+    /**
+     * Tamaño del sobre en bytes, para el {@code Content-Length}.
+     */
+    public long longitud() {
+        return (long) prefijo.length + longitudBase64(contenido.length) + sufijo.length;
+    }
+
+    Buffer prefijo() {
+        return Buffer.buffer(prefijo);
+    }
+
+    Buffer sufijo() {
+        return Buffer.buffer(sufijo);
+    }
+
+    int trozos() {
+        return (contenido.length + BYTES_POR_TROZO - 1) / BYTES_POR_TROZO;
+    }
+
+    /**
+     * Base64 del trozo {@code indice} del contenido.
+     */
+    Buffer trozo(int indice) {
+        Buffer trozo = Buffer.buffer(longitudBase64(largo(indice)));
+        try {
+            codificar(indice, new SalidaBuffer(trozo));
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // SalidaBuffer no falla
+        }
+        return trozo;
+    }
+
+    /**
+     * Escribe el sobre completo en {@code salida} con los mismos trozos que {@link ConexionesSunat}; no
+     * cierra {@code salida}.
+     */
+    public void escribir(OutputStream salida) throws IOException {
+        salida.write(prefijo);
+        for (int indice = 0; indice < trozos(); indice++) {
+            codificar(indice, new SalidaSinCierre(salida));
+        }
+        salida.write(sufijo);
+    }
+
+    private int largo(int indice) {
+        return Math.min(BYTES_POR_TROZO, contenido.length - indice * BYTES_POR_TROZO);
+    }
+
+    private void codificar(int indice, OutputStream destino) throws IOException {
+        // Al cerrarse, el encoder escribe el relleno y cierra destino
+        try (OutputStream base64 = Base64.getEncoder().wrap(destino)) {
+            base64.write(contenido, indice * BYTES_POR_TROZO, largo(indice));
+        }
+    }
+
+    /**
+     * Stream que anexa a un {@link Buffer} de Vert.x.
+     */
+    private static final class SalidaBuffer extends OutputStream {
+
+        private final Buffer destino;
+
+        SalidaBuffer(Buffer destino) {
+            this.destino = destino;
+        }
+
+        @Override
+        public void write(int b) {
+            destino.appendByte((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            destino.appendBytes(b, off, len);
+        }
+    }
+
+    /**
+     * Deja abierto el stream del llamador cuando el encoder Base64 se cierra al final de cada trozo.
+     */
+    private static final class SalidaSinCierre extends FilterOutputStream {
+
+        SalidaSinCierre(OutputStream destino) {
+            super(destino);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.empresa.facturacion.service.correlativo;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.entity.ComprobanteOutbox;
+import com.empresa.facturacion.entity.CorrelativoNoUsado;
+import com.empresa.facturacion.entity.SerieCorrelativo;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asigna correlativos por RUC, tipo de documento y serie.
+ *
+ * Cada nodo reserva bloques de {@code correlativo.tamano-bloque} números en una sola transacción
+ * (fila de {@link SerieCorrelativo} bloqueada con {@code FOR UPDATE}) y los reparte en memoria con
+ * un {@code getAndIncrement}: solo se vuelve a la base de datos al agotar el bloque. Varios nodos
+ * pueden emitir sobre la misma serie; la numeración es única pero no estrictamente creciente entre
+ * nodos. Lo que queda de cada bloque al apagar se registra en {@link CorrelativoNoUsado}.
+ */
+@ApplicationScoped
+public class AsignadorCorrelativos {
+
+    private static final Logger LOG = Logger.getLogger(AsignadorCorrelativos.class);
+
+    /** SUNAT admite correlativos de hasta 8 dígitos. */
+    static final long MAXIMO = 99_999_999L;
+
+    private static final int INTENTOS_RESERVA = 3;
+
+    @ConfigProperty(name = "correlativo.tamano-bloque", defaultValue = "1000")
+    int tamanoBloque;
+
+    @ConfigProperty(name = "correlativo.nodo", defaultValue = "local")
+    String nodo;
+
+    private final Map<Clave, Serie> series = new ConcurrentHashMap<>();
+    private volatile boolean detenido;
+
+    /**
+     * Asigna el correlativo si la solicitud no trae uno. Si el bloque en memoria está agotado,
+     * la reserva del siguiente se hace en el pool de workers para no bloquear el event loop.
+     */
+    public Uni<FacturaPruebaRequest> completar(FacturaPruebaRequest request) {
+        if (request.correlativo != null) {
+            return Uni.createFrom().item(request);
+        }
+        long numero = serie(request.emisor.ruc, request.tipoDocumento, request.serie).tomar();
+        if (numero > 0) {
+            request.correlativo = numero;
+            return Uni.createFrom().item(request);
+        }
+        return Uni.createFrom().item(() -> asignar(request))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+    }
+
+    /**
+     * Versión bloqueante de {@link #completar}, para endpoints que ya corren en un worker.
+     */
+    public FacturaPruebaRequest asignar(FacturaPruebaRequest request) {
+        if (request.correlativo == null) {
+            request.correlativo = siguiente(request.emisor.ruc, request.tipoDocumento, request.serie);
+        }
+        return request;
+    }
+
+    public long siguiente(String ruc, String tipoDocumento, String serie) {
+        Serie estado = serie(ruc, tipoDocumento, serie);
+        while (true) {
+            Bloque bloque = estado.bloque;
+            long numero = bloque == null ? -1 : bloque.tomar();
+            if (numero > 0) {
+                return numero;
+            }
+            estado.renovar(bloque);
+        }
+    }
+
+    void detener(@Observes ShutdownEvent event) {
+        liberarBloques("Bloque sin agotar al apagar el nodo");
+    }
+
+    /**
+     * Deja de asignar y registra como no usados los números pendientes de cada bloque en memoria.
+     */
+    public void liberarBloques(String motivo) {
+        detenido = true;
+        for (Serie estado : series.values()) {
+            synchronized (estado) {
+                Bloque bloque = estado.bloque;
+                if (bloque == null) {
+                    continue;
+                }
+                // getAndSet deja el bloque agotado: ninguna asignación concurrente recibe un número del rango
+                long desde = bloque.proximo.getAndSet(bloque.hasta);
+                if (desde < bloque.hasta) {
+                    registrarNoUsado(estado.clave, desde, bloque.hasta - 1, motivo);
+                }
+            }
+        }
+    }
+
+    private Serie serie(String ruc, String tipoDocumento, String serie) {
+        return series.computeIfAbsent(new Clave(ruc, tipoDocumento, serie), Serie::new);
+    }
+
+    private Bloque reservar(Clave clave) {
+        for (int intento = 1; ; intento++) {
+            try {
+                return QuarkusTransaction.requiringNew().call(() -> reservarEnTransaccion(clave));
+            } catch (PersistenceException e) {
+                // Otro nodo creó la fila de la serie al mismo tiempo; el siguiente intento la encuentra
+                if (intento >= INTENTOS_RESERVA) {
+                    throw e;
+                }
+                LOG.debugf("Reintentando reserva de correlativos para %s: %s", clave, e.getMessage());
+            }
+        }
+    }
+
+    private Bloque reservarEnTransaccion(Clave clave) {
+        SerieCorrelativo fila = SerieCorrelativo.<SerieCorrelativo>find(
+                        "ruc = ?1 and tipoDocumento = ?2 and serie = ?3", clave.ruc(), clave.tipoDocumento(), clave.serie())
+                .withLock(LockModeType.PESSIMISTIC_WRITE)
+                .firstResult();
+        if (fila == null) {
+            fila = new SerieCorrelativo();
+            fila.ruc = clave.ruc();
+            fila.tipoDocumento = clave.tipoDocumento();
+            fila.serie = clave.serie();
+            // Series usadas antes del asignador continúan después del último número recibido
+            fila.siguiente = ultimoEncolado(clave) + 1;
+            fila.persist();
+            fila.flush();
+        }
+        long desde = fila.siguiente;
+        if (desde > MAXIMO) {
+            throw new IllegalStateException("La serie " + clave + " agotó sus correlativos");
+        }
+        long hasta = Math.min(desde + tamanoBloque, MAXIMO + 1);
+        fila.siguiente = hasta;
+        fila.actualizadoEn = Instant.now();
+        LOG.debugf("Bloque de correlativos %s reservado: %d a %d", clave, desde, hasta - 1);
+        return new Bloque(desde, hasta);
+    }
+
+    private static long ultimoEncolado(Clave clave) {
+        Long ultimo = ComprobanteOutbox.getEntityManager()
+                .createQuery("select max(c.correlativo) from ComprobanteOutbox c"
+                        + " where c.ruc = ?1 and c.tipoDocumento = ?2 and c.serie = ?3", Long.class)
+                .setParameter(1, clave.ruc())
+                .setParameter(2, clave.tipoDocumento())
+                .setParameter(3, clave.serie())
+                .getSingleResult();
+        return ultimo == null ? 0 : ultimo;
+    }
+
+    private void registrarNoUsado(Clave clave, long desde, long hasta, String motivo) {
+        try {
+            QuarkusTransaction.requiringNew().run(() -> {
+                CorrelativoNoUsado rango = new CorrelativoNoUsado();
+                rango.ruc = clave.ruc();
+                rango.tipoDocumento = clave.tipoDocumento();
+                rango.serie = clave.serie();
+                rango.desde = desde;
+                rango.hasta = hasta;
+                rango.motivo = motivo;
+                rango.nodo = nodo;
+                rango.persist();
+            });
+            LOG.infof("Correlativos %s %d a %d registrados como no usados", clave, desde, hasta);
+        } catch (RuntimeException e) {
+            // El log queda como única constancia del salto de numeración
+            LOG.errorf(e, "No se pudo registrar el rango no usado %s %d a %d (%s)", clave, desde, hasta, motivo);
+        }
+    }
+
+    private record Clave(String ruc, String tipoDocumento, String serie) {
+        @Override
+        public String toString() {
+            return ruc + "-" + tipoDocumento + "-" + serie;
+        }
+    }
+
+    /**
+     * Números {@code [proximo, hasta)} reservados para este nodo. {@code proximo} puede pasarse de
+     * {@code hasta} cuando varios hilos agotan el bloque a la vez; esos valores se descartan.
+     */
+    private static final class Bloque {
+        final AtomicLong proximo;
+        final long hasta;
+
+        Bloque(long desde, long hasta) {
+            this.proximo = new AtomicLong(desde);
+            this.hasta = hasta;
+        }
+
+        /** Devuelve el siguiente número, o -1 si el bloque está agotado. */
+        long tomar() {
+            long numero = proximo.getAndIncrement();
+            return numero < hasta ? numero : -1;
+        }
+    }
+
+    private final class Serie {
+        final Clave clave;
+        volatile Bloque bloque;
+
+        Serie(Clave clave) {
+            this.clave = clave;
+        }
+
+        long tomar() {
+            Bloque actual = bloque;
+            return actual == null ? -1 : actual.tomar();
+        }
+
+        /** Reemplaza el bloque agotado; si otro hilo ya lo reemplazó no hace nada. */
+        synchronized void renovar(Bloque agotado) {
+            if (detenido) {
+                throw new IllegalStateException("El asignador de correlativos está detenido");
+            }
+            if (bloque == agotado) {
+                bloque = reservar(clave);
+            }
+        }
+    }
+}
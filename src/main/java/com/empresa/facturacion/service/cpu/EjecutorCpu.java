@@ -0,0 +1,144 @@
+package com.empresa.facturacion.service.cpu;
+
+import com.empresa.facturacion.service.trafico.TraficoSunatException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Pool dedicado a las etapas que consumen CPU: generación del XML, firma, compresión y lectura del CDR.
+ *
+ * Así el event loop de Vert.x queda libre para la E/S y el throughput escala con los núcleos. Son
+ * hilos de plataforma y no virtuales porque las tareas no bloquean: un hilo por núcleo basta. La cola
+ * es acotada; con la cola llena la tarea se rechaza con {@link TraficoSunatException#PROCESAMIENTO_SATURADO}
+ * en vez de acumular trabajo que no se alcanzará a atender.
+ *
+ * Publica {@code executor.*{name=facturacion.cpu}} (hilos activos, tareas en cola, capacidad libre),
+ * el tiempo de espera en cola y los rechazos.
+ */
+@ApplicationScoped
+public class EjecutorCpu {
+
+    private static final Logger LOG = Logger.getLogger(EjecutorCpu.class);
+
+    @Inject
+    MeterRegistry registry;
+
+    /** 0 = un hilo por núcleo. */
+    @ConfigProperty(name = "facturacion.cpu.hilos", defaultValue = "0")
+    int hilos;
+
+    @ConfigProperty(name = "facturacion.cpu.cola", defaultValue = "512")
+    int cola;
+
+    private ThreadPoolExecutor executor;
+    private Timer espera;
+    private Counter rechazos;
+
+    /**
+     * Ejecutor armado sin CDI, para benchmarks y pruebas.
+     */
+    public static EjecutorCpu crear(int hilos, int cola, MeterRegistry registry) {
+        EjecutorCpu ejecutor = new EjecutorCpu();
+        ejecutor.hilos = hilos;
+        ejecutor.cola = cola;
+        ejecutor.registry = registry;
+        ejecutor.iniciar();
+        return ejecutor;
+    }
+
+    @PostConstruct
+    void iniciar() {
+        int tamano = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        AtomicInteger contador = new AtomicInteger();
+        executor = new ThreadPoolExecutor(tamano, tamano, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(cola),
+                tarea -> {
+                    Thread hilo = new Thread(tarea, "facturacion-cpu-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        executor.prestartAllCoreThreads();
+
+        new ExecutorServiceMetrics(executor, "facturacion.cpu", Tags.empty()).bindTo(registry);
+        espera = Timer.builder("facturacion.cpu.espera")
+                .description("Tiempo de las tareas de CPU en cola antes de ejecutarse")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        rechazos = Counter.builder("facturacion.cpu.rechazos")
+                .description("Tareas de CPU rechazadas por cola llena")
+                .register(registry);
+        LOG.infof("Pool de CPU con %d hilos y cola de %d tareas", tamano, cola);
+    }
+
+    @PreDestroy
+    void cerrar() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Ejecuta {@code tarea} en el pool al suscribirse. El resultado se emite desde el hilo del pool,
+     * así las transformaciones livianas que siguen no vuelven al event loop.
+     */
+    public <T> Uni<T> ejecutar(Supplier<T> tarea) {
+        return enPool(tarea, false);
+    }
+
+    /**
+     * Como {@link #ejecutar}, pero con la cola llena la tarea corre en el hilo actual en vez de
+     * rechazarse. Para trabajo que no puede descartarse, como leer el CDR de un comprobante que SUNAT
+     * ya recibió.
+     */
+    public <T> Uni<T> completar(Supplier<T> tarea) {
+        return enPool(tarea, true);
+    }
+
+    private <T> Uni<T> enPool(Supplier<T> tarea, boolean enHiloActualSiSatura) {
+        return Uni.createFrom().emitter(emisor -> {
+            long encolada = System.nanoTime();
+            try {
+                executor.execute(() -> {
+                    espera.record(System.nanoTime() - encolada, TimeUnit.NANOSECONDS);
+                    T resultado;
+                    try {
+                        resultado = tarea.get();
+                    } catch (Throwable error) {
+                        emisor.fail(error);
+                        return;
+                    }
+                    emisor.complete(resultado);
+                });
+            } catch (RejectedExecutionException e) {
+                rechazos.increment();
+                if (enHiloActualSiSatura) {
+                    emisor.complete(tarea.get());
+                    return;
+                }
+                emisor.fail(new TraficoSunatException(TraficoSunatException.PROCESAMIENTO_SATURADO,
+                        "Procesamiento saturado: " + executor.getQueue().size() + " tareas en espera"));
+            }
+        });
+    }
+
+    int enCola() {
+        return executor.getQueue().size();
+    }
+}
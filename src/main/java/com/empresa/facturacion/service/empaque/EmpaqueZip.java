@@ -0,0 +1,120 @@
+package com.empresa.facturacion.service.empaque;
+
+import com.empresa.facturacion.service.empaque.EscritorZip.BufferZip;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Empaquetado de comprobantes en el ZIP que exige SUNAT, con {@link Deflater} y buffers tomados de
+ * un pool acotado.
+ *
+ * Cada {@code Deflater} reserva memoria nativa que solo se libera con {@code end()} o al recolectarse,
+ * así que crear uno por comprobante presiona la memoria fuera del heap. El contenido se comprime en
+ * streaming hacia un único buffer reutilizado; del ZIP se copia solo el resultado exacto.
+ */
+@ApplicationScoped
+public class EmpaqueZip {
+
+    private static final int CAPACIDAD_INICIAL = 16 * 1024;
+    private static final int BLOQUE = 8 * 1024;
+
+    private final int nivel;
+    private final int bufferMaximo;
+    private final BlockingQueue<Recursos> libres;
+
+    public EmpaqueZip() {
+        this(6, 16, 4 * 1024 * 1024);
+    }
+
+    @Inject
+    public EmpaqueZip(@ConfigProperty(name = "sunat.zip.nivel", defaultValue = "6") int nivel,
+                      @ConfigProperty(name = "sunat.zip.pool", defaultValue = "16") int tamanoPool,
+                      @ConfigProperty(name = "sunat.zip.buffer-maximo", defaultValue = "4194304") int bufferMaximo) {
+        if (nivel != Deflater.DEFAULT_COMPRESSION && (nivel < Deflater.NO_COMPRESSION || nivel > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Nivel de compresión inválido: " + nivel);
+        }
+        this.nivel = nivel;
+        this.bufferMaximo = bufferMaximo;
+        this.libres = new ArrayBlockingQueue<>(tamanoPool);
+    }
+
+    /**
+     * Comprime en una entrada {@code nombreEntrada} lo que {@code contenido} escriba. El stream que
+     * recibe {@code contenido} no debe cerrarse ni usarse después de volver.
+     */
+    public <T> Empaquetado<T> comprimir(String nombreEntrada, Contenido<T> contenido) throws Exception {
+        Recursos recursos = tomar();
+        try {
+            EscritorZip zip = new EscritorZip(recursos.buffer, recursos.deflater, recursos.bloque);
+            zip.abrir(nombreEntrada);
+            T resultado = contenido.escribir(zip);
+            zip.cerrar();
+            return new Empaquetado<>(resultado, recursos.buffer.toByteArray(), zip.original());
+        } finally {
+            devolver(recursos);
+        }
+    }
+
+    private Recursos tomar() {
+        Recursos recursos = libres.poll();
+        if (recursos == null) {
+            return new Recursos(new Deflater(nivel, true), new BufferZip(CAPACIDAD_INICIAL), new byte[BLOQUE]);
+        }
+        return recursos;
+    }
+
+    /**
+     * Devuelve los recursos al pool. Un buffer que creció por encima de {@code sunat.zip.buffer-maximo}
+     * se descarta para no retener memoria por un comprobante excepcional; si el pool está lleno el
+     * Deflater se libera en el momento.
+     */
+    private void devolver(Recursos recursos) {
+        recursos.deflater.reset();
+        recursos.buffer.reset();
+        if (recursos.buffer.capacidad() > bufferMaximo) {
+            recursos = new Recursos(recursos.deflater, new BufferZip(CAPACIDAD_INICIAL), recursos.bloque);
+        }
+        if (!libres.offer(recursos)) {
+            recursos.deflater.end();
+        }
+    }
+
+    int libres() {
+        return libres.size();
+    }
+
+    @PreDestroy
+    void cerrar() {
+        Recursos recursos;
+        while ((recursos = libres.poll()) != null) {
+            recursos.deflater.end();
+        }
+    }
+
+    /**
+     * Escribe el contenido de la entrada y devuelve lo que el llamador necesite conservar (p.ej. el hash
+     * de la firma).
+     */
+    @FunctionalInterface
+    public interface Contenido<T> {
+        T escribir(OutputStream salida) throws Exception;
+    }
+
+    /**
+     * @param resultado valor devuelto por el {@link Contenido}
+     * @param zip       archivo ZIP completo
+     * @param original  tamaño sin comprimir de la entrada
+     */
+    public record Empaquetado<T>(T resultado, byte[] zip, long original) {
+    }
+
+    private record Recursos(Deflater deflater, BufferZip buffer, byte[] bloque) {
+    }
+}
@@ -0,0 +1,180 @@
+package com.empresa.facturacion.service.empaque;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * ZIP de una sola entrada DEFLATE, escrito a mano sobre un {@link Deflater} prestado del pool
+ * ({@code ZipOutputStream} crea el suyo y no deja reutilizarlo).
+ *
+ * Todo el archivo queda en un {@link BufferZip} propio, así el CRC y los tamaños se corrigen en la
+ * cabecera local al cerrar la entrada y no hace falta descriptor de datos. Sin ZIP64: SUNAT limita
+ * los archivos a unos pocos MB.
+ */
+final class EscritorZip extends OutputStream {
+
+    private static final int CABECERA_LOCAL = 0x04034b50;
+    private static final int CABECERA_CENTRAL = 0x02014b50;
+    private static final int FIN_DIRECTORIO = 0x06054b50;
+    private static final int VERSION = 20;
+    private static final int UTF8 = 1 << 11;
+    private static final int DEFLATE = 8;
+    /** Posición del CRC en la cabecera local; le siguen el tamaño comprimido y el original. */
+    private static final int POSICION_CRC = 14;
+
+    private final BufferZip destino;
+    private final Deflater deflater;
+    private final byte[] bloque;
+    private final CRC32 crc = new CRC32();
+    private final byte[] unByte = new byte[1];
+
+    private byte[] nombre;
+    private int fecha;
+    private int hora;
+    private long original;
+    private int inicioDatos;
+
+    EscritorZip(BufferZip destino, Deflater deflater, byte[] bloque) {
+        this.destino = destino;
+        this.deflater = deflater;
+        this.bloque = bloque;
+    }
+
+    void abrir(String nombreEntrada) {
+        nombre = nombreEntrada.getBytes(StandardCharsets.UTF_8);
+        LocalDateTime ahora = LocalDateTime.now();
+        fecha = ((ahora.getYear() - 1980) << 9) | (ahora.getMonthValue() << 5) | ahora.getDayOfMonth();
+        hora = (ahora.getHour() << 11) | (ahora.getMinute() << 5) | (ahora.getSecond() >> 1);
+        crc.reset();
+        original = 0;
+
+        entero(CABECERA_LOCAL);
+        corto(VERSION);
+        corto(UTF8);
+        corto(DEFLATE);
+        corto(hora);
+        corto(fecha);
+        entero(0); // CRC, tamaño comprimido y original: se completan en cerrar()
+        entero(0);
+        entero(0);
+        corto(nombre.length);
+        corto(0);
+        destino.write(nombre, 0, nombre.length);
+        inicioDatos = destino.size();
+    }
+
+    @Override
+    public void write(int b) {
+        unByte[0] = (byte) b;
+        write(unByte, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        if (len == 0) {
+            return;
+        }
+        crc.update(b, off, len);
+        original += len;
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            desinflar();
+        }
+    }
+
+    /**
+     * Termina la compresión y escribe el directorio central. El contenido completo del ZIP queda en
+     * el buffer de destino.
+     */
+    void cerrar() throws IOException {
+        deflater.finish();
+        while (!deflater.finished()) {
+            desinflar();
+        }
+        long comprimido = destino.size() - inicioDatos;
+        if (original > 0xFFFFFFFFL || destino.size() > Integer.MAX_VALUE - 1024) {
+            throw new IOException("El contenido excede el tamaño de un ZIP sin ZIP64");
+        }
+        destino.escribirEntero(POSICION_CRC, (int) crc.getValue());
+        destino.escribirEntero(POSICION_CRC + 4, (int) comprimido);
+        destino.escribirEntero(POSICION_CRC + 8, (int) original);
+
+        int inicioDirectorio = destino.size();
+        entero(CABECERA_CENTRAL);
+        corto(VERSION);
+        corto(VERSION);
+        corto(UTF8);
+        corto(DEFLATE);
+        corto(hora);
+        corto(fecha);
+        entero((int) crc.getValue());
+        entero((int) comprimido);
+        entero((int) original);
+        corto(nombre.length);
+        corto(0); // extra
+        corto(0); // comentario
+        corto(0); // disco
+        corto(0); // atributos internos
+        entero(0); // atributos externos
+        entero(0); // desplazamiento de la cabecera local
+        destino.write(nombre, 0, nombre.length);
+        int tamanoDirectorio = destino.size() - inicioDirectorio;
+
+        entero(FIN_DIRECTORIO);
+        corto(0);
+        corto(0);
+        corto(1);
+        corto(1);
+        entero(tamanoDirectorio);
+        entero(inicioDirectorio);
+        corto(0);
+    }
+
+    long original() {
+        return original;
+    }
+
+    private void desinflar() {
+        int n = deflater.deflate(bloque, 0, bloque.length, Deflater.NO_FLUSH);
+        if (n > 0) {
+            destino.write(bloque, 0, n);
+        }
+    }
+
+    private void corto(int valor) {
+        destino.write(valor & 0xFF);
+        destino.write((valor >>> 8) & 0xFF);
+    }
+
+    private void entero(int valor) {
+        corto(valor & 0xFFFF);
+        corto(valor >>> 16);
+    }
+
+    /**
+     * {@link ByteArrayOutputStream} que deja corregir bytes ya escritos y conoce su capacidad, para
+     * decidir si vale la pena devolverlo al pool.
+     */
+    static final class BufferZip extends ByteArrayOutputStream {
+
+        BufferZip(int capacidad) {
+            super(capacidad);
+        }
+
+        void escribirEntero(int posicion, int valor) {
+            buf[posicion] = (byte) valor;
+            buf[posicion + 1] = (byte) (valor >>> 8);
+            buf[posicion + 2] = (byte) (valor >>> 16);
+            buf[posicion + 3] = (byte) (valor >>> 24);
+        }
+
+        int capacidad() {
+            return buf.length;
+        }
+    }
+}
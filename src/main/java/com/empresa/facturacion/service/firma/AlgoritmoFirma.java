@@ -0,0 +1,25 @@
+package com.empresa.facturacion.service.firma;
+
+/**
+ * Algoritmos XMLDSig soportados. SUNAT acepta RSA-SHA1 (valor resumen de 28 caracteres)
+ * y RSA-SHA256.
+ */
+public enum AlgoritmoFirma {
+
+    SHA1("http://www.w3.org/2000/09/xmldsig#rsa-sha1", "SHA1withRSA",
+            "http://www.w3.org/2000/09/xmldsig#sha1", "SHA-1"),
+    SHA256("http://www.w3.org/2001/04/xmldsig-more#rsa-sha256", "SHA256withRSA",
+            "http://www.w3.org/2001/04/xmlenc#sha256", "SHA-256");
+
+    final String uriFirma;
+    final String jcaFirma;
+    final String uriDigest;
+    final String jcaDigest;
+
+    AlgoritmoFirma(String uriFirma, String jcaFirma, String uriDigest, String jcaDigest) {
+        this.uriFirma = uriFirma;
+        this.jcaFirma = jcaFirma;
+        this.uriDigest = uriDigest;
+        this.jcaDigest = jcaDigest;
+    }
+}
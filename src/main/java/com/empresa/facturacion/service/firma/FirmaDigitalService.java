@@ -0,0 +1,258 @@
+package com.empresa.facturacion.service.firma;
+
+import com.empresa.facturacion.service.ubl.ContenidoExtension;
+import com.empresa.facturacion.service.ubl.DocumentoUbl;
+import com.empresa.facturacion.service.ubl.UblWriter;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Optional;
+
+import static com.empresa.facturacion.service.ubl.UblWriter.utf8;
+
+/**
+ * Firma XMLDSig enveloped para comprobantes UBL.
+ *
+ * El certificado PKCS#12 se lee una sola vez; la clave privada y el certificado quedan en
+ * memoria y cada hilo reutiliza sus propias instancias de {@link Signature} y {@link MessageDigest}.
+ *
+ * Como {@link DocumentoUbl} se emite ya en forma canónica C14N, la firma se hace en dos pasadas
+ * de streaming: la primera solo alimenta el digest (con {@code ExtensionContent} vacío, que es
+ * lo que deja la transformación enveloped-signature) y la segunda escribe el documento final
+ * con {@code <ds:Signature>} incrustada. Ninguna de las dos construye el XML en memoria.
+ */
+@ApplicationScoped
+public class FirmaDigitalService {
+
+    private static final Logger LOG = Logger.getLogger(FirmaDigitalService.class);
+
+    private static final String C14N = "http://www.w3.org/TR/2001/REC-xml-c14n-20010315";
+    private static final String ENVELOPED = "http://www.w3.org/2000/09/xmldsig#enveloped-signature";
+
+    private static final byte[] FIRMA_APERTURA = utf8("<ds:Signature Id=\"SignatureSP\"><ds:SignedInfo");
+    private static final byte[] SIGNED_INFO_APERTURA = utf8("<ds:SignedInfo");
+    private static final byte[] SIGNED_INFO_CIERRE = utf8("</ds:DigestValue></ds:Reference></ds:SignedInfo>");
+    private static final byte[] VALOR_FIRMA = utf8("<ds:SignatureValue>");
+    private static final byte[] CERTIFICADO = utf8(
+            "</ds:SignatureValue><ds:KeyInfo><ds:X509Data><ds:X509Certificate>");
+    private static final byte[] FIRMA_CIERRE = utf8(
+            "</ds:X509Certificate></ds:X509Data></ds:KeyInfo></ds:Signature>");
+
+    @ConfigProperty(name = "certificados.path")
+    String certificadosPath;
+
+    @ConfigProperty(name = "certificados.archivo", defaultValue = "certificado.p12")
+    String certificadoArchivo;
+
+    @ConfigProperty(name = "certificados.clave")
+    Optional<String> certificadoClave;
+
+    @ConfigProperty(name = "certificados.alias")
+    Optional<String> certificadoAlias;
+
+    @ConfigProperty(name = "certificados.autofirmado", defaultValue = "false")
+    boolean permitirAutofirmado;
+
+    @ConfigProperty(name = "firma.algoritmo", defaultValue = "SHA1")
+    AlgoritmoFirma algoritmo;
+
+    private volatile MaterialFirma material;
+    private volatile byte[] cuerpoSignedInfo;
+
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(this::nuevoDigest);
+    private final ThreadLocal<Signature> firmantes = ThreadLocal.withInitial(this::nuevoFirmante);
+
+    /**
+     * Firma {@code documento} y lo escribe (con declaración XML) en {@code destino}.
+     *
+     * @return valor resumen ({@code DigestValue} en Base64), que SUNAT denomina hash del CPE
+     */
+    public String firmar(DocumentoUbl documento, OutputStream destino) throws IOException {
+        MaterialFirma m = material();
+        byte[] cuerpo = cuerpoSignedInfo;
+
+        // 1ra pasada: digest de la forma canónica sin la firma
+        MessageDigest md = digests.get();
+        UblWriter canonico = new UblWriter(new DigestOutputStream(md));
+        documento.escribir(canonico, ContenidoExtension.VACIO);
+        canonico.flush();
+        byte[] digestValue = Base64.getEncoder().encode(md.digest());
+
+        // SignedInfo canónico: hereda las declaraciones xmlns del elemento raíz
+        byte[] signatureValue;
+        try {
+            Signature firmante = firmantes.get();
+            firmante.update(SIGNED_INFO_APERTURA);
+            firmante.update(documento.namespacesRaiz());
+            firmante.update(cuerpo);
+            firmante.update(digestValue);
+            firmante.update(SIGNED_INFO_CIERRE);
+            signatureValue = Base64.getEncoder().encode(firmante.sign());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No se pudo firmar el documento", e);
+        }
+
+        // 2da pasada: documento final con la firma incrustada
+        UblWriter w = new UblWriter(destino);
+        w.declaracion();
+        documento.escribir(w, ext -> ext.raw(FIRMA_APERTURA).raw(cuerpo).raw(digestValue).raw(SIGNED_INFO_CIERRE)
+                .raw(VALOR_FIRMA).raw(signatureValue)
+                .raw(CERTIFICADO).raw(m.certificadoBase64())
+                .raw(FIRMA_CIERRE));
+        w.flush();
+
+        return new String(digestValue, StandardCharsets.US_ASCII);
+    }
+
+    public X509Certificate certificado() {
+        return material().certificado();
+    }
+
+    private MaterialFirma material() {
+        MaterialFirma m = material;
+        if (m == null) {
+            synchronized (this) {
+                m = material;
+                if (m == null) {
+                    cuerpoSignedInfo = utf8(">"
+                            + "<ds:CanonicalizationMethod Algorithm=\"" + C14N + "\"></ds:CanonicalizationMethod>"
+                            + "<ds:SignatureMethod Algorithm=\"" + algoritmo.uriFirma + "\"></ds:SignatureMethod>"
+                            + "<ds:Reference URI=\"\"><ds:Transforms>"
+                            + "<ds:Transform Algorithm=\"" + ENVELOPED + "\"></ds:Transform></ds:Transforms>"
+                            + "<ds:DigestMethod Algorithm=\"" + algoritmo.uriDigest + "\"></ds:DigestMethod>"
+                            + "<ds:DigestValue>");
+                    m = cargarMaterial();
+                    material = m;
+                }
+            }
+        }
+        return m;
+    }
+
+    private MaterialFirma cargarMaterial() {
+        Path archivo = Path.of(certificadosPath, certificadoArchivo);
+        try {
+            if (Files.exists(archivo)) {
+                return leerPkcs12(archivo);
+            }
+            if (!permitirAutofirmado) {
+                throw new IllegalStateException("No existe el certificado " + archivo.toAbsolutePath());
+            }
+            LOG.warnf("Certificado %s no encontrado, se usará un certificado autofirmado (solo pruebas)", archivo);
+            return generarAutofirmado();
+        } catch (IOException | GeneralSecurityException | OperatorCreationException e) {
+            throw new IllegalStateException("Error cargando certificado " + archivo, e);
+        }
+    }
+
+    private MaterialFirma leerPkcs12(Path archivo) throws IOException, GeneralSecurityException {
+        char[] clave = certificadoClave.orElse("").toCharArray();
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(archivo)) {
+            keyStore.load(in, clave);
+        }
+
+        String alias = certificadoAlias.orElse(null);
+        if (alias == null) {
+            alias = Collections.list(keyStore.aliases()).stream()
+                    .filter(a -> {
+                        try {
+                            return keyStore.isKeyEntry(a);
+                        } catch (GeneralSecurityException e) {
+                            return false;
+                        }
+                    })
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("El certificado no contiene clave privada"));
+        }
+
+        PrivateKey clavePrivada = (PrivateKey) keyStore.getKey(alias, clave);
+        X509Certificate certificado = (X509Certificate) keyStore.getCertificate(alias);
+        LOG.infof("Certificado cargado: %s (vence %s)", certificado.getSubjectX500Principal(), certificado.getNotAfter());
+        return crearMaterial(clavePrivada, certificado);
+    }
+
+    private MaterialFirma generarAutofirmado() throws GeneralSecurityException, OperatorCreationException {
+        KeyPairGenerator generador = KeyPairGenerator.getInstance("RSA");
+        generador.initialize(2048);
+        KeyPair par = generador.generateKeyPair();
+
+        Instant ahora = Instant.now();
+        X500Name nombre = new X500Name("CN=CERTIFICADO DE PRUEBA, O=EMPRESA DE PRUEBA SAC, C=PE");
+        JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(
+                nombre, BigInteger.valueOf(ahora.toEpochMilli()),
+                Date.from(ahora.minus(Duration.ofDays(1))), Date.from(ahora.plus(Duration.ofDays(365))),
+                nombre, par.getPublic());
+        X509Certificate certificado = new JcaX509CertificateConverter()
+                .getCertificate(builder.build(new JcaContentSignerBuilder("SHA256withRSA").build(par.getPrivate())));
+        return crearMaterial(par.getPrivate(), certificado);
+    }
+
+    private static MaterialFirma crearMaterial(PrivateKey clavePrivada, X509Certificate certificado)
+            throws GeneralSecurityException {
+        return new MaterialFirma(clavePrivada, certificado, Base64.getEncoder().encode(certificado.getEncoded()));
+    }
+
+    private MessageDigest nuevoDigest() {
+        try {
+            return MessageDigest.getInstance(algoritmo.jcaDigest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Signature nuevoFirmante() {
+        try {
+            // Tras sign() la instancia vuelve al estado de initSign, por eso basta inicializarla una vez
+            Signature firmante = Signature.getInstance(algoritmo.jcaFirma);
+            firmante.initSign(material().clavePrivada());
+            return firmante;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class DigestOutputStream extends OutputStream {
+        private final MessageDigest digest;
+
+        DigestOutputStream(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void write(int b) {
+            digest.update((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            digest.update(b, off, len);
+        }
+    }
+}
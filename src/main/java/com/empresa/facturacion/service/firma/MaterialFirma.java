@@ -0,0 +1,11 @@
+package com.empresa.facturacion.service.firma;
+
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+
+/**
+ * Clave y certificado del emisor, cargados una sola vez. {@code certificadoBase64} es el
+ * contenido de {@code <ds:X509Certificate>} ya codificado en ASCII.
+ */
+record MaterialFirma(PrivateKey clavePrivada, X509Certificate certificado, byte[] certificadoBase64) {
+}
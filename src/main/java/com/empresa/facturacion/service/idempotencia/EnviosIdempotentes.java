@@ -0,0 +1,199 @@
+package com.empresa.facturacion.service.idempotencia;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.dto.SunatResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Envíos idempotentes por identidad de comprobante (RUC, tipo, serie y correlativo).
+ *
+ * Los envíos simultáneos de un mismo comprobante comparten un único {@link Uni}: solo el primero
+ * genera, firma y llama a SUNAT. Cuando SUNAT emite un CDR (aceptación o rechazo) el resultado queda
+ * en memoria hasta que vence el TTL o se supera la capacidad, y una repetición con el mismo contenido
+ * recibe ese CDR sin volver a llamar a SUNAT, que respondería "documento ya presentado". Si el contenido
+ * difiere, el comprobante se rechaza con {@link #CONFLICTO}: ese número ya corresponde a otro documento.
+ *
+ * Los resultados sin CDR (errores de red, saturación, faults) no se guardan, así el reintento del
+ * cliente vuelve a intentar el envío. Los comprobantes sin correlativo no tienen identidad todavía y
+ * pasan directo: el correlativo que les asigne el servidor es nuevo.
+ */
+@ApplicationScoped
+public class EnviosIdempotentes {
+
+    private static final Logger LOG = Logger.getLogger(EnviosIdempotentes.class);
+
+    public static final String CONFLICTO = "CONFLICTO_IDEMPOTENCIA";
+
+    private static final List<String> CREDENCIALES = List.of("usuario_sol", "clave_sol");
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "facturacion.idempotencia.capacidad", defaultValue = "10000")
+    int capacidad;
+
+    @ConfigProperty(name = "facturacion.idempotencia.ttl", defaultValue = "24h")
+    Duration ttl;
+
+    private final Map<String, Envio> envios = new ConcurrentHashMap<>();
+    /** Envíos terminados en orden de término: el primero es el próximo en vencer. */
+    private final Queue<Envio> terminados = new ConcurrentLinkedQueue<>();
+
+    private Counter enviados;
+    private Counter agrupados;
+    private Counter repetidos;
+    private Counter conflictos;
+
+    @PostConstruct
+    void iniciar() {
+        enviados = contador("enviado");
+        agrupados = contador("agrupado");
+        repetidos = contador("repetido");
+        conflictos = contador("conflicto");
+        Gauge.builder("facturacion.idempotencia.entradas", envios, Map::size)
+                .description("Comprobantes en curso o con resultado guardado")
+                .register(registry);
+    }
+
+    private Counter contador(String resultado) {
+        return Counter.builder("facturacion.idempotencia")
+                .description("Envíos por resultado de la verificación de idempotencia")
+                .tag("resultado", resultado)
+                .register(registry);
+    }
+
+    /**
+     * Resultado de enviar {@code request} con {@code envio}, compartido con los envíos en curso del mismo
+     * comprobante o tomado del resultado guardado.
+     */
+    public Uni<SunatResponse> enviar(FacturaPruebaRequest request, Supplier<Uni<SunatResponse>> envio) {
+        if (request.correlativo == null) {
+            return envio.get();
+        }
+        String clave = request.emisor.ruc + "-" + request.tipoDocumento + "-" + request.serie + "-" + request.correlativo;
+        byte[] huella = huella(request);
+        long ahora = System.nanoTime();
+        vencer(ahora);
+
+        while (true) {
+            Envio nuevo = new Envio(clave, huella, envio);
+            Envio actual = envios.putIfAbsent(clave, nuevo);
+            if (actual == null) {
+                enviados.increment();
+                return nuevo.resultado;
+            }
+            if (actual.vencido(ahora)) {
+                envios.remove(clave, actual);
+                continue;
+            }
+            if (!Arrays.equals(actual.huella, huella)) {
+                conflictos.increment();
+                LOG.warnf("Comprobante %s repetido con contenido distinto", clave);
+                return Uni.createFrom().item(SunatResponse.error(CONFLICTO,
+                        "El comprobante " + clave + " ya se envió con otro contenido"));
+            }
+            (actual.terminado() ? repetidos : agrupados).increment();
+            LOG.debugf("Comprobante %s %s", clave, actual.terminado() ? "ya enviado" : "en curso");
+            return actual.resultado;
+        }
+    }
+
+    int entradas() {
+        return envios.size();
+    }
+
+    private void terminar(Envio envio, SunatResponse respuesta) {
+        if (respuesta.cdrSunat == null || respuesta.cdrSunat.isEmpty()) {
+            envios.remove(envio.clave, envio);
+            return;
+        }
+        long ahora = System.nanoTime();
+        envio.vence = ahora + ttl.toNanos();
+        terminados.add(envio);
+        vencer(ahora);
+    }
+
+    /**
+     * Quita los resultados vencidos y, si se superó la capacidad, los más antiguos.
+     */
+    private void vencer(long ahora) {
+        Envio primero;
+        while ((primero = terminados.peek()) != null
+                && (primero.vencido(ahora) || envios.size() > capacidad)) {
+            if (terminados.remove(primero)) {
+                envios.remove(primero.clave, primero);
+            }
+        }
+    }
+
+    /**
+     * SHA-256 del contenido del documento: sin las credenciales SOL, que no forman parte del comprobante,
+     * ni la fecha de emisión cuando la puso el servidor, que en un reintento pasada la medianoche sería otra.
+     */
+    private byte[] huella(FacturaPruebaRequest request) {
+        ObjectNode documento = objectMapper.valueToTree(request);
+        if (documento.get("emisor") instanceof ObjectNode emisor) {
+            emisor.remove(CREDENCIALES);
+        }
+        if (!request.fechaEmisionInformada) {
+            documento.remove("fecha_emision");
+        }
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(documento));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No se pudo calcular la huella del comprobante", e);
+        }
+    }
+
+    private final class Envio {
+
+        final String clave;
+        final byte[] huella;
+        final Uni<SunatResponse> resultado;
+        /** nanoTime de vencimiento; mientras está en curso no vence. */
+        volatile long vence = Long.MAX_VALUE;
+
+        Envio(String clave, byte[] huella, Supplier<Uni<SunatResponse>> envio) {
+            this.clave = clave;
+            this.huella = huella;
+            // Perezoso: si otro envío gana el putIfAbsent, este nunca se suscribe
+            this.resultado = Uni.createFrom().<SunatResponse>deferred(envio::get)
+                    .onItem().invoke(respuesta -> terminar(this, respuesta))
+                    .onFailure().invoke(error -> envios.remove(clave, this))
+                    .memoize().indefinitely();
+        }
+
+        boolean terminado() {
+            return vence != Long.MAX_VALUE;
+        }
+
+        boolean vencido(long ahora) {
+            return terminado() && ahora - vence > 0;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.empresa.facturacion.service.lote;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.dto.ResultadoLote;
+import com.empresa.facturacion.service.SunatIntegrationService;
+import com.empresa.facturacion.service.correlativo.AsignadorCorrelativos;
+import com.empresa.facturacion.service.idempotencia.EnviosIdempotentes;
+import com.empresa.facturacion.service.validacion.ValidadorComprobante;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Procesa lotes NDJSON (una factura JSON por línea) enviando cada factura a SUNAT.
+ *
+ * El cuerpo se lee línea a línea solo cuando hay un lugar libre en la ventana de concurrencia:
+ * {@code merge(concurrencia)} pide a la fuente como máximo tantas líneas como envíos en curso,
+ * así la memoria no depende del tamaño del lote. Las lecturas del cuerpo son bloqueantes y se hacen
+ * siempre en el pool de workers, nunca en el event loop que completa los envíos.
+ */
+@ApplicationScoped
+public class LoteFacturasService {
+
+    private static final Logger LOG = Logger.getLogger(LoteFacturasService.class);
+
+    private static final Linea FIN = new Linea(-1, null);
+
+    @Inject
+    SunatIntegrationService sunatService;
+
+    @Inject
+    AsignadorCorrelativos asignador;
+
+    @Inject
+    EnviosIdempotentes idempotencia;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    Validator validator;
+
+    @Inject
+    ValidadorComprobante validador;
+
+    @ConfigProperty(name = "facturacion.lote.concurrencia", defaultValue = "16")
+    int concurrencia;
+
+    private ObjectReader lectorFactura;
+
+    @PostConstruct
+    void iniciar() {
+        lectorFactura = objectMapper.readerFor(FacturaPruebaRequest.class);
+    }
+
+    public Multi<ResultadoLote> procesar(InputStream cuerpo) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(cuerpo, StandardCharsets.UTF_8));
+        AtomicLong numero = new AtomicLong();
+        AtomicLong procesadas = new AtomicLong();
+
+        return Multi.createBy().repeating()
+                .uni(() -> Uni.createFrom().item(() -> leerLinea(reader, numero))
+                        .runSubscriptionOn(Infrastructure.getDefaultWorkerPool()))
+                .until(linea -> linea == FIN)
+                .select().where(linea -> !linea.texto().isBlank())
+                .onItem().transformToUni(this::procesarLinea).merge(concurrencia)
+                .onItem().invoke(procesadas::incrementAndGet)
+                .onTermination().invoke((error, cancelado) -> {
+                    cerrar(reader);
+                    if (error != null) {
+                        LOG.errorf(error, "Lote interrumpido tras %d facturas", procesadas.get());
+                    } else {
+                        LOG.infof("Lote %s: %d facturas procesadas de %d líneas",
+                                cancelado ? "cancelado" : "terminado", procesadas.get(), numero.get());
+                    }
+                });
+    }
+
+    private Uni<ResultadoLote> procesarLinea(Linea linea) {
+        FacturaPruebaRequest request;
+        try {
+            request = lectorFactura.readValue(linea.texto());
+        } catch (JsonProcessingException e) {
+            return Uni.createFrom().item(ResultadoLote.invalido(linea.numero(), null,
+                    List.of("JSON inválido: " + e.getOriginalMessage())));
+        }
+        if (request == null) {
+            return Uni.createFrom().item(ResultadoLote.invalido(linea.numero(), null, List.of("La línea es null")));
+        }
+
+        Set<ConstraintViolation<FacturaPruebaRequest>> violaciones = validator.validate(request);
+        if (!violaciones.isEmpty()) {
+            List<String> errores = violaciones.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .sorted()
+                    .toList();
+            return Uni.createFrom().item(ResultadoLote.invalido(linea.numero(),
+                    request.serie + "-" + request.correlativo, errores));
+        }
+        ValidadorComprobante.Validacion validacion = validador.revisar(request);
+        if (!validacion.valida()) {
+            return Uni.createFrom().item(ResultadoLote.invalido(linea.numero(),
+                    request.serie + "-" + request.correlativo, validacion.errores()));
+        }
+
+        return idempotencia.enviar(request, () -> asignador.completar(request)
+                        .onItem().transformToUni(completa -> sunatService.enviarFactura(completa, validacion.totales())))
+                .onItem().transform(respuesta -> ResultadoLote.de(linea.numero(), request, respuesta))
+                .onFailure().recoverWithItem(error -> ResultadoLote.invalido(linea.numero(),
+                        request.serie + "-" + request.correlativo, List.of("Error interno: " + error.getMessage())));
+    }
+
+    private static Linea leerLinea(BufferedReader reader, AtomicLong numero) {
+        try {
+            String texto = reader.readLine();
+            return texto == null ? FIN : new Linea(numero.incrementAndGet(), texto);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error leyendo el lote", e);
+        }
+    }
+
+    private static void cerrar(BufferedReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            LOG.debugf("Error cerrando el cuerpo del lote: %s", e.getMessage());
+        }
+    }
+
+    private record Linea(long numero, String texto) {
+    }
+}
@@ -0,0 +1,174 @@
+package com.empresa.facturacion.service.metricas;
+
+import com.empresa.facturacion.dto.SunatResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Métricas del envío de comprobantes a SUNAT, expuestas en {@code /q/metrics}.
+ *
+ * Separa el tiempo de las etapas propias (firma y compresión, lectura de la respuesta) del tiempo
+ * de SUNAT (etapa {@code soap}), para saber de qué lado viene un pico de latencia.
+ * Los medidores de cada emisor/tipo de documento se registran una vez y se reutilizan.
+ */
+@ApplicationScoped
+public class MetricasFacturacion {
+
+    public enum Etapa {
+        /** Generación del XML UBL, firma y compresión (una sola pasada de streaming). */
+        FIRMA("firma"),
+        /**
+         * Envío del sobre a billService, con el ZIP codificado en Base64 a medida que se escribe; incluye
+         * la latencia de SUNAT.
+         */
+        SOAP("soap"),
+        /** Lectura de la respuesta y del CDR. */
+        RESPUESTA("respuesta"),
+        /** Traducción de excepciones a respuesta de error. */
+        ERROR("error");
+
+        final String tag;
+
+        Etapa(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final double[] percentiles;
+    private final Map<Clave, Emisor> emisores = new ConcurrentHashMap<>();
+    private final AtomicInteger enviosEnCurso = new AtomicInteger();
+    private final AtomicInteger llamadasSoapEnCurso = new AtomicInteger();
+
+    public MetricasFacturacion(MeterRegistry registry,
+                               @ConfigProperty(name = "facturacion.metricas.percentiles",
+                                       defaultValue = "0.5,0.95,0.99") List<Double> percentiles) {
+        this.registry = registry;
+        this.percentiles = percentiles.stream().mapToDouble(Double::doubleValue).toArray();
+        Gauge.builder("facturacion.en_curso", enviosEnCurso, AtomicInteger::get)
+                .description("Envíos de comprobantes en curso")
+                .tag("alcance", "envio")
+                .register(registry);
+        Gauge.builder("facturacion.en_curso", llamadasSoapEnCurso, AtomicInteger::get)
+                .description("Llamadas a billService en curso")
+                .tag("alcance", "soap")
+                .register(registry);
+    }
+
+    public Emisor emisor(String ruc, String tipoDocumento) {
+        return emisores.computeIfAbsent(new Clave(ruc, tipoDocumento), this::crearEmisor);
+    }
+
+    /**
+     * Cuenta el envío completo como en curso mientras la Uni no termine.
+     */
+    public <T> Uni<T> enCurso(Uni<T> envio) {
+        return contar(envio, enviosEnCurso);
+    }
+
+    private <T> Uni<T> contar(Uni<T> uni, AtomicInteger contador) {
+        return Uni.createFrom().deferred(() -> {
+            contador.incrementAndGet();
+            return uni.onTermination().invoke(contador::decrementAndGet);
+        });
+    }
+
+    private Emisor crearEmisor(Clave clave) {
+        return new Emisor(Tags.of("ruc", String.valueOf(clave.ruc()), "tipo", String.valueOf(clave.tipoDocumento())));
+    }
+
+    private record Clave(String ruc, String tipoDocumento) {
+    }
+
+    /**
+     * Medidores de un emisor y tipo de documento.
+     */
+    public final class Emisor {
+
+        private final Tags tags;
+        private final Map<Etapa, Timer> etapas = new EnumMap<>(Etapa.class);
+        private final DistributionSummary bytesXml;
+        private final DistributionSummary bytesZip;
+        private final DistributionSummary bytesBase64;
+        private final Map<String, Counter> respuestas = new ConcurrentHashMap<>();
+
+        private Emisor(Tags tags) {
+            this.tags = tags;
+            for (Etapa etapa : Etapa.values()) {
+                etapas.put(etapa, Timer.builder("facturacion.etapa")
+                        .description("Duración de cada etapa del envío a SUNAT")
+                        .tags(tags).tag("etapa", etapa.tag)
+                        .publishPercentiles(percentiles)
+                        .register(registry));
+            }
+            bytesXml = tamano("xml");
+            bytesZip = tamano("zip");
+            bytesBase64 = tamano("base64");
+        }
+
+        public void registrar(Etapa etapa, long nanos) {
+            etapas.get(etapa).record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public <T> T medir(Etapa etapa, Supplier<T> accion) {
+            return etapas.get(etapa).record(accion);
+        }
+
+        /**
+         * Mide una etapa asíncrona desde la suscripción hasta su término (con item o falla).
+         * La etapa {@link Etapa#SOAP} además cuenta como llamada en curso.
+         */
+        public <T> Uni<T> medir(Etapa etapa, Uni<T> accion) {
+            Timer timer = etapas.get(etapa);
+            Uni<T> medida = Uni.createFrom().deferred(() -> {
+                long inicio = System.nanoTime();
+                return accion.onTermination().invoke(() -> timer.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS));
+            });
+            return etapa == Etapa.SOAP ? contar(medida, llamadasSoapEnCurso) : medida;
+        }
+
+        public void tamanos(long xml, long zip, long base64) {
+            bytesXml.record(xml);
+            bytesZip.record(zip);
+            bytesBase64.record(base64);
+        }
+
+        /**
+         * Cuenta la respuesta final por código: 0/4xxx del CDR, códigos de fault de SUNAT o códigos internos.
+         */
+        public SunatResponse respuesta(SunatResponse respuesta) {
+            String codigo = respuesta.codigoRespuesta == null ? "desconocido" : respuesta.codigoRespuesta;
+            respuestas.computeIfAbsent(codigo + (respuesta.success ? "+" : "-"), k -> Counter.builder("sunat.respuestas")
+                            .description("Respuestas de SUNAT por código")
+                            .tags(tags).tag("codigo", codigo)
+                            .tag("resultado", respuesta.success ? "aceptado" : "error")
+                            .register(registry))
+                    .increment();
+            return respuesta;
+        }
+
+        private DistributionSummary tamano(String formato) {
+            return DistributionSummary.builder("facturacion.payload")
+                    .description("Tamaño del comprobante enviado")
+                    .baseUnit("bytes")
+                    .tags(tags).tag("formato", formato)
+                    .publishPercentiles(percentiles)
+                    .register(registry);
+        }
+    }
+}
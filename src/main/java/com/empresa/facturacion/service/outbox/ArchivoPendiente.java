@@ -0,0 +1,93 @@
+package com.empresa.facturacion.service.outbox;
+
+import com.empresa.facturacion.entity.ComprobanteOutbox;
+import com.empresa.facturacion.service.SunatIntegrationService;
+import com.empresa.facturacion.service.particion.ParticionesRuc;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+
+import static com.empresa.facturacion.entity.Persistencia.HINT_LOCK_TIMEOUT;
+import static com.empresa.facturacion.entity.Persistencia.SKIP_LOCKED;
+
+/**
+ * Reintento del archivo de comprobantes ya respondidos por SUNAT.
+ *
+ * Si al recibir el CDR no se pudo escribir el XML firmado y el CDR en {@code ArchivoComprobantes}, el
+ * outbox conserva el ZIP y el CDR ({@code cdrSinArchivar}) aunque el comprobante esté en un estado final.
+ * Cada ciclo toma un lote de esas filas de las particiones del nodo, saltando las que otro nodo tiene
+ * bloqueadas, y las libera al archivarlas.
+ */
+@ApplicationScoped
+public class ArchivoPendiente {
+
+    private static final Logger LOG = Logger.getLogger(ArchivoPendiente.class);
+
+    @Inject
+    OutboxService outbox;
+
+    @Inject
+    SunatIntegrationService sunatService;
+
+    @Inject
+    ParticionesRuc particiones;
+
+    @ConfigProperty(name = "outbox.habilitado", defaultValue = "true")
+    boolean habilitado;
+
+    @ConfigProperty(name = "outbox.archivo.lote", defaultValue = "100")
+    int tamanoLote;
+
+    @Scheduled(every = "{outbox.archivo.intervalo}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void programado() {
+        if (habilitado) {
+            archivar();
+        }
+    }
+
+    /**
+     * Archiva un lote de comprobantes pendientes.
+     *
+     * @return cuántos quedaron archivados
+     */
+    public int archivar() {
+        List<Integer> propias = particiones.propias();
+        if (propias.isEmpty()) {
+            return 0;
+        }
+        // La transacción mantiene el bloqueo de las filas mientras se escriben en el archivo
+        return QuarkusTransaction.requiringNew().call(() -> {
+            List<ComprobanteOutbox> pendientes = ComprobanteOutbox.<ComprobanteOutbox>find(
+                            "particion in ?1 and cdrSinArchivar is not null order by id", propias)
+                    .withLock(LockModeType.PESSIMISTIC_WRITE)
+                    .withHint(HINT_LOCK_TIMEOUT, SKIP_LOCKED)
+                    .page(0, tamanoLote)
+                    .list();
+            int archivados = 0;
+            for (ComprobanteOutbox comprobante : pendientes) {
+                try {
+                    sunatService.archivar(outbox.leerSolicitud(comprobante), comprobante.zip, comprobante.cdrSinArchivar);
+                } catch (IOException | RuntimeException e) {
+                    LOG.warnf("Outbox %d sigue sin archivar: %s", comprobante.id, e.getMessage());
+                    continue;
+                }
+                comprobante.zip = null;
+                comprobante.cdrSinArchivar = null;
+                comprobante.actualizadoEn = Instant.now();
+                archivados++;
+            }
+            if (archivados > 0) {
+                LOG.infof("Archivados %d comprobantes pendientes", archivados);
+            }
+            return archivados;
+        });
+    }
+}
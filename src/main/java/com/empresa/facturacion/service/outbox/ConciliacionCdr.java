@@ -0,0 +1,169 @@
+package com.empresa.facturacion.service.outbox;
+
+import com.empresa.facturacion.dto.SunatResponse;
+import com.empresa.facturacion.entity.ComprobanteOutbox;
+import com.empresa.facturacion.service.SunatIntegrationService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Conciliación de envíos inciertos con getStatusCdr.
+ *
+ * Si un envío falla de forma que SUNAT pudo haberlo recibido (timeout, conexión cortada, 5xx sin SOAP
+ * Fault, o un reenvío al que SUNAT responde 1033 porque ya lo tenía) el comprobante queda INCIERTO en el
+ * outbox, igual que los que quedaron ENVIADO porque el nodo cayó esperando la respuesta. Cada ciclo reclama un lote y consulta su CDR: si SUNAT lo tiene se
+ * registra como si hubiera llegado la respuesta de sendBill; si no existe, vuelve a FIRMADO para
+ * reenviarlo; si la consulta no es concluyente, se consulta de nuevo más tarde.
+ *
+ * Tras una caída de SUNAT (p.ej. a fin de mes) pueden acumularse miles de inciertos. Para no saturar a
+ * SUNAT ni a los workers cada ciclo toma un lote acotado y consulta a lo sumo
+ * {@code sunat.conciliacion.concurrencia} RUC a la vez; dentro de un RUC, una consulta por vez con una
+ * pausa entre ellas. Las consultas pasan además por el control de tráfico del RUC. Como recorrer el lote
+ * puede tomar más que {@code outbox.lease}, cada comprobante renueva su lease antes de consultarse.
+ */
+@ApplicationScoped
+public class ConciliacionCdr {
+
+    private static final Logger LOG = Logger.getLogger(ConciliacionCdr.class);
+
+    /** statusCode de getStatusCdr cuando SUNAT no tiene el comprobante. */
+    static final String NO_EXISTE = "0011";
+
+    enum Resultado { CONCILIADO, NO_RECIBIDO, POSPUESTO }
+
+    @Inject
+    OutboxService outbox;
+
+    @Inject
+    SunatIntegrationService sunatService;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "sunat.conciliacion.habilitada", defaultValue = "true")
+    boolean habilitada;
+
+    @ConfigProperty(name = "sunat.conciliacion.lote", defaultValue = "200")
+    int tamanoLote;
+
+    @ConfigProperty(name = "sunat.conciliacion.concurrencia", defaultValue = "4")
+    int concurrencia;
+
+    @ConfigProperty(name = "sunat.conciliacion.pausa-por-ruc", defaultValue = "500ms")
+    Duration pausaPorRuc;
+
+    private final Map<Resultado, Counter> resultados = new EnumMap<>(Resultado.class);
+
+    @PostConstruct
+    void iniciar() {
+        for (Resultado resultado : Resultado.values()) {
+            resultados.put(resultado, Counter.builder("facturacion.conciliacion")
+                    .description("Envíos inciertos consultados con getStatusCdr, por resultado")
+                    .tag("resultado", resultado.name().toLowerCase())
+                    .register(registry));
+        }
+    }
+
+    @Scheduled(every = "{sunat.conciliacion.intervalo}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void programada() {
+        if (habilitada) {
+            conciliar();
+        }
+    }
+
+    /**
+     * Concilia un lote de envíos inciertos y espera a que terminen sus consultas.
+     *
+     * @return cuántos comprobantes se consultaron
+     */
+    public int conciliar() {
+        List<ComprobanteOutbox> lote = outbox.reclamarInciertos(tamanoLote);
+        if (lote.isEmpty()) {
+            return 0;
+        }
+        Map<String, List<ComprobanteOutbox>> porRuc = lote.stream()
+                .collect(Collectors.groupingBy(comprobante -> comprobante.ruc, LinkedHashMap::new, Collectors.toList()));
+        LOG.infof("Conciliando %d envíos inciertos de %d RUC", lote.size(), porRuc.size());
+        Multi.createFrom().iterable(porRuc.values())
+                .onItem().transformToUni(this::conciliarRuc).merge(concurrencia)
+                .collect().last()
+                .await().indefinitely();
+        return lote.size();
+    }
+
+    /**
+     * Consultas de un mismo RUC, una por vez y con {@code sunat.conciliacion.pausa-por-ruc} entre ellas.
+     */
+    private Uni<Void> conciliarRuc(List<ComprobanteOutbox> comprobantes) {
+        return Multi.createFrom().iterable(comprobantes)
+                .onItem().transformToUniAndConcatenate(comprobante -> pausaPorRuc.isZero() ? conciliar(comprobante)
+                        : conciliar(comprobante).onItem().delayIt().by(pausaPorRuc))
+                .collect().last()
+                .replaceWithVoid();
+    }
+
+    /**
+     * Consulta un comprobante del lote tras renovar su lease: los últimos del lote pueden llegar aquí
+     * después de que venciera el del reclamo.
+     */
+    Uni<Resultado> conciliar(ComprobanteOutbox comprobante) {
+        return Uni.createFrom().item(() -> outbox.tomar(comprobante))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                .chain(tomado -> {
+                    if (!tomado) {
+                        // Otro nodo lo reclamó cuando venció el lease; lo concilia o lo envía él
+                        LOG.debugf("Outbox %d ya fue reclamado por otro nodo", comprobante.id);
+                        return Uni.createFrom().item(Resultado.POSPUESTO);
+                    }
+                    return consultar(comprobante);
+                });
+    }
+
+    private Uni<Resultado> consultar(ComprobanteOutbox comprobante) {
+        SunatIntegrationService.CompressedDocument doc =
+                new SunatIntegrationService.CompressedDocument(comprobante.hashCpe, comprobante.zip, null);
+        return Uni.createFrom().deferred(() -> sunatService.consultarCdr(doc, outbox.leerSolicitud(comprobante)))
+                // La respuesta llega en un hilo de Vert.x y registrarla bloquea en la base de datos
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .onItem().transform(respuesta -> registrar(comprobante, respuesta))
+                .onFailure().recoverWithItem(error -> {
+                    // La fila se retoma cuando venza su lease
+                    LOG.errorf(error, "Error conciliando outbox %d", comprobante.id);
+                    return Resultado.POSPUESTO;
+                });
+    }
+
+    private Resultado registrar(ComprobanteOutbox comprobante, SunatResponse respuesta) {
+        Resultado resultado;
+        if (respuesta.cdrSunat != null && !respuesta.cdrSunat.isEmpty()) {
+            outbox.registrarRespuesta(comprobante.id, respuesta, false);
+            resultado = Resultado.CONCILIADO;
+        } else if (NO_EXISTE.equals(respuesta.codigoRespuesta)) {
+            outbox.registrarNoRecibido(comprobante.id);
+            resultado = Resultado.NO_RECIBIDO;
+        } else {
+            outbox.posponerConciliacion(comprobante.id, respuesta);
+            resultado = Resultado.POSPUESTO;
+        }
+        resultados.get(resultado).increment();
+        LOG.infof("Conciliación de %s (outbox %d): %s, %s %s", comprobante.numeroDocumento(), comprobante.id,
+                resultado, respuesta.codigoRespuesta, respuesta.descripcion);
+        return resultado;
+    }
+}
@@ -0,0 +1,336 @@
+package com.empresa.facturacion.service.outbox;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.dto.SunatResponse;
+import com.empresa.facturacion.entity.ComprobanteOutbox;
+import com.empresa.facturacion.entity.EstadoComprobante;
+import com.empresa.facturacion.service.particion.ParticionesRuc;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static com.empresa.facturacion.entity.Persistencia.HINT_LOCK_TIMEOUT;
+import static com.empresa.facturacion.entity.Persistencia.SKIP_LOCKED;
+import static com.empresa.facturacion.entity.Persistencia.recortar;
+
+/**
+ * Cola persistente de comprobantes. Cada transición de estado se confirma en su propia
+ * transacción corta, de modo que un reinicio nunca pierde un comprobante aceptado por la API.
+ */
+@ApplicationScoped
+public class OutboxService {
+
+    private static final List<EstadoComprobante> RECLAMABLES =
+            List.of(EstadoComprobante.PENDIENTE, EstadoComprobante.FIRMADO);
+    /** Envíos cuyo resultado aún no se conoce: detienen a los comprobantes posteriores de su RUC. */
+    private static final List<EstadoComprobante> EN_VUELO =
+            List.of(EstadoComprobante.ENVIADO, EstadoComprobante.INCIERTO);
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    ParticionesRuc particiones;
+
+    @ConfigProperty(name = "outbox.lease", defaultValue = "2m")
+    Duration lease;
+
+    @ConfigProperty(name = "outbox.max-intentos", defaultValue = "5")
+    int maxIntentos;
+
+    @ConfigProperty(name = "outbox.backoff-inicial", defaultValue = "5s")
+    Duration backoffInicial;
+
+    @ConfigProperty(name = "outbox.conciliacion.espera", defaultValue = "1m")
+    Duration esperaConciliacion;
+
+    @ConfigProperty(name = "outbox.conciliacion.max-consultas", defaultValue = "10")
+    int maxConsultas;
+
+    // Lo más que puede tardar un envío: espera de cuota, reintentos y la lectura del último intento
+    @ConfigProperty(name = "sunat.trafico.espera-maxima-cuota", defaultValue = "30s")
+    Duration esperaMaximaCuota;
+
+    @ConfigProperty(name = "sunat.trafico.presupuesto-reintentos", defaultValue = "30s")
+    Duration presupuestoReintentos;
+
+    @ConfigProperty(name = "sunat.conexion.read-timeout", defaultValue = "120S")
+    Duration readTimeout;
+
+    @Transactional
+    public ComprobanteOutbox encolar(FacturaPruebaRequest request) {
+        ComprobanteOutbox comprobante = new ComprobanteOutbox();
+        comprobante.ruc = request.emisor.ruc;
+        comprobante.tipoDocumento = request.tipoDocumento;
+        comprobante.serie = request.serie;
+        comprobante.correlativo = request.correlativo;
+        comprobante.particion = particiones.particion(comprobante.ruc);
+        try {
+            comprobante.payload = objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("No se pudo serializar el comprobante", e);
+        }
+        // Flush aquí: un comprobante repetido falla con PersistenceException al llamador, no al confirmar
+        comprobante.persistAndFlush();
+        return comprobante;
+    }
+
+    public boolean existe(FacturaPruebaRequest request) {
+        return ComprobanteOutbox.count("ruc = ?1 and tipoDocumento = ?2 and serie = ?3 and correlativo = ?4",
+                request.emisor.ruc, request.tipoDocumento, request.serie, request.correlativo) > 0;
+    }
+
+    public ComprobanteOutbox buscar(long id) {
+        return ComprobanteOutbox.findById(id);
+    }
+
+    /**
+     * Reclama hasta {@code limite} comprobantes listos de las particiones de este nodo.
+     */
+    public List<ComprobanteOutbox> reclamar(int limite) {
+        return reclamar(limite, particiones.propias());
+    }
+
+    /**
+     * Reclama hasta {@code limite} comprobantes listos de {@code propias}. Las filas bloqueadas por otro
+     * worker se saltan (FOR UPDATE SKIP LOCKED) y las reclamadas quedan con un lease vigente; el worker
+     * lo renueva con {@link #tomar(ComprobanteOutbox)} al llegar a cada una.
+     *
+     * Un comprobante no se reclama mientras otro de su RUC tenga lease vigente (tras un traspaso de
+     * partición el nuevo dueño espera a que el anterior termine lo que tenía en curso), ni mientras uno
+     * anterior de su RUC esté ENVIADO, INCIERTO o esperando su reintento con backoff. Así los envíos de un
+     * RUC siguen el orden de encolado aunque uno quede pendiente de conciliación o de reintento.
+     */
+    public List<ComprobanteOutbox> reclamar(int limite, Collection<Integer> propias) {
+        if (propias.isEmpty()) {
+            return List.of();
+        }
+        return QuarkusTransaction.requiringNew().call(() -> {
+            Instant ahora = Instant.now();
+            List<ComprobanteOutbox> lote = ComprobanteOutbox.<ComprobanteOutbox>find(
+                            "from ComprobanteOutbox c where c.particion in ?1 and c.estado in ?2"
+                                    + " and c.siguienteIntento <= ?3 and (c.bloqueadoHasta is null or c.bloqueadoHasta < ?3)"
+                                    + " and not exists (from ComprobanteOutbox o where o.ruc = c.ruc and (o.bloqueadoHasta >= ?3"
+                                    + " or (o.id < c.id and (o.estado in ?4 or (o.estado in ?2 and o.siguienteIntento > ?3)))))"
+                                    + " order by c.id", propias, RECLAMABLES, ahora, EN_VUELO)
+                    .withLock(LockModeType.PESSIMISTIC_WRITE)
+                    .withHint(HINT_LOCK_TIMEOUT, SKIP_LOCKED)
+                    .page(0, limite)
+                    .list();
+            // En milisegundos: el valor vuelve de la base de datos igual y sirve para reconocer el reclamo
+            Instant vence = ahora.plus(lease).truncatedTo(ChronoUnit.MILLIS);
+            for (ComprobanteOutbox comprobante : lote) {
+                comprobante.bloqueadoHasta = vence;
+            }
+            return lote;
+        });
+    }
+
+    /**
+     * Renueva el lease de un comprobante reclamado cuando el worker o la conciliación empiezan a
+     * procesarlo, así cada documento del lote tiene su propio {@code outbox.lease} y no el que quedó del
+     * reclamo.
+     *
+     * @return false si el lease del reclamo venció y otro worker ya lo volvió a reclamar
+     */
+    public boolean tomar(ComprobanteOutbox comprobante) {
+        Instant vence = Instant.now().plus(lease).truncatedTo(ChronoUnit.MILLIS);
+        int filas = QuarkusTransaction.requiringNew().call(() -> ComprobanteOutbox.update(
+                "bloqueadoHasta = ?1, actualizadoEn = ?2 where id = ?3 and bloqueadoHasta = ?4",
+                vence, Instant.now(), comprobante.id, comprobante.bloqueadoHasta));
+        if (filas == 0) {
+            return false;
+        }
+        comprobante.bloqueadoHasta = vence;
+        return true;
+    }
+
+    /**
+     * El comprobante no pudo procesarse ahora (pool de CPU saturado): se libera el lease y se retoma
+     * tras {@code outbox.backoff-inicial}; los posteriores de su RUC esperan a que se envíe.
+     */
+    public void posponer(long id) {
+        actualizar(id, comprobante -> {
+            comprobante.siguienteIntento = Instant.now().plus(backoffInicial);
+            comprobante.bloqueadoHasta = null;
+        });
+    }
+
+    /**
+     * Reclama hasta {@code limite} envíos de resultado desconocido: los INCIERTO cuya próxima consulta
+     * ya toca y los que quedaron ENVIADO con el lease vencido hace más de {@code outbox.conciliacion.espera}
+     * (el nodo cayó esperando a SUNAT). Igual que {@link #reclamar(int)}, solo toma filas de las
+     * particiones de este nodo y salta las bloqueadas; cada fila se toma con {@link #tomar} antes de
+     * consultarla, porque la conciliación recorre el lote de a pocos RUC y con pausas.
+     */
+    public List<ComprobanteOutbox> reclamarInciertos(int limite) {
+        List<Integer> propias = particiones.propias();
+        if (propias.isEmpty()) {
+            return List.of();
+        }
+        return QuarkusTransaction.requiringNew().call(() -> {
+            Instant ahora = Instant.now();
+            List<ComprobanteOutbox> lote = ComprobanteOutbox.<ComprobanteOutbox>find(
+                            "particion in ?5 and ((estado = ?1 and siguienteIntento <= ?3"
+                                    + " and (bloqueadoHasta is null or bloqueadoHasta < ?3))"
+                                    + " or (estado = ?2 and bloqueadoHasta < ?4)) order by siguienteIntento",
+                            EstadoComprobante.INCIERTO, EstadoComprobante.ENVIADO, ahora, ahora.minus(esperaConciliacion),
+                            propias)
+                    .withLock(LockModeType.PESSIMISTIC_WRITE)
+                    .withHint(HINT_LOCK_TIMEOUT, SKIP_LOCKED)
+                    .page(0, limite)
+                    .list();
+            // Truncado como en tomar(), que lo compara con el de la base para renovarlo
+            Instant vence = ahora.plus(lease).truncatedTo(ChronoUnit.MILLIS);
+            for (ComprobanteOutbox comprobante : lote) {
+                comprobante.bloqueadoHasta = vence;
+            }
+            return lote;
+        });
+    }
+
+    public FacturaPruebaRequest leerSolicitud(ComprobanteOutbox comprobante) {
+        try {
+            return objectMapper.readValue(comprobante.payload, FacturaPruebaRequest.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Payload inválido en outbox " + comprobante.id, e);
+        }
+    }
+
+    public void marcarFirmado(long id, String hashCpe, byte[] zip) {
+        actualizar(id, comprobante -> {
+            comprobante.estado = EstadoComprobante.FIRMADO;
+            comprobante.hashCpe = hashCpe;
+            comprobante.zip = zip;
+        });
+    }
+
+    /**
+     * El envío a SUNAT empieza: el lease se extiende a lo más que puede durar el envío (espera de cuota
+     * incluida), para que otro worker no lo reclame ni la conciliación tome como caído un envío que sigue
+     * en curso.
+     */
+    public void reservarEnvio(long id) {
+        actualizar(id, comprobante -> comprobante.bloqueadoHasta = Instant.now().plus(duracionMaximaEnvio()));
+    }
+
+    /**
+     * La petición salió hacia SUNAT: recién aquí cuenta como intento. Los rechazos locales del control de
+     * tráfico no llegan a marcarse y se posponen sin gastar intentos.
+     */
+    public void marcarEnviado(long id) {
+        actualizar(id, comprobante -> {
+            comprobante.estado = EstadoComprobante.ENVIADO;
+            comprobante.intentos++;
+        });
+    }
+
+    Duration duracionMaximaEnvio() {
+        return esperaMaximaCuota.plus(presupuestoReintentos).plus(readTimeout).plus(lease);
+    }
+
+    /**
+     * Registra la respuesta de SUNAT. Las fallas transitorias vuelven a FIRMADO con backoff
+     * exponencial (se reenvía el mismo ZIP) hasta agotar {@code outbox.max-intentos}.
+     */
+    public void registrarRespuesta(long id, SunatResponse respuesta, boolean reintentable) {
+        actualizar(id, comprobante -> {
+            comprobante.codigoRespuesta = respuesta.codigoRespuesta;
+            comprobante.descripcion = recortar(respuesta.descripcion);
+            if (respuesta.success) {
+                comprobante.estado = EstadoComprobante.ACEPTADO;
+            } else if (reintentable && comprobante.intentos < maxIntentos) {
+                comprobante.estado = EstadoComprobante.FIRMADO;
+                comprobante.siguienteIntento = Instant.now()
+                        .plus(backoffInicial.multipliedBy(1L << Math.min(comprobante.intentos - 1, 10)));
+            } else {
+                comprobante.estado = reintentable ? EstadoComprobante.ERROR : EstadoComprobante.RECHAZADO;
+            }
+            comprobante.bloqueadoHasta = null;
+            if (comprobante.estado.esFinal() && respuesta.errorArchivo != null) {
+                // El ZIP y el CDR quedan hasta que ArchivoPendiente logre archivarlos
+                comprobante.cdrSinArchivar = respuesta.cdrSunat;
+            } else if (comprobante.estado.esFinal()) {
+                comprobante.zip = null;
+            }
+        });
+    }
+
+    /**
+     * El envío falló de forma que SUNAT pudo haberlo recibido: queda INCIERTO, con su ZIP, hasta que la
+     * conciliación consulte el CDR. Reenviarlo a ciegas podría duplicarlo.
+     */
+    public void registrarIncierto(long id, SunatResponse respuesta) {
+        actualizar(id, comprobante -> {
+            comprobante.estado = EstadoComprobante.INCIERTO;
+            comprobante.codigoRespuesta = respuesta.codigoRespuesta;
+            comprobante.descripcion = recortar(respuesta.descripcion);
+            comprobante.siguienteIntento = Instant.now().plus(esperaConciliacion);
+            comprobante.bloqueadoHasta = null;
+        });
+    }
+
+    /**
+     * SUNAT no tiene el comprobante: vuelve a FIRMADO para que un worker reenvíe el mismo ZIP. Si la
+     * consulta y el reenvío se contradicen (no existe, pero el reenvío da 1033) se deja de insistir tras
+     * {@code outbox.conciliacion.max-consultas} y queda en ERROR.
+     */
+    public void registrarNoRecibido(long id) {
+        actualizar(id, comprobante -> {
+            comprobante.consultas++;
+            comprobante.estado = comprobante.consultas >= maxConsultas
+                    ? EstadoComprobante.ERROR : EstadoComprobante.FIRMADO;
+            comprobante.siguienteIntento = Instant.now();
+            comprobante.bloqueadoHasta = null;
+        });
+    }
+
+    /**
+     * La consulta no fue concluyente (SUNAT no respondió o devolvió otro estado): se vuelve a consultar
+     * con backoff exponencial, y tras {@code outbox.conciliacion.max-consultas} queda en ERROR.
+     */
+    public void posponerConciliacion(long id, SunatResponse respuesta) {
+        actualizar(id, comprobante -> {
+            comprobante.consultas++;
+            comprobante.codigoRespuesta = respuesta.codigoRespuesta;
+            comprobante.descripcion = recortar(respuesta.descripcion);
+            if (comprobante.consultas >= maxConsultas) {
+                comprobante.estado = EstadoComprobante.ERROR;
+            } else {
+                comprobante.estado = EstadoComprobante.INCIERTO;
+                comprobante.siguienteIntento = Instant.now()
+                        .plus(esperaConciliacion.multipliedBy(1L << Math.min(comprobante.consultas - 1, 6)));
+            }
+            comprobante.bloqueadoHasta = null;
+        });
+    }
+
+    public void registrarError(long id, Throwable error) {
+        actualizar(id, comprobante -> {
+            comprobante.estado = EstadoComprobante.ERROR;
+            comprobante.codigoRespuesta = "ERROR_INTERNO";
+            comprobante.descripcion = recortar(String.valueOf(error.getMessage()));
+            comprobante.bloqueadoHasta = null;
+        });
+    }
+
+    private void actualizar(long id, Consumer<ComprobanteOutbox> cambio) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            ComprobanteOutbox comprobante = ComprobanteOutbox.findById(id);
+            cambio.accept(comprobante);
+            comprobante.actualizadoEn = Instant.now();
+        });
+    }
+}
@@ -0,0 +1,192 @@
+package com.empresa.facturacion.service.outbox;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.dto.SunatResponse;
+import com.empresa.facturacion.entity.ComprobanteOutbox;
+import com.empresa.facturacion.entity.EstadoComprobante;
+import com.empresa.facturacion.service.SunatIntegrationService;
+import com.empresa.facturacion.service.cdr.ClaseCodigoSunat;
+import com.empresa.facturacion.service.particion.ParticionesRuc;
+import com.empresa.facturacion.service.trafico.TraficoSunatException;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool de workers que drena el outbox por lotes. El tamaño del pool es independiente de la
+ * capacidad de ingesta de la API, así cada lado escala por separado.
+ */
+@ApplicationScoped
+public class OutboxWorkerPool {
+
+    private static final Logger LOG = Logger.getLogger(OutboxWorkerPool.class);
+
+    // Fallas de transporte/servidor y faults transitorios de SUNAT: el documento puede reenviarse tal cual
+    private static final Set<String> CODIGOS_REINTENTABLES = Set.of("SUNAT_500", "SUNAT_CONECTIVIDAD",
+            TraficoSunatException.CIRCUITO_ABIERTO, TraficoSunatException.SATURADO,
+            TraficoSunatException.CUOTA_EXCEDIDA);
+
+    // Rechazos del control de tráfico local: si la petición no llegó a salir no cuentan como intento
+    private static final Set<String> CODIGOS_TRAFICO = Set.of(TraficoSunatException.CIRCUITO_ABIERTO,
+            TraficoSunatException.SATURADO, TraficoSunatException.CUOTA_EXCEDIDA);
+
+    // Fallas en las que SUNAT pudo haber recibido el documento: se concilian antes de reenviar. Los
+    // "ya presentado" (ClaseCodigoSunat.PRESENTADO) también: un envío anterior llegó aunque su respuesta no
+    private static final Set<String> CODIGOS_INCIERTOS = Set.of("SUNAT_500", "SUNAT_CONECTIVIDAD");
+
+    @Inject
+    OutboxService outbox;
+
+    @Inject
+    SunatIntegrationService sunatService;
+
+    @Inject
+    ParticionesRuc particiones;
+
+    @ConfigProperty(name = "outbox.habilitado", defaultValue = "true")
+    boolean habilitado;
+
+    @ConfigProperty(name = "outbox.workers", defaultValue = "4")
+    int workers;
+
+    @ConfigProperty(name = "outbox.lote", defaultValue = "20")
+    int tamanoLote;
+
+    @ConfigProperty(name = "outbox.espera-sin-trabajo", defaultValue = "1s")
+    Duration esperaSinTrabajo;
+
+    private volatile boolean activo;
+    private ExecutorService executor;
+
+    void iniciar(@Observes StartupEvent event) {
+        if (!habilitado) {
+            LOG.info("Outbox deshabilitado");
+            return;
+        }
+        activo = true;
+        AtomicInteger contador = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, tarea -> {
+            Thread hilo = new Thread(tarea, "outbox-worker-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        for (int i = 0; i < workers; i++) {
+            int indice = i;
+            executor.submit(() -> bucle(indice));
+        }
+        LOG.infof("Outbox iniciado con %d workers (lote %d)", workers, tamanoLote);
+    }
+
+    void detener(@Observes ShutdownEvent event) {
+        activo = false;
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Cada worker drena su parte de las particiones del nodo, así los comprobantes de un RUC los
+     * procesa un solo hilo y en orden.
+     */
+    private void bucle(int indice) {
+        while (activo && !Thread.currentThread().isInterrupted()) {
+            try {
+                List<ComprobanteOutbox> lote = outbox.reclamar(tamanoLote, particiones.propias(indice, workers));
+                if (lote.isEmpty()) {
+                    Thread.sleep(esperaSinTrabajo.toMillis());
+                    continue;
+                }
+                for (ComprobanteOutbox comprobante : lote) {
+                    procesar(comprobante);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                if (activo) {
+                    LOG.errorf(e, "Error en worker del outbox");
+                    dormir();
+                }
+            }
+        }
+    }
+
+    void procesar(ComprobanteOutbox comprobante) {
+        long id = comprobante.id;
+        if (!outbox.tomar(comprobante)) {
+            LOG.debugf("Outbox %d ya fue reclamado por otro worker", id);
+            return;
+        }
+        try {
+            FacturaPruebaRequest request = outbox.leerSolicitud(comprobante);
+
+            SunatIntegrationService.CompressedDocument doc;
+            if (comprobante.estado == EstadoComprobante.FIRMADO && comprobante.zip != null) {
+                doc = new SunatIntegrationService.CompressedDocument(comprobante.hashCpe, comprobante.zip, null);
+            } else {
+                doc = sunatService.firmarYComprimir(request).await().indefinitely();
+                outbox.marcarFirmado(id, doc.hashCpe, doc.zip);
+            }
+
+            outbox.reservarEnvio(id);
+            AtomicBoolean salio = new AtomicBoolean();
+            SunatResponse respuesta = sunatService.enviarFirmado(doc, request, () -> {
+                outbox.marcarEnviado(id);
+                salio.set(true);
+            }).await().indefinitely();
+            if (!salio.get() && CODIGOS_TRAFICO.contains(respuesta.codigoRespuesta)) {
+                // El control de tráfico lo rechazó sin enviarlo: igual que con la CPU saturada, no es un intento
+                LOG.warnf("Outbox %d pospuesto: %s", id, respuesta.descripcion);
+                outbox.posponer(id);
+                return;
+            }
+            if (incierto(respuesta.codigoRespuesta)) {
+                outbox.registrarIncierto(id, respuesta);
+            } else {
+                outbox.registrarRespuesta(id, respuesta, reintentable(respuesta.codigoRespuesta));
+            }
+            LOG.infof("Outbox %d (%s): %s %s", id, comprobante.numeroDocumento(),
+                    respuesta.codigoRespuesta, respuesta.descripcion);
+        } catch (TraficoSunatException e) {
+            // Pool de CPU saturado antes de firmar
+            LOG.warnf("Outbox %d pospuesto: %s", id, e.getMessage());
+            outbox.posponer(id);
+        } catch (Exception e) {
+            LOG.errorf(e, "Error procesando outbox %d", id);
+            outbox.registrarError(id, e);
+        }
+    }
+
+    private void dormir() {
+        try {
+            Thread.sleep(esperaSinTrabajo.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static boolean incierto(String codigo) {
+        return CODIGOS_INCIERTOS.contains(codigo) || ClaseCodigoSunat.de(codigo) == ClaseCodigoSunat.PRESENTADO;
+    }
+
+    static boolean reintentable(String codigo) {
+        return CODIGOS_REINTENTABLES.contains(codigo) || ClaseCodigoSunat.de(codigo) == ClaseCodigoSunat.REINTENTABLE;
+    }
+}
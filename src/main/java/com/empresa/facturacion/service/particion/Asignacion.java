@@ -0,0 +1,16 @@
+package com.empresa.facturacion.service.particion;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Particiones que posee un nodo según su último latido.
+ *
+ * @param nodo         identificador del nodo
+ * @param total        particiones en que se reparten los RUC emisores
+ * @param propias      particiones con lease de este nodo, en orden
+ * @param nodos        nodos con latido reciente, entre los que se reparten las particiones
+ * @param vigenteHasta hasta cuándo el nodo reclama trabajo de {@code propias} sin volver a latir
+ */
+public record Asignacion(String nodo, int total, List<Integer> propias, List<String> nodos, Instant vigenteHasta) {
+}
@@ -0,0 +1,257 @@
+package com.empresa.facturacion.service.particion;
+
+import com.empresa.facturacion.entity.NodoParticiones;
+import com.empresa.facturacion.entity.ParticionRuc;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static com.empresa.facturacion.entity.Persistencia.HINT_LOCK_TIMEOUT;
+import static com.empresa.facturacion.entity.Persistencia.SKIP_LOCKED;
+
+/**
+ * Reparto de los RUC emisores entre los nodos que procesan el outbox.
+ *
+ * Cada RUC cae en una de {@code particiones.total} particiones y cada partición tiene un lease en
+ * {@link ParticionRuc}. En cada latido el nodo registra su {@link NodoParticiones}, calcula su cuota
+ * entre los nodos vivos, renueva sus leases, libera los que le sobran (las particiones más altas) y
+ * toma particiones libres o vencidas con {@code FOR UPDATE SKIP LOCKED}. Cuando entra un nodo, los
+ * demás liberan en su siguiente latido lo que excede la nueva cuota y el nuevo lo toma en el suyo; cuando
+ * un nodo sale sin avisar, sus leases vencen a los {@code particiones.ttl} y los demás se los reparten.
+ *
+ * Los comprobantes de un RUC solo los reclama el dueño de su partición, así que agregar nodos reparte
+ * el outbox sin que compitan por las mismas filas. El nodo deja de reclamar un latido antes de que
+ * venza su lease en la base de datos, lo que cubre una diferencia de relojes de hasta
+ * {@code particiones.latido}; el lease por fila del outbox sigue evitando dobles envíos en el traspaso.
+ */
+@ApplicationScoped
+public class ParticionesRuc {
+
+    private static final Logger LOG = Logger.getLogger(ParticionesRuc.class);
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "particiones.habilitado", defaultValue = "true")
+    boolean habilitado;
+
+    @ConfigProperty(name = "particiones.total", defaultValue = "64")
+    int total;
+
+    @ConfigProperty(name = "particiones.nodo", defaultValue = "local")
+    String nodo;
+
+    @ConfigProperty(name = "particiones.ttl", defaultValue = "30s")
+    Duration ttl;
+
+    @ConfigProperty(name = "particiones.latido", defaultValue = "10s")
+    Duration latido;
+
+    private volatile Asignacion asignacion;
+    private boolean preparado;
+
+    @PostConstruct
+    void iniciar() {
+        Gauge.builder("facturacion.particiones.propias", this, particiones -> particiones.propias().size())
+                .description("Particiones de RUC con lease vigente en este nodo")
+                .register(registry);
+    }
+
+    void arrancar(@Observes StartupEvent event) {
+        if (habilitado) {
+            latirSinFallar();
+        }
+    }
+
+    @Scheduled(every = "{particiones.latido}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void programada() {
+        if (habilitado) {
+            latirSinFallar();
+        }
+    }
+
+    void detener(@Observes ShutdownEvent event) {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            liberar();
+        } catch (RuntimeException e) {
+            // Los leases vencen solos a los particiones.ttl
+            LOG.warnf(e, "No se pudieron liberar las particiones del nodo %s", nodo);
+        }
+    }
+
+    /**
+     * Partición de {@code ruc} entre {@code total}. {@link String#hashCode()} está definido por la
+     * especificación, así que todos los nodos calculan la misma.
+     */
+    public static int particion(String ruc, int total) {
+        return Math.floorMod(Objects.hashCode(ruc), total);
+    }
+
+    public int particion(String ruc) {
+        return particion(ruc, total);
+    }
+
+    /**
+     * Particiones que este nodo puede reclamar ahora: las de su último latido mientras siga vigente, o
+     * todas si el particionado está deshabilitado (un solo nodo).
+     */
+    public List<Integer> propias() {
+        Asignacion actual = asignacion();
+        if (actual.vigenteHasta() != null && !Instant.now().isBefore(actual.vigenteHasta())) {
+            return List.of();
+        }
+        return actual.propias();
+    }
+
+    /**
+     * Parte de {@link #propias()} que atiende el worker {@code indice} de {@code workers}: cada partición
+     * queda en un único hilo, que reclama sus comprobantes en orden.
+     */
+    public List<Integer> propias(int indice, int workers) {
+        List<Integer> propias = propias();
+        List<Integer> parte = new ArrayList<>();
+        for (int i = indice; i < propias.size(); i += workers) {
+            parte.add(propias.get(i));
+        }
+        return parte;
+    }
+
+    public Asignacion asignacion() {
+        Asignacion actual = asignacion;
+        if (actual != null) {
+            return actual;
+        }
+        if (!habilitado) {
+            return asignacion = new Asignacion(nodo, total, IntStream.range(0, total).boxed().toList(), List.of(nodo), null);
+        }
+        return new Asignacion(nodo, total, List.of(), List.of(), Instant.EPOCH);
+    }
+
+    private void latirSinFallar() {
+        try {
+            latir();
+        } catch (RuntimeException e) {
+            // Sin latido las particiones quedan hasta que venza vigenteHasta y luego el nodo deja de reclamar
+            LOG.errorf(e, "Error renovando las particiones del nodo %s", nodo);
+        }
+    }
+
+    /**
+     * Registra el latido del nodo y ajusta sus leases a la cuota que le corresponde.
+     */
+    synchronized Asignacion latir() {
+        Instant ahora = Instant.now();
+        if (!preparado) {
+            crearParticiones();
+            preparado = true;
+        }
+        Asignacion anterior = asignacion();
+        Asignacion nueva = QuarkusTransaction.requiringNew().call(() -> repartir(ahora));
+        if (!nueva.propias().equals(anterior.propias())) {
+            LOG.infof("Nodo %s con %d de %d particiones (%d nodos vivos)", nodo, nueva.propias().size(), total,
+                    nueva.nodos().size());
+        }
+        asignacion = nueva;
+        return nueva;
+    }
+
+    private Asignacion repartir(Instant ahora) {
+        NodoParticiones propio = NodoParticiones.findById(nodo);
+        if (propio == null) {
+            propio = new NodoParticiones();
+            propio.nodo = nodo;
+            propio.latidoEn = ahora;
+            propio.persist();
+        } else {
+            propio.latidoEn = ahora;
+        }
+        List<String> vivos = NodoParticiones.<NodoParticiones>list("latidoEn > ?1 order by nodo", ahora.minus(ttl))
+                .stream().map(vivo -> vivo.nodo).toList();
+
+        // Cuota determinista: los primeros total % n nodos (por nombre) llevan una partición más
+        int indice = vivos.indexOf(nodo);
+        int cuota = total / vivos.size() + (indice < total % vivos.size() ? 1 : 0);
+
+        Instant vence = ahora.plus(ttl);
+        List<ParticionRuc> propias = new ArrayList<>(ParticionRuc.<ParticionRuc>find(
+                        "nodo = ?1 and particion < ?2 order by particion", nodo, total)
+                .withLock(LockModeType.PESSIMISTIC_WRITE)
+                .withHint(HINT_LOCK_TIMEOUT, SKIP_LOCKED)
+                .list());
+        while (propias.size() > cuota) {
+            ParticionRuc sobrante = propias.remove(propias.size() - 1);
+            sobrante.nodo = null;
+            sobrante.venceEn = null;
+        }
+        for (ParticionRuc particion : propias) {
+            particion.venceEn = vence;
+        }
+        if (propias.size() < cuota) {
+            List<ParticionRuc> libres = ParticionRuc.<ParticionRuc>find(
+                            "(nodo is null or venceEn <= ?1) and particion < ?2 order by particion", ahora, total)
+                    .withLock(LockModeType.PESSIMISTIC_WRITE)
+                    .withHint(HINT_LOCK_TIMEOUT, SKIP_LOCKED)
+                    .page(0, cuota - propias.size())
+                    .list();
+            for (ParticionRuc libre : libres) {
+                libre.nodo = nodo;
+                libre.venceEn = vence;
+                propias.add(libre);
+            }
+        }
+        List<Integer> numeros = propias.stream().map(particion -> particion.particion).sorted().toList();
+        return new Asignacion(nodo, total, numeros, vivos, vence.minus(latido));
+    }
+
+    /** Crea las filas de lease que falten; si otro nodo las crea a la vez, se reintenta en el próximo latido. */
+    private void crearParticiones() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            Set<Integer> existentes = new HashSet<>();
+            for (ParticionRuc particion : ParticionRuc.<ParticionRuc>listAll()) {
+                existentes.add(particion.particion);
+            }
+            for (int numero = 0; numero < total; numero++) {
+                if (!existentes.contains(numero)) {
+                    ParticionRuc particion = new ParticionRuc();
+                    particion.particion = numero;
+                    particion.persist();
+                }
+            }
+        });
+    }
+
+    /**
+     * Libera los leases del nodo y borra su latido, para que los demás tomen sus particiones en su
+     * próximo latido sin esperar a que venzan.
+     */
+    synchronized void liberar() {
+        asignacion = new Asignacion(nodo, total, List.of(), List.of(), Instant.EPOCH);
+        QuarkusTransaction.requiringNew().run(() -> {
+            ParticionRuc.update("nodo = null, venceEn = null where nodo = ?1", nodo);
+            NodoParticiones.deleteById(nodo);
+        });
+        LOG.infof("Nodo %s liberó sus particiones", nodo);
+    }
+}
@@ -0,0 +1,27 @@
+package com.empresa.facturacion.service.resumen;
+
+import java.math.BigDecimal;
+
+/**
+ * Una línea de un resumen RC o RA. Solo guarda lo que se escribe en el XML, no la solicitud completa.
+ *
+ * @param condicion estado del ítem en el RC (1 = adicionar, 3 = anulado); no aplica al RA
+ */
+record LineaResumen(
+        String tipoDocumento,
+        String serie,
+        long correlativo,
+        String clienteTipoDocumento,
+        String clienteNumeroDocumento,
+        int condicion,
+        String moneda,
+        BigDecimal total,
+        BigDecimal gravadas,
+        BigDecimal exoneradas,
+        BigDecimal inafectas,
+        BigDecimal igv,
+        String motivo) {
+
+    static final int CONDICION_ADICIONAR = 1;
+    static final int CONDICION_ANULADO = 3;
+}
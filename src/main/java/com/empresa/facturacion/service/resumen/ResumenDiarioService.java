@@ -0,0 +1,589 @@
+package com.empresa.facturacion.service.resumen;
+
+import com.empresa.facturacion.dto.BajaRequest;
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.entity.CorrelativoResumen;
+import com.empresa.facturacion.entity.EstadoResumen;
+import com.empresa.facturacion.entity.LineaResumenPendiente;
+import com.empresa.facturacion.entity.ResumenSunat;
+import com.empresa.facturacion.entity.TipoResumen;
+import com.empresa.facturacion.service.cdr.ClaseCodigoSunat;
+import com.empresa.facturacion.service.conexion.ConexionesSunat;
+import com.empresa.facturacion.service.conexion.SobreSoap;
+import com.empresa.facturacion.service.cpu.EjecutorCpu;
+import com.empresa.facturacion.service.empaque.EmpaqueZip;
+import com.empresa.facturacion.service.firma.FirmaDigitalService;
+import com.empresa.facturacion.service.totales.CalculadoraTotales;
+import com.empresa.facturacion.service.totales.Categoria;
+import com.empresa.facturacion.service.totales.Monto;
+import com.empresa.facturacion.service.totales.TotalesComprobante;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.panache.common.Sort;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static com.empresa.facturacion.entity.Persistencia.HINT_LOCK_TIMEOUT;
+import static com.empresa.facturacion.entity.Persistencia.SKIP_LOCKED;
+import static com.empresa.facturacion.entity.Persistencia.recortar;
+
+/**
+ * Envío por lotes de boletas (resumen diario RC) y comunicaciones de baja (RA).
+ *
+ * Las líneas se persisten al recibirse, agrupadas por RUC, fecha de referencia y tipo. Un resumen se
+ * arma cuando el grupo llega al máximo de líneas por archivo o en el siguiente vaciado programado: se
+ * toman las líneas con {@code FOR UPDATE SKIP LOCKED}, se numera el ID con {@link CorrelativoResumen} y
+ * queda un {@link ResumenSunat} PREPARADO. Los preparados se envían con sendSummary y SUNAT responde con
+ * un ticket que se consulta periódicamente (getStatus) junto con todos los tickets pendientes.
+ *
+ * Todo el estado está en la base de datos: un reinicio no pierde boletas ya respondidas con 202, los
+ * ID no se repiten entre nodos y un envío fallido se repite con el mismo ID y el mismo ZIP.
+ */
+@ApplicationScoped
+public class ResumenDiarioService {
+
+    private static final Logger LOG = Logger.getLogger(ResumenDiarioService.class);
+
+    private static final DateTimeFormatter FORMATO_ID = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final XMLInputFactory XML_INPUT = XMLInputFactory.newFactory();
+
+    private static final int INTENTOS_PREPARACION = 3;
+
+    // statusCode de getStatus
+    private static final String ESTADO_PROCESADO = "0";
+    private static final String ESTADO_EN_PROCESO = "98";
+
+    /** Falla sin respuesta SOAP (timeout, conexión, HTTP sin fault): SUNAT pudo o no recibir el archivo. */
+    static final String SIN_RESPUESTA = "SUNAT_CONECTIVIDAD";
+
+    @Inject
+    ConexionesSunat conexiones;
+
+    @Inject
+    FirmaDigitalService firmaDigital;
+
+    @Inject
+    CalculadoraTotales calculadora;
+
+    @Inject
+    EmpaqueZip empaque;
+
+    @Inject
+    EjecutorCpu cpu;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @ConfigProperty(name = "sunat.resumen.habilitado", defaultValue = "true")
+    boolean habilitado;
+
+    @ConfigProperty(name = "sunat.resumen.max-lineas", defaultValue = "500")
+    int maxLineas;
+
+    @ConfigProperty(name = "sunat.resumen.consultas-concurrentes", defaultValue = "8")
+    int consultasConcurrentes;
+
+    @ConfigProperty(name = "sunat.resumen.lote", defaultValue = "100")
+    int tamanoLote;
+
+    @ConfigProperty(name = "sunat.resumen.lease", defaultValue = "5m")
+    Duration lease;
+
+    @ConfigProperty(name = "sunat.resumen.max-intentos", defaultValue = "5")
+    int maxIntentos;
+
+    @ConfigProperty(name = "sunat.resumen.backoff-inicial", defaultValue = "30s")
+    Duration backoffInicial;
+
+    public void registrarBoleta(FacturaPruebaRequest boleta) {
+        registrar(TipoResumen.RC, boleta.emisor, boleta.fechaEmision, lineaBoleta(boleta));
+    }
+
+    public void registrarBaja(BajaRequest baja) {
+        if ("03".equals(baja.tipoDocumento)) {
+            // Las boletas se anulan en el propio resumen diario con ConditionCode 3
+            LineaResumen linea = new LineaResumen(baja.tipoDocumento, baja.serie, baja.correlativo,
+                    "-", "-", LineaResumen.CONDICION_ANULADO, baja.moneda,
+                    BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, baja.motivo);
+            registrar(TipoResumen.RC, baja.emisor, baja.fechaEmision, linea);
+        } else {
+            LineaResumen linea = new LineaResumen(baja.tipoDocumento, baja.serie, baja.correlativo,
+                    null, null, 0, baja.moneda, null, null, null, null, null, baja.motivo);
+            registrar(TipoResumen.RA, baja.emisor, baja.fechaEmision, linea);
+        }
+    }
+
+    public List<ResumenSunat> tickets() {
+        return QuarkusTransaction.requiringNew().call(() -> ResumenSunat.<ResumenSunat>listAll(Sort.by("id")));
+    }
+
+    public long lineasPendientes() {
+        return QuarkusTransaction.requiringNew().call(() -> LineaResumenPendiente.count("resumenId is null"));
+    }
+
+    @Scheduled(every = "{sunat.resumen.intervalo-envio}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> vaciarProgramado() {
+        return habilitado ? vaciarLotes() : Uni.createFrom().voidItem();
+    }
+
+    @Scheduled(every = "{sunat.resumen.intervalo-consulta}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> consultarProgramado() {
+        return habilitado ? consultarTickets() : Uni.createFrom().voidItem();
+    }
+
+    /**
+     * Arma resúmenes con todas las líneas pendientes, llenas o no, y envía los preparados.
+     */
+    public Uni<Void> vaciarLotes() {
+        return Uni.createFrom().item(() -> {
+                    List<Clave> claves = QuarkusTransaction.requiringNew().call(() -> LineaResumenPendiente.getEntityManager()
+                            .createQuery("select distinct l.ruc, l.tipo, l.fechaReferencia from LineaResumenPendiente l"
+                                    + " where l.resumenId is null", Object[].class)
+                            .getResultList().stream()
+                            .map(fila -> new Clave((String) fila[0], (TipoResumen) fila[1], (LocalDate) fila[2]))
+                            .toList());
+                    claves.forEach(this::preparar);
+                    return claves.size();
+                })
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                .chain(ignorado -> enviarPreparados());
+    }
+
+    /**
+     * Envía los resúmenes preparados cuyo (re)envío ya toca, con concurrencia acotada.
+     */
+    public Uni<Void> enviarPreparados() {
+        return Uni.createFrom().item(() -> reclamar(EstadoResumen.PREPARADO))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                .onItem().transformToUni(preparados -> preparados.isEmpty() ? Uni.createFrom().voidItem()
+                        : Multi.createFrom().iterable(preparados)
+                                .onItem().transformToUni(this::enviar).merge(consultasConcurrentes)
+                                .collect().last()
+                                .replaceWithVoid());
+    }
+
+    /**
+     * Consulta en bloque todos los tickets aún en proceso, con concurrencia acotada.
+     */
+    public Uni<Void> consultarTickets() {
+        return Uni.createFrom().item(() -> reclamar(EstadoResumen.EN_PROCESO))
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                .onItem().transformToUni(pendientes -> {
+                    if (pendientes.isEmpty()) {
+                        return Uni.createFrom().voidItem();
+                    }
+                    LOG.debugf("Consultando %d tickets pendientes", pendientes.size());
+                    return Multi.createFrom().iterable(pendientes)
+                            .onItem().transformToUni(this::consultarTicket).merge(consultasConcurrentes)
+                            .collect().last()
+                            .replaceWithVoid();
+                });
+    }
+
+    private void registrar(TipoResumen tipo, FacturaPruebaRequest.EmisorDto emisor, LocalDate fecha, LineaResumen linea) {
+        Clave clave = new Clave(emisor.ruc, tipo, fecha);
+        String emisorJson = json(emisor);
+        long pendientes = QuarkusTransaction.requiringNew().call(() -> {
+            nuevaLinea(clave, emisorJson, linea).persist();
+            return LineaResumenPendiente.count("ruc = ?1 and tipo = ?2 and fechaReferencia = ?3 and resumenId is null",
+                    clave.ruc(), clave.tipo(), clave.fechaReferencia());
+        });
+        if (pendientes >= maxLineas) {
+            // El lote lleno se arma ya; el envío sigue en segundo plano
+            preparar(clave);
+            enviarPreparados().subscribe().with(
+                    ignorado -> { },
+                    error -> LOG.errorf(error, "Error enviando resúmenes de %s", clave));
+        }
+    }
+
+    /**
+     * Arma resúmenes de hasta {@code sunat.resumen.max-lineas} con las líneas pendientes de {@code clave}.
+     */
+    void preparar(Clave clave) {
+        for (int intento = 1; ; ) {
+            try {
+                ResumenSunat resumen = QuarkusTransaction.requiringNew().call(() -> prepararResumen(clave));
+                if (resumen == null) {
+                    return;
+                }
+                LOG.infof("Resumen %s-%s preparado con %d líneas", clave.ruc(), resumen.idResumen, resumen.lineas);
+            } catch (PersistenceException e) {
+                // Otro nodo creó a la vez el contador del día; el siguiente intento lo encuentra
+                if (++intento > INTENTOS_PREPARACION) {
+                    throw e;
+                }
+                LOG.debugf("Reintentando preparación de resumen para %s: %s", clave, e.getMessage());
+            }
+        }
+    }
+
+    private ResumenSunat prepararResumen(Clave clave) {
+        List<LineaResumenPendiente> lineas = LineaResumenPendiente.<LineaResumenPendiente>find(
+                        "ruc = ?1 and tipo = ?2 and fechaReferencia = ?3 and resumenId is null order by id",
+                        clave.ruc(), clave.tipo(), clave.fechaReferencia())
+                .withLock(LockModeType.PESSIMISTIC_WRITE)
+                .withHint(HINT_LOCK_TIMEOUT, SKIP_LOCKED)
+                .page(0, maxLineas)
+                .list();
+        if (lineas.isEmpty()) {
+            return null;
+        }
+        LocalDate hoy = LocalDate.now();
+        ResumenSunat resumen = new ResumenSunat();
+        resumen.ruc = clave.ruc();
+        resumen.tipo = clave.tipo();
+        resumen.fechaReferencia = clave.fechaReferencia();
+        resumen.fechaEmision = hoy;
+        resumen.idResumen = clave.tipo() + "-" + hoy.format(FORMATO_ID) + "-" + siguienteNumero(clave, hoy);
+        resumen.lineas = lineas.size();
+        // Las credenciales más recientes del emisor
+        resumen.emisor = lineas.get(lineas.size() - 1).emisor;
+        resumen.persist();
+        for (LineaResumenPendiente linea : lineas) {
+            linea.resumenId = resumen.id;
+        }
+        return resumen;
+    }
+
+    private static int siguienteNumero(Clave clave, LocalDate fecha) {
+        CorrelativoResumen fila = CorrelativoResumen.<CorrelativoResumen>find(
+                        "ruc = ?1 and tipo = ?2 and fecha = ?3", clave.ruc(), clave.tipo(), fecha)
+                .withLock(LockModeType.PESSIMISTIC_WRITE)
+                .firstResult();
+        if (fila == null) {
+            fila = new CorrelativoResumen();
+            fila.ruc = clave.ruc();
+            fila.tipo = clave.tipo();
+            fila.fecha = fecha;
+            fila.persist();
+            fila.flush();
+        }
+        return ++fila.ultimo;
+    }
+
+    /**
+     * Reclama hasta {@code sunat.resumen.lote} resúmenes en {@code estado} listos para enviar o consultar;
+     * los bloqueados por otro nodo se saltan y los reclamados quedan con un lease vigente.
+     */
+    private List<ResumenSunat> reclamar(EstadoResumen estado) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            Instant ahora = Instant.now();
+            List<ResumenSunat> lote = ResumenSunat.<ResumenSunat>find(
+                            "estado = ?1 and siguienteIntento <= ?2 and (bloqueadoHasta is null or bloqueadoHasta < ?2)"
+                                    + " order by id", estado, ahora)
+                    .withLock(LockModeType.PESSIMISTIC_WRITE)
+                    .withHint(HINT_LOCK_TIMEOUT, SKIP_LOCKED)
+                    .page(0, tamanoLote)
+                    .list();
+            Instant vence = ahora.plus(lease);
+            for (ResumenSunat resumen : lote) {
+                resumen.bloqueadoHasta = vence;
+            }
+            return lote;
+        });
+    }
+
+    private Uni<Void> enviar(ResumenSunat resumen) {
+        FacturaPruebaRequest.EmisorDto emisor = leerEmisor(resumen.emisor);
+        String nombreArchivo = resumen.ruc + "-" + resumen.idResumen;
+        Uni<byte[]> zip = resumen.zip != null
+                // Reenvío: el mismo archivo que pudo haber llegado a SUNAT
+                ? Uni.createFrom().item(resumen.zip)
+                : Uni.createFrom().item(() -> lineas(resumen))
+                        .runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+                        .chain(lineas -> cpu.ejecutar(() -> {
+                            try {
+                                return empaque.comprimir(nombreArchivo + ".xml", salida -> firmaDigital.firmar(
+                                        new ResumenDocumento(resumen.tipo, resumen.idResumen, resumen.fechaReferencia,
+                                                resumen.fechaEmision, emisor, lineas), salida)).zip();
+                            } catch (Exception e) {
+                                throw new RuntimeException("Error generando resumen " + resumen.idResumen, e);
+                            }
+                        }))
+                        .emitOn(Infrastructure.getDefaultWorkerPool())
+                        .invoke(generado -> actualizar(resumen.id, fila -> fila.zip = generado));
+
+        return zip
+                .chain(archivo -> conexiones.enviar(construirSendSummary(emisor.ruc + emisor.usuarioSol, emisor.claveSol,
+                        nombreArchivo + ".ZIP", archivo)))
+                // La respuesta llega en un hilo de Vert.x y registrarla bloquea en la base de datos
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .onItem().invoke(respuesta -> registrarEnvio(resumen, nombreArchivo, respuesta))
+                .onFailure().invoke(error -> {
+                    LOG.errorf(error, "Error enviando resumen %s", nombreArchivo);
+                    registrarFallaEnvio(resumen.id, SIN_RESPUESTA, String.valueOf(error.getMessage()), true);
+                })
+                .onFailure().recoverWithNull()
+                .replaceWithVoid();
+    }
+
+    private void registrarEnvio(ResumenSunat resumen, String nombreArchivo, String respuesta) {
+        Map<String, String> valores;
+        try {
+            valores = leerElementos(respuesta, "ticket", "faultcode", "faultstring");
+        } catch (IllegalStateException e) {
+            registrarFallaEnvio(resumen.id, SIN_RESPUESTA, e.getMessage(), true);
+            return;
+        }
+        String ticket = valores.get("ticket");
+        if (ticket == null) {
+            String codigo = codigoFault(valores.get("faultcode"));
+            LOG.warnf("SUNAT no devolvió ticket para %s: %s %s", nombreArchivo, codigo, valores.get("faultstring"));
+            if (ClaseCodigoSunat.de(codigo) == ClaseCodigoSunat.PRESENTADO) {
+                registrarYaPresentado(resumen.id, codigo, valores.get("faultstring"));
+                return;
+            }
+            registrarFallaEnvio(resumen.id, codigo, valores.get("faultstring"),
+                    ClaseCodigoSunat.de(codigo) == ClaseCodigoSunat.REINTENTABLE);
+            return;
+        }
+        actualizar(resumen.id, fila -> {
+            fila.ticket = ticket;
+            fila.estado = EstadoResumen.EN_PROCESO;
+            fila.intentos++;
+            fila.enviadoEn = Instant.now();
+            fila.siguienteIntento = Instant.now();
+            fila.bloqueadoHasta = null;
+        });
+        LOG.infof("Resumen %s enviado con %d líneas, ticket %s", nombreArchivo, resumen.lineas, ticket);
+    }
+
+    /**
+     * Un envío que puede repetirse queda PREPARADO con backoff exponencial y se reenvía con el mismo ID y
+     * ZIP hasta agotar {@code sunat.resumen.max-intentos}; un fault definitivo lo deja RECHAZADO.
+     */
+    private void registrarFallaEnvio(long id, String codigo, String descripcion, boolean reintentable) {
+        actualizar(id, fila -> {
+            fila.intentos++;
+            fila.codigoEstado = codigo;
+            fila.descripcion = recortar(descripcion);
+            if (reintentable && fila.intentos < maxIntentos) {
+                fila.siguienteIntento = Instant.now()
+                        .plus(backoffInicial.multipliedBy(1L << Math.min(fila.intentos - 1, 10)));
+            } else {
+                fila.estado = reintentable ? EstadoResumen.ERROR : EstadoResumen.RECHAZADO;
+                fila.zip = null;
+            }
+            fila.bloqueadoHasta = null;
+        });
+    }
+
+    /**
+     * SUNAT ya tiene el archivo: un envío anterior llegó. Si ese envío registró su ticket, el resumen sigue
+     * con ese ticket (getStatus dirá si fue aceptado); declarar las líneas como rechazadas sería falso. Si
+     * el ticket se perdió con la respuesta no hay forma de consultarlo, y el resumen queda en ERROR sin
+     * soltar sus líneas para revisarlo a mano.
+     */
+    private void registrarYaPresentado(long id, String codigo, String descripcion) {
+        actualizar(id, fila -> {
+            if (fila.ticket != null) {
+                if (fila.estado == EstadoResumen.PREPARADO) {
+                    fila.estado = EstadoResumen.EN_PROCESO;
+                    fila.siguienteIntento = Instant.now();
+                    fila.bloqueadoHasta = null;
+                }
+                return;
+            }
+            fila.intentos++;
+            fila.codigoEstado = codigo;
+            fila.descripcion = recortar("SUNAT ya recibió el resumen pero no se conoce su ticket: " + descripcion);
+            fila.estado = EstadoResumen.ERROR;
+            fila.zip = null;
+            fila.bloqueadoHasta = null;
+        });
+    }
+
+    private Uni<Void> consultarTicket(ResumenSunat resumen) {
+        FacturaPruebaRequest.EmisorDto emisor = leerEmisor(resumen.emisor);
+        String envelope = construirEnvelope(emisor.ruc + emisor.usuarioSol, emisor.claveSol,
+                "<ser:getStatus><ticket>" + resumen.ticket + "</ticket></ser:getStatus>");
+        return conexiones.enviar(envelope)
+                .emitOn(Infrastructure.getDefaultWorkerPool())
+                .onItem().invoke(respuesta -> registrarEstado(resumen, respuesta))
+                .onFailure().invoke(error -> {
+                    LOG.warnf("Error consultando ticket %s: %s", resumen.ticket, error.getMessage());
+                    actualizar(resumen.id, fila -> fila.bloqueadoHasta = null);
+                })
+                .onFailure().recoverWithNull()
+                .replaceWithVoid();
+    }
+
+    private void registrarEstado(ResumenSunat resumen, String respuesta) {
+        Map<String, String> valores = leerElementos(respuesta, "statusCode", "content", "faultcode", "faultstring");
+        String fault = valores.get("faultcode");
+        String codigo = fault != null ? codigoFault(fault) : valores.get("statusCode");
+        // 98 en proceso; los faults transitorios (0109, 0130-0139...) no dicen nada del ticket
+        boolean pendiente = ESTADO_EN_PROCESO.equals(codigo)
+                || (fault != null && ClaseCodigoSunat.de(codigo) == ClaseCodigoSunat.REINTENTABLE);
+        actualizar(resumen.id, fila -> {
+            fila.consultas++;
+            fila.codigoEstado = codigo;
+            fila.bloqueadoHasta = null;
+            if (pendiente) {
+                return;
+            }
+            fila.descripcion = recortar(valores.get("faultstring"));
+            fila.cdrSunat = valores.get("content");
+            fila.estado = ESTADO_PROCESADO.equals(codigo) ? EstadoResumen.ACEPTADO : EstadoResumen.RECHAZADO;
+            fila.zip = null;
+        });
+        if (!pendiente) {
+            LOG.infof("Ticket %s (%s) finalizado: %s", resumen.ticket, resumen.idResumen, codigo);
+        }
+    }
+
+    private List<LineaResumen> lineas(ResumenSunat resumen) {
+        return QuarkusTransaction.requiringNew().call(() -> LineaResumenPendiente.<LineaResumenPendiente>list(
+                        "resumenId = ?1 order by id", resumen.id).stream()
+                .map(ResumenDiarioService::linea)
+                .toList());
+    }
+
+    private void actualizar(long id, Consumer<ResumenSunat> cambio) {
+        QuarkusTransaction.requiringNew().run(() -> cambio.accept(ResumenSunat.findById(id)));
+    }
+
+    private static LineaResumenPendiente nuevaLinea(Clave clave, String emisor, LineaResumen linea) {
+        LineaResumenPendiente fila = new LineaResumenPendiente();
+        fila.ruc = clave.ruc();
+        fila.tipo = clave.tipo();
+        fila.fechaReferencia = clave.fechaReferencia();
+        fila.emisor = emisor;
+        fila.tipoDocumento = linea.tipoDocumento();
+        fila.serie = linea.serie();
+        fila.correlativo = linea.correlativo();
+        fila.clienteTipoDocumento = linea.clienteTipoDocumento();
+        fila.clienteNumeroDocumento = linea.clienteNumeroDocumento();
+        fila.condicion = linea.condicion();
+        fila.moneda = linea.moneda();
+        fila.total = linea.total();
+        fila.gravadas = linea.gravadas();
+        fila.exoneradas = linea.exoneradas();
+        fila.inafectas = linea.inafectas();
+        fila.igv = linea.igv();
+        fila.motivo = linea.motivo();
+        return fila;
+    }
+
+    private static LineaResumen linea(LineaResumenPendiente fila) {
+        return new LineaResumen(fila.tipoDocumento, fila.serie, fila.correlativo, fila.clienteTipoDocumento,
+                fila.clienteNumeroDocumento, fila.condicion, fila.moneda, fila.total, fila.gravadas, fila.exoneradas,
+                fila.inafectas, fila.igv, fila.motivo);
+    }
+
+    private String json(FacturaPruebaRequest.EmisorDto emisor) {
+        try {
+            return objectMapper.writeValueAsString(emisor);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("No se pudo serializar el emisor", e);
+        }
+    }
+
+    private FacturaPruebaRequest.EmisorDto leerEmisor(String json) {
+        try {
+            return objectMapper.readValue(json, FacturaPruebaRequest.EmisorDto.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Emisor inválido en resumen", e);
+        }
+    }
+
+    /** faultcode sin prefijo de namespace ("soap-env:Client.0130" → "0130"). */
+    private static String codigoFault(String faultcode) {
+        if (faultcode == null) {
+            return null;
+        }
+        int punto = faultcode.lastIndexOf('.');
+        int dosPuntos = faultcode.lastIndexOf(':');
+        return faultcode.substring(Math.max(punto, dosPuntos) + 1);
+    }
+
+    record Clave(String ruc, TipoResumen tipo, LocalDate fechaReferencia) {
+        @Override
+        public String toString() {
+            return ruc + "-" + tipo + "-" + fechaReferencia;
+        }
+    }
+
+    private static String construirEnvelope(String username, String password, String cuerpo) {
+        return SobreSoap.cabecera(username, password) + cuerpo + SobreSoap.CIERRE_ENVELOPE;
+    }
+
+    /**
+     * Sobre de sendSummary; el ZIP se codifica en Base64 recién al escribirlo en la conexión.
+     */
+    private static SobreSoap construirSendSummary(String username, String password, String fileName, byte[] zip) {
+        String prefijo = SobreSoap.cabecera(username, password)
+                + "<ser:sendSummary><fileName>" + fileName + "</fileName><contentFile>";
+        return new SobreSoap(prefijo, zip, "</contentFile></ser:sendSummary>" + SobreSoap.CIERRE_ENVELOPE);
+    }
+
+    /**
+     * Lee el texto de los primeros elementos con los nombres locales indicados, sin construir un DOM.
+     */
+    static Map<String, String> leerElementos(String xml, String... nombres) {
+        Map<String, String> valores = new HashMap<>();
+        try {
+            XMLStreamReader reader = XML_INPUT.createXMLStreamReader(new StringReader(xml));
+            try {
+                while (reader.hasNext() && valores.size() < nombres.length) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                        String nombre = reader.getLocalName();
+                        for (String buscado : nombres) {
+                            if (buscado.equals(nombre) && !valores.containsKey(nombre)) {
+                                valores.put(nombre, reader.getElementText().trim());
+                                break;
+                            }
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Respuesta SUNAT no es XML válido", e);
+        }
+        return valores;
+    }
+
+    private LineaResumen lineaBoleta(FacturaPruebaRequest boleta) {
+        // Mismos importes que el XML de la boleta; la exportación se informa junto con lo inafecto
+        TotalesComprobante totales = calculadora.calcular(boleta.items);
+        return new LineaResumen("03", boleta.serie, boleta.correlativo,
+                boleta.cliente.tipoDocumento, boleta.cliente.numeroDocumento,
+                LineaResumen.CONDICION_ADICIONAR, boleta.moneda,
+                importe(totales.total()),
+                importe(totales.base(Categoria.GRAVADA)),
+                importe(totales.base(Categoria.EXONERADA)),
+                importe(totales.base(Categoria.INAFECTA) + totales.base(Categoria.EXPORTACION)),
+                importe(totales.igv()), null);
+    }
+
+    private static BigDecimal importe(long centimos) {
+        return Monto.aBigDecimal(centimos, Monto.ESCALA);
+    }
+}
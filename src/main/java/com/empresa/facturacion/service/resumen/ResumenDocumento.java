@@ -0,0 +1,183 @@
+package com.empresa.facturacion.service.resumen;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.entity.TipoResumen;
+import com.empresa.facturacion.service.ubl.ContenidoExtension;
+import com.empresa.facturacion.service.ubl.DocumentoUbl;
+import com.empresa.facturacion.service.ubl.UblWriter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.empresa.facturacion.service.ubl.UblWriter.utf8;
+
+/**
+ * SummaryDocuments (RC) o VoidedDocuments (RA) en forma canónica, listo para firmar en streaming.
+ */
+final class ResumenDocumento implements DocumentoUbl {
+
+    private static final String NAMESPACES_COMUNES =
+            " xmlns:cac=\"urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2\""
+            + " xmlns:cbc=\"urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2\""
+            + " xmlns:ds=\"http://www.w3.org/2000/09/xmldsig#\""
+            + " xmlns:ext=\"urn:oasis:names:specification:ubl:schema:xsd:CommonExtensionComponents-2\""
+            + " xmlns:sac=\"urn:sunat:names:specification:ubl:peru:schema:xsd:SunatAggregateComponents-1\"";
+    private static final String NAMESPACES_RC =
+            " xmlns=\"urn:sunat:names:specification:ubl:peru:schema:xsd:SummaryDocuments-1\"" + NAMESPACES_COMUNES;
+    private static final String NAMESPACES_RA =
+            " xmlns=\"urn:sunat:names:specification:ubl:peru:schema:xsd:VoidedDocuments-1\"" + NAMESPACES_COMUNES;
+    private static final byte[] NAMESPACES_RC_UTF8 = utf8(NAMESPACES_RC);
+    private static final byte[] NAMESPACES_RA_UTF8 = utf8(NAMESPACES_RA);
+
+    private static final byte[] EXTENSIONES = utf8("<ext:UBLExtensions><ext:UBLExtension><ext:ExtensionContent>");
+    private static final byte[] RC_INICIO = utf8("<SummaryDocuments" + NAMESPACES_RC + ">");
+    private static final byte[] RA_INICIO = utf8("<VoidedDocuments" + NAMESPACES_RA + ">");
+    private static final byte[] RC_VERSION = utf8(
+            "</ext:ExtensionContent></ext:UBLExtension></ext:UBLExtensions>"
+            + "<cbc:UBLVersionID>2.0</cbc:UBLVersionID><cbc:CustomizationID>1.1</cbc:CustomizationID><cbc:ID>");
+    private static final byte[] RA_VERSION = utf8(
+            "</ext:ExtensionContent></ext:UBLExtension></ext:UBLExtensions>"
+            + "<cbc:UBLVersionID>2.0</cbc:UBLVersionID><cbc:CustomizationID>1.0</cbc:CustomizationID><cbc:ID>");
+    private static final byte[] FECHA_REFERENCIA = utf8("</cbc:ID><cbc:ReferenceDate>");
+    private static final byte[] FECHA_EMISION = utf8("</cbc:ReferenceDate><cbc:IssueDate>");
+    private static final byte[] FIRMA_ID = utf8("</cbc:IssueDate><cac:Signature><cbc:ID>");
+    private static final byte[] FIRMA_RUC = utf8(
+            "</cbc:ID><cac:SignatoryParty><cac:PartyIdentification><cbc:ID>");
+    private static final byte[] FIRMA_NOMBRE = utf8(
+            "</cbc:ID></cac:PartyIdentification><cac:PartyName><cbc:Name>");
+    private static final byte[] FIRMA_FIN = utf8(
+            "</cbc:Name></cac:PartyName></cac:SignatoryParty>"
+            + "<cac:DigitalSignatureAttachment><cac:ExternalReference><cbc:URI>#SignatureSP</cbc:URI>"
+            + "</cac:ExternalReference></cac:DigitalSignatureAttachment></cac:Signature>");
+    private static final byte[] EMISOR_RUC = utf8(
+            "<cac:AccountingSupplierParty><cbc:CustomerAssignedAccountID>");
+    private static final byte[] EMISOR_RAZON = utf8(
+            "</cbc:CustomerAssignedAccountID><cbc:AdditionalAccountID>6</cbc:AdditionalAccountID>"
+            + "<cac:Party><cac:PartyLegalEntity><cbc:RegistrationName>");
+    private static final byte[] EMISOR_FIN = utf8(
+            "</cbc:RegistrationName></cac:PartyLegalEntity></cac:Party></cac:AccountingSupplierParty>");
+    private static final byte[] RC_FIN = utf8("</SummaryDocuments>");
+    private static final byte[] RA_FIN = utf8("</VoidedDocuments>");
+
+    private static final byte[] MONTO_CIERRE = utf8("\">");
+    private static final byte[] RC_LINEA_ID = utf8("<sac:SummaryDocumentsLine><cbc:LineID>");
+    private static final byte[] RC_LINEA_TIPO = utf8("</cbc:LineID><cbc:DocumentTypeCode>");
+    private static final byte[] RC_LINEA_NUMERO = utf8("</cbc:DocumentTypeCode><cbc:ID>");
+    private static final byte[] RC_LINEA_CLIENTE = utf8(
+            "</cbc:ID><cac:AccountingCustomerParty><cbc:CustomerAssignedAccountID>");
+    private static final byte[] RC_LINEA_CLIENTE_TIPO = utf8(
+            "</cbc:CustomerAssignedAccountID><cbc:AdditionalAccountID>");
+    private static final byte[] RC_LINEA_ESTADO = utf8(
+            "</cbc:AdditionalAccountID></cac:AccountingCustomerParty><cac:Status><cbc:ConditionCode>");
+    private static final byte[] RC_LINEA_TOTAL = utf8(
+            "</cbc:ConditionCode></cac:Status><sac:TotalAmount currencyID=\"");
+    private static final byte[] RC_LINEA_TOTAL_FIN = utf8("</sac:TotalAmount>");
+    private static final byte[] RC_LINEA_PAGO = utf8("<sac:BillingPayment><cbc:PaidAmount currencyID=\"");
+    private static final byte[] RC_LINEA_PAGO_TIPO = utf8("</cbc:PaidAmount><cbc:InstructionID>");
+    private static final byte[] RC_LINEA_PAGO_FIN = utf8("</cbc:InstructionID></sac:BillingPayment>");
+    private static final byte[] RC_LINEA_IGV = utf8("<cac:TaxTotal><cbc:TaxAmount currencyID=\"");
+    private static final byte[] RC_LINEA_IGV_SUBTOTAL = utf8(
+            "</cbc:TaxAmount><cac:TaxSubtotal><cbc:TaxAmount currencyID=\"");
+    private static final byte[] RC_LINEA_FIN = utf8(
+            "</cbc:TaxAmount><cac:TaxCategory><cac:TaxScheme><cbc:ID>1000</cbc:ID><cbc:Name>IGV</cbc:Name>"
+            + "<cbc:TaxTypeCode>VAT</cbc:TaxTypeCode></cac:TaxScheme></cac:TaxCategory></cac:TaxSubtotal>"
+            + "</cac:TaxTotal></sac:SummaryDocumentsLine>");
+    private static final byte[] RA_LINEA_ID = utf8("<sac:VoidedDocumentsLine><cbc:LineID>");
+    private static final byte[] RA_LINEA_TIPO = utf8("</cbc:LineID><cbc:DocumentTypeCode>");
+    private static final byte[] RA_LINEA_SERIE = utf8("</cbc:DocumentTypeCode><sac:DocumentSerialID>");
+    private static final byte[] RA_LINEA_NUMERO = utf8("</sac:DocumentSerialID><sac:DocumentNumberID>");
+    private static final byte[] RA_LINEA_MOTIVO = utf8("</sac:DocumentNumberID><sac:VoidReasonDescription>");
+    private static final byte[] RA_LINEA_FIN = utf8("</sac:VoidReasonDescription></sac:VoidedDocumentsLine>");
+
+    // Catálogo 11: códigos de tipo de valor de venta del resumen diario
+    private static final String[] TIPOS_VALOR_VENTA = {"01", "02", "03"};
+
+    private final TipoResumen tipo;
+    private final String id;
+    private final LocalDate fechaReferencia;
+    private final LocalDate fechaEmision;
+    private final FacturaPruebaRequest.EmisorDto emisor;
+    private final List<LineaResumen> lineas;
+
+    ResumenDocumento(TipoResumen tipo, String id, LocalDate fechaReferencia, LocalDate fechaEmision,
+                     FacturaPruebaRequest.EmisorDto emisor, List<LineaResumen> lineas) {
+        this.tipo = tipo;
+        this.id = id;
+        this.fechaReferencia = fechaReferencia;
+        this.fechaEmision = fechaEmision;
+        this.emisor = emisor;
+        this.lineas = lineas;
+    }
+
+    @Override
+    public byte[] namespacesRaiz() {
+        return tipo == TipoResumen.RC ? NAMESPACES_RC_UTF8 : NAMESPACES_RA_UTF8;
+    }
+
+    @Override
+    public void escribir(UblWriter w, ContenidoExtension extension) throws IOException {
+        boolean rc = tipo == TipoResumen.RC;
+        w.raw(rc ? RC_INICIO : RA_INICIO).raw(EXTENSIONES);
+        extension.escribir(w);
+        w.raw(rc ? RC_VERSION : RA_VERSION).texto(id)
+                .raw(FECHA_REFERENCIA).texto(fechaReferencia.toString())
+                .raw(FECHA_EMISION).texto(fechaEmision.toString())
+                .raw(FIRMA_ID).texto(emisor.ruc)
+                .raw(FIRMA_RUC).texto(emisor.ruc)
+                .raw(FIRMA_NOMBRE).texto(emisor.razonSocial)
+                .raw(FIRMA_FIN)
+                .raw(EMISOR_RUC).texto(emisor.ruc)
+                .raw(EMISOR_RAZON).texto(emisor.razonSocial)
+                .raw(EMISOR_FIN);
+
+        int numeroLinea = 1;
+        for (LineaResumen linea : lineas) {
+            if (rc) {
+                escribirLineaRc(w, numeroLinea++, linea);
+            } else {
+                escribirLineaRa(w, numeroLinea++, linea);
+            }
+        }
+        w.raw(rc ? RC_FIN : RA_FIN);
+    }
+
+    private static void escribirLineaRc(UblWriter w, int numero, LineaResumen linea) throws IOException {
+        w.raw(RC_LINEA_ID).entero(numero)
+                .raw(RC_LINEA_TIPO).texto(linea.tipoDocumento())
+                .raw(RC_LINEA_NUMERO).texto(linea.serie()).texto("-").entero(linea.correlativo())
+                .raw(RC_LINEA_CLIENTE).texto(linea.clienteNumeroDocumento())
+                .raw(RC_LINEA_CLIENTE_TIPO).texto(linea.clienteTipoDocumento())
+                .raw(RC_LINEA_ESTADO).entero(linea.condicion())
+                .raw(RC_LINEA_TOTAL).atributo(linea.moneda()).raw(MONTO_CIERRE).decimal(monto(linea.total()));
+
+        w.raw(RC_LINEA_TOTAL_FIN);
+
+        BigDecimal[] valores = {linea.gravadas(), linea.exoneradas(), linea.inafectas()};
+        for (int i = 0; i < valores.length; i++) {
+            if (valores[i].signum() != 0) {
+                w.raw(RC_LINEA_PAGO).atributo(linea.moneda()).raw(MONTO_CIERRE).decimal(monto(valores[i]))
+                        .raw(RC_LINEA_PAGO_TIPO).texto(TIPOS_VALOR_VENTA[i])
+                        .raw(RC_LINEA_PAGO_FIN);
+            }
+        }
+        w.raw(RC_LINEA_IGV).atributo(linea.moneda()).raw(MONTO_CIERRE).decimal(monto(linea.igv()))
+                .raw(RC_LINEA_IGV_SUBTOTAL).atributo(linea.moneda()).raw(MONTO_CIERRE).decimal(monto(linea.igv()))
+                .raw(RC_LINEA_FIN);
+    }
+
+    private static void escribirLineaRa(UblWriter w, int numero, LineaResumen linea) throws IOException {
+        w.raw(RA_LINEA_ID).entero(numero)
+                .raw(RA_LINEA_TIPO).texto(linea.tipoDocumento())
+                .raw(RA_LINEA_SERIE).texto(linea.serie())
+                .raw(RA_LINEA_NUMERO).entero(linea.correlativo())
+                .raw(RA_LINEA_MOTIVO).texto(linea.motivo())
+                .raw(RA_LINEA_FIN);
+    }
+
+    private static BigDecimal monto(BigDecimal valor) {
+        return valor.setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,106 @@
+package com.empresa.facturacion.service.totales;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Calcula los importes por línea y los totales del comprobante en un solo recorrido de los ítems,
+ * con aritmética de {@code long} a escala fija ({@link Monto}).
+ *
+ * Reglas de redondeo de SUNAT (HALF_UP a 2 decimales): el valor de venta de cada línea se redondea
+ * una vez, el IGV de la línea se calcula sobre ese valor ya redondeado y los totales son la suma de
+ * las líneas, así el total de IGV coincide exactamente con la suma del detalle.
+ */
+@ApplicationScoped
+public class CalculadoraTotales {
+
+    public static final BigDecimal TASA_IGV = new BigDecimal("0.18");
+    public static final BigDecimal MONTO_ICBPER = new BigDecimal("0.50");
+
+    private final long tasaIgv;
+    private final int escalaTasaIgv;
+    private final long porcentajeIgv;
+    private final long montoIcbper;
+
+    /**
+     * Tasas vigentes; para usar la calculadora fuera de CDI (pruebas, benchmarks).
+     */
+    public CalculadoraTotales() {
+        this(TASA_IGV, MONTO_ICBPER);
+    }
+
+    @Inject
+    public CalculadoraTotales(@ConfigProperty(name = "facturacion.igv.tasa", defaultValue = "0.18") BigDecimal tasaIgv,
+                              @ConfigProperty(name = "facturacion.icbper.monto", defaultValue = "0.50") BigDecimal montoIcbper) {
+        this.escalaTasaIgv = Monto.escala(tasaIgv);
+        this.tasaIgv = Monto.desde(tasaIgv, escalaTasaIgv);
+        this.porcentajeIgv = Monto.desde(tasaIgv.movePointRight(2), Monto.ESCALA);
+        this.montoIcbper = Monto.desde(montoIcbper, Monto.ESCALA);
+    }
+
+    public TotalesComprobante calcular(List<FacturaPruebaRequest.ItemDto> items) {
+        int lineas = items.size();
+        TotalesComprobante t = new TotalesComprobante(lineas, porcentajeIgv, montoIcbper);
+        for (int i = 0; i < lineas; i++) {
+            FacturaPruebaRequest.ItemDto item = items.get(i);
+
+            int escalaCantidad = Monto.escala(item.cantidad);
+            long cantidad = Monto.desde(item.cantidad, escalaCantidad);
+            if (cantidad <= 0) {
+                throw new IllegalArgumentException("La cantidad del ítem " + item.item + " debe ser mayor que cero");
+            }
+            int escalaValor = Monto.escala(item.valorUnitario);
+            long valorUnitario = Monto.desde(item.valorUnitario, escalaValor);
+
+            Categoria categoria = Categoria.de(item.codigoAfectacionIgv);
+            boolean calculaIgv = Categoria.calculaIgv(item.codigoAfectacionIgv);
+            long valorVenta = Monto.multiplicar(cantidad, escalaCantidad, valorUnitario, escalaValor, Monto.ESCALA);
+            long igv = calculaIgv
+                    ? Monto.multiplicar(valorVenta, Monto.ESCALA, tasaIgv, escalaTasaIgv, Monto.ESCALA)
+                    : 0;
+            long icbper = item.afectoIcbper
+                    ? Monto.multiplicar(cantidad, escalaCantidad, montoIcbper, Monto.ESCALA, Monto.ESCALA)
+                    : 0;
+
+            int escalaPrecio;
+            long precio;
+            if (categoria == Categoria.GRATUITA) {
+                // Valor referencial unitario (PriceTypeCode 02)
+                escalaPrecio = escalaValor;
+                precio = valorUnitario;
+            } else {
+                escalaPrecio = Math.max(escalaValor, Monto.ESCALA);
+                precio = Monto.reescalar(valorUnitario, escalaValor, escalaPrecio)
+                        + Monto.dividir(igv, Monto.ESCALA, cantidad, escalaCantidad, escalaPrecio);
+            }
+
+            t.cantidad[i] = cantidad;
+            t.escalaCantidad[i] = (byte) escalaCantidad;
+            t.valorUnitario[i] = valorUnitario;
+            t.escalaValorUnitario[i] = (byte) escalaValor;
+            t.precioUnitario[i] = precio;
+            t.escalaPrecio[i] = (byte) escalaPrecio;
+            t.valorVenta[i] = valorVenta;
+            t.igv[i] = igv;
+            t.icbper[i] = icbper;
+            t.categoria[i] = categoria;
+            t.calculaIgv[i] = calculaIgv;
+
+            t.bases[categoria.ordinal()] += valorVenta;
+            if (categoria == Categoria.GRATUITA) {
+                t.igvGratuitas += igv;
+            } else {
+                t.igvTotal += igv;
+            }
+            t.icbperTotal += icbper;
+            t.registrarCategoria(categoria);
+        }
+        t.cerrar();
+        return t;
+    }
+}
@@ -0,0 +1,45 @@
+package com.empresa.facturacion.service.totales;
+
+/**
+ * Agrupación de los códigos de afectación del IGV (catálogo 07) en los totales del comprobante,
+ * con el tributo del catálogo 05 con que se informa cada una.
+ */
+public enum Categoria {
+
+    GRAVADA("1000", "IGV", "VAT"),
+    EXONERADA("9997", "EXO", "VAT"),
+    INAFECTA("9998", "INA", "FRE"),
+    EXPORTACION("9995", "EXP", "FRE"),
+    GRATUITA("9996", "GRA", "FRE");
+
+    public final String codigoTributo;
+    public final String nombreTributo;
+    public final String codigoInternacional;
+
+    Categoria(String codigoTributo, String nombreTributo, String codigoInternacional) {
+        this.codigoTributo = codigoTributo;
+        this.nombreTributo = nombreTributo;
+        this.codigoInternacional = codigoInternacional;
+    }
+
+    /**
+     * @throws IllegalArgumentException si el código no existe o no está soportado (17, IVAP)
+     */
+    public static Categoria de(String codigoAfectacion) {
+        return switch (codigoAfectacion) {
+            case "10" -> GRAVADA;
+            case "20" -> EXONERADA;
+            case "30" -> INAFECTA;
+            case "40" -> EXPORTACION;
+            case "11", "12", "13", "14", "15", "16", "21", "31", "32", "33", "34", "35", "36", "37" -> GRATUITA;
+            default -> throw new IllegalArgumentException("Código de afectación no soportado: " + codigoAfectacion);
+        };
+    }
+
+    /**
+     * Las operaciones gratuitas gravadas (11 a 16) calculan IGV, aunque no se cobra.
+     */
+    static boolean calculaIgv(String codigoAfectacion) {
+        return codigoAfectacion.charAt(0) == '1';
+    }
+}
@@ -0,0 +1,193 @@
+package com.empresa.facturacion.service.totales;
+
+import com.empresa.facturacion.service.ubl.UblWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static com.empresa.facturacion.service.ubl.UblWriter.utf8;
+
+/**
+ * Importe en letras para la leyenda 1000 del comprobante: 118.00 PEN → "CIENTO DIECIOCHO CON 00/100
+ * SOLES".
+ *
+ * Cada palabra (con su espacio final) está en una tabla estática como String y como UTF-8
+ * pre-codificado; la conversión solo elige índices y copia entradas al destino, sin crear objetos.
+ * Admite importes hasta 999 999 billones, más de lo que cabe en céntimos {@code long}.
+ */
+public final class ImporteEnLetras {
+
+    private static final String[] UNIDADES = {
+            "CERO ", "UNO ", "DOS ", "TRES ", "CUATRO ", "CINCO ", "SEIS ", "SIETE ", "OCHO ", "NUEVE ",
+            "DIEZ ", "ONCE ", "DOCE ", "TRECE ", "CATORCE ", "QUINCE ", "DIECISÉIS ", "DIECISIETE ",
+            "DIECIOCHO ", "DIECINUEVE ", "VEINTE ", "VEINTIUNO ", "VEINTIDÓS ", "VEINTITRÉS ",
+            "VEINTICUATRO ", "VEINTICINCO ", "VEINTISÉIS ", "VEINTISIETE ", "VEINTIOCHO ", "VEINTINUEVE "};
+    private static final String[] DECENAS = {
+            "", "", "", "TREINTA ", "CUARENTA ", "CINCUENTA ", "SESENTA ", "SETENTA ", "OCHENTA ", "NOVENTA "};
+    private static final String[] CENTENAS = {
+            "", "CIENTO ", "DOSCIENTOS ", "TRESCIENTOS ", "CUATROCIENTOS ", "QUINIENTOS ", "SEISCIENTOS ",
+            "SETECIENTOS ", "OCHOCIENTOS ", "NOVECIENTOS "};
+    private static final String[] SUELTAS = {
+            "CIEN ", "Y ", "UN ", "VEINTIÚN ", "MIL ", "MILLÓN ", "MILLONES ", "BILLÓN ", "BILLONES ", "CON "};
+    private static final String[] MONEDAS = {"SOLES", "DÓLARES AMERICANOS", "EUROS"};
+
+    // Índices en la tabla única de palabras
+    private static final int UNIDAD = 0;
+    private static final int DECENA = UNIDAD + UNIDADES.length;
+    private static final int CENTENA = DECENA + DECENAS.length;
+    private static final int CIEN = CENTENA + CENTENAS.length;
+    private static final int Y = CIEN + 1;
+    private static final int UN = CIEN + 2;
+    private static final int VEINTIUN = CIEN + 3;
+    private static final int MIL = CIEN + 4;
+    private static final int MILLON = CIEN + 5;
+    private static final int MILLONES = CIEN + 6;
+    private static final int BILLON = CIEN + 7;
+    private static final int BILLONES = CIEN + 8;
+    private static final int CON = CIEN + 9;
+    private static final int CENTIMOS = CIEN + SUELTAS.length;
+    private static final int MONEDA = CENTIMOS + 100;
+
+    private static final String[] PALABRAS = new String[MONEDA + MONEDAS.length];
+    private static final byte[][] PALABRAS_UTF8 = new byte[PALABRAS.length][];
+
+    static {
+        String[][] tablas = {UNIDADES, DECENAS, CENTENAS, SUELTAS};
+        int i = 0;
+        for (String[] tabla : tablas) {
+            for (String palabra : tabla) {
+                PALABRAS[i++] = palabra;
+            }
+        }
+        for (int c = 0; c < 100; c++) {
+            PALABRAS[i++] = (c < 10 ? "0" : "") + c + "/100 ";
+        }
+        for (String moneda : MONEDAS) {
+            PALABRAS[i++] = moneda;
+        }
+        for (int p = 0; p < PALABRAS.length; p++) {
+            PALABRAS_UTF8[p] = utf8(PALABRAS[p]);
+        }
+    }
+
+    private static final long MILLON_VALOR = 1_000_000L;
+    private static final long BILLON_VALOR = 1_000_000_000_000L;
+
+    @FunctionalInterface
+    private interface Destino<D> {
+        void palabra(D destino, int palabra) throws IOException;
+    }
+
+    private static final Destino<StringBuilder> TEXTO = (sb, palabra) -> sb.append(PALABRAS[palabra]);
+    private static final Destino<UblWriter> XML = (writer, palabra) -> writer.raw(PALABRAS_UTF8[palabra]);
+
+    private ImporteEnLetras() {
+    }
+
+    public static String convertir(long centimos, String moneda) {
+        return escribir(centimos, moneda, new StringBuilder(64)).toString();
+    }
+
+    public static StringBuilder escribir(long centimos, String moneda, StringBuilder destino) {
+        try {
+            escribir(centimos, moneda, destino, TEXTO);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringBuilder no lanza IOException
+        }
+        return destino;
+    }
+
+    /**
+     * Escribe la leyenda como texto del elemento actual; las palabras no llevan caracteres a escapar.
+     */
+    public static void escribir(long centimos, String moneda, UblWriter writer) throws IOException {
+        escribir(centimos, moneda, writer, XML);
+    }
+
+    private static <D> void escribir(long centimos, String moneda, D d, Destino<D> destino) throws IOException {
+        if (centimos < 0) {
+            throw new IllegalArgumentException("Importe negativo: " + centimos);
+        }
+        int indiceMoneda = moneda(moneda);
+        long entero = centimos / 100;
+
+        if (entero == 0) {
+            destino.palabra(d, UNIDAD);
+        }
+        long billones = entero / BILLON_VALOR;
+        if (billones == 1) {
+            destino.palabra(d, UN);
+            destino.palabra(d, BILLON);
+        } else if (billones > 1) {
+            hastaMillon((int) billones, true, d, destino);
+            destino.palabra(d, BILLONES);
+        }
+        int millones = (int) (entero / MILLON_VALOR % MILLON_VALOR);
+        if (millones == 1) {
+            destino.palabra(d, UN);
+            destino.palabra(d, MILLON);
+        } else if (millones > 1) {
+            hastaMillon(millones, true, d, destino);
+            destino.palabra(d, MILLONES);
+        }
+        int resto = (int) (entero % MILLON_VALOR);
+        if (resto > 0) {
+            hastaMillon(resto, false, d, destino);
+        }
+
+        destino.palabra(d, CON);
+        destino.palabra(d, CENTIMOS + (int) (centimos % 100));
+        destino.palabra(d, MONEDA + indiceMoneda);
+    }
+
+    /**
+     * 1 a 999 999. Con {@code apocope} el número precede a un sustantivo (MIL, MILLONES): 21 → VEINTIÚN.
+     */
+    private static <D> void hastaMillon(int n, boolean apocope, D d, Destino<D> destino) throws IOException {
+        int miles = n / 1000;
+        int resto = n % 1000;
+        if (miles > 1) {
+            hastaMil(miles, true, d, destino);
+        }
+        if (miles > 0) {
+            destino.palabra(d, MIL);
+        }
+        if (resto > 0) {
+            hastaMil(resto, apocope, d, destino);
+        }
+    }
+
+    private static <D> void hastaMil(int n, boolean apocope, D d, Destino<D> destino) throws IOException {
+        int centenas = n / 100;
+        int resto = n % 100;
+        if (n == 100) {
+            destino.palabra(d, CIEN);
+            return;
+        }
+        if (centenas > 0) {
+            destino.palabra(d, CENTENA + centenas);
+        }
+        if (resto == 0) {
+            return;
+        }
+        if (resto < UNIDADES.length) {
+            destino.palabra(d, apocope && resto == 1 ? UN : apocope && resto == 21 ? VEINTIUN : UNIDAD + resto);
+            return;
+        }
+        destino.palabra(d, DECENA + resto / 10);
+        int unidad = resto % 10;
+        if (unidad > 0) {
+            destino.palabra(d, Y);
+            destino.palabra(d, apocope && unidad == 1 ? UN : UNIDAD + unidad);
+        }
+    }
+
+    private static int moneda(String moneda) {
+        return switch (moneda) {
+            case "PEN" -> 0;
+            case "USD" -> 1;
+            case "EUR" -> 2;
+            default -> throw new IllegalArgumentException("Moneda no soportada para la leyenda: " + moneda);
+        };
+    }
+}
@@ -0,0 +1,111 @@
+package com.empresa.facturacion.service.totales;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Aritmética decimal de escala fija sobre {@code long}: un monto es su valor sin escala más la escala
+ * (2 = céntimos), igual que {@code BigDecimal.valueOf(valor, escala)} pero sin objetos.
+ *
+ * Cada operación redondea una sola vez al final con HALF_UP, la regla de SUNAT para importes. Si un
+ * producto intermedio no entra en 64 bits se resuelve con {@link BigDecimal}; con montos reales de
+ * facturación eso no ocurre.
+ */
+public final class Monto {
+
+    /** Escala de los importes del comprobante (céntimos). */
+    public static final int ESCALA = 2;
+
+    /** Escala máxima que SUNAT admite para cantidades y valores unitarios. */
+    public static final int ESCALA_MAXIMA = 10;
+
+    private static final long[] POTENCIAS = new long[19];
+
+    static {
+        POTENCIAS[0] = 1;
+        for (int i = 1; i < POTENCIAS.length; i++) {
+            POTENCIAS[i] = POTENCIAS[i - 1] * 10;
+        }
+    }
+
+    private Monto() {
+    }
+
+    /**
+     * Escala con la que se guardará {@code valor}: la recibida, acotada a [0, {@link #ESCALA_MAXIMA}].
+     */
+    public static int escala(BigDecimal valor) {
+        return Math.min(Math.max(valor.scale(), 0), ESCALA_MAXIMA);
+    }
+
+    /**
+     * Valor sin escala de {@code valor} expresado en {@code escala} decimales.
+     */
+    public static long desde(BigDecimal valor, int escala) {
+        return valor.setScale(escala, RoundingMode.HALF_UP).scaleByPowerOfTen(escala).longValueExact();
+    }
+
+    public static long potencia(int exponente) {
+        return POTENCIAS[exponente];
+    }
+
+    /**
+     * {@code a × b} redondeado a {@code escala} decimales.
+     */
+    public static long multiplicar(long a, int escalaA, long b, int escalaB, int escala) {
+        long producto = a * b;
+        if (Math.multiplyHigh(a, b) != (producto >> 63)) {
+            return conBigDecimal(BigDecimal.valueOf(a, escalaA).multiply(BigDecimal.valueOf(b, escalaB)), escala);
+        }
+        return reescalar(producto, escalaA + escalaB, escala);
+    }
+
+    /**
+     * {@code numerador ÷ divisor} redondeado a {@code escala} decimales.
+     */
+    public static long dividir(long numerador, int escalaNumerador, long divisor, int escalaDivisor, int escala) {
+        int ajuste = escalaDivisor + escala - escalaNumerador;
+        if (ajuste >= 0) {
+            long ampliado = numerador * POTENCIAS[ajuste];
+            if (Math.multiplyHigh(numerador, POTENCIAS[ajuste]) != (ampliado >> 63)) {
+                return conBigDecimal(BigDecimal.valueOf(numerador, escalaNumerador)
+                        .divide(BigDecimal.valueOf(divisor, escalaDivisor), escala, RoundingMode.HALF_UP), escala);
+            }
+            return redondear(ampliado, divisor);
+        }
+        return redondear(numerador, Math.multiplyExact(divisor, POTENCIAS[-ajuste]));
+    }
+
+    /**
+     * Pasa {@code valor} de {@code desde} a {@code hasta} decimales, redondeando si se pierden dígitos.
+     */
+    public static long reescalar(long valor, int desde, int hasta) {
+        if (desde == hasta) {
+            return valor;
+        }
+        if (desde > hasta) {
+            return redondear(valor, POTENCIAS[desde - hasta]);
+        }
+        return Math.multiplyExact(valor, POTENCIAS[hasta - desde]);
+    }
+
+    public static BigDecimal aBigDecimal(long valor, int escala) {
+        return BigDecimal.valueOf(valor, escala);
+    }
+
+    /**
+     * División entera con redondeo HALF_UP (la mitad se aleja de cero).
+     */
+    static long redondear(long dividendo, long divisor) {
+        long cociente = dividendo / divisor;
+        long resto = dividendo % divisor;
+        if (resto != 0 && Math.abs(resto) >= Math.abs(divisor) - Math.abs(resto)) {
+            cociente += (dividendo < 0) == (divisor < 0) ? 1 : -1;
+        }
+        return cociente;
+    }
+
+    private static long conBigDecimal(BigDecimal valor, int escala) {
+        return desde(valor, escala);
+    }
+}
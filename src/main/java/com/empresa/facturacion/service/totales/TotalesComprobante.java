@@ -0,0 +1,161 @@
+package com.empresa.facturacion.service.totales;
+
+import java.util.EnumSet;
+
+/**
+ * Importes de un comprobante calculados por {@link CalculadoraTotales} en una sola pasada.
+ *
+ * Los valores por línea se guardan en arreglos primitivos y se leen por índice al escribir el XML,
+ * sin un objeto por ítem. Todos los importes están en escala {@link Monto#ESCALA}; la cantidad, el
+ * valor unitario y el precio unitario conservan su propia escala, que se consulta aparte.
+ */
+public final class TotalesComprobante {
+
+    private final int lineas;
+    private final long porcentajeIgv;
+    private final long montoIcbper;
+
+    final long[] cantidad;
+    final byte[] escalaCantidad;
+    final long[] valorUnitario;
+    final byte[] escalaValorUnitario;
+    final long[] precioUnitario;
+    final byte[] escalaPrecio;
+    final long[] valorVenta;
+    final long[] igv;
+    final long[] icbper;
+    final Categoria[] categoria;
+    final boolean[] calculaIgv;
+
+    final long[] bases = new long[Categoria.values().length];
+    long igvTotal;
+    long igvGratuitas;
+    long icbperTotal;
+    private final EnumSet<Categoria> presentes = EnumSet.noneOf(Categoria.class);
+    private Categoria[] categorias;
+
+    TotalesComprobante(int lineas, long porcentajeIgv, long montoIcbper) {
+        this.lineas = lineas;
+        this.porcentajeIgv = porcentajeIgv;
+        this.montoIcbper = montoIcbper;
+        this.cantidad = new long[lineas];
+        this.escalaCantidad = new byte[lineas];
+        this.valorUnitario = new long[lineas];
+        this.escalaValorUnitario = new byte[lineas];
+        this.precioUnitario = new long[lineas];
+        this.escalaPrecio = new byte[lineas];
+        this.valorVenta = new long[lineas];
+        this.igv = new long[lineas];
+        this.icbper = new long[lineas];
+        this.categoria = new Categoria[lineas];
+        this.calculaIgv = new boolean[lineas];
+    }
+
+    void registrarCategoria(Categoria categoria) {
+        presentes.add(categoria);
+    }
+
+    void cerrar() {
+        categorias = presentes.toArray(new Categoria[0]);
+    }
+
+    public int lineas() {
+        return lineas;
+    }
+
+    // ---- por línea ----
+
+    public long cantidad(int linea) {
+        return cantidad[linea];
+    }
+
+    public int escalaCantidad(int linea) {
+        return escalaCantidad[linea];
+    }
+
+    public long valorUnitario(int linea) {
+        return valorUnitario[linea];
+    }
+
+    public int escalaValorUnitario(int linea) {
+        return escalaValorUnitario[linea];
+    }
+
+    /** Precio unitario con IGV; en operaciones gratuitas, el valor referencial unitario. */
+    public long precioUnitario(int linea) {
+        return precioUnitario[linea];
+    }
+
+    public int escalaPrecio(int linea) {
+        return escalaPrecio[linea];
+    }
+
+    /** Cantidad × valor unitario; en operaciones gratuitas es el valor referencial. */
+    public long valorVenta(int linea) {
+        return valorVenta[linea];
+    }
+
+    public long igv(int linea) {
+        return igv[linea];
+    }
+
+    public long icbper(int linea) {
+        return icbper[linea];
+    }
+
+    public Categoria categoria(int linea) {
+        return categoria[linea];
+    }
+
+    /** Porcentaje del IGV de la línea (escala 2): la tasa si la línea calcula IGV, si no cero. */
+    public long porcentaje(int linea) {
+        return calculaIgv[linea] ? porcentajeIgv : 0;
+    }
+
+    // ---- agregados ----
+
+    /** Categorías con al menos una línea, en el orden del catálogo. */
+    public Categoria[] categorias() {
+        return categorias;
+    }
+
+    public long base(Categoria categoria) {
+        return bases[categoria.ordinal()];
+    }
+
+    /** IGV informado en el subtotal de la categoría; el de las gratuitas no se suma al total. */
+    public long impuesto(Categoria categoria) {
+        return switch (categoria) {
+            case GRAVADA -> igvTotal;
+            case GRATUITA -> igvGratuitas;
+            default -> 0;
+        };
+    }
+
+    public long igv() {
+        return igvTotal;
+    }
+
+    public long icbper() {
+        return icbperTotal;
+    }
+
+    public long montoIcbper() {
+        return montoIcbper;
+    }
+
+    /** Valor de venta: operaciones onerosas, sin tributos ni gratuitas. */
+    public long valorVentaTotal() {
+        return base(Categoria.GRAVADA) + base(Categoria.EXONERADA) + base(Categoria.INAFECTA)
+                + base(Categoria.EXPORTACION);
+    }
+
+    /** Tributos cobrados: IGV + ICBPER. */
+    public long impuestos() {
+        return igvTotal + icbperTotal;
+    }
+
+    public long total() {
+        return valorVentaTotal() + impuestos();
+    }
+}
@@ -0,0 +1,120 @@
+package com.empresa.facturacion.service.trafico;
+
+/**
+ * Circuit breaker sobre una ventana de las últimas llamadas.
+ *
+ * Abre cuando la proporción de fallas de la ventana supera el umbral, rechaza todo mientras está
+ * abierto y luego deja pasar unas pocas llamadas de prueba: si todas salen bien vuelve a cerrar,
+ * si alguna falla vuelve a abrir.
+ */
+final class CircuitoSunat {
+
+    enum Estado { CERRADO, SEMIABIERTO, ABIERTO }
+
+    private final boolean[] ventana;
+    private final int minimoLlamadas;
+    private final double umbralFallas;
+    private final long esperaAbierto;
+    private final int pruebas;
+
+    private Estado estado = Estado.CERRADO;
+    private int posicion;
+    private int registradas;
+    private int fallas;
+    private long abiertoHasta;
+    private int pruebasEnCurso;
+    private long inicioPruebas;
+    private int pruebasExitosas;
+
+    CircuitoSunat(int tamanoVentana, int minimoLlamadas, double umbralFallas, long esperaAbierto, int pruebas) {
+        this.ventana = new boolean[tamanoVentana];
+        this.minimoLlamadas = Math.min(minimoLlamadas, tamanoVentana);
+        this.umbralFallas = umbralFallas;
+        this.esperaAbierto = esperaAbierto;
+        this.pruebas = pruebas;
+    }
+
+    synchronized boolean permitir(long ahora) {
+        if (estado == Estado.ABIERTO) {
+            if (ahora - abiertoHasta < 0) {
+                return false;
+            }
+            estado = Estado.SEMIABIERTO;
+            pruebasEnCurso = 0;
+            pruebasExitosas = 0;
+            inicioPruebas = ahora;
+        }
+        if (estado == Estado.SEMIABIERTO) {
+            if (ahora - inicioPruebas >= esperaAbierto) {
+                // Pruebas que nunca informaron resultado (canceladas en espera): se habilitan otras
+                pruebasEnCurso = 0;
+                inicioPruebas = ahora;
+            }
+            if (pruebasEnCurso >= pruebas) {
+                return false;
+            }
+            pruebasEnCurso++;
+        }
+        return true;
+    }
+
+    /**
+     * Registra el resultado de una llamada que {@link #permitir} dejó pasar.
+     */
+    synchronized void registrar(boolean exito, long ahora) {
+        switch (estado) {
+            case CERRADO -> {
+                if (registradas == ventana.length) {
+                    if (ventana[posicion]) {
+                        fallas--;
+                    }
+                } else {
+                    registradas++;
+                }
+                ventana[posicion] = !exito;
+                if (!exito) {
+                    fallas++;
+                }
+                posicion = (posicion + 1) % ventana.length;
+                if (registradas >= minimoLlamadas && fallas >= umbralFallas * registradas) {
+                    abrir(ahora);
+                }
+            }
+            case SEMIABIERTO -> {
+                if (!exito) {
+                    abrir(ahora);
+                } else if (++pruebasExitosas >= pruebas) {
+                    cerrar();
+                }
+            }
+            case ABIERTO -> {
+                // Llamadas que empezaron antes de abrir: no cambian nada
+            }
+        }
+    }
+
+    /**
+     * Libera el cupo de prueba de una llamada cancelada sin resultado.
+     */
+    synchronized void descartar() {
+        if (estado == Estado.SEMIABIERTO && pruebasEnCurso > 0) {
+            pruebasEnCurso--;
+        }
+    }
+
+    synchronized Estado estado() {
+        return estado;
+    }
+
+    private void abrir(long ahora) {
+        estado = Estado.ABIERTO;
+        abiertoHasta = ahora + esperaAbierto;
+    }
+
+    private void cerrar() {
+        estado = Estado.CERRADO;
+        posicion = 0;
+        registradas = 0;
+        fallas = 0;
+    }
+}
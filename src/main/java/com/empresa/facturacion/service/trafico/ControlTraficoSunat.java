@@ -0,0 +1,334 @@
+package com.empresa.facturacion.service.trafico;
+
+import com.empresa.facturacion.service.cdr.ClaseCodigoSunat;
+import com.empresa.facturacion.service.cdr.LectorRespuestaSunat;
+import com.empresa.facturacion.service.cdr.RespuestaSunat;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.WebApplicationException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Control de tráfico delante de billService.
+ *
+ * Cada envío pasa, en este orden, por: el circuit breaker (falla rápido si SUNAT está caída), la cuota
+ * del RUC (token bucket: la llamada se difiere, no se rechaza) y el limitador AIMD de concurrencia global.
+ * Las fallas transitorias se reintentan con backoff exponencial con jitter, para que los llamadores no
+ * reintenten todos a la vez, y solo mientras quede presupuesto de tiempo. Los reintentos repiten únicamente
+ * la llamada HTTP: el ZIP firmado y el sobre son los mismos. Un SOAP Fault con HTTP 500 es una respuesta
+ * de SUNAT, no una falla: se devuelve como cuerpo para que lo interprete el lector de respuestas, salvo
+ * que su código sea transitorio ({@link ClaseCodigoSunat#REINTENTABLE}), en cuyo caso se reintenta y solo
+ * se devuelve si se agotan los reintentos.
+ *
+ * sendBill no es idempotente: {@link #enviar} solo reintenta las fallas que prueban que SUNAT no recibió
+ * nada (ver {@link #sinEnviar}). Un timeout, una conexión cortada o un 5xx sin fault se devuelven al
+ * llamador, que deja el envío INCIERTO para conciliarlo con getStatusCdr. Las consultas ({@link #consultar})
+ * sí se reintentan ante cualquier falla transitoria.
+ */
+@ApplicationScoped
+public class ControlTraficoSunat {
+
+    private static final Logger LOG = Logger.getLogger(ControlTraficoSunat.class);
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "sunat.trafico.tasa-por-ruc", defaultValue = "10")
+    double tasaPorRuc;
+
+    @ConfigProperty(name = "sunat.trafico.rafaga-por-ruc", defaultValue = "20")
+    int rafagaPorRuc;
+
+    @ConfigProperty(name = "sunat.trafico.espera-maxima-cuota", defaultValue = "30s")
+    Duration esperaMaximaCuota;
+
+    @ConfigProperty(name = "sunat.trafico.concurrencia-inicial", defaultValue = "8")
+    int concurrenciaInicial;
+
+    @ConfigProperty(name = "sunat.trafico.concurrencia-minima", defaultValue = "1")
+    int concurrenciaMinima;
+
+    @ConfigProperty(name = "sunat.trafico.concurrencia-maxima", defaultValue = "64")
+    int concurrenciaMaxima;
+
+    @ConfigProperty(name = "sunat.trafico.latencia-objetivo", defaultValue = "3s")
+    Duration latenciaObjetivo;
+
+    @ConfigProperty(name = "sunat.trafico.factor-reduccion", defaultValue = "0.5")
+    double factorReduccion;
+
+    @ConfigProperty(name = "sunat.trafico.max-cola", defaultValue = "1000")
+    int maxCola;
+
+    @ConfigProperty(name = "sunat.trafico.circuito.ventana", defaultValue = "20")
+    int ventanaCircuito;
+
+    @ConfigProperty(name = "sunat.trafico.circuito.minimo-llamadas", defaultValue = "10")
+    int minimoLlamadasCircuito;
+
+    @ConfigProperty(name = "sunat.trafico.circuito.umbral-fallas", defaultValue = "0.5")
+    double umbralFallasCircuito;
+
+    @ConfigProperty(name = "sunat.trafico.circuito.espera", defaultValue = "30s")
+    Duration esperaCircuito;
+
+    @ConfigProperty(name = "sunat.trafico.circuito.pruebas", defaultValue = "3")
+    int pruebasCircuito;
+
+    @ConfigProperty(name = "sunat.trafico.reintentos", defaultValue = "3")
+    int reintentos;
+
+    @ConfigProperty(name = "sunat.trafico.backoff-inicial", defaultValue = "500ms")
+    Duration backoffInicial;
+
+    @ConfigProperty(name = "sunat.trafico.backoff-maximo", defaultValue = "10s")
+    Duration backoffMaximo;
+
+    @ConfigProperty(name = "sunat.trafico.jitter", defaultValue = "0.5")
+    double jitter;
+
+    @ConfigProperty(name = "sunat.trafico.presupuesto-reintentos", defaultValue = "30s")
+    Duration presupuestoReintentos;
+
+    private final Map<String, CubetaTokens> cuotas = new ConcurrentHashMap<>();
+    private LimitadorAimd limitador;
+    private CircuitoSunat circuito;
+
+    private Timer esperaCuota;
+    private Timer esperaConcurrencia;
+    private Counter reintentosRealizados;
+    private final Map<String, Counter> rechazos = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void iniciar() {
+        limitador = new LimitadorAimd(concurrenciaInicial, concurrenciaMinima, concurrenciaMaxima,
+                latenciaObjetivo.toNanos(), factorReduccion, maxCola);
+        circuito = new CircuitoSunat(ventanaCircuito, minimoLlamadasCircuito, umbralFallasCircuito,
+                esperaCircuito.toNanos(), pruebasCircuito);
+
+        Gauge.builder("sunat.trafico.limite", limitador, LimitadorAimd::limite)
+                .description("Límite AIMD de llamadas simultáneas a SUNAT").register(registry);
+        Gauge.builder("sunat.trafico.en_curso", limitador, LimitadorAimd::enCurso)
+                .description("Llamadas a SUNAT con permiso de concurrencia").register(registry);
+        Gauge.builder("sunat.trafico.en_espera", limitador, LimitadorAimd::enEspera)
+                .description("Llamadas esperando lugar en el limitador").register(registry);
+        Gauge.builder("sunat.trafico.circuito", circuito, c -> c.estado().ordinal())
+                .description("Estado del circuito: 0 cerrado, 1 semiabierto, 2 abierto").register(registry);
+        esperaCuota = Timer.builder("sunat.trafico.espera").tag("motivo", "cuota")
+                .description("Tiempo diferido por la cuota del RUC o por el limitador").register(registry);
+        esperaConcurrencia = Timer.builder("sunat.trafico.espera").tag("motivo", "concurrencia")
+                .description("Tiempo diferido por la cuota del RUC o por el limitador").register(registry);
+        reintentosRealizados = Counter.builder("sunat.trafico.reintentos")
+                .description("Reintentos por fallas transitorias").register(registry);
+    }
+
+    /**
+     * Ejecuta un envío a billService (sendBill) bajo el control de tráfico del RUC emisor. Solo se
+     * reintenta si SUNAT no llegó a recibir la solicitud.
+     *
+     * @param llamada crea la Uni de la llamada HTTP; se invoca una vez por intento
+     */
+    public Uni<String> enviar(String ruc, Supplier<Uni<String>> llamada) {
+        return ejecutar(ruc, llamada, false);
+    }
+
+    /**
+     * Ejecuta una consulta idempotente (getStatusCdr) bajo el control de tráfico del RUC emisor; se
+     * reintenta ante cualquier falla transitoria.
+     */
+    public Uni<String> consultar(String ruc, Supplier<Uni<String>> llamada) {
+        return ejecutar(ruc, llamada, true);
+    }
+
+    private Uni<String> ejecutar(String ruc, Supplier<Uni<String>> llamada, boolean idempotente) {
+        return Uni.createFrom().deferred(() -> {
+            long limite = System.nanoTime() + presupuestoReintentos.toNanos();
+            return Uni.createFrom().deferred(() -> intento(ruc, llamada))
+                    .onFailure(error -> reintentable(error, limite, idempotente)).invoke(error -> {
+                        reintentosRealizados.increment();
+                        LOG.warnf("Falla transitoria enviando a SUNAT (RUC %s): %s", ruc, error.getMessage());
+                    })
+                    .onFailure(error -> reintentable(error, limite, idempotente)).retry()
+                    .withBackOff(backoffInicial, backoffMaximo).withJitter(jitter).atMost(reintentos)
+                    // Sin más reintentos, el fault transitorio es la respuesta de SUNAT
+                    .onFailure(FaultTransitorio.class).recoverWithItem(error -> ((FaultTransitorio) error).sobre);
+        });
+    }
+
+    private Uni<String> intento(String ruc, Supplier<Uni<String>> llamada) {
+        long ahora = System.nanoTime();
+        if (!circuito.permitir(ahora)) {
+            return rechazo(TraficoSunatException.CIRCUITO_ABIERTO, "Circuito abierto: SUNAT no responde, envío no realizado");
+        }
+        long espera = cuota(ruc, ahora).reservar(ahora, esperaMaximaCuota.toNanos());
+        if (espera < 0) {
+            circuito.descartar();
+            return rechazo(TraficoSunatException.CUOTA_EXCEDIDA,
+                    "Cuota de envíos del RUC " + ruc + " agotada por más de " + esperaMaximaCuota);
+        }
+        Uni<Void> turno = Uni.createFrom().voidItem();
+        if (espera > 0) {
+            esperaCuota.record(espera, TimeUnit.NANOSECONDS);
+            turno = turno.onItem().delayIt().by(Duration.ofNanos(espera));
+        }
+        return turno
+                .onItem().transformToUni(v -> {
+                    long solicitado = System.nanoTime();
+                    return limitador.adquirir().onItem().invoke(p ->
+                            esperaConcurrencia.record(System.nanoTime() - solicitado, TimeUnit.NANOSECONDS));
+                })
+                .onFailure(TraficoSunatException.class).invoke(error -> {
+                    circuito.descartar();
+                    contarRechazo(((TraficoSunatException) error).codigo);
+                })
+                .onItem().transformToUni(permiso -> llamar(llamada, permiso));
+    }
+
+    private Uni<String> llamar(Supplier<Uni<String>> llamada, LimitadorAimd.Permiso permiso) {
+        long inicio = System.nanoTime();
+        return Uni.createFrom().deferred(llamada::get)
+                .onFailure(WebApplicationException.class).recoverWithUni(error -> {
+                    String fault = soapFault((WebApplicationException) error);
+                    return fault != null ? Uni.createFrom().item(fault) : Uni.createFrom().failure(error);
+                })
+                .onItem().transformToUni(respuesta -> {
+                    String codigo = respuesta.contains("faultcode") ? codigoTransitorio(respuesta) : null;
+                    return codigo != null ? Uni.createFrom().failure(new FaultTransitorio(codigo, respuesta))
+                            : Uni.createFrom().item(respuesta);
+                })
+                .onTermination().invoke((respuesta, error, cancelado) -> {
+                    long fin = System.nanoTime();
+                    if (cancelado) {
+                        limitador.descartar(permiso);
+                        circuito.descartar();
+                        return;
+                    }
+                    boolean sobrecarga = error != null && esSobrecarga(error);
+                    limitador.liberar(permiso, fin - inicio, sobrecarga);
+                    circuito.registrar(!sobrecarga, fin);
+                });
+    }
+
+    private boolean reintentable(Throwable error, long limite, boolean idempotente) {
+        if (System.nanoTime() - limite >= 0) {
+            return false;
+        }
+        if (error instanceof TraficoSunatException e) {
+            // Con el circuito abierto reintentar solo alarga la espera del llamador
+            return TraficoSunatException.SATURADO.equals(e.codigo);
+        }
+        return idempotente ? esSobrecarga(error) : sinEnviar(error);
+    }
+
+    /**
+     * Fallas que prueban que SUNAT no procesó la solicitud: conexión rechazada o sin establecer, 429, 503
+     * y los SOAP Fault de servicio no disponible. Un timeout de lectura, una conexión cortada o un 500, 502
+     * o 504 sin fault pueden llegar después de que SUNAT recibió el documento: reenviarlo daría 1033.
+     */
+    static boolean sinEnviar(Throwable error) {
+        if (error instanceof FaultTransitorio) {
+            return true;
+        }
+        if (error instanceof WebApplicationException e) {
+            int estado = e.getResponse().getStatus();
+            return estado == 429 || estado == 503;
+        }
+        // Incluye el timeout de conexión de Netty (ConnectTimeoutException)
+        return error instanceof ConnectException;
+    }
+
+    /**
+     * Fallas que indican que SUNAT (o la red) no da abasto: timeouts, conexión, 429, 500 sin SOAP Fault,
+     * 502-504 y los SOAP Fault de servicio no disponible.
+     */
+    public static boolean esSobrecarga(Throwable error) {
+        if (error instanceof FaultTransitorio) {
+            return true;
+        }
+        if (error instanceof WebApplicationException e) {
+            int estado = e.getResponse().getStatus();
+            return estado == 429 || estado >= 500;
+        }
+        return error instanceof TimeoutException
+                || error instanceof IOException
+                || error instanceof ProcessingException
+                || error instanceof io.vertx.core.VertxException;
+    }
+
+    /**
+     * SUNAT devuelve sus SOAP Fault (rechazos, credenciales, etc.) con HTTP 500.
+     *
+     * @return el sobre del fault, o null si el 500 no trae uno
+     */
+    static String soapFault(WebApplicationException error) {
+        if (error.getResponse().getStatus() != 500) {
+            return null;
+        }
+        try {
+            String cuerpo = error.getResponse().readEntity(String.class);
+            return cuerpo != null && cuerpo.contains("faultcode") ? cuerpo : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return el código del fault si SUNAT lo clasifica como transitorio, o null
+     */
+    static String codigoTransitorio(String fault) {
+        try {
+            RespuestaSunat respuesta = LectorRespuestaSunat.leer(fault);
+            return respuesta.clase() == ClaseCodigoSunat.REINTENTABLE ? respuesta.codigo() : null;
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private CubetaTokens cuota(String ruc, long ahora) {
+        return cuotas.computeIfAbsent(ruc, r -> new CubetaTokens(tasaPorRuc, rafagaPorRuc, ahora));
+    }
+
+    private <T> Uni<T> rechazo(String codigo, String mensaje) {
+        contarRechazo(codigo);
+        return Uni.createFrom().failure(new TraficoSunatException(codigo, mensaje));
+    }
+
+    private void contarRechazo(String codigo) {
+        rechazos.computeIfAbsent(codigo, c -> Counter.builder("sunat.trafico.rechazos")
+                        .description("Envíos no realizados por el control de tráfico")
+                        .tag("motivo", c)
+                        .register(registry))
+                .increment();
+    }
+
+    /**
+     * SOAP Fault transitorio, como falla para que lo tome el reintento; lleva el sobre para devolverlo si
+     * no quedan reintentos.
+     */
+    private static final class FaultTransitorio extends RuntimeException {
+
+        final String sobre;
+
+        FaultTransitorio(String codigo, String sobre) {
+            super("SOAP Fault " + codigo + " (servicio SUNAT no disponible)", null, false, false);
+            this.sobre = sobre;
+        }
+    }
+}
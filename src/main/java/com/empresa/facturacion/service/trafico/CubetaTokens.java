@@ -0,0 +1,43 @@
+package com.empresa.facturacion.service.trafico;
+
+/**
+ * Token bucket de un RUC. Reservar un token nunca bloquea: devuelve cuánto hay que esperar
+ * para usarlo, y los tokens pueden quedar en negativo para representar las reservas futuras.
+ */
+final class CubetaTokens {
+
+    private final double tokensPorNano;
+    private final double capacidad;
+    private double tokens;
+    private long ultimaRecarga;
+
+    CubetaTokens(double tokensPorSegundo, int capacidad, long ahora) {
+        this.tokensPorNano = tokensPorSegundo / 1_000_000_000d;
+        this.capacidad = capacidad;
+        this.tokens = capacidad;
+        this.ultimaRecarga = ahora;
+    }
+
+    /**
+     * @return nanos a esperar antes de usar el token, o -1 si la espera superaría {@code esperaMaxima}
+     *         (en ese caso no se consume nada)
+     */
+    synchronized long reservar(long ahora, long esperaMaxima) {
+        tokens = Math.min(capacidad, tokens + (ahora - ultimaRecarga) * tokensPorNano);
+        ultimaRecarga = ahora;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        long espera = (long) Math.ceil((1 - tokens) / tokensPorNano);
+        if (espera > esperaMaxima) {
+            return -1;
+        }
+        tokens -= 1;
+        return espera;
+    }
+
+    synchronized double disponibles() {
+        return tokens;
+    }
+}
@@ -0,0 +1,194 @@
+package com.empresa.facturacion.service.trafico;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Límite de llamadas simultáneas a SUNAT que se adapta a la latencia observada (AIMD).
+ *
+ * Cada llamada que termina a tiempo suma {@code 1/limite} (≈ +1 por ventana completa de llamadas),
+ * siempre que el límite se esté usando; una llamada lenta o con sobrecarga lo multiplica por el
+ * factor de reducción, como máximo una vez por latencia objetivo para no desplomarlo con una sola
+ * ráfaga de timeouts. Las llamadas que no entran esperan en una cola FIFO acotada, sin bloquear hilos.
+ */
+final class LimitadorAimd {
+
+    private final int minimo;
+    private final int maximo;
+    private final long latenciaObjetivo;
+    private final double factorReduccion;
+    private final int maxCola;
+
+    private final ArrayDeque<Espera> cola = new ArrayDeque<>();
+    private double limite;
+    private int enCurso;
+    private long ultimaReduccion;
+
+    LimitadorAimd(int inicial, int minimo, int maximo, long latenciaObjetivo, double factorReduccion, int maxCola) {
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.limite = Math.max(minimo, Math.min(maximo, inicial));
+        this.latenciaObjetivo = latenciaObjetivo;
+        this.factorReduccion = factorReduccion;
+        this.maxCola = maxCola;
+        this.ultimaReduccion = System.nanoTime() - latenciaObjetivo;
+    }
+
+    /**
+     * Entrega un permiso cuando hay un lugar libre. Falla con {@link TraficoSunatException} si la cola
+     * de espera está llena.
+     */
+    Uni<Permiso> adquirir() {
+        return Uni.createFrom().<Permiso>emitter(emitter -> {
+            Espera espera = new Espera(emitter);
+            Permiso inmediato = null;
+            boolean saturado = false;
+            synchronized (this) {
+                if (enCurso < (int) limite) {
+                    enCurso++;
+                    inmediato = new Permiso();
+                    espera.permiso = inmediato;
+                } else if (cola.size() >= maxCola) {
+                    saturado = true;
+                } else {
+                    cola.addLast(espera);
+                }
+            }
+            if (saturado) {
+                emitter.fail(new TraficoSunatException(TraficoSunatException.SATURADO,
+                        "Cola de envíos a SUNAT llena (" + maxCola + " en espera)"));
+                return;
+            }
+            emitter.onTermination(() -> abandonar(espera));
+            if (inmediato != null) {
+                emitter.complete(inmediato);
+            }
+        }).onItem().invoke(Permiso::tomar);
+    }
+
+    /**
+     * Devuelve el permiso y ajusta el límite según cómo terminó la llamada.
+     *
+     * @param latencia   nanos desde que se entregó el permiso
+     * @param sobrecarga true si SUNAT respondió con timeout, 429 o 5xx de transporte
+     */
+    void liberar(Permiso permiso, long latencia, boolean sobrecarga) {
+        if (!permiso.liberar()) {
+            return;
+        }
+        List<Espera> otorgadas;
+        synchronized (this) {
+            enCurso--;
+            ajustar(latencia, sobrecarga, System.nanoTime());
+            otorgadas = otorgarEsperas();
+        }
+        entregar(otorgadas);
+    }
+
+    /**
+     * Devuelve el permiso sin muestra de latencia (llamada cancelada o nunca enviada).
+     */
+    void descartar(Permiso permiso) {
+        if (!permiso.liberar()) {
+            return;
+        }
+        List<Espera> otorgadas;
+        synchronized (this) {
+            enCurso--;
+            otorgadas = otorgarEsperas();
+        }
+        entregar(otorgadas);
+    }
+
+    synchronized double limite() {
+        return limite;
+    }
+
+    synchronized int enCurso() {
+        return enCurso;
+    }
+
+    synchronized int enEspera() {
+        return cola.size();
+    }
+
+    private void ajustar(long latencia, boolean sobrecarga, long ahora) {
+        if (sobrecarga || latencia > latenciaObjetivo) {
+            if (ahora - ultimaReduccion >= latenciaObjetivo) {
+                limite = Math.max(minimo, limite * factorReduccion);
+                ultimaReduccion = ahora;
+            }
+        } else if ((enCurso + 1) * 2 >= limite) {
+            limite = Math.min(maximo, limite + 1 / limite);
+        }
+    }
+
+    private List<Espera> otorgarEsperas() {
+        List<Espera> otorgadas = null;
+        while (enCurso < (int) limite && !cola.isEmpty()) {
+            Espera espera = cola.pollFirst();
+            espera.permiso = new Permiso();
+            enCurso++;
+            if (otorgadas == null) {
+                otorgadas = new ArrayList<>(2);
+            }
+            otorgadas.add(espera);
+        }
+        return otorgadas == null ? List.of() : otorgadas;
+    }
+
+    private static void entregar(List<Espera> otorgadas) {
+        // Fuera del lock: complete() ejecuta en este hilo la continuación de la llamada
+        for (Espera espera : otorgadas) {
+            espera.emitter.complete(espera.permiso);
+        }
+    }
+
+    private void abandonar(Espera espera) {
+        Permiso permiso;
+        synchronized (this) {
+            if (cola.remove(espera)) {
+                return;
+            }
+            permiso = espera.permiso;
+        }
+        // Otorgado pero cancelado antes de entregarse: el lugar se devuelve
+        if (permiso != null && permiso.sinTomar()) {
+            descartar(permiso);
+        }
+    }
+
+    private static final class Espera {
+        final UniEmitter<? super Permiso> emitter;
+        Permiso permiso;
+
+        Espera(UniEmitter<? super Permiso> emitter) {
+            this.emitter = emitter;
+        }
+    }
+
+    static final class Permiso {
+        private static final int OTORGADO = 0;
+        private static final int TOMADO = 1;
+        private static final int LIBERADO = 2;
+
+        private final AtomicInteger estado = new AtomicInteger(OTORGADO);
+
+        private void tomar() {
+            estado.compareAndSet(OTORGADO, TOMADO);
+        }
+
+        private boolean sinTomar() {
+            return estado.get() == OTORGADO;
+        }
+
+        private boolean liberar() {
+            return estado.getAndSet(LIBERADO) != LIBERADO;
+        }
+    }
+}
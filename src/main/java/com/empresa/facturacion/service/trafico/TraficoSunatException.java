@@ -0,0 +1,20 @@
+package com.empresa.facturacion.service.trafico;
+
+/**
+ * Envío no realizado por el control de tráfico local o por saturación del procesamiento
+ * (SUNAT no llegó a recibirlo).
+ */
+public class TraficoSunatException extends RuntimeException {
+
+    public static final String CIRCUITO_ABIERTO = "SUNAT_CIRCUITO_ABIERTO";
+    public static final String SATURADO = "SUNAT_SATURADO";
+    public static final String CUOTA_EXCEDIDA = "SUNAT_CUOTA_EXCEDIDA";
+    public static final String PROCESAMIENTO_SATURADO = "PROCESAMIENTO_SATURADO";
+
+    public final String codigo;
+
+    public TraficoSunatException(String codigo, String mensaje) {
+        super(mensaje);
+        this.codigo = codigo;
+    }
+}
@@ -0,0 +1,14 @@
+package com.empresa.facturacion.service.ubl;
+
+import java.io.IOException;
+
+/**
+ * Contenido que se escribe dentro de {@code <ext:ExtensionContent>}, normalmente la firma.
+ */
+@FunctionalInterface
+public interface ContenidoExtension {
+
+    ContenidoExtension VACIO = writer -> { };
+
+    void escribir(UblWriter writer) throws IOException;
+}
@@ -0,0 +1,24 @@
+package com.empresa.facturacion.service.ubl;
+
+import java.io.IOException;
+
+/**
+ * Documento UBL listo para ser escrito (y firmado) en streaming.
+ *
+ * El documento debe emitirse ya en forma canónica C14N (sin declaración XML, sin elementos
+ * vacíos abreviados y con los atributos ordenados), de modo que la firma pueda calcular el
+ * digest sobre los mismos bytes que se escriben.
+ */
+public interface DocumentoUbl {
+
+    /**
+     * Declaraciones {@code xmlns} del elemento raíz, en el orden canónico
+     * (namespace por defecto primero y luego por prefijo), precedidas de un espacio.
+     */
+    byte[] namespacesRaiz();
+
+    /**
+     * Escribe el elemento raíz completo; {@code extension} va dentro de {@code <ext:ExtensionContent>}.
+     */
+    void escribir(UblWriter writer, ContenidoExtension extension) throws IOException;
+}
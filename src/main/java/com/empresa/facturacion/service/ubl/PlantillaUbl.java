@@ -0,0 +1,147 @@
+package com.empresa.facturacion.service.ubl;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Plantilla XML compilada una sola vez: el texto fijo queda como fragmentos UTF-8 pre-codificados
+ * y cada marcador {@code {{nombre}}} se resuelve a un {@link Campo} al compilar. Al escribir solo
+ * se copian fragmentos y se emiten los valores variables, sin formatear Strings.
+ *
+ * Al compilar se eliminan los saltos de línea y la indentación entre etiquetas, así el texto de la
+ * plantilla puede estar indentado y el documento emitido sigue en forma canónica. Un marcador dentro
+ * de una etiqueta se escapa como atributo; fuera de ella, como texto.
+ */
+public final class PlantillaUbl<T> {
+
+    private static final String ABRE = "{{";
+    private static final String CIERRA = "}}";
+
+    private final byte[][] fragmentos;
+    private final Campo<T>[] campos;
+    private final boolean[] enAtributo;
+
+    private PlantillaUbl(byte[][] fragmentos, Campo<T>[] campos, boolean[] enAtributo) {
+        this.fragmentos = fragmentos;
+        this.campos = campos;
+        this.enAtributo = enAtributo;
+    }
+
+    /**
+     * Compila {@code texto}. Falla con {@link IllegalArgumentException} si un marcador no tiene campo,
+     * de modo que los errores de plantilla aparecen al arrancar y no al emitir un comprobante.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> PlantillaUbl<T> compilar(String texto, Map<String, Campo<T>> definidos) {
+        String compacto = texto.replaceAll("\\s*\\n\\s*", "");
+        List<byte[]> fragmentos = new ArrayList<>();
+        List<Campo<T>> campos = new ArrayList<>();
+        List<Boolean> enAtributo = new ArrayList<>();
+
+        boolean dentroEtiqueta = false;
+        int desde = 0;
+        while (true) {
+            int abre = compacto.indexOf(ABRE, desde);
+            String fijo = compacto.substring(desde, abre < 0 ? compacto.length() : abre);
+            dentroEtiqueta = dentroEtiqueta(fijo, dentroEtiqueta);
+            fragmentos.add(UblWriter.utf8(fijo));
+            if (abre < 0) {
+                break;
+            }
+            int cierra = compacto.indexOf(CIERRA, abre);
+            if (cierra < 0) {
+                throw new IllegalArgumentException("Marcador sin cerrar en la posición " + abre);
+            }
+            String nombre = compacto.substring(abre + ABRE.length(), cierra).trim();
+            Campo<T> campo = definidos.get(nombre);
+            if (campo == null) {
+                throw new IllegalArgumentException("Campo de plantilla no definido: " + nombre);
+            }
+            campos.add(campo);
+            enAtributo.add(dentroEtiqueta);
+            desde = cierra + CIERRA.length();
+        }
+
+        boolean[] atributos = new boolean[enAtributo.size()];
+        for (int i = 0; i < atributos.length; i++) {
+            atributos[i] = enAtributo.get(i);
+        }
+        return new PlantillaUbl<>(fragmentos.toArray(new byte[0][]), campos.toArray(new Campo[0]), atributos);
+    }
+
+    public void escribir(UblWriter writer, T contexto) throws IOException {
+        for (int i = 0; i < campos.length; i++) {
+            writer.raw(fragmentos[i]);
+            campos[i].escribir(writer, contexto, enAtributo[i]);
+        }
+        writer.raw(fragmentos[campos.length]);
+    }
+
+    private static boolean dentroEtiqueta(String fijo, boolean antes) {
+        int abre = fijo.lastIndexOf('<');
+        int cierra = fijo.lastIndexOf('>');
+        return abre == cierra ? antes : abre > cierra;
+    }
+
+    /**
+     * Valor variable de una plantilla. {@code enAtributo} indica el escape que corresponde a la posición
+     * del marcador; los campos que escriben XML ya formado (firma, secciones repetidas) lo ignoran.
+     */
+    @FunctionalInterface
+    public interface Campo<T> {
+
+        void escribir(UblWriter writer, T contexto, boolean enAtributo) throws IOException;
+
+        static <T> Campo<T> texto(Function<T, ? extends CharSequence> valor) {
+            return (writer, contexto, enAtributo) -> {
+                CharSequence texto = valor.apply(contexto);
+                if (enAtributo) {
+                    writer.atributo(texto);
+                } else {
+                    writer.texto(texto);
+                }
+            };
+        }
+
+        static <T> Campo<T> entero(ToLongFunction<T> valor) {
+            return (writer, contexto, enAtributo) -> writer.entero(valor.applyAsLong(contexto));
+        }
+
+        static <T> Campo<T> decimal(Function<T, BigDecimal> valor) {
+            return (writer, contexto, enAtributo) -> writer.decimal(valor.apply(contexto));
+        }
+
+        /**
+         * Escribe {@code cuerpo} solo si se cumple la condición (bloques opcionales).
+         */
+        static <T> Campo<T> si(Predicate<T> condicion, PlantillaUbl<T> cuerpo) {
+            return (writer, contexto, enAtributo) -> {
+                if (condicion.test(contexto)) {
+                    cuerpo.escribir(writer, contexto);
+                }
+            };
+        }
+
+        /**
+         * Repite {@code cuerpo} {@code cantidad} veces; antes de cada vuelta {@code posicionar} deja el
+         * contexto apuntando al elemento {@code i}, así las líneas no necesitan un contexto propio.
+         */
+        static <T> Campo<T> repetir(ToIntFunction<T> cantidad, ObjIntConsumer<T> posicionar, PlantillaUbl<T> cuerpo) {
+            return (writer, contexto, enAtributo) -> {
+                int total = cantidad.applyAsInt(contexto);
+                for (int i = 0; i < total; i++) {
+                    posicionar.accept(contexto, i);
+                    cuerpo.escribir(writer, contexto);
+                }
+            };
+        }
+    }
+}
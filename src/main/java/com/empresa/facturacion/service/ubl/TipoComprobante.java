@@ -0,0 +1,33 @@
+package com.empresa.facturacion.service.ubl;
+
+/**
+ * Comprobantes que se emiten por sendBill (catálogo 01 de SUNAT) y su elemento raíz UBL 2.1.
+ */
+public enum TipoComprobante {
+
+    FACTURA("01", "Invoice"),
+    BOLETA("03", "Invoice"),
+    NOTA_CREDITO("07", "CreditNote"),
+    NOTA_DEBITO("08", "DebitNote");
+
+    public final String codigo;
+    public final String raiz;
+
+    TipoComprobante(String codigo, String raiz) {
+        this.codigo = codigo;
+        this.raiz = raiz;
+    }
+
+    public boolean esNota() {
+        return this == NOTA_CREDITO || this == NOTA_DEBITO;
+    }
+
+    public static TipoComprobante de(String codigo) {
+        for (TipoComprobante tipo : values()) {
+            if (tipo.codigo.equals(codigo)) {
+                return tipo;
+            }
+        }
+        throw new IllegalArgumentException("Tipo de comprobante no soportado: " + codigo);
+    }
+}
@@ -0,0 +1,246 @@
+package com.empresa.facturacion.service.ubl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Emisor XML de bajo nivel que escribe UTF-8 directamente sobre un {@link OutputStream}
+ * (normalmente la entrada del ZIP) sin construir Strings intermedios.
+ *
+ * Los fragmentos constantes se pasan ya codificados con {@link #utf8(String)}; solo los
+ * valores variables se escapan y codifican en tiempo de ejecución.
+ * No es thread-safe: se usa una instancia por documento.
+ */
+public final class UblWriter {
+
+    private static final int TAMANO_BUFFER = 8192;
+    private static final byte[] DECLARACION = utf8("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int posicion;
+
+    public UblWriter(OutputStream out) {
+        this(out, TAMANO_BUFFER);
+    }
+
+    public UblWriter(OutputStream out, int tamanoBuffer) {
+        this.out = out;
+        this.buffer = new byte[tamanoBuffer];
+    }
+
+    public static byte[] utf8(String fragmento) {
+        return fragmento.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Declaración XML. No forma parte de la forma canónica, por eso los documentos no la escriben.
+     */
+    public UblWriter declaracion() throws IOException {
+        return raw(DECLARACION);
+    }
+
+    /**
+     * Escribe un fragmento pre-codificado tal cual, sin escapar.
+     */
+    public UblWriter raw(byte[] fragmento) throws IOException {
+        return raw(fragmento, 0, fragmento.length);
+    }
+
+    public UblWriter raw(byte[] fragmento, int desde, int longitud) throws IOException {
+        if (longitud > buffer.length - posicion) {
+            vaciar();
+            if (longitud > buffer.length) {
+                out.write(fragmento, desde, longitud);
+                return this;
+            }
+        }
+        System.arraycopy(fragmento, desde, buffer, posicion, longitud);
+        posicion += longitud;
+        return this;
+    }
+
+    /**
+     * Escribe texto de contenido escapando los caracteres reservados de XML.
+     * El escape coincide con la forma canónica C14N, así el documento emitido
+     * puede digerirse sin volver a canonicalizarlo.
+     */
+    public UblWriter texto(CharSequence valor) throws IOException {
+        if (valor == null) {
+            return this;
+        }
+        int longitud = valor.length();
+        for (int i = 0; i < longitud; i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '&' -> ascii("&amp;");
+                case '<' -> ascii("&lt;");
+                case '>' -> ascii("&gt;");
+                case '\r' -> ascii("&#xD;");
+                default -> {
+                    if (Character.isHighSurrogate(c) && i + 1 < longitud
+                            && Character.isLowSurrogate(valor.charAt(i + 1))) {
+                        codePoint(Character.toCodePoint(c, valor.charAt(++i)));
+                    } else {
+                        codePoint(c);
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Escribe el valor de un atributo delimitado por comillas dobles.
+     */
+    public UblWriter atributo(CharSequence valor) throws IOException {
+        if (valor == null) {
+            return this;
+        }
+        int longitud = valor.length();
+        for (int i = 0; i < longitud; i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '&' -> ascii("&amp;");
+                case '<' -> ascii("&lt;");
+                case '"' -> ascii("&quot;");
+                case '\t' -> ascii("&#x9;");
+                case '\n' -> ascii("&#xA;");
+                case '\r' -> ascii("&#xD;");
+                default -> {
+                    if (Character.isHighSurrogate(c) && i + 1 < longitud
+                            && Character.isLowSurrogate(valor.charAt(i + 1))) {
+                        codePoint(Character.toCodePoint(c, valor.charAt(++i)));
+                    } else {
+                        codePoint(c);
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    public UblWriter entero(long valor) throws IOException {
+        if (valor == Long.MIN_VALUE) {
+            return ascii(Long.toString(valor));
+        }
+        if (valor < 0) {
+            unByte('-');
+            valor = -valor;
+        }
+        asegurar(19);
+        int inicio = posicion;
+        do {
+            buffer[posicion++] = (byte) ('0' + (valor % 10));
+            valor /= 10;
+        } while (valor != 0);
+        invertir(inicio, posicion - 1);
+        return this;
+    }
+
+    public UblWriter decimal(BigDecimal valor) throws IOException {
+        return valor == null ? this : ascii(valor.toPlainString());
+    }
+
+    /**
+     * Escribe {@code valor} con {@code escala} decimales (p.ej. 11800, 2 → {@code 118.00}) sin
+     * pasar por {@link BigDecimal}; los decimales se completan con ceros.
+     */
+    public UblWriter decimal(long valor, int escala) throws IOException {
+        if (escala <= 0) {
+            return entero(valor);
+        }
+        if (valor == Long.MIN_VALUE) {
+            return ascii(BigDecimal.valueOf(valor, escala).toPlainString());
+        }
+        if (valor < 0) {
+            unByte('-');
+            valor = -valor;
+        }
+        asegurar(20 + escala);
+        int inicio = posicion;
+        for (int i = 0; i < escala; i++) {
+            buffer[posicion++] = (byte) ('0' + (valor % 10));
+            valor /= 10;
+        }
+        buffer[posicion++] = '.';
+        do {
+            buffer[posicion++] = (byte) ('0' + (valor % 10));
+            valor /= 10;
+        } while (valor != 0);
+        invertir(inicio, posicion - 1);
+        return this;
+    }
+
+    /**
+     * Vuelca el buffer interno al stream destino. No cierra el stream: el llamador
+     * es dueño de su ciclo de vida (p.ej. {@code ZipOutputStream.closeEntry()}).
+     */
+    public void flush() throws IOException {
+        vaciar();
+        out.flush();
+    }
+
+    private UblWriter ascii(String s) throws IOException {
+        int longitud = s.length();
+        for (int i = 0; i < longitud; i++) {
+            if (posicion == buffer.length) {
+                vaciar();
+            }
+            buffer[posicion++] = (byte) s.charAt(i);
+        }
+        return this;
+    }
+
+    private void unByte(char c) throws IOException {
+        asegurar(1);
+        buffer[posicion++] = (byte) c;
+    }
+
+    private void codePoint(int cp) throws IOException {
+        asegurar(4);
+        if (cp < 0x80) {
+            buffer[posicion++] = (byte) cp;
+        } else if (cp < 0x800) {
+            buffer[posicion++] = (byte) (0xC0 | (cp >> 6));
+            buffer[posicion++] = (byte) (0x80 | (cp & 0x3F));
+        } else if (cp < 0x10000) {
+            if (Character.isSurrogate((char) cp)) {
+                // Surrogate huérfano: se reemplaza igual que String.getBytes(UTF_8)
+                buffer[posicion++] = (byte) '?';
+                return;
+            }
+            buffer[posicion++] = (byte) (0xE0 | (cp >> 12));
+            buffer[posicion++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            buffer[posicion++] = (byte) (0x80 | (cp & 0x3F));
+        } else {
+            buffer[posicion++] = (byte) (0xF0 | (cp >> 18));
+            buffer[posicion++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            buffer[posicion++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            buffer[posicion++] = (byte) (0x80 | (cp & 0x3F));
+        }
+    }
+
+    private void asegurar(int bytes) throws IOException {
+        if (buffer.length - posicion < bytes) {
+            vaciar();
+        }
+    }
+
+    private void vaciar() throws IOException {
+        if (posicion > 0) {
+            out.write(buffer, 0, posicion);
+            posicion = 0;
+        }
+    }
+
+    private void invertir(int desde, int hasta) {
+        while (desde < hasta) {
+            byte tmp = buffer[desde];
+            buffer[desde++] = buffer[hasta];
+            buffer[hasta--] = tmp;
+        }
+    }
+}
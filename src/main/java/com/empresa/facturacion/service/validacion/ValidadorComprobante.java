@@ -0,0 +1,428 @@
+package com.empresa.facturacion.service.validacion;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.service.catalogo.Catalogo;
+import com.empresa.facturacion.service.catalogo.Catalogos;
+import com.empresa.facturacion.service.catalogo.TablaCodigos;
+import com.empresa.facturacion.service.totales.CalculadoraTotales;
+import com.empresa.facturacion.service.totales.Categoria;
+import com.empresa.facturacion.service.totales.Monto;
+import com.empresa.facturacion.service.totales.TotalesComprobante;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reglas de validación de SUNAT que pueden verificarse antes de enviar: dígito verificador del RUC,
+ * formato de serie según el tipo de comprobante, pertenencia a catálogos, plazos y consistencia de
+ * los totales. Un comprobante que no pasa aquí sería rechazado por SUNAT después de un viaje completo.
+ *
+ * Las reglas se arman una vez al construir el validador y recorren el comprobante sin regex ni
+ * colecciones intermedias: los catálogos son los de {@link Catalogos} y los totales salen de la misma
+ * {@link CalculadoraTotales} que usa el XML. Se informan todas las violaciones juntas, con el mismo
+ * formato {@code campo: mensaje} que las de Bean Validation.
+ */
+@ApplicationScoped
+public class ValidadorComprobante {
+
+    private static final Logger LOG = Logger.getLogger(ValidadorComprobante.class);
+
+    /** SUNAT compara las fechas con la hora de Lima. */
+    static final ZoneId ZONA_SUNAT = ZoneId.of("America/Lima");
+
+    /** Primeros dos dígitos del RUC: persona natural (10), no domiciliados (15, 17), extranjeros (16), jurídica (20). */
+    static final TablaCodigos PREFIJOS_RUC = TablaCodigos.de("10", "15", "16", "17", "20");
+
+    private static final int[] PESOS_RUC = {5, 4, 3, 2, 7, 6, 5, 4, 3, 2};
+
+    /** 12 enteros y 2 decimales: el formato n(12,2) de los importes del comprobante. */
+    static final long IMPORTE_MAXIMO = 999_999_999_999_99L;
+
+    /** Sobre este total una boleta debe identificar al adquirente. */
+    static final long TOPE_BOLETA_ANONIMA = 700_00L;
+
+    private static final int ENTEROS_MAXIMOS = 12;
+    private static final int LARGO_DESCRIPCION = 500;
+    private static final long CORRELATIVO_MAXIMO = 99_999_999L;
+
+    private final CalculadoraTotales calculadora;
+    private final int diasPlazoFactura;
+    private final Catalogo documentosIdentidad;
+    private final Catalogo unidadesMedida;
+    private final Catalogo afectacionesIgv;
+    private final Catalogo motivosNotaCredito;
+    private final Catalogo motivosNotaDebito;
+    private final Regla[] reglas;
+
+    /**
+     * Validador con la tasa de IGV vigente, los catálogos incluidos y el plazo de 3 días, para pruebas y benchmarks.
+     */
+    public ValidadorComprobante() {
+        this(new CalculadoraTotales(), Catalogos.crear(), 3);
+    }
+
+    @Inject
+    public ValidadorComprobante(CalculadoraTotales calculadora, Catalogos catalogos,
+                                @ConfigProperty(name = "facturacion.validacion.dias-plazo-factura", defaultValue = "3")
+                                int diasPlazoFactura) {
+        this.calculadora = calculadora;
+        this.diasPlazoFactura = diasPlazoFactura;
+        this.documentosIdentidad = catalogos.requerido(6);
+        this.unidadesMedida = catalogos.requerido(3);
+        this.afectacionesIgv = catalogos.requerido(7);
+        this.motivosNotaCredito = catalogos.requerido(9);
+        this.motivosNotaDebito = catalogos.requerido(10);
+        this.reglas = new Regla[]{
+                ValidadorComprobante::emisor,
+                ValidadorComprobante::serie,
+                this::fecha,
+                this::referencia,
+                this::cliente
+        };
+    }
+
+    /**
+     * Violaciones de {@code request}, vacía si SUNAT no debería rechazarlo por estas reglas. Supone que
+     * ya pasó Bean Validation: emisor, cliente e ítems presentes.
+     */
+    public List<String> validar(FacturaPruebaRequest request) {
+        return revisar(request).errores();
+    }
+
+    /**
+     * Como {@link #validar}, pero devuelve también los totales con los que se verificó el importe, para
+     * generar el XML sin volver a calcularlos, y las advertencias: códigos que no están en un catálogo
+     * incluido solo en parte, que SUNAT puede aceptar. Los totales son null si algún ítem no es válido.
+     */
+    public Validacion revisar(FacturaPruebaRequest request) {
+        List<String> errores = new ArrayList<>(0);
+        List<String> advertencias = new ArrayList<>(0);
+        char letra = letraSerie(request);
+        for (Regla regla : reglas) {
+            regla.verificar(request, letra, errores);
+        }
+        TotalesComprobante totales = items(request, letra, errores, advertencias);
+        if (!advertencias.isEmpty()) {
+            LOG.warnf("Comprobante %s-%s con códigos fuera de los catálogos incluidos: %s",
+                    request.serie, request.correlativo, advertencias);
+        }
+        return new Validacion(errores, advertencias, totales);
+    }
+
+    private static void emisor(FacturaPruebaRequest request, char letra, List<String> errores) {
+        String problema = problemaRuc(request.emisor.ruc);
+        if (problema != null) {
+            errores.add("emisor.ruc: " + problema);
+        }
+        String ubigeo = request.emisor.ubigeo;
+        if (ubigeo == null || ubigeo.length() != 6 || !digitos(ubigeo, 0, 6)) {
+            errores.add("emisor.ubigeo: debe tener 6 dígitos");
+        } else {
+            int departamento = (ubigeo.charAt(0) - '0') * 10 + ubigeo.charAt(1) - '0';
+            if (departamento < 1 || departamento > 25) {
+                errores.add("emisor.ubigeo: el departamento " + ubigeo.substring(0, 2) + " no existe");
+            } else if (ubigeo.startsWith("00", 2) || ubigeo.startsWith("00", 4)) {
+                errores.add("emisor.ubigeo: la provincia y el distrito no pueden ser 00");
+            }
+        }
+        if (vacio(request.emisor.razonSocial)) {
+            errores.add("emisor.razonSocial: no debe estar vacío");
+        }
+    }
+
+    private static void serie(FacturaPruebaRequest request, char letra, List<String> errores) {
+        String serie = request.serie;
+        if (serie.length() != 4 || !alfanumerico(serie, 0, 4)) {
+            errores.add("serie: debe tener 4 caracteres en mayúsculas o dígitos");
+        } else if (letra != 0 && serie.charAt(0) != letra) {
+            errores.add("serie: debe empezar con " + letra + " para el tipo de comprobante " + request.tipoDocumento
+                    + (esNota(request) ? " que modifica un comprobante " + request.documentoReferencia.tipoDocumento : ""));
+        }
+        if (request.correlativo != null && request.correlativo > CORRELATIVO_MAXIMO) {
+            errores.add("correlativo: no puede tener más de 8 dígitos");
+        }
+    }
+
+    private void fecha(FacturaPruebaRequest request, char letra, List<String> errores) {
+        if (request.fechaEmision == null) {
+            errores.add("fechaEmision: no debe ser nulo");
+            return;
+        }
+        LocalDate hoy = LocalDate.now(ZONA_SUNAT);
+        if (request.fechaEmision.isAfter(hoy)) {
+            errores.add("fechaEmision: no puede ser posterior a la fecha de envío");
+        } else if (letra == 'F' && request.fechaEmision.isBefore(hoy.minusDays(diasPlazoFactura))) {
+            errores.add("fechaEmision: las facturas y sus notas se envían hasta " + diasPlazoFactura
+                    + " días después de su emisión");
+        }
+    }
+
+    private void referencia(FacturaPruebaRequest request, char letra, List<String> errores) {
+        if (!esNota(request)) {
+            return;
+        }
+        FacturaPruebaRequest.DocumentoReferenciaDto referencia = request.documentoReferencia;
+        char letraReferencia = letraTipo(referencia.tipoDocumento);
+        if (letraReferencia == 0) {
+            errores.add("documentoReferencia.tipoDocumento: debe ser 01 o 03");
+        }
+        String numero = referencia.numeroDocumento;
+        int guion = numero.indexOf('-');
+        if (guion != 4 || numero.length() < 6 || numero.length() > 13 || !alfanumerico(numero, 0, 4)
+                || !digitos(numero, 5, numero.length())) {
+            errores.add("documentoReferencia.numeroDocumento: debe tener el formato SERIE-CORRELATIVO, p.ej. F001-123");
+        } else if (letraReferencia != 0 && numero.charAt(0) != letraReferencia) {
+            errores.add("documentoReferencia.numeroDocumento: la serie de un comprobante "
+                    + referencia.tipoDocumento + " empieza con " + letraReferencia);
+        }
+        boolean credito = "07".equals(request.tipoDocumento);
+        if (!(credito ? motivosNotaCredito : motivosNotaDebito).contiene(referencia.codigoMotivo)) {
+            errores.add("documentoReferencia.codigoMotivo: no existe en el catálogo " + (credito ? "09" : "10"));
+        }
+    }
+
+    private void cliente(FacturaPruebaRequest request, char letra, List<String> errores) {
+        FacturaPruebaRequest.ClienteDto cliente = request.cliente;
+        String tipo = cliente.tipoDocumento;
+        String numero = cliente.numeroDocumento;
+        if (!documentosIdentidad.contiene(tipo)) {
+            errores.add("cliente.tipoDocumento: no existe en el catálogo 06");
+        } else if (numero == null || numero.isEmpty()) {
+            errores.add("cliente.numeroDocumento: no debe estar vacío");
+        } else {
+            switch (tipo) {
+                case "6" -> {
+                    String problema = problemaRuc(numero);
+                    if (problema != null) {
+                        errores.add("cliente.numeroDocumento: " + problema);
+                    }
+                }
+                case "1" -> {
+                    if (numero.length() != 8 || !digitos(numero, 0, 8)) {
+                        errores.add("cliente.numeroDocumento: el DNI debe tener 8 dígitos");
+                    }
+                }
+                case "4", "7" -> {
+                    if (numero.length() > 12 || !alfanumerico(numero, 0, numero.length())) {
+                        errores.add("cliente.numeroDocumento: debe tener hasta 12 caracteres alfanuméricos");
+                    }
+                }
+                default -> {
+                    if (numero.length() > 15) {
+                        errores.add("cliente.numeroDocumento: no puede tener más de 15 caracteres");
+                    }
+                }
+            }
+            if (letra == 'F' && !"6".equals(tipo) && !soloExportacion(request.items)) {
+                errores.add("cliente.tipoDocumento: las facturas y sus notas requieren un cliente con RUC (6)");
+            }
+        }
+        if (vacio(cliente.razonSocial)) {
+            errores.add("cliente.razonSocial: no debe estar vacío");
+        }
+    }
+
+    private TotalesComprobante items(FacturaPruebaRequest request, char letra, List<String> errores,
+                                     List<String> advertencias) {
+        List<FacturaPruebaRequest.ItemDto> items = request.items;
+        int antes = errores.size();
+        int[] numeros = new int[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            FacturaPruebaRequest.ItemDto item = items.get(i);
+            String campo = "items[" + i + "].";
+            if (item == null) {
+                errores.add("items[" + i + "]: no debe ser nulo");
+                continue;
+            }
+            if (item.item == null || item.item <= 0) {
+                errores.add(campo + "item: debe ser mayor que cero");
+            } else {
+                numeros[i] = item.item;
+            }
+            if (vacio(item.descripcion) || item.descripcion.length() > LARGO_DESCRIPCION) {
+                errores.add(campo + "descripcion: debe tener entre 1 y " + LARGO_DESCRIPCION + " caracteres");
+            }
+            if (!unidadesMedida.contiene(item.unidadMedida)) {
+                if (unidadesMedida.parcial() && codigoRec20(item.unidadMedida)) {
+                    advertencias.add(campo + "unidadMedida: " + item.unidadMedida
+                            + " no está en el catálogo 03 incluido; se envía como código UN/ECE rec. 20");
+                } else {
+                    errores.add(campo + "unidadMedida: no existe en el catálogo 03");
+                }
+            }
+            if (!afectacionesIgv.contiene(item.codigoAfectacionIgv)) {
+                errores.add(campo + "codigoAfectacionIgv: no existe en el catálogo 07");
+            } else if ("17".equals(item.codigoAfectacionIgv)) {
+                errores.add(campo + "codigoAfectacionIgv: las operaciones con IVAP (17) no están soportadas");
+            } else if ("40".equals(item.codigoAfectacionIgv) && letra != 'F') {
+                errores.add(campo + "codigoAfectacionIgv: la exportación solo se emite en facturas");
+            }
+            if (item.cantidad == null || item.cantidad.signum() <= 0) {
+                errores.add(campo + "cantidad: debe ser mayor que cero");
+            } else if (!cabe(item.cantidad)) {
+                errores.add(campo + "cantidad: admite hasta " + ENTEROS_MAXIMOS + " enteros y "
+                        + Monto.ESCALA_MAXIMA + " decimales");
+            }
+            if (item.valorUnitario == null || item.valorUnitario.signum() < 0) {
+                errores.add(campo + "valorUnitario: no debe ser negativo");
+            } else if (!cabe(item.valorUnitario)) {
+                errores.add(campo + "valorUnitario: admite hasta " + ENTEROS_MAXIMOS + " enteros y "
+                        + Monto.ESCALA_MAXIMA + " decimales");
+            }
+        }
+        int[] ordenados = numeros.clone();
+        Arrays.sort(ordenados);
+        for (int i = 1; i < ordenados.length; i++) {
+            if (ordenados[i] != 0 && ordenados[i] == ordenados[i - 1]) {
+                errores.add("items: el número de ítem " + ordenados[i] + " está repetido");
+                break;
+            }
+        }
+        // Los totales solo tienen sentido con todos los ítems válidos
+        if (errores.size() != antes) {
+            return null;
+        }
+        TotalesComprobante totales = calculadora.calcular(items);
+        totales(request, letra, totales, errores);
+        return totales;
+    }
+
+    private static void totales(FacturaPruebaRequest request, char letra, TotalesComprobante totales,
+                                List<String> errores) {
+        long total = totales.total();
+        Categoria[] categorias = totales.categorias();
+        boolean soloGratuitas = categorias.length == 1 && categorias[0] == Categoria.GRATUITA;
+        if (total > IMPORTE_MAXIMO) {
+            errores.add("total: el importe total no puede tener más de " + ENTEROS_MAXIMOS + " enteros");
+        } else if (total <= 0 && !soloGratuitas) {
+            errores.add("total: el importe total debe ser mayor que cero");
+        }
+        if (letra == 'B' && "PEN".equals(request.moneda) && total > TOPE_BOLETA_ANONIMA
+                && !identificado(request.cliente)) {
+            errores.add("cliente.numeroDocumento: las boletas de más de S/ 700 deben identificar al cliente");
+        }
+    }
+
+    /**
+     * Motivo por el que {@code ruc} no es un RUC válido, o null si lo es.
+     */
+    static String problemaRuc(String ruc) {
+        if (ruc == null || ruc.length() != 11 || !digitos(ruc, 0, 11)) {
+            return "el RUC debe tener 11 dígitos";
+        }
+        if (!PREFIJOS_RUC.contiene(ruc.subSequence(0, 2))) {
+            return "el RUC debe empezar con 10, 15, 16, 17 o 20";
+        }
+        if (ruc.charAt(10) - '0' != digitoVerificadorRuc(ruc)) {
+            return "el dígito verificador del RUC no corresponde";
+        }
+        return null;
+    }
+
+    /**
+     * Módulo 11 sobre los 10 primeros dígitos: 11 - (suma ponderada mod 11), con 10 → 0 y 11 → 1.
+     */
+    static int digitoVerificadorRuc(CharSequence ruc) {
+        int suma = 0;
+        for (int i = 0; i < PESOS_RUC.length; i++) {
+            suma += (ruc.charAt(i) - '0') * PESOS_RUC[i];
+        }
+        int digito = 11 - suma % 11;
+        return digito >= 10 ? digito - 10 : digito;
+    }
+
+    /**
+     * F para facturas y sus notas, B para boletas y sus notas, 0 si no se puede determinar.
+     */
+    private static char letraSerie(FacturaPruebaRequest request) {
+        if (esNota(request)) {
+            return letraTipo(request.documentoReferencia.tipoDocumento);
+        }
+        return letraTipo(request.tipoDocumento);
+    }
+
+    private static char letraTipo(String tipoDocumento) {
+        if ("01".equals(tipoDocumento)) {
+            return 'F';
+        }
+        return "03".equals(tipoDocumento) ? 'B' : 0;
+    }
+
+    private static boolean esNota(FacturaPruebaRequest request) {
+        return request.documentoReferencia != null
+                && ("07".equals(request.tipoDocumento) || "08".equals(request.tipoDocumento));
+    }
+
+    private static boolean soloExportacion(List<FacturaPruebaRequest.ItemDto> items) {
+        for (FacturaPruebaRequest.ItemDto item : items) {
+            if (item == null || !"40".equals(item.codigoAfectacionIgv)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean identificado(FacturaPruebaRequest.ClienteDto cliente) {
+        return !"0".equals(cliente.tipoDocumento) && !vacio(cliente.numeroDocumento)
+                && !"-".equals(cliente.numeroDocumento.trim());
+    }
+
+    private static boolean cabe(BigDecimal valor) {
+        return valor.scale() <= Monto.ESCALA_MAXIMA && valor.precision() - valor.scale() <= ENTEROS_MAXIMOS;
+    }
+
+    private static boolean digitos(String texto, int desde, int hasta) {
+        for (int i = desde; i < hasta; i++) {
+            char c = texto.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Forma de un código UN/ECE rec. 20: 2 o 3 letras mayúsculas o dígitos. */
+    private static boolean codigoRec20(String codigo) {
+        return codigo != null && (codigo.length() == 2 || codigo.length() == 3) && alfanumerico(codigo, 0, codigo.length());
+    }
+
+    private static boolean alfanumerico(String texto, int desde, int hasta) {
+        for (int i = desde; i < hasta; i++) {
+            char c = texto.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'A' || c > 'Z')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean vacio(String texto) {
+        return texto == null || texto.isBlank();
+    }
+
+    /**
+     * Violaciones del comprobante, advertencias que no impiden enviarlo y, si sus ítems son válidos, sus totales.
+     */
+    public record Validacion(List<String> errores, List<String> advertencias, TotalesComprobante totales) {
+
+        public boolean valida() {
+            return errores.isEmpty();
+        }
+    }
+
+    /**
+     * Una regla agrega sus violaciones a {@code errores}; {@code letra} es la de la serie esperada.
+     */
+    @FunctionalInterface
+    private interface Regla {
+        void verificar(FacturaPruebaRequest request, char letra, List<String> errores);
+    }
+}
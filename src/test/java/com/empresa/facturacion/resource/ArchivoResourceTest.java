@@ -0,0 +1,43 @@
+package com.empresa.facturacion.resource;
+
+import com.empresa.facturacion.service.archivo.ArchivoComprobantes;
+import com.empresa.facturacion.service.archivo.TipoArchivo;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+@QuarkusTest
+class ArchivoResourceTest {
+
+    @Inject
+    ArchivoComprobantes archivo;
+
+    @Test
+    void sirveElCdrArchivadoConEtagPorContenido() throws Exception {
+        byte[] cdr = "PK\u0003\u0004 cdr de prueba".getBytes(StandardCharsets.UTF_8);
+        String sha = archivo.guardar("20000000001-01-F001-77", TipoArchivo.CDR, cdr).sha256();
+
+        byte[] descargado = given()
+                .when().get("/api/facturacion/archivo/20000000001/01/F001/77/cdr")
+                .then()
+                .statusCode(200)
+                .contentType("application/zip")
+                .header("Content-Disposition", containsString("R-20000000001-01-F001-77.zip"))
+                .header("ETag", is("\"" + sha + "\""))
+                .extract().asByteArray();
+        assertArrayEquals(cdr, descargado);
+
+        given().header("If-None-Match", "\"" + sha + "\"")
+                .when().get("/api/facturacion/archivo/20000000001/01/F001/77/cdr")
+                .then().statusCode(304);
+        given().when().get("/api/facturacion/archivo/20000000001/01/F001/77/xml")
+                .then().statusCode(404);
+    }
+}
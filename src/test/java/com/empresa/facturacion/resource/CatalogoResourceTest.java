@@ -0,0 +1,37 @@
+package com.empresa.facturacion.resource;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Test;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+
+@QuarkusTest
+class CatalogoResourceTest {
+
+    @Test
+    void catalogoSeRevalidaConEtag() {
+        String etag = given().when().get("/api/facturacion/catalogos/07")
+                .then().statusCode(200)
+                .header("ETag", notNullValue())
+                .body("numero", is("07"))
+                .body("codigos.find { it.codigo == '10' }.descripcion", is("Gravado - Operación onerosa"))
+                .extract().header("ETag");
+
+        given().header("If-None-Match", etag)
+                .when().get("/api/facturacion/catalogos/07")
+                .then().statusCode(304)
+                .header("ETag", is(etag));
+        given().when().get("/api/facturacion/catalogos/4")
+                .then().statusCode(404);
+
+        String etagCodigos = given().when().get("/api/facturacion/codigos-afectacion")
+                .then().statusCode(200)
+                .body("codigos_afectacion_igv.size()", is(19))
+                .extract().header("ETag");
+        given().header("If-None-Match", etagCodigos)
+                .when().get("/api/facturacion/codigos-afectacion")
+                .then().statusCode(304);
+    }
+}
@@ -0,0 +1,89 @@
+package com.empresa.facturacion.resource;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.hasItems;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+class FacturacionResourceTest {
+
+    @Test
+    void loteNdjsonDevuelveUnResultadoPorLineaSinCortarseEnErrores() {
+        String lote = String.join("\n",
+                "{\"serie\": \"F001\", \"correlativo\": 1",
+                "",
+                "{\"serie\": \"F001\", \"correlativo\": 2, \"items\": []}",
+                "null") + "\n";
+
+        Response respuesta = given()
+                .contentType("application/x-ndjson")
+                .body(lote.getBytes(StandardCharsets.UTF_8))
+                .when().post("/api/facturacion/lote");
+
+        respuesta.then().statusCode(200);
+        List<String> lineas = Arrays.stream(respuesta.asString().split("\n"))
+                .filter(linea -> !linea.isBlank())
+                .sorted()
+                .toList();
+        assertEquals(3, lineas.size(), respuesta.asString());
+        assertTrue(lineas.get(0).contains("\"linea\":1") && lineas.get(0).contains("JSON inválido"));
+        assertTrue(lineas.get(1).contains("\"linea\":3") && lineas.get(1).contains("\"numero_documento\":\"F001-2\"")
+                && lineas.get(1).contains("items: ") && lineas.get(1).contains("emisor: "));
+        assertTrue(lineas.get(2).contains("\"linea\":4") && lineas.get(2).contains("SOLICITUD_INVALIDA"));
+    }
+
+    @Test
+    void comprobanteQueSunatRechazariaNoSeEnviaNiSeEncola() {
+        String factura = """
+                {"emisor": {"ruc": "20000000002"}, "cliente": {}, "serie": "F001",
+                 "items": [{"unidad_medida": "CAJA"}]}""";
+
+        for (String ruta : List.of("/api/facturacion/prueba-factura", "/api/facturacion/comprobantes")) {
+            given().contentType(ContentType.JSON).body(factura)
+                    .when().post(ruta)
+                    .then().statusCode(400)
+                    .body("codigo_respuesta", is("SOLICITUD_INVALIDA"))
+                    .body("errores", hasItems("emisor.ruc: el dígito verificador del RUC no corresponde",
+                            "items[0].unidadMedida: no existe en el catálogo 03"));
+        }
+    }
+
+    @Test
+    void mismoComprobanteEnviadoAVecesSeEncolaUnaSolaVez() throws Exception {
+        String factura = """
+                {"emisor": {}, "cliente": {}, "serie": "F001", "correlativo": 9301, "items": [{}]}""";
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> envios = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                envios.add(executor.submit(() -> given().contentType(ContentType.JSON).body(factura)
+                        .when().post("/api/facturacion/comprobantes")
+                        .statusCode()));
+            }
+            List<Integer> estados = new ArrayList<>();
+            for (Future<Integer> envio : envios) {
+                estados.add(envio.get());
+            }
+            // Ninguno termina en 500 por la restricción única
+            assertEquals(1, estados.stream().filter(estado -> estado == 202).count(), estados.toString());
+            assertEquals(7, estados.stream().filter(estado -> estado == 409).count(), estados.toString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.empresa.facturacion.resource;
+
+import com.empresa.facturacion.simulador.SimuladorSunat;
+import com.empresa.facturacion.simulador.SimuladorSunat.Operacion;
+import com.empresa.facturacion.simulador.SimuladorSunat.Resultado;
+import com.empresa.facturacion.simulador.SimuladorSunatResource;
+import io.quarkus.test.common.TestResourceScope;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Envío completo por /prueba-factura contra el simulador de billService: generación, firma, ZIP,
+ * control de tráfico, conexión HTTP y lectura del CDR.
+ */
+@QuarkusTest
+@WithTestResource(value = SimuladorSunatResource.class, scope = TestResourceScope.GLOBAL)
+class PruebaFacturaSimuladorTest {
+
+    private static final String FACTURA = """
+            {"emisor": {}, "cliente": {}, "serie": "F201", "items": [{"cantidad": 2, "valor_unitario": 50}]}""";
+
+    private SimuladorSunat simulador;
+
+    @BeforeEach
+    void reiniciar() {
+        simulador = SimuladorSunatResource.simulador().reiniciar();
+    }
+
+    @Test
+    void facturaAceptadaDevuelveElCdr() {
+        given().contentType(ContentType.JSON).body(FACTURA)
+                .when().post("/api/facturacion/prueba-factura")
+                .then().statusCode(200)
+                .body("codigo_respuesta", is("0"))
+                .body("numero_documento", startsWith("F201-"))
+                .body("cdr_sunat", notNullValue());
+
+        assertEquals(1, simulador.recibidas(Operacion.SEND_BILL));
+    }
+
+    @Test
+    void faultYRechazoDeSunatSeInformanConSuCodigo() {
+        simulador.siguiente(Resultado.fault("2335", "El documento electrónico ingresado ha sido alterado"),
+                Resultado.rechazo("2017", "El número de documento de identidad del receptor debe ser RUC"));
+
+        given().contentType(ContentType.JSON).body(FACTURA)
+                .when().post("/api/facturacion/prueba-factura")
+                .then().statusCode(400)
+                .body("codigo_respuesta", is("2335"));
+        given().contentType(ContentType.JSON).body(FACTURA)
+                .when().post("/api/facturacion/prueba-factura")
+                .then().statusCode(400)
+                .body("codigo_respuesta", is("2017"))
+                .body("cdr_sunat", notNullValue());
+    }
+
+    @Test
+    void errorHttpTransitorioSeReintenta() {
+        simulador.siguiente(Resultado.http(503));
+
+        given().contentType(ContentType.JSON).body(FACTURA)
+                .when().post("/api/facturacion/prueba-factura")
+                .then().statusCode(200)
+                .body("codigo_respuesta", is("0"));
+
+        assertEquals(2, simulador.recibidas(Operacion.SEND_BILL));
+    }
+
+    @Test
+    void faultTransitorioSeReintentaYElRechazoNo() {
+        simulador.siguiente(Resultado.fault("0130", "El sistema no puede responder su solicitud"));
+        given().contentType(ContentType.JSON).body(FACTURA)
+                .when().post("/api/facturacion/prueba-factura")
+                .then().statusCode(200)
+                .body("codigo_respuesta", is("0"));
+        assertEquals(2, simulador.recibidas(Operacion.SEND_BILL));
+
+        simulador.siguiente(Resultado.fault("2335", "El documento electrónico ingresado ha sido alterado"));
+        given().contentType(ContentType.JSON).body(FACTURA)
+                .when().post("/api/facturacion/prueba-factura")
+                .then().statusCode(400)
+                .body("codigo_respuesta", is("2335"));
+        assertEquals(3, simulador.recibidas(Operacion.SEND_BILL));
+    }
+
+    @Test
+    void reintentoConCorrelativoRecibeElMismoCdrSinReenviar() {
+        String factura = """
+                {"emisor": {}, "cliente": {}, "serie": "F202", "correlativo": 7,
+                 "items": [{"cantidad": 2, "valor_unitario": 50}]}""";
+        String cdr = given().contentType(ContentType.JSON).body(factura)
+                .when().post("/api/facturacion/prueba-factura")
+                .then().statusCode(200)
+                .extract().path("cdr_sunat");
+
+        given().contentType(ContentType.JSON).body(factura)
+                .when().post("/api/facturacion/prueba-factura")
+                .then().statusCode(200)
+                .body("cdr_sunat", is(cdr));
+        given().contentType(ContentType.JSON).body(factura.replace("\"cantidad\": 2", "\"cantidad\": 3"))
+                .when().post("/api/facturacion/prueba-factura")
+                .then().statusCode(409)
+                .body("codigo_respuesta", is("CONFLICTO_IDEMPOTENCIA"));
+
+        assertEquals(1, simulador.recibidas(Operacion.SEND_BILL));
+    }
+
+    @Test
+    void pingSunatSondeaElServicio() {
+        given().when().get("/api/facturacion/ping-sunat")
+                .then().statusCode(200)
+                .body("sunat_accesible", is(true))
+                .body("latencia_ms", notNullValue());
+
+        assertEquals(1, simulador.recibidas(Operacion.WSDL));
+    }
+}
@@ -0,0 +1,47 @@
+package com.empresa.facturacion.service;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+
+import java.util.ArrayList;
+
+/**
+ * Comprobantes de prueba con los valores por defecto de {@link FacturaPruebaRequest}: factura F001 del RUC
+ * de prueba de SUNAT. Cada prueba cambia luego lo que necesite.
+ */
+public final class ComprobantesPrueba {
+
+    private ComprobantesPrueba() {
+    }
+
+    public static FacturaPruebaRequest factura(long correlativo) {
+        return factura(correlativo, 1);
+    }
+
+    /**
+     * Factura de {@code items} ítems iguales numerados desde 1.
+     */
+    public static FacturaPruebaRequest factura(long correlativo, int items) {
+        FacturaPruebaRequest request = new FacturaPruebaRequest();
+        request.emisor = new FacturaPruebaRequest.EmisorDto();
+        request.cliente = new FacturaPruebaRequest.ClienteDto();
+        request.correlativo = correlativo;
+        request.items = new ArrayList<>();
+        for (int i = 1; i <= items; i++) {
+            FacturaPruebaRequest.ItemDto item = new FacturaPruebaRequest.ItemDto();
+            item.item = i;
+            request.items.add(item);
+        }
+        return request;
+    }
+
+    /**
+     * Factura de un ítem de {@code ruc}; las pruebas que encolan usan un RUC propio para que los envíos en
+     * curso de otras pruebas no detengan los suyos.
+     */
+    public static FacturaPruebaRequest factura(String ruc, String serie, long correlativo) {
+        FacturaPruebaRequest request = factura(correlativo);
+        request.emisor.ruc = ruc;
+        request.serie = serie;
+        return request;
+    }
+}
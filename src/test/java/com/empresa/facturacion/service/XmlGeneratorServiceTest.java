@@ -0,0 +1,112 @@
+package com.empresa.facturacion.service;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static com.empresa.facturacion.service.ComprobantesPrueba.factura;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class XmlGeneratorServiceTest {
+
+    private static final String CBC = "urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2";
+    private static final String CAC = "urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2";
+
+    private final XmlGeneratorService generator = new XmlGeneratorService();
+
+    @Test
+    void generaXmlBienFormadoConTextoEscapado() throws Exception {
+        FacturaPruebaRequest request = factura(123L, 3);
+        request.emisor.razonSocial = "PEREZ & HIJOS <S.A.C.> ]]>";
+        request.items.get(0).descripcion = "CAFÉ 100% ñ 😀";
+
+        String xml = generator.generarXml(request);
+        Document doc = parsear(xml);
+
+        assertEquals("Invoice", doc.getDocumentElement().getLocalName());
+        assertEquals("F001-123", doc.getElementsByTagNameNS(CBC, "ID").item(0).getTextContent());
+        assertEquals("PEREZ & HIJOS <S.A.C.> ]]>",
+                doc.getElementsByTagNameNS(CBC, "RegistrationName").item(0).getTextContent());
+        assertEquals("CAFÉ 100% ñ 😀",
+                doc.getElementsByTagNameNS(CBC, "Description").item(0).getTextContent());
+        assertEquals(3, doc.getElementsByTagNameNS(CAC, "InvoiceLine").getLength());
+        assertEquals("TRESCIENTOS CINCUENTA Y CUATRO CON 00/100 SOLES",
+                doc.getElementsByTagNameNS(CBC, "Note").item(0).getTextContent());
+    }
+
+    @Test
+    void generaMilesDeLineasSinDesbordarBuffer() throws Exception {
+        Document doc = parsear(generator.generarXml(factura(123L, 2_000)));
+
+        assertEquals(2_000, doc.getElementsByTagNameNS(CAC, "InvoiceLine").getLength());
+    }
+
+    @Test
+    void notasUsanSuRaizLineasYReferenciaAlComprobanteAfectado() throws Exception {
+        FacturaPruebaRequest credito = factura(123L, 2);
+        credito.tipoDocumento = "07";
+        credito.documentoReferencia = new FacturaPruebaRequest.DocumentoReferenciaDto();
+        credito.documentoReferencia.numeroDocumento = "F001-45";
+        credito.documentoReferencia.codigoMotivo = "01";
+        credito.documentoReferencia.motivo = "ANULACIÓN DE LA OPERACIÓN";
+
+        Document doc = parsear(generator.generarXml(credito));
+        assertEquals("urn:oasis:names:specification:ubl:schema:xsd:CreditNote-2",
+                doc.getDocumentElement().getNamespaceURI());
+        assertEquals(2, doc.getElementsByTagNameNS(CAC, "CreditNoteLine").getLength());
+        assertEquals(2, doc.getElementsByTagNameNS(CBC, "CreditedQuantity").getLength());
+        assertEquals("F001-45", doc.getElementsByTagNameNS(CBC, "ReferenceID").item(0).getTextContent());
+        assertEquals(0, doc.getElementsByTagNameNS(CBC, "InvoiceTypeCode").getLength());
+
+        credito.tipoDocumento = "08";
+        doc = parsear(generator.generarXml(credito));
+        assertEquals("DebitNote", doc.getDocumentElement().getLocalName());
+        assertEquals(2, doc.getElementsByTagNameNS(CAC, "DebitNoteLine").getLength());
+        assertEquals(1, doc.getElementsByTagNameNS(CAC, "RequestedMonetaryTotal").getLength());
+        assertEquals(0, doc.getElementsByTagNameNS(CAC, "LegalMonetaryTotal").getLength());
+    }
+
+    @Test
+    void boletaEsInvoiceConTipo03() throws Exception {
+        FacturaPruebaRequest boleta = factura(123L, 1);
+        boleta.tipoDocumento = "03";
+        boleta.serie = "B001";
+
+        Document doc = parsear(generator.generarXml(boleta));
+        assertEquals("Invoice", doc.getDocumentElement().getLocalName());
+        assertEquals("03", doc.getElementsByTagNameNS(CBC, "InvoiceTypeCode").item(0).getTextContent());
+    }
+
+    @Test
+    void informaUnSubtotalPorCategoriaYElIcbper() throws Exception {
+        FacturaPruebaRequest request = factura(123L, 3);
+        request.items.get(1).codigoAfectacionIgv = "20";
+        request.items.get(2).cantidad = new BigDecimal("2");
+        request.items.get(2).valorUnitario = new BigDecimal("0.10");
+        request.items.get(2).afectoIcbper = true;
+
+        Document doc = parsear(generator.generarXml(request));
+        Element totales = (Element) doc.getDocumentElement().getElementsByTagNameNS(CAC, "TaxTotal").item(0);
+        assertEquals(doc.getDocumentElement(), totales.getParentNode());
+        // IGV 18.00 + 0.04 (0.20 × 0.18 = 0.036) + ICBPER 2 × 0.50
+        assertEquals("19.04", totales.getElementsByTagNameNS(CBC, "TaxAmount").item(0).getTextContent());
+        assertEquals(3, totales.getElementsByTagNameNS(CAC, "TaxSubtotal").getLength());
+        assertEquals("9997", ((Element) totales.getElementsByTagNameNS(CAC, "TaxScheme").item(1))
+                .getElementsByTagNameNS(CBC, "ID").item(0).getTextContent());
+        assertEquals("200.20", doc.getElementsByTagNameNS(CBC, "LineExtensionAmount").item(0).getTextContent());
+        assertEquals("219.24", doc.getElementsByTagNameNS(CBC, "PayableAmount").item(0).getTextContent());
+        assertEquals(1, doc.getElementsByTagNameNS(CBC, "PerUnitAmount").getLength());
+    }
+
+    private static Document parsear(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+}
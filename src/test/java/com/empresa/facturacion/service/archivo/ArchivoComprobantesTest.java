@@ -0,0 +1,99 @@
+package com.empresa.facturacion.service.archivo;
+
+import io.quarkus.runtime.configuration.MemorySize;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchivoComprobantesTest {
+
+    @TempDir
+    Path directorio;
+
+    @Test
+    void guardaBuscaYCreceRotandoSegmentos() throws IOException {
+        ArchivoComprobantes archivo = abrir(1_000);
+        for (int i = 1; i <= 500; i++) {
+            String clave = ArchivoComprobantes.clave("20000000001", "01", "F001", i);
+            archivo.guardar(clave, TipoArchivo.XML, contenido("xml", i));
+            archivo.guardar(clave, TipoArchivo.CDR, contenido("cdr", i));
+        }
+        // Reenvío: la última versión reemplaza a la anterior en el índice
+        archivo.guardar(ArchivoComprobantes.clave("20000000001", "01", "F001", 7), TipoArchivo.CDR,
+                contenido("cdr-reenvio", 7));
+
+        assertEquals(1_000, archivo.cantidad());
+        assertTrue(Files.exists(directorio.resolve("segmento-000002.dat")), "debe rotar de segmento");
+        assertArrayEquals(contenido("xml", 321), leer(archivo, 321, TipoArchivo.XML));
+        assertArrayEquals(contenido("cdr", 500), leer(archivo, 500, TipoArchivo.CDR));
+        assertArrayEquals(contenido("cdr-reenvio", 7), leer(archivo, 7, TipoArchivo.CDR));
+        assertTrue(archivo.buscar(ArchivoComprobantes.clave("20000000001", "01", "F001", 501), TipoArchivo.XML).isEmpty());
+        assertTrue(archivo.buscar(ArchivoComprobantes.clave("20000000001", "03", "F001", 1), TipoArchivo.XML).isEmpty());
+        archivo.cerrar();
+
+        ArchivoComprobantes reabierto = abrir(1_000);
+        assertEquals(1_000, reabierto.cantidad());
+        assertArrayEquals(contenido("xml", 1), leer(reabierto, 1, TipoArchivo.XML));
+        reabierto.cerrar();
+    }
+
+    @Test
+    void reconstruyeElIndiceDesdeLosSegmentosYDescartaUnRegistroIncompleto() throws IOException {
+        ArchivoComprobantes archivo = abrir(1 << 20);
+        for (int i = 1; i <= 50; i++) {
+            archivo.guardar(ArchivoComprobantes.clave("20000000001", "01", "F001", i), TipoArchivo.XML,
+                    contenido("xml", i));
+        }
+        archivo.cerrar();
+        Files.delete(directorio.resolve(ArchivoComprobantes.INDICE));
+        // Caída a mitad de una escritura: queda media cabecera al final del segmento
+        try (FileChannel canal = FileChannel.open(directorio.resolve("segmento-000001.dat"), StandardOpenOption.APPEND)) {
+            canal.write(ByteBuffer.wrap(new byte[] {0x41, 0x52, 0x43, 0x52, 1, 0}));
+        }
+
+        ArchivoComprobantes reconstruido = abrir(1 << 20);
+        assertEquals(50, reconstruido.cantidad());
+        assertArrayEquals(contenido("xml", 42), leer(reconstruido, 42, TipoArchivo.XML));
+        reconstruido.guardar(ArchivoComprobantes.clave("20000000001", "01", "F001", 51), TipoArchivo.XML,
+                contenido("xml", 51));
+        assertArrayEquals(contenido("xml", 51), leer(reconstruido, 51, TipoArchivo.XML));
+        reconstruido.cerrar();
+    }
+
+    private ArchivoComprobantes abrir(long tamanoSegmento) {
+        ArchivoComprobantes archivo = new ArchivoComprobantes();
+        archivo.directorio = directorio;
+        archivo.tamanoSegmento = new MemorySize(BigInteger.valueOf(tamanoSegmento * 64));
+        archivo.capacidadInicial = 16;
+        archivo.sincronizar = false;
+        archivo.confirmarCada = 100;
+        archivo.abrir();
+        return archivo;
+    }
+
+    private static byte[] leer(ArchivoComprobantes archivo, long correlativo, TipoArchivo tipo) throws IOException {
+        ArchivoComprobantes.Ubicacion ubicacion = archivo.buscar(
+                ArchivoComprobantes.clave("20000000001", "01", "F001", correlativo), tipo).orElseThrow();
+        ByteBuffer destino = ByteBuffer.allocate(ubicacion.longitud());
+        try (FileChannel canal = FileChannel.open(ubicacion.segmento(), StandardOpenOption.READ)) {
+            canal.read(destino, ubicacion.offset());
+        }
+        return destino.array();
+    }
+
+    private static byte[] contenido(String tipo, int i) {
+        return ("PK-" + tipo + "-" + i + "-" + "x".repeat(i % 17)).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,60 @@
+package com.empresa.facturacion.service.catalogo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogosTest {
+
+    private final Catalogos catalogos = Catalogos.crear();
+
+    @Test
+    void cargaLosCatalogosIncluidosYLosConsultaPorCodigo() {
+        Catalogo afectaciones = catalogos.requerido(7);
+        assertEquals("Código de tipo de afectación del IGV", afectaciones.nombre());
+        assertEquals(19, afectaciones.tamano());
+        assertEquals("Exportación de bienes o servicios", afectaciones.descripcion("40"));
+        assertEquals("9996", afectaciones.valor("21", "tributo"));
+        assertNull(afectaciones.descripcion("99"));
+
+        Catalogo identidad = catalogos.requerido(6);
+        assertTrue(identidad.contiene("6"));
+        assertFalse(identidad.contiene("06"));
+        assertFalse(catalogos.requerido(3).contiene("niu"));
+        assertTrue(catalogos.requerido(3).parcial(), "el 03 incluye solo parte de la UN/ECE rec. 20");
+        assertFalse(identidad.parcial());
+        assertNull(catalogos.catalogo(4));
+        assertThrows(IllegalStateException.class, () -> catalogos.requerido(4));
+
+        String json = new String(catalogos.json(9).cuerpo(), StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("{\"numero\":\"09\",\"nombre\":\"Código de tipo de nota de crédito\",\"parcial\":false,\"codigos\":"
+                + "[{\"codigo\":\"01\",\"descripcion\":\"Anulación de la operación\"}"), json);
+    }
+
+    @Test
+    void rechazaArchivosMalFormadosYCodigosRepetidos() {
+        assertThrows(IllegalStateException.class, () -> Catalogo.leer("99",
+                new BufferedReader(new StringReader("# Catálogo\ncodigo\tdescripcion\n01\tUno\n01\tOtro\n"))));
+        assertThrows(IllegalStateException.class, () -> Catalogo.leer("99",
+                new BufferedReader(new StringReader("codigo\tdescripcion\n01\tUno\n"))));
+    }
+
+    @Test
+    void etagFuerteConComparacionDeIfNoneMatch() {
+        JsonPreparado json = catalogos.json(7);
+        assertTrue(json.etag().matches("\"[0-9a-f]{64}\""));
+        assertTrue(json.vigente(json.etag()));
+        assertTrue(json.vigente("\"otro\", W/" + json.etag()));
+        assertTrue(json.vigente("*"));
+        assertFalse(json.vigente("\"otro\""));
+        assertFalse(json.vigente(null));
+    }
+}
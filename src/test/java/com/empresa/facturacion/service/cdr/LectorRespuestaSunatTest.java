@@ -0,0 +1,136 @@
+package com.empresa.facturacion.service.cdr;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LectorRespuestaSunatTest {
+
+    @Test
+    void leeCdrAceptadoConObservaciones() throws Exception {
+        String cdr = zipCdr(applicationResponse("0", "La Factura numero F001-1, ha sido aceptada",
+                "4252 - El dato ingresado como atributo @listName es incorrecto.",
+                "4255 - El dato ingresado como atributo @schemeName es incorrecto."), false);
+
+        RespuestaSunat respuesta = LectorRespuestaSunat.leer(sendBillResponse(cdr));
+
+        assertFalse(respuesta.fault());
+        assertTrue(respuesta.aceptado());
+        assertEquals("0", respuesta.codigo());
+        assertEquals("La Factura numero F001-1, ha sido aceptada", respuesta.descripcion());
+        assertEquals("F001-1", respuesta.referencia());
+        assertEquals(List.of("4252 - El dato ingresado como atributo @listName es incorrecto.",
+                "4255 - El dato ingresado como atributo @schemeName es incorrecto."), respuesta.observaciones());
+        assertEquals(cdr, respuesta.cdrBase64());
+    }
+
+    @Test
+    void leeCdrDeRechazoAlmacenadoSinComprimirYEnBase64ConSaltos() throws Exception {
+        String cdr = Base64.getMimeEncoder().encodeToString(Base64.getDecoder().decode(
+                zipCdr(applicationResponse("2335", "El documento electrónico ingresado ha sido alterado"), true)));
+
+        RespuestaSunat respuesta = LectorRespuestaSunat.leer(sendBillResponse(cdr));
+
+        assertFalse(respuesta.aceptado());
+        assertEquals("2335", respuesta.codigo());
+        assertEquals("El documento electrónico ingresado ha sido alterado", respuesta.descripcion());
+        assertTrue(respuesta.observaciones().isEmpty());
+    }
+
+    @Test
+    void leeSoapFaultConCodigoNumerico() {
+        RespuestaSunat respuesta = LectorRespuestaSunat.leer("""
+                <soap-env:Envelope xmlns:soap-env="http://schemas.xmlsoap.org/soap/envelope/"><soap-env:Body>\
+                <soap-env:Fault><faultcode>soap-env:Client.0111</faultcode>\
+                <faultstring>No tiene el perfil para enviar comprobantes electronicos</faultstring>\
+                </soap-env:Fault></soap-env:Body></soap-env:Envelope>""");
+
+        assertTrue(respuesta.fault());
+        assertFalse(respuesta.aceptado());
+        assertEquals("0111", respuesta.codigo());
+        assertEquals("No tiene el perfil para enviar comprobantes electronicos", respuesta.descripcion());
+        assertNull(respuesta.cdrBase64());
+        assertEquals("soap-env:Server", LectorRespuestaSunat.codigoFault("soap-env:Server"));
+    }
+
+    @Test
+    void clasificaLosCodigosDeSunat() {
+        assertEquals(ClaseCodigoSunat.ERROR, ClaseCodigoSunat.de("0111"), "credenciales: no se corrige reenviando");
+        assertEquals(ClaseCodigoSunat.REINTENTABLE, ClaseCodigoSunat.de("0109"));
+        assertEquals(ClaseCodigoSunat.REINTENTABLE, ClaseCodigoSunat.de("0135"));
+        assertEquals(ClaseCodigoSunat.RECHAZO, ClaseCodigoSunat.de("2335"));
+        assertEquals(ClaseCodigoSunat.PRESENTADO, ClaseCodigoSunat.de("1033"), "se concilia, no es un error");
+        assertEquals(ClaseCodigoSunat.PRESENTADO, ClaseCodigoSunat.de("2223"));
+        assertEquals(ClaseCodigoSunat.OBSERVACION, ClaseCodigoSunat.de("4252"));
+        assertEquals(ClaseCodigoSunat.ACEPTADO, ClaseCodigoSunat.de("0"));
+        assertEquals(ClaseCodigoSunat.ERROR, ClaseCodigoSunat.de("soap-env:Server"));
+        assertEquals(ClaseCodigoSunat.ERROR, ClaseCodigoSunat.de(null));
+    }
+
+    @Test
+    void rechazaRespuestaSinCdrNiFault() {
+        assertThrows(IllegalStateException.class, () -> LectorRespuestaSunat.leer(
+                "<soap-env:Envelope xmlns:soap-env=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+                        + "<soap-env:Body/></soap-env:Envelope>"));
+    }
+
+    private static String sendBillResponse(String cdrBase64) {
+        return "<soap-env:Envelope xmlns:soap-env=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap-env:Body>"
+                + "<br:sendBillResponse xmlns:br=\"http://service.sunat.gob.pe\"><applicationResponse>"
+                + cdrBase64 + "</applicationResponse></br:sendBillResponse></soap-env:Body></soap-env:Envelope>";
+    }
+
+    private static String applicationResponse(String codigo, String descripcion, String... notas) {
+        StringBuilder xml = new StringBuilder("""
+                <?xml version="1.0" encoding="UTF-8"?>
+                <ar:ApplicationResponse xmlns:ar="urn:oasis:names:specification:ubl:schema:xsd:ApplicationResponse-2" \
+                xmlns:cac="urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2" \
+                xmlns:cbc="urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2">\
+                <cbc:UBLVersionID>2.0</cbc:UBLVersionID><cbc:ID>1760712345678</cbc:ID>""");
+        for (String nota : notas) {
+            xml.append("<cbc:Note>").append(nota).append("</cbc:Note>");
+        }
+        return xml.append("<cac:SenderParty><cac:PartyIdentification><cbc:ID>20131312955</cbc:ID>")
+                .append("</cac:PartyIdentification></cac:SenderParty><cac:DocumentResponse><cac:Response>")
+                .append("<cbc:ReferenceID>F001-1</cbc:ReferenceID><cbc:ResponseCode>").append(codigo)
+                .append("</cbc:ResponseCode><cbc:Description>").append(descripcion)
+                .append("</cbc:Description></cac:Response></cac:DocumentResponse></ar:ApplicationResponse>")
+                .toString();
+    }
+
+    /**
+     * Igual que SUNAT: carpeta {@code dummy/} seguida del XML del CDR.
+     */
+    private static String zipCdr(String xml, boolean almacenado) throws Exception {
+        byte[] contenido = xml.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
+            zos.putNextEntry(new ZipEntry("dummy/"));
+            zos.closeEntry();
+            ZipEntry entrada = new ZipEntry("R-20000000001-01-F001-1.xml");
+            if (almacenado) {
+                CRC32 crc = new CRC32();
+                crc.update(contenido);
+                entrada.setMethod(ZipEntry.STORED);
+                entrada.setSize(contenido.length);
+                entrada.setCrc(crc.getValue());
+            }
+            zos.putNextEntry(entrada);
+            zos.write(contenido);
+            zos.closeEntry();
+        }
+        return Base64.getEncoder().encodeToString(baos.toByteArray());
+    }
+}
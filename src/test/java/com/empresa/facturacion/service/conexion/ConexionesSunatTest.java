@@ -0,0 +1,120 @@
+package com.empresa.facturacion.service.conexion;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import jakarta.ws.rs.WebApplicationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConexionesSunatTest {
+
+    private static final String FAULT = "<soap:Fault><faultcode>soap-env:Client.0111</faultcode></soap:Fault>";
+
+    private Vertx vertx;
+    private HttpServer servidor;
+    private SimpleMeterRegistry registry;
+    private ConexionesSunat conexiones;
+
+    @BeforeEach
+    void iniciar() throws Exception {
+        vertx = Vertx.vertx();
+        servidor = vertx.createHttpServer().requestHandler(req -> req.body().onSuccess(cuerpo -> {
+            String texto = cuerpo.toString();
+            if (req.uri().endsWith("?wsdl")) {
+                req.response().end("<definitions/>");
+            } else if (req.getHeader("Content-Length") == null) {
+                req.response().setStatusCode(411).end();
+            } else if (texto.contains("fault")) {
+                req.response().setStatusCode(500).end(FAULT);
+            } else if (texto.contains("caido")) {
+                req.response().setStatusCode(503).end("Service Unavailable");
+            } else {
+                req.response().end("<ok>" + texto + "</ok>");
+            }
+        })).listen(0).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        registry = new SimpleMeterRegistry();
+        conexiones = new ConexionesSunat();
+        conexiones.vertx = vertx;
+        conexiones.registry = registry;
+        conexiones.url = "http://localhost:" + servidor.actualPort() + "/ol-ti-itcpfegem-beta/billService";
+        conexiones.tamanoPool = 4;
+        conexiones.keepAlive = Duration.ofSeconds(30);
+        conexiones.connectTimeout = Duration.ofSeconds(5);
+        conexiones.readTimeout = Duration.ofSeconds(5);
+        conexiones.verifyHost = true;
+        conexiones.iniciar();
+    }
+
+    @AfterEach
+    void cerrar() throws Exception {
+        conexiones.cerrar();
+        vertx.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void precalientaElPoolYReutilizaLasConexiones() {
+        int abiertas = conexiones.precalentar(3).await().atMost(Duration.ofSeconds(5));
+
+        assertEquals(3, abiertas);
+        assertEquals(3, conexiones.abiertas());
+        assertEquals(3.0, registry.get("sunat.conexiones").tag("estado", "ociosa").gauge().value());
+        assertEquals(3, registry.get("sunat.conexion.establecimiento").timer().count());
+
+        assertEquals("<ok>sobre</ok>", conexiones.enviar("sobre").await().atMost(Duration.ofSeconds(5)));
+        ConexionesSunat.Sondeo sondeo = conexiones.sondear().await().atMost(Duration.ofSeconds(5));
+        assertTrue(sondeo.accesible());
+        assertFalse(sondeo.conexionNueva());
+        assertEquals(3, conexiones.abiertas());
+        assertEquals(2.0, registry.get("sunat.conexion.solicitudes").tag("conexion", "reutilizada").counter().count());
+    }
+
+    @Test
+    void devuelveElSoapFaultDeUn500YFallaConOtrosEstados() {
+        assertEquals(FAULT, conexiones.enviar("fault").await().atMost(Duration.ofSeconds(5)));
+
+        WebApplicationException error = assertThrows(WebApplicationException.class,
+                () -> conexiones.enviar("caido").await().atMost(Duration.ofSeconds(5)));
+        assertEquals(503, error.getResponse().getStatus());
+    }
+
+    @Test
+    void sobreConArchivoSeEscribePorTrozosConContentLength() throws Exception {
+        byte[] zip = new byte[SobreSoap.BYTES_POR_TROZO * 3 + 1_000];
+        new Random(17).nextBytes(zip);
+        SobreSoap sobre = new SobreSoap("<contentFile>", zip, "</contentFile>");
+
+        String respuesta = conexiones.enviar(sobre).await().atMost(Duration.ofSeconds(5));
+
+        String esperado = "<contentFile>" + Base64.getEncoder().encodeToString(zip) + "</contentFile>";
+        assertEquals("<ok>" + esperado + "</ok>", respuesta);
+        assertEquals(esperado.length(), sobre.longitud());
+
+        ByteArrayOutputStream escrito = new ByteArrayOutputStream();
+        sobre.escribir(escrito);
+        assertEquals(esperado, escrito.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void sondeoInformaSunatInaccesible() throws Exception {
+        servidor.close().toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        ConexionesSunat.Sondeo sondeo = conexiones.sondear().await().atMost(Duration.ofSeconds(10));
+        assertFalse(sondeo.accesible());
+        assertTrue(sondeo.error() != null);
+    }
+}
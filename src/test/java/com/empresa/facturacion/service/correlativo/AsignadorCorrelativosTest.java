@@ -0,0 +1,85 @@
+package com.empresa.facturacion.service.correlativo;
+
+import com.empresa.facturacion.entity.CorrelativoNoUsado;
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+class AsignadorCorrelativosTest {
+
+    private static final String RUC = "20000000001";
+
+    @Test
+    void hilosConcurrentesObtienenNumerosUnicosYContiguos() throws Exception {
+        AsignadorCorrelativos asignador = nodo("nodo-a");
+        Set<Long> asignados = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int hilo = 0; hilo < 8; hilo++) {
+                tareas.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        assertTrue(asignados.add(asignador.siguiente(RUC, "01", "F901")));
+                    }
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // 4000 números en bloques de 50: ni duplicados ni saltos dentro de un mismo nodo
+        assertEquals(LongStream.rangeClosed(1, 4000).boxed().collect(Collectors.toSet()), asignados);
+    }
+
+    @Test
+    void nodosCompartenLaSerieYRegistranLoQueNoUsaron() {
+        AsignadorCorrelativos nodoA = nodo("nodo-a");
+        AsignadorCorrelativos nodoB = nodo("nodo-b");
+        Set<Long> asignados = new HashSet<>();
+        for (int i = 0; i < 70; i++) {
+            assertTrue(asignados.add(nodoA.siguiente(RUC, "01", "F902")));
+            assertTrue(asignados.add(nodoB.siguiente(RUC, "01", "F902")));
+        }
+        nodoA.liberarBloques("prueba");
+        nodoB.liberarBloques("prueba");
+
+        List<CorrelativoNoUsado> noUsados = CorrelativoNoUsado.list("serie", "F902");
+        assertEquals(2, noUsados.size());
+        for (CorrelativoNoUsado rango : noUsados) {
+            for (long numero = rango.desde; numero <= rango.hasta; numero++) {
+                assertFalse(asignados.contains(numero));
+                asignados.add(numero);
+            }
+        }
+        // Asignados + no usados cubren exactamente los 4 bloques reservados
+        assertEquals(200, asignados.size());
+        assertTrue(asignados.containsAll(LongStream.rangeClosed(1, 200).boxed().toList()));
+        assertThrows(IllegalStateException.class, () -> nodoA.siguiente(RUC, "01", "F903"));
+    }
+
+    private static AsignadorCorrelativos nodo(String nombre) {
+        AsignadorCorrelativos asignador = new AsignadorCorrelativos();
+        asignador.tamanoBloque = 50;
+        asignador.nodo = nombre;
+        return asignador;
+    }
+}
@@ -0,0 +1,67 @@
+package com.empresa.facturacion.service.cpu;
+
+import com.empresa.facturacion.service.trafico.TraficoSunatException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EjecutorCpuTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final EjecutorCpu cpu = EjecutorCpu.crear(1, 1, registry);
+
+    @AfterEach
+    void cerrar() {
+        cpu.cerrar();
+    }
+
+    @Test
+    void ejecutaEnElPoolDedicado() {
+        String hilo = cpu.ejecutar(() -> Thread.currentThread().getName()).await().atMost(Duration.ofSeconds(5));
+
+        assertTrue(hilo.startsWith("facturacion-cpu-"), hilo);
+        assertEquals(1, registry.get("facturacion.cpu.espera").timer().count());
+    }
+
+    @Test
+    void conLaColaLlenaRechazaOCorreEnElHiloActual() throws Exception {
+        CountDownLatch ocupado = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        Uni<String> enCurso = cpu.ejecutar(() -> {
+            ocupado.countDown();
+            esperar(liberar);
+            return "primera";
+        });
+        enCurso.subscribe().with(r -> { });
+        assertTrue(ocupado.await(5, TimeUnit.SECONDS));
+        cpu.ejecutar(() -> "en cola").subscribe().with(r -> { });
+        assertEquals(1, cpu.enCola());
+        assertEquals(1.0, registry.get("executor.queued").tag("name", "facturacion.cpu").gauge().value());
+
+        TraficoSunatException rechazo = assertThrows(TraficoSunatException.class,
+                () -> cpu.ejecutar(() -> "rechazada").await().atMost(Duration.ofSeconds(5)));
+        assertEquals(TraficoSunatException.PROCESAMIENTO_SATURADO, rechazo.codigo);
+
+        String hilo = cpu.completar(() -> Thread.currentThread().getName()).await().atMost(Duration.ofSeconds(5));
+        assertEquals(Thread.currentThread().getName(), hilo);
+        assertEquals(2.0, registry.get("facturacion.cpu.rechazos").counter().count());
+        liberar.countDown();
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
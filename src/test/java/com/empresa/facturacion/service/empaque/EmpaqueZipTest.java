@@ -0,0 +1,70 @@
+package com.empresa.facturacion.service.empaque;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EmpaqueZipTest {
+
+    private static final byte[] XML = "<Invoice>ÑANDÚ</Invoice>".repeat(5_000).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void elZipSeLeeConLasClasesDelJdk(@TempDir Path directorio) throws Exception {
+        EmpaqueZip.Empaquetado<String> empaquetado = new EmpaqueZip().comprimir("20000000001-01-F001-1.xml", salida -> {
+            salida.write(XML, 0, 100);
+            salida.write(XML, 100, XML.length - 100);
+            return "hash";
+        });
+
+        assertEquals("hash", empaquetado.resultado());
+        assertEquals(XML.length, empaquetado.original());
+        // ZipInputStream valida el CRC de la cabecera local
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(empaquetado.zip()))) {
+            ZipEntry entrada = zip.getNextEntry();
+            assertEquals("20000000001-01-F001-1.xml", entrada.getName());
+            assertArrayEquals(XML, zip.readAllBytes());
+            assertNull(zip.getNextEntry());
+        }
+        // ZipFile parte del directorio central
+        Path archivo = Files.write(directorio.resolve("F001-1.zip"), empaquetado.zip());
+        try (ZipFile zip = new ZipFile(archivo.toFile())) {
+            ZipEntry entrada = zip.getEntry("20000000001-01-F001-1.xml");
+            assertEquals(XML.length, entrada.getSize());
+            assertArrayEquals(XML, zip.getInputStream(entrada).readAllBytes());
+        }
+    }
+
+    @Test
+    void losRecursosSeReutilizanHastaElTamanoDelPool() throws Exception {
+        EmpaqueZip empaque = new EmpaqueZip(1, 1, 64 * 1024);
+        byte[] primero = empaque.comprimir("a.xml", salida -> {
+            // Un segundo empaquetado en curso obliga a crear recursos fuera del pool
+            empaque.comprimir("b.xml", otra -> {
+                otra.write(XML);
+                return null;
+            });
+            salida.write(XML);
+            return null;
+        }).zip();
+        assertEquals(1, empaque.libres());
+
+        byte[] segundo = empaque.comprimir("a.xml", salida -> {
+            salida.write(XML);
+            return null;
+        }).zip();
+        assertEquals(1, empaque.libres());
+        // Deflater y buffer reiniciados: mismo contenido, mismo resultado salvo la hora
+        assertEquals(primero.length, segundo.length);
+    }
+}
@@ -0,0 +1,90 @@
+package com.empresa.facturacion.service.firma;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.service.XmlGeneratorService;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMValidateContext;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Optional;
+
+import static com.empresa.facturacion.service.ComprobantesPrueba.factura;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FirmaDigitalServiceTest {
+
+    private final XmlGeneratorService generator = new XmlGeneratorService();
+
+    @Test
+    void firmaSha1EsValidaSegunXmlDsig() throws Exception {
+        verificarFirma(AlgoritmoFirma.SHA1, 28);
+    }
+
+    @Test
+    void firmaSha256EsValidaSegunXmlDsig() throws Exception {
+        verificarFirma(AlgoritmoFirma.SHA256, 44);
+    }
+
+    @Test
+    void firmasSucesivasReutilizanMaterialYSiguenSiendoValidas() throws Exception {
+        FirmaDigitalService firma = crearServicio(AlgoritmoFirma.SHA256);
+        for (int i = 0; i < 5; i++) {
+            FacturaPruebaRequest request = factura(456L, i + 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            String hash = firma.firmar(generator.documento(request), out);
+            assertTrue(validar(out.toByteArray(), firma), "firma " + i);
+            assertEquals(hash, digestValue(out.toByteArray()));
+        }
+    }
+
+    private void verificarFirma(AlgoritmoFirma algoritmo, int longitudHash) throws Exception {
+        FirmaDigitalService firma = crearServicio(algoritmo);
+        FacturaPruebaRequest request = factura(456L, 3);
+        request.emisor.razonSocial = "PEREZ & HIJOS <S.A.C.> \"ÑANDÚ\"";
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String hash = firma.firmar(generator.documento(request), out);
+
+        assertEquals(longitudHash, hash.length());
+        assertEquals(hash, digestValue(out.toByteArray()));
+        assertTrue(validar(out.toByteArray(), firma));
+    }
+
+    private static FirmaDigitalService crearServicio(AlgoritmoFirma algoritmo) {
+        FirmaDigitalService firma = new FirmaDigitalService();
+        firma.certificadosPath = "target/no-existe";
+        firma.certificadoArchivo = "certificado.p12";
+        firma.certificadoClave = Optional.empty();
+        firma.certificadoAlias = Optional.empty();
+        firma.permitirAutofirmado = true;
+        firma.algoritmo = algoritmo;
+        return firma;
+    }
+
+    private static boolean validar(byte[] xml, FirmaDigitalService firma) throws Exception {
+        Document doc = parsear(xml);
+        NodeList firmas = doc.getElementsByTagNameNS(XMLSignature.XMLNS, "Signature");
+        DOMValidateContext contexto = new DOMValidateContext(firma.certificado().getPublicKey(), firmas.item(0));
+        // La validación segura del JDK rechaza SHA-1, que SUNAT sigue aceptando
+        contexto.setProperty("org.jcp.xml.dsig.secureValidation", Boolean.FALSE);
+        XMLSignature signature = XMLSignatureFactory.getInstance("DOM").unmarshalXMLSignature(contexto);
+        return signature.validate(contexto);
+    }
+
+    private static String digestValue(byte[] xml) throws Exception {
+        return parsear(xml).getElementsByTagNameNS(XMLSignature.XMLNS, "DigestValue").item(0).getTextContent();
+    }
+
+    private static Document parsear(byte[] xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+    }
+}
@@ -0,0 +1,112 @@
+package com.empresa.facturacion.service.idempotencia;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.dto.SunatResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.empresa.facturacion.service.ComprobantesPrueba.factura;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class EnviosIdempotentesTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final EnviosIdempotentes idempotencia = new EnviosIdempotentes();
+    private final AtomicInteger llamadas = new AtomicInteger();
+
+    @BeforeEach
+    void iniciar() {
+        idempotencia.objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        idempotencia.registry = registry;
+        idempotencia.capacidad = 2;
+        idempotencia.ttl = Duration.ofMinutes(5);
+        idempotencia.iniciar();
+    }
+
+    @Test
+    void agrupaLosEnviosEnCursoYRepiteElCdrSinVolverAEnviar() {
+        AtomicReference<UniEmitter<? super SunatResponse>> pendiente = new AtomicReference<>();
+        AtomicReference<SunatResponse> primera = new AtomicReference<>();
+        AtomicReference<SunatResponse> segunda = new AtomicReference<>();
+        idempotencia.enviar(factura(1), () -> {
+            llamadas.incrementAndGet();
+            return Uni.createFrom().<SunatResponse>emitter(pendiente::set);
+        }).subscribe().with(primera::set);
+        idempotencia.enviar(factura(1), this::enviarAceptada).subscribe().with(segunda::set);
+
+        assertEquals(1, llamadas.get());
+        SunatResponse cdr = aceptada();
+        pendiente.get().complete(cdr);
+        assertSame(cdr, primera.get());
+        assertSame(cdr, segunda.get());
+
+        assertSame(cdr, idempotencia.enviar(factura(1), this::enviarAceptada).await().indefinitely());
+        assertEquals(1, llamadas.get());
+        assertEquals(1.0, registry.get("facturacion.idempotencia").tag("resultado", "agrupado").counter().count());
+        assertEquals(1.0, registry.get("facturacion.idempotencia").tag("resultado", "repetido").counter().count());
+
+        FacturaPruebaRequest distinta = factura(1);
+        distinta.items.get(0).cantidad = new BigDecimal("3");
+        SunatResponse conflicto = idempotencia.enviar(distinta, this::enviarAceptada).await().indefinitely();
+        assertEquals(EnviosIdempotentes.CONFLICTO, conflicto.codigoRespuesta);
+        assertEquals(1, llamadas.get());
+    }
+
+    @Test
+    void soloGuardaRespuestasConCdrYHastaLaCapacidad() {
+        idempotencia.enviar(factura(1), () -> {
+            llamadas.incrementAndGet();
+            return Uni.createFrom().item(SunatResponse.error("SUNAT_CONECTIVIDAD", "Sin conexión"));
+        }).await().indefinitely();
+        assertEquals(0, idempotencia.entradas());
+
+        for (long correlativo = 1; correlativo <= 3; correlativo++) {
+            idempotencia.enviar(factura(correlativo), this::enviarAceptada).await().indefinitely();
+        }
+        assertEquals(2, idempotencia.entradas());
+        // El más antiguo salió: se vuelve a enviar
+        idempotencia.enviar(factura(1), this::enviarAceptada).await().indefinitely();
+        assertEquals(5, llamadas.get());
+    }
+
+    @Test
+    void laHuellaNoIncluyeCredencialesNiLaFechaPuestaPorElServidor() throws Exception {
+        SunatResponse cdr = idempotencia.enviar(factura(1), this::enviarAceptada).await().indefinitely();
+
+        // Reintento pasada la medianoche, sin fecha_emision y con otra clave SOL
+        FacturaPruebaRequest reintento = idempotencia.objectMapper.readValue("""
+                {"emisor": {"clave_sol": "OTRA"}, "cliente": {}, "correlativo": 1, "items": [{}]}""",
+                FacturaPruebaRequest.class);
+        reintento.fechaEmision = LocalDate.now().plusDays(1);
+        assertSame(cdr, idempotencia.enviar(reintento, this::enviarAceptada).await().indefinitely());
+        assertEquals(1, llamadas.get());
+
+        FacturaPruebaRequest otraFecha = idempotencia.objectMapper.readValue("""
+                {"emisor": {}, "cliente": {}, "correlativo": 1, "fecha_emision": "2026-01-15", "items": [{}]}""",
+                FacturaPruebaRequest.class);
+        assertEquals(EnviosIdempotentes.CONFLICTO,
+                idempotencia.enviar(otraFecha, this::enviarAceptada).await().indefinitely().codigoRespuesta);
+        assertEquals(1, llamadas.get());
+    }
+
+    private Uni<SunatResponse> enviarAceptada() {
+        llamadas.incrementAndGet();
+        return Uni.createFrom().item(aceptada());
+    }
+
+    private static SunatResponse aceptada() {
+        return SunatResponse.success("0", "La Factura ha sido aceptada", "", "UEsDBA==", "hash", "F001-1");
+    }
+}
@@ -0,0 +1,40 @@
+package com.empresa.facturacion.service.metricas;
+
+import com.empresa.facturacion.dto.SunatResponse;
+import com.empresa.facturacion.service.metricas.MetricasFacturacion.Etapa;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class MetricasFacturacionTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MetricasFacturacion metricas = new MetricasFacturacion(registry, List.of(0.5, 0.99));
+
+    @Test
+    void mideEtapasYCuentaRespuestasPorEmisor() {
+        MetricasFacturacion.Emisor emisor = metricas.emisor("20000000001", "01");
+        assertSame(emisor, metricas.emisor("20000000001", "01"));
+
+        Uni<String> soap = emisor.medir(Etapa.SOAP, Uni.createFrom().item(() -> {
+            assertEquals(1.0, registry.get("facturacion.en_curso").tag("alcance", "soap").gauge().value());
+            return "respuesta";
+        }));
+        soap.await().indefinitely();
+        soap.await().indefinitely();
+        emisor.tamanos(4_000, 1_000, 1_336);
+        emisor.respuesta(SunatResponse.error("2335", "El documento electrónico ingresado ha sido alterado"));
+
+        assertEquals(2, registry.get("facturacion.etapa")
+                .tags("ruc", "20000000001", "tipo", "01", "etapa", "soap").timer().count());
+        assertEquals(0.0, registry.get("facturacion.en_curso").tag("alcance", "soap").gauge().value());
+        assertEquals(1_336.0, registry.get("facturacion.payload").tag("formato", "base64").summary().totalAmount());
+        assertEquals(1.0, registry.get("sunat.respuestas")
+                .tags("codigo", "2335", "resultado", "error").counter().count());
+    }
+}
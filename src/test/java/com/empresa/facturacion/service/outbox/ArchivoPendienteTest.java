@@ -0,0 +1,99 @@
+package com.empresa.facturacion.service.outbox;
+
+import com.empresa.facturacion.entity.ComprobanteOutbox;
+import com.empresa.facturacion.entity.EstadoComprobante;
+import com.empresa.facturacion.service.archivo.ArchivoComprobantes;
+import com.empresa.facturacion.service.archivo.TipoArchivo;
+import com.empresa.facturacion.simulador.SimuladorSunatResource;
+import io.quarkus.arc.ClientProxy;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.common.TestResourceScope;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusMock;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static com.empresa.facturacion.service.ComprobantesPrueba.factura;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+@WithTestResource(value = SimuladorSunatResource.class, scope = TestResourceScope.GLOBAL)
+class ArchivoPendienteTest {
+
+    private static final String RUC = "20601030064";
+
+    @Inject
+    OutboxService outbox;
+
+    @Inject
+    OutboxWorkerPool workers;
+
+    @Inject
+    ArchivoPendiente archivoPendiente;
+
+    @Inject
+    ArchivoComprobantes archivo;
+
+    @Test
+    void cdrQueNoSePudoArchivarConservaElZipHastaArchivarse() {
+        SimuladorSunatResource.simulador().reiniciar();
+        ArchivoIntermitente intermitente = new ArchivoIntermitente(ClientProxy.unwrap(archivo));
+        QuarkusMock.installMockForType(intermitente, ArchivoComprobantes.class);
+
+        ComprobanteOutbox encolado = outbox.encolar(factura(RUC, "F401", 9401L));
+        workers.procesar(outbox.reclamar(100).stream()
+                .filter(comprobante -> comprobante.id.equals(encolado.id))
+                .findFirst().orElseThrow());
+
+        ComprobanteOutbox aceptado = leer(encolado.id);
+        assertEquals(EstadoComprobante.ACEPTADO, aceptado.estado);
+        assertNotNull(aceptado.zip, "el ZIP se conserva mientras no esté archivado");
+        assertNotNull(aceptado.cdrSinArchivar);
+        assertEquals(0, archivoPendiente.archivar(), "el archivo sigue fallando");
+
+        intermitente.fallar = false;
+        assertEquals(1, archivoPendiente.archivar());
+        ComprobanteOutbox archivado = leer(encolado.id);
+        assertNull(archivado.zip);
+        assertNull(archivado.cdrSinArchivar);
+        String clave = ArchivoComprobantes.clave(RUC, "01", "F401", 9401L);
+        assertTrue(intermitente.real.buscar(clave, TipoArchivo.XML).isPresent());
+        assertTrue(intermitente.real.buscar(clave, TipoArchivo.CDR).isPresent());
+        assertEquals(0, archivoPendiente.archivar());
+    }
+
+    private static ComprobanteOutbox leer(long id) {
+        return QuarkusTransaction.requiringNew().call(() -> ComprobanteOutbox.findById(id));
+    }
+
+    /** Archivo que falla al escribir hasta que se le indique lo contrario. */
+    static class ArchivoIntermitente extends ArchivoComprobantes {
+
+        final ArchivoComprobantes real;
+        volatile boolean fallar = true;
+
+        ArchivoIntermitente(ArchivoComprobantes real) {
+            this.real = real;
+        }
+
+        @Override
+        public Ubicacion guardar(String clave, TipoArchivo tipo, byte[] contenido) throws IOException {
+            if (fallar) {
+                throw new IOException("No queda espacio en el dispositivo");
+            }
+            return real.guardar(clave, tipo, contenido);
+        }
+
+        @Override
+        public Optional<Ubicacion> buscar(String clave, TipoArchivo tipo) {
+            return real.buscar(clave, tipo);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.empresa.facturacion.service.outbox;
+
+import com.empresa.facturacion.dto.SunatResponse;
+import com.empresa.facturacion.entity.ComprobanteOutbox;
+import com.empresa.facturacion.entity.EstadoComprobante;
+import com.empresa.facturacion.simulador.Latencia;
+import com.empresa.facturacion.simulador.SimuladorSunat;
+import com.empresa.facturacion.simulador.SimuladorSunat.Operacion;
+import com.empresa.facturacion.simulador.SimuladorSunat.Resultado;
+import com.empresa.facturacion.simulador.SimuladorSunatResource;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.common.TestResourceScope;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.empresa.facturacion.service.ComprobantesPrueba.factura;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+@WithTestResource(value = SimuladorSunatResource.class, scope = TestResourceScope.GLOBAL)
+class ConciliacionCdrTest {
+
+    // RUC propio: los envíos en curso de otras pruebas no detienen a este
+    private static final String RUC = "20601030013";
+    private static final byte[] ZIP = {'P', 'K', 3, 4};
+
+    @Inject
+    OutboxService outbox;
+
+    @Inject
+    OutboxWorkerPool workers;
+
+    @Inject
+    ConciliacionCdr conciliacion;
+
+    @Test
+    void envioSinRespuestaSeConciliaConElCdrOVuelveAEnviarse() {
+        SimuladorSunat simulador = SimuladorSunatResource.simulador().reiniciar();
+        // SUNAT procesa el envío pero la respuesta no llega
+        simulador.siguiente(Resultado.respuestaPerdida(504));
+        ComprobanteOutbox recibido = outbox.encolar(factura(RUC, "F401", 9201L));
+        workers.procesar(outbox.reclamar(100).stream()
+                .filter(comprobante -> comprobante.id.equals(recibido.id))
+                .findFirst().orElseThrow());
+
+        // Timeout antes de llegar a SUNAT
+        ComprobanteOutbox perdido = outbox.encolar(factura(RUC, "F401", 9202L));
+        outbox.marcarFirmado(perdido.id, "hash", ZIP);
+        outbox.marcarEnviado(perdido.id);
+        outbox.registrarIncierto(perdido.id, SunatResponse.error("SUNAT_CONECTIVIDAD", "timeout"));
+
+        assertEquals(2, conciliacion.conciliar());
+
+        ComprobanteOutbox conciliado = outbox.buscar(recibido.id);
+        assertEquals(EstadoComprobante.ACEPTADO, conciliado.estado);
+        assertEquals("0", conciliado.codigoRespuesta);
+        assertNotNull(conciliado.hashCpe);
+        ComprobanteOutbox reenviable = outbox.buscar(perdido.id);
+        assertEquals(EstadoComprobante.FIRMADO, reenviable.estado);
+        assertArrayEquals(ZIP, reenviable.zip, "se reenvía el mismo ZIP sin volver a firmar");
+        assertEquals(2, simulador.recibidas(Operacion.GET_STATUS_CDR));
+        assertEquals(1, simulador.recibidas(Operacion.SEND_BILL), "un 504 no se reintenta a ciegas");
+        assertEquals(0, conciliacion.conciliar());
+    }
+
+    @Test
+    void reenvioYaPresentadoSeConciliaEnLugarDeQuedarRechazado() {
+        SimuladorSunat simulador = SimuladorSunatResource.simulador().reiniciar();
+        // Gateway timeout después de que SUNAT registró la factura
+        simulador.siguiente(Resultado.respuestaPerdida(504));
+        // Otro RUC: las filas de las demás pruebas de esta clase no lo detienen
+        ComprobanteOutbox encolado = outbox.encolar(factura("20601030099", "F401", 9204L));
+        workers.procesar(reclamado(encolado));
+        assertEquals(EstadoComprobante.INCIERTO, estado(encolado.id));
+        assertEquals(1, simulador.recibidas(Operacion.SEND_BILL));
+
+        // La factura vuelve a enviarse (p.ej. una consulta anterior no la encontró) y SUNAT responde 1033
+        outbox.registrarNoRecibido(encolado.id);
+        simulador.siguiente(Resultado.fault("1033", "El comprobante fue registrado previamente con otros datos"));
+        workers.procesar(reclamado(encolado));
+        ComprobanteOutbox presentado = leer(encolado.id);
+        assertEquals(EstadoComprobante.INCIERTO, presentado.estado);
+        assertEquals("1033", presentado.codigoRespuesta);
+
+        assertEquals(1, conciliacion.conciliar());
+        ComprobanteOutbox conciliado = leer(encolado.id);
+        assertEquals(EstadoComprobante.ACEPTADO, conciliado.estado);
+        assertEquals("0", conciliado.codigoRespuesta);
+        assertEquals(2, simulador.recibidas(Operacion.SEND_BILL));
+    }
+
+    @Test
+    void envioEnCursoNoSeConciliaAunqueHayaVencidoElLeaseDelLote() throws Exception {
+        SimuladorSunat simulador = SimuladorSunatResource.simulador().reiniciar().latencia(Latencia.fija(1500));
+        ComprobanteOutbox encolado = outbox.encolar(factura(RUC, "F401", 9203L));
+        ComprobanteOutbox reclamado = outbox.reclamar(100).stream()
+                .filter(comprobante -> comprobante.id.equals(encolado.id))
+                .findFirst().orElseThrow();
+        // Último de un lote largo: el lease del reclamo venció antes de que el worker llegue a él
+        Instant vencido = Instant.now().minus(Duration.ofMinutes(5)).truncatedTo(ChronoUnit.MILLIS);
+        QuarkusTransaction.requiringNew().run(() -> ComprobanteOutbox.update("bloqueadoHasta = ?1 where id = ?2",
+                vencido, encolado.id));
+        reclamado.bloqueadoHasta = vencido;
+
+        CompletableFuture<Void> envio = CompletableFuture.runAsync(() -> workers.procesar(reclamado));
+        try {
+            long limite = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (estado(encolado.id) != EstadoComprobante.ENVIADO && System.nanoTime() < limite) {
+                Thread.sleep(20);
+            }
+            assertEquals(EstadoComprobante.ENVIADO, estado(encolado.id));
+            assertTrue(outbox.reclamarInciertos(100).stream().noneMatch(c -> c.id.equals(encolado.id)),
+                    "el envío sigue en curso");
+        } finally {
+            envio.get(30, TimeUnit.SECONDS);
+            simulador.latencia(Latencia.fija(0));
+        }
+
+        assertEquals(EstadoComprobante.ACEPTADO, estado(encolado.id));
+        assertEquals(1, simulador.recibidas(Operacion.SEND_BILL));
+        assertEquals(0, simulador.recibidas(Operacion.GET_STATUS_CDR), "sin consulta no hay reenvío");
+    }
+
+    @Test
+    void cadaInciertoRenuevaSuLeaseYNoSeConsultaSiOtroNodoLoReclamo() {
+        SimuladorSunat simulador = SimuladorSunatResource.simulador().reiniciar();
+        ComprobanteOutbox encolado = outbox.encolar(factura("20601030129", "F401", 9205L));
+        outbox.marcarFirmado(encolado.id, "hash", ZIP);
+        outbox.marcarEnviado(encolado.id);
+        outbox.registrarIncierto(encolado.id, SunatResponse.error("SUNAT_CONECTIVIDAD", "timeout"));
+        ComprobanteOutbox delLote = incierto(encolado);
+
+        // Último de un lote largo: el lease del reclamo venció y otro nodo volvió a reclamarlo
+        QuarkusTransaction.requiringNew().run(() -> ComprobanteOutbox.update("bloqueadoHasta = ?1 where id = ?2",
+                Instant.now().minus(Duration.ofMinutes(5)), encolado.id));
+        ComprobanteOutbox deOtroNodo = incierto(encolado);
+
+        assertEquals(ConciliacionCdr.Resultado.POSPUESTO,
+                conciliacion.conciliar(delLote).await().atMost(Duration.ofSeconds(10)));
+        assertEquals(0, simulador.recibidas(Operacion.GET_STATUS_CDR));
+
+        assertEquals(ConciliacionCdr.Resultado.NO_RECIBIDO,
+                conciliacion.conciliar(deOtroNodo).await().atMost(Duration.ofSeconds(10)));
+        assertEquals(1, simulador.recibidas(Operacion.GET_STATUS_CDR));
+        assertEquals(EstadoComprobante.FIRMADO, estado(encolado.id));
+    }
+
+    private ComprobanteOutbox incierto(ComprobanteOutbox encolado) {
+        return outbox.reclamarInciertos(100).stream()
+                .filter(comprobante -> comprobante.id.equals(encolado.id))
+                .findFirst().orElseThrow();
+    }
+
+    private ComprobanteOutbox reclamado(ComprobanteOutbox encolado) {
+        return outbox.reclamar(100).stream()
+                .filter(comprobante -> comprobante.id.equals(encolado.id))
+                .findFirst().orElseThrow();
+    }
+
+    private static EstadoComprobante estado(long id) {
+        return leer(id).estado;
+    }
+
+    private static ComprobanteOutbox leer(long id) {
+        return QuarkusTransaction.requiringNew().call(() -> ComprobanteOutbox.findById(id));
+    }
+}
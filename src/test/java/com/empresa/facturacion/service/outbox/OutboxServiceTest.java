@@ -0,0 +1,163 @@
+package com.empresa.facturacion.service.outbox;
+
+import com.empresa.facturacion.dto.SunatResponse;
+import com.empresa.facturacion.entity.ComprobanteOutbox;
+import com.empresa.facturacion.entity.EstadoComprobante;
+import com.empresa.facturacion.service.trafico.ControlTraficoSunat;
+import com.empresa.facturacion.service.trafico.TraficoSunatException;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusMock;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.mutiny.Uni;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static com.empresa.facturacion.service.ComprobantesPrueba.factura;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+class OutboxServiceTest {
+
+    private static final byte[] ZIP = {'P', 'K', 3, 4};
+
+    @Inject
+    OutboxService outbox;
+
+    @Inject
+    OutboxWorkerPool workers;
+
+    @Test
+    void reclamoRespetaLeaseYTransicionesDeEstado() {
+        // RUC propio: un comprobante de su RUC reclamado por otra prueba lo detendría
+        ComprobanteOutbox encolado = outbox.encolar(factura("20100047218", "F001", 9001L));
+
+        List<ComprobanteOutbox> reclamados = outbox.reclamar(100);
+        assertTrue(reclamados.stream().anyMatch(c -> c.id.equals(encolado.id)));
+        // Con el lease vigente ningún otro worker vuelve a reclamarlo
+        assertTrue(outbox.reclamar(100).stream().noneMatch(c -> c.id.equals(encolado.id)));
+
+        outbox.marcarFirmado(encolado.id, "hash", ZIP);
+        outbox.marcarEnviado(encolado.id);
+        outbox.registrarRespuesta(encolado.id, SunatResponse.success("0", "aceptada", "", "", "hash", "F001-9001"), false);
+
+        ComprobanteOutbox final_ = outbox.buscar(encolado.id);
+        assertEquals(EstadoComprobante.ACEPTADO, final_.estado);
+        assertEquals(1, final_.intentos);
+        assertNull(final_.zip);
+    }
+
+    @Test
+    void fallaTransitoriaVuelveAFirmadoParaReenviarSinFirmar() {
+        ComprobanteOutbox encolado = outbox.encolar(factura(9002L));
+        outbox.marcarFirmado(encolado.id, "hash", ZIP);
+        outbox.marcarEnviado(encolado.id);
+        outbox.registrarRespuesta(encolado.id, SunatResponse.error("SUNAT_CONECTIVIDAD", "timeout"), true);
+
+        ComprobanteOutbox comprobante = outbox.buscar(encolado.id);
+        assertEquals(EstadoComprobante.FIRMADO, comprobante.estado);
+        assertArrayEquals(ZIP, comprobante.zip);
+        assertTrue(outbox.existe(outbox.leerSolicitud(comprobante)));
+    }
+
+    @Test
+    void reclamoPorParticionRespetaElOrdenDeCadaRuc() {
+        ComprobanteOutbox primero = outbox.encolar(factura("20100070970", "F001", 9101L));
+        ComprobanteOutbox segundo = outbox.encolar(factura("20100070970", "F001", 9102L));
+        ComprobanteOutbox otroRuc = outbox.encolar(factura("20131312955", "F001", 9103L));
+        List<Integer> particionRuc = List.of(primero.particion);
+        List<Integer> ambas = List.of(primero.particion, otroRuc.particion);
+
+        // Otra partición: filas que pertenecen a otro nodo
+        assertTrue(outbox.reclamar(100, List.of(Math.floorMod(primero.particion + 1, 64))).stream()
+                .noneMatch(c -> c.id.equals(primero.id) || c.id.equals(segundo.id)));
+        assertEquals(List.of(primero.id), ids(outbox.reclamar(1, particionRuc)));
+
+        // Con el primero en curso, el segundo del mismo RUC espera; el otro RUC sigue
+        List<Long> reclamados = ids(outbox.reclamar(100, ambas));
+        assertTrue(reclamados.contains(otroRuc.id));
+        assertFalse(reclamados.contains(segundo.id));
+
+        outbox.registrarRespuesta(primero.id, SunatResponse.success("0", "aceptada", "", "", "hash", "F001-9101"), false);
+        assertTrue(ids(outbox.reclamar(100, particionRuc)).contains(segundo.id));
+    }
+
+    @Test
+    void inciertoOReintentoConBackoffDetienenALosSiguientesDelRuc() {
+        ComprobanteOutbox primero = outbox.encolar(factura("20100128056", "F001", 9111L));
+        ComprobanteOutbox segundo = outbox.encolar(factura("20100128056", "F001", 9112L));
+        List<Integer> particion = List.of(primero.particion);
+        assertEquals(List.of(primero.id, segundo.id), ids(outbox.reclamar(100, particion)).stream()
+                .filter(id -> id.equals(primero.id) || id.equals(segundo.id)).toList());
+        QuarkusTransaction.requiringNew().run(() -> ComprobanteOutbox.update("bloqueadoHasta = null where id = ?1",
+                segundo.id));
+
+        // Timeout: el primero queda INCIERTO, sin lease, hasta conciliarse
+        outbox.marcarFirmado(primero.id, "hash", ZIP);
+        outbox.marcarEnviado(primero.id);
+        outbox.registrarIncierto(primero.id, SunatResponse.error("SUNAT_CONECTIVIDAD", "timeout"));
+        assertFalse(ids(outbox.reclamar(100, particion)).contains(segundo.id));
+
+        // Conciliado con una falla transitoria: vuelve a FIRMADO con backoff y el segundo sigue esperando
+        outbox.registrarRespuesta(primero.id, SunatResponse.error("0130", "servicio no disponible"), true);
+        assertFalse(ids(outbox.reclamar(100, particion)).contains(segundo.id));
+
+        outbox.registrarRespuesta(primero.id, SunatResponse.success("0", "aceptada", "", "", "hash", "F001-9111"), false);
+        assertTrue(ids(outbox.reclamar(100, particion)).contains(segundo.id));
+    }
+
+    @Test
+    void cadaComprobanteTomaSuLeaseYPosponerloLoLibera() {
+        ComprobanteOutbox encolado = outbox.encolar(factura("20100113610", "F001", 9104L));
+        List<Integer> particion = List.of(encolado.particion);
+        ComprobanteOutbox delLote = outbox.reclamar(100, particion).get(0);
+
+        // El lease del lote venció antes de que el worker llegara al comprobante y otro lo reclamó
+        QuarkusTransaction.requiringNew().run(() -> ComprobanteOutbox.update("bloqueadoHasta = ?1 where id = ?2",
+                Instant.now().minusSeconds(60), encolado.id));
+        ComprobanteOutbox deOtroWorker = outbox.reclamar(100, particion).get(0);
+        assertEquals(encolado.id, deOtroWorker.id);
+        assertFalse(outbox.tomar(delLote));
+        assertTrue(outbox.tomar(deOtroWorker));
+
+        outbox.posponer(encolado.id);
+        ComprobanteOutbox pospuesto = QuarkusTransaction.requiringNew().call(() -> ComprobanteOutbox.findById(encolado.id));
+        assertNull(pospuesto.bloqueadoHasta);
+        assertTrue(pospuesto.siguienteIntento.isAfter(Instant.now()));
+    }
+
+    @Test
+    void rechazoDelControlDeTraficoSePosponeSinGastarIntento() {
+        QuarkusMock.installMockForType(new ControlTraficoSunat() {
+            @Override
+            public Uni<String> enviar(String ruc, Supplier<Uni<String>> llamada) {
+                return Uni.createFrom().failure(new TraficoSunatException(TraficoSunatException.CIRCUITO_ABIERTO,
+                        "Circuito abierto: SUNAT no responde, envío no realizado"));
+            }
+        }, ControlTraficoSunat.class);
+
+        ComprobanteOutbox encolado = outbox.encolar(factura("20100130204", "F001", 9105L));
+        workers.procesar(outbox.reclamar(100, List.of(encolado.particion)).stream()
+                .filter(comprobante -> comprobante.id.equals(encolado.id))
+                .findFirst().orElseThrow());
+
+        ComprobanteOutbox pospuesto = QuarkusTransaction.requiringNew().call(() -> ComprobanteOutbox.findById(encolado.id));
+        assertEquals(EstadoComprobante.FIRMADO, pospuesto.estado);
+        assertEquals(0, pospuesto.intentos, "la petición no salió hacia SUNAT");
+        assertNotNull(pospuesto.zip);
+        assertNull(pospuesto.bloqueadoHasta);
+        assertTrue(pospuesto.siguienteIntento.isAfter(Instant.now()));
+    }
+
+    private static List<Long> ids(List<ComprobanteOutbox> comprobantes) {
+        return comprobantes.stream().map(c -> c.id).toList();
+    }
+}
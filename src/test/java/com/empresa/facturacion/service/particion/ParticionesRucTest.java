@@ -0,0 +1,116 @@
+package com.empresa.facturacion.service.particion;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+class ParticionesRucTest {
+
+    private static final int TOTAL = 16;
+
+    @Test
+    void nodosSeRepartenLasParticionesAlEntrarYSalir() {
+        ParticionesRuc nodoA = nodo("nodo-a", Duration.ofSeconds(30));
+        ParticionesRuc nodoB = nodo("nodo-b", Duration.ofSeconds(30));
+        ParticionesRuc nodoC = nodo("nodo-c", Duration.ofSeconds(30));
+        try {
+            assertEquals(TOTAL, nodoA.latir().propias().size());
+
+            // El nodo nuevo recibe lo que el resto libera en su siguiente latido
+            nodoB.latir();
+            nodoA.latir();
+            nodoB.latir();
+            assertReparto(List.of(8, 8), nodoA, nodoB);
+
+            nodoC.latir();
+            nodoA.latir();
+            nodoB.latir();
+            nodoC.latir();
+            assertReparto(List.of(6, 5, 5), nodoA, nodoB, nodoC);
+            assertEquals(List.of("nodo-a", "nodo-b", "nodo-c"), nodoC.asignacion().nodos());
+
+            // Un nodo que se apaga libera sus particiones sin esperar a que venzan
+            nodoB.liberar();
+            assertTrue(nodoB.propias().isEmpty());
+            nodoA.latir();
+            nodoC.latir();
+            assertReparto(List.of(8, 8), nodoA, nodoC);
+        } finally {
+            nodoA.liberar();
+            nodoB.liberar();
+            nodoC.liberar();
+        }
+    }
+
+    @Test
+    void particionesDeUnNodoCaidoPasanALosDemasAlVencerSuLease() throws InterruptedException {
+        ParticionesRuc nodoA = nodo("nodo-d", Duration.ofSeconds(1));
+        ParticionesRuc nodoB = nodo("nodo-e", Duration.ofSeconds(1));
+        try {
+            nodoA.latir();
+            nodoB.latir();
+            nodoA.latir();
+            nodoB.latir();
+            assertReparto(List.of(8, 8), nodoA, nodoB);
+
+            // nodo-e deja de latir: deja de reclamar antes de que su lease venza en la base de datos
+            Thread.sleep(1100);
+            assertTrue(nodoB.propias().isEmpty());
+            assertEquals(TOTAL, nodoA.latir().propias().size());
+            assertEquals(List.of("nodo-d"), nodoA.asignacion().nodos());
+        } finally {
+            nodoA.liberar();
+            nodoB.liberar();
+        }
+    }
+
+    @Test
+    void cadaWorkerAtiendeParticionesDistintas() {
+        ParticionesRuc nodo = nodo("nodo-f", Duration.ofSeconds(30));
+        try {
+            nodo.latir();
+            Set<Integer> vistas = new HashSet<>();
+            for (int worker = 0; worker < 3; worker++) {
+                for (int particion : nodo.propias(worker, 3)) {
+                    assertTrue(vistas.add(particion));
+                }
+            }
+            assertEquals(new HashSet<>(nodo.propias()), vistas);
+        } finally {
+            nodo.liberar();
+        }
+    }
+
+    private static void assertReparto(List<Integer> cantidades, ParticionesRuc... nodos) {
+        List<Integer> todas = new ArrayList<>();
+        for (int i = 0; i < nodos.length; i++) {
+            List<Integer> propias = nodos[i].propias();
+            assertEquals(cantidades.get(i), propias.size(), nodos[i].nodo);
+            todas.addAll(propias);
+        }
+        // Ninguna partición en dos nodos y ninguna sin dueño
+        assertEquals(IntStream.range(0, TOTAL).boxed().collect(Collectors.toSet()), new HashSet<>(todas));
+        assertEquals(TOTAL, todas.size());
+    }
+
+    private static ParticionesRuc nodo(String nombre, Duration ttl) {
+        ParticionesRuc particiones = new ParticionesRuc();
+        particiones.habilitado = true;
+        particiones.total = TOTAL;
+        particiones.nodo = nombre;
+        particiones.ttl = ttl;
+        particiones.latido = ttl.dividedBy(2);
+        return particiones;
+    }
+}
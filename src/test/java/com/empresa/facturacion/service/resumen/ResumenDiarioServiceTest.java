@@ -0,0 +1,236 @@
+package com.empresa.facturacion.service.resumen;
+
+import com.empresa.facturacion.dto.BajaRequest;
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import com.empresa.facturacion.entity.EstadoResumen;
+import com.empresa.facturacion.entity.LineaResumenPendiente;
+import com.empresa.facturacion.entity.ResumenSunat;
+import com.empresa.facturacion.entity.TipoResumen;
+import com.empresa.facturacion.simulador.SimuladorSunat;
+import com.empresa.facturacion.simulador.SimuladorSunat.Operacion;
+import com.empresa.facturacion.simulador.SimuladorSunat.Resultado;
+import com.empresa.facturacion.simulador.SimuladorSunatResource;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.common.TestResourceScope;
+import io.quarkus.test.common.WithTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static com.empresa.facturacion.service.ComprobantesPrueba.factura;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Con {@code %test.sunat.resumen.max-lineas=3}: cada resumen lleva como mucho tres líneas.
+ */
+@QuarkusTest
+@WithTestResource(value = SimuladorSunatResource.class, scope = TestResourceScope.GLOBAL)
+class ResumenDiarioServiceTest {
+
+    private static final Duration ESPERA = Duration.ofSeconds(10);
+
+    @Inject
+    ResumenDiarioService service;
+
+    @Test
+    void boletasSeAgrupanEnResumenesDeHastaMaxLineasConIdsUnicos() throws Exception {
+        SimuladorSunat simulador = SimuladorSunatResource.simulador().reiniciar().procesamientoResumen(Duration.ZERO);
+        String ruc = "20601030021";
+        for (long correlativo = 1; correlativo <= 7; correlativo++) {
+            service.registrarBoleta(boleta(ruc, correlativo));
+        }
+        // Los dos lotes llenos ya se armaron al registrar; el vaciado arma el último
+        service.vaciarLotes().await().atMost(ESPERA);
+        esperarSinPreparados(ruc);
+
+        List<ResumenSunat> resumenes = resumenes(ruc);
+        String hoy = LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE);
+        assertEquals(List.of("RC-" + hoy + "-1", "RC-" + hoy + "-2", "RC-" + hoy + "-3"),
+                resumenes.stream().map(resumen -> resumen.idResumen).toList());
+        assertEquals(List.of(3, 3, 1), resumenes.stream().map(resumen -> resumen.lineas).toList());
+        assertTrue(resumenes.stream().allMatch(resumen -> resumen.estado == EstadoResumen.EN_PROCESO
+                && resumen.ticket != null));
+        assertEquals(0, pendientes(ruc));
+
+        service.consultarTickets().await().atMost(ESPERA);
+        assertTrue(resumenes(ruc).stream().allMatch(resumen -> resumen.estado == EstadoResumen.ACEPTADO
+                && resumen.cdrSunat != null && resumen.zip == null));
+        assertEquals(3, simulador.resumenes().stream().filter(nombre -> nombre.startsWith(ruc)).count());
+    }
+
+    @Test
+    void bajaDeFacturaVaAlRaYBajaDeBoletaAlRcComoAnulada() {
+        SimuladorSunat simulador = SimuladorSunatResource.simulador().reiniciar().procesamientoResumen(Duration.ZERO);
+        String ruc = "20601030030";
+        service.registrarBaja(baja(ruc, "01", "F001", 10L));
+        service.registrarBaja(baja(ruc, "03", "B001", 20L));
+
+        service.vaciarLotes().await().atMost(ESPERA);
+
+        List<ResumenSunat> resumenes = resumenes(ruc);
+        assertEquals(2, resumenes.size());
+        ResumenSunat ra = resumenes.stream().filter(resumen -> resumen.tipo == TipoResumen.RA).findFirst().orElseThrow();
+        ResumenSunat rc = resumenes.stream().filter(resumen -> resumen.tipo == TipoResumen.RC).findFirst().orElseThrow();
+        assertEquals(EstadoResumen.EN_PROCESO, ra.estado);
+        assertEquals(EstadoResumen.EN_PROCESO, rc.estado);
+        assertTrue(simulador.resumenes().containsAll(List.of(ruc + "-" + ra.idResumen, ruc + "-" + rc.idResumen)));
+
+        LineaResumenPendiente anulada = QuarkusTransaction.requiringNew().call(() ->
+                LineaResumenPendiente.<LineaResumenPendiente>find("resumenId", rc.id).singleResult());
+        assertEquals("03", anulada.tipoDocumento);
+        assertEquals(LineaResumen.CONDICION_ANULADO, anulada.condicion);
+
+        service.consultarTickets().await().atMost(ESPERA);
+        assertTrue(resumenes(ruc).stream().allMatch(resumen -> resumen.estado == EstadoResumen.ACEPTADO));
+    }
+
+    @Test
+    void ticketSeSigueConsultandoMientrasEstaEnProcesoOHayFallasTransitorias() throws Exception {
+        SimuladorSunat simulador = SimuladorSunatResource.simulador().reiniciar()
+                .procesamientoResumen(Duration.ofMillis(500));
+        String ruc = "20601030048";
+        service.registrarBoleta(boleta(ruc, 1L));
+        service.vaciarLotes().await().atMost(ESPERA);
+
+        service.consultarTickets().await().atMost(ESPERA);
+        ResumenSunat enProceso = resumenes(ruc).get(0);
+        assertEquals(EstadoResumen.EN_PROCESO, enProceso.estado);
+        assertEquals("98", enProceso.codigoEstado);
+
+        // 0130: SUNAT no pudo atender la consulta, el ticket sigue vigente
+        simulador.siguiente(Resultado.fault("0130", "El sistema no puede responder su solicitud"));
+        service.consultarTickets().await().atMost(ESPERA);
+        ResumenSunat transitorio = resumenes(ruc).get(0);
+        assertEquals(EstadoResumen.EN_PROCESO, transitorio.estado);
+        assertEquals("0130", transitorio.codigoEstado);
+
+        Thread.sleep(600);
+        service.consultarTickets().await().atMost(ESPERA);
+        ResumenSunat aceptado = resumenes(ruc).get(0);
+        assertEquals(EstadoResumen.ACEPTADO, aceptado.estado);
+        assertEquals("0", aceptado.codigoEstado);
+        assertNotNull(aceptado.cdrSunat);
+        assertEquals(3, aceptado.consultas);
+        assertEquals(3, simulador.recibidas(Operacion.GET_STATUS));
+    }
+
+    @Test
+    void envioSinRespuestaSeRepiteConElMismoId() {
+        SimuladorSunat simulador = SimuladorSunatResource.simulador().reiniciar().procesamientoResumen(Duration.ZERO);
+        String ruc = "20601030056";
+        service.registrarBoleta(boleta(ruc, 1L));
+        // SUNAT recibe el resumen pero la respuesta con el ticket no llega
+        simulador.siguiente(Resultado.respuestaPerdida(504));
+
+        service.vaciarLotes().await().atMost(ESPERA);
+        ResumenSunat pendiente = resumenes(ruc).get(0);
+        assertEquals(EstadoResumen.PREPARADO, pendiente.estado);
+        assertEquals(ResumenDiarioService.SIN_RESPUESTA, pendiente.codigoEstado);
+        assertEquals(1, pendiente.intentos);
+        assertNull(pendiente.ticket);
+
+        service.enviarPreparados().await().atMost(ESPERA);
+        List<ResumenSunat> resumenes = resumenes(ruc);
+        assertEquals(1, resumenes.size(), "las líneas no se vuelven a declarar con otro ID");
+        assertEquals(EstadoResumen.EN_PROCESO, resumenes.get(0).estado);
+        assertEquals(pendiente.idResumen, resumenes.get(0).idResumen);
+        String nombre = ruc + "-" + pendiente.idResumen;
+        assertEquals(List.of(nombre, nombre), simulador.resumenes());
+        assertEquals(1, QuarkusTransaction.requiringNew().call(() -> LineaResumenPendiente.count("ruc", ruc)));
+
+        service.consultarTickets().await().atMost(ESPERA);
+        assertEquals(EstadoResumen.ACEPTADO, resumenes(ruc).get(0).estado);
+    }
+
+    @Test
+    void reenvioYaPresentadoSigueConElTicketDelEnvioAnterior() {
+        SimuladorSunat simulador = SimuladorSunatResource.simulador().reiniciar().procesamientoResumen(Duration.ZERO);
+        String ruc = "20601030102";
+        service.registrarBoleta(boleta(ruc, 1L));
+        service.vaciarLotes().await().atMost(ESPERA);
+        ResumenSunat enviado = resumenes(ruc).get(0);
+        assertNotNull(enviado.ticket);
+
+        // El lease venció con el envío en curso y otro nodo volvió a reclamar el resumen
+        QuarkusTransaction.requiringNew().run(() -> ResumenSunat.update("estado = ?1 where id = ?2",
+                EstadoResumen.PREPARADO, enviado.id));
+        simulador.siguiente(Resultado.fault("2223", "El archivo ya fue presentado anteriormente"));
+        service.enviarPreparados().await().atMost(ESPERA);
+
+        ResumenSunat presentado = resumenes(ruc).get(0);
+        assertEquals(EstadoResumen.EN_PROCESO, presentado.estado);
+        assertEquals(enviado.ticket, presentado.ticket);
+        assertEquals(1, presentado.intentos);
+
+        service.consultarTickets().await().atMost(ESPERA);
+        assertEquals(EstadoResumen.ACEPTADO, resumenes(ruc).get(0).estado);
+        assertEquals(1, simulador.recibidas(Operacion.GET_STATUS));
+    }
+
+    @Test
+    void reenvioYaPresentadoSinTicketQuedaEnErrorYNoRechazado() {
+        SimuladorSunat simulador = SimuladorSunatResource.simulador().reiniciar().procesamientoResumen(Duration.ZERO);
+        String ruc = "20601030110";
+        service.registrarBoleta(boleta(ruc, 1L));
+        // El primer envío llega pero su ticket se pierde; el reenvío encuentra el archivo ya presentado
+        simulador.siguiente(Resultado.respuestaPerdida(504),
+                Resultado.fault("2223", "El archivo ya fue presentado anteriormente"));
+
+        service.vaciarLotes().await().atMost(ESPERA);
+        service.enviarPreparados().await().atMost(ESPERA);
+
+        ResumenSunat resumen = resumenes(ruc).get(0);
+        assertEquals(EstadoResumen.ERROR, resumen.estado);
+        assertEquals("2223", resumen.codigoEstado);
+        assertNull(resumen.ticket);
+        assertEquals(1, QuarkusTransaction.requiringNew().call(() ->
+                LineaResumenPendiente.count("resumenId", resumen.id)), "las líneas siguen declaradas en el resumen");
+    }
+
+    private void esperarSinPreparados(String ruc) throws InterruptedException {
+        // Los lotes llenos se envían en segundo plano al registrarse
+        long limite = System.nanoTime() + ESPERA.toNanos();
+        while (resumenes(ruc).stream().anyMatch(resumen -> resumen.estado == EstadoResumen.PREPARADO)
+                && System.nanoTime() < limite) {
+            Thread.sleep(20);
+        }
+    }
+
+    private static List<ResumenSunat> resumenes(String ruc) {
+        return QuarkusTransaction.requiringNew().call(() ->
+                ResumenSunat.<ResumenSunat>list("ruc = ?1 order by id", ruc));
+    }
+
+    private static long pendientes(String ruc) {
+        return QuarkusTransaction.requiringNew().call(() ->
+                LineaResumenPendiente.count("ruc = ?1 and resumenId is null", ruc));
+    }
+
+    private static FacturaPruebaRequest boleta(String ruc, long correlativo) {
+        FacturaPruebaRequest boleta = factura(ruc, "B001", correlativo);
+        boleta.cliente.tipoDocumento = "1";
+        boleta.cliente.numeroDocumento = "45678912";
+        boleta.tipoDocumento = "03";
+        return boleta;
+    }
+
+    private static BajaRequest baja(String ruc, String tipoDocumento, String serie, long correlativo) {
+        BajaRequest baja = new BajaRequest();
+        baja.emisor = new FacturaPruebaRequest.EmisorDto();
+        baja.emisor.ruc = ruc;
+        baja.tipoDocumento = tipoDocumento;
+        baja.serie = serie;
+        baja.correlativo = correlativo;
+        baja.fechaEmision = LocalDate.now();
+        baja.motivo = "ERROR EN LA EMISION";
+        return baja;
+    }
+}
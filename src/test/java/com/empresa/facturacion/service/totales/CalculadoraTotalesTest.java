@@ -0,0 +1,84 @@
+package com.empresa.facturacion.service.totales;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CalculadoraTotalesTest {
+
+    private final CalculadoraTotales calculadora = new CalculadoraTotales();
+
+    @Test
+    void acumulaCadaCategoriaEnUnaPasada() {
+        TotalesComprobante t = calculadora.calcular(List.of(
+                item("10", "3", "33.333"),
+                item("20", "2", "10.00"),
+                item("30", "1", "5.5"),
+                item("40", "1", "7"),
+                item("11", "2", "15.00"),
+                bolsas()));
+
+        assertEquals(10040, t.base(Categoria.GRAVADA));
+        assertEquals(2000, t.base(Categoria.EXONERADA));
+        assertEquals(550, t.base(Categoria.INAFECTA));
+        assertEquals(700, t.base(Categoria.EXPORTACION));
+        assertEquals(3000, t.base(Categoria.GRATUITA));
+        assertEquals(1807, t.igv());
+        assertEquals(540, t.impuesto(Categoria.GRATUITA));
+        assertEquals(200, t.icbper());
+        assertEquals(13290, t.valorVentaTotal());
+        assertEquals(15297, t.total());
+        assertArrayEquals(new Categoria[]{Categoria.GRAVADA, Categoria.EXONERADA, Categoria.INAFECTA,
+                Categoria.EXPORTACION, Categoria.GRATUITA}, t.categorias());
+
+        // 3 × 33.333 = 99.999 → 100.00; precio = 33.333 + 18.00 / 3 a la escala del valor unitario
+        assertEquals(10000, t.valorVenta(0));
+        assertEquals(1800, t.igv(0));
+        assertEquals(39333, t.precioUnitario(0));
+        assertEquals(3, t.escalaPrecio(0));
+        // La gratuita informa el valor referencial y calcula IGV, pero no suma al total
+        assertEquals(1500, t.precioUnitario(4));
+        assertEquals(1800, t.porcentaje(4));
+        assertEquals(0, t.porcentaje(1));
+        assertEquals(200, t.icbper(5));
+    }
+
+    @Test
+    void igvTotalEsLaSumaDelIgvRedondeadoDeCadaLinea() {
+        TotalesComprobante t = calculadora.calcular(List.of(
+                item("10", "1", "0.03"), item("10", "1", "0.03"), item("10", "1", "0.03")));
+
+        // 0.03 × 0.18 = 0.0054 → 0.01 por línea; sobre la base total sería 0.0162 → 0.02
+        assertEquals(1, t.igv(0));
+        assertEquals(3, t.igv());
+        assertEquals(12, t.total());
+    }
+
+    @Test
+    void redondeoHalfUpSeAlejaDeCero() {
+        assertEquals(3, Monto.redondear(25, 10));
+        assertEquals(-3, Monto.redondear(-25, 10));
+        assertEquals(2, Monto.redondear(24, 10));
+        assertEquals(12346, Monto.desde(new BigDecimal("123.455"), 2));
+    }
+
+    private static FacturaPruebaRequest.ItemDto item(String afectacion, String cantidad, String valorUnitario) {
+        FacturaPruebaRequest.ItemDto item = new FacturaPruebaRequest.ItemDto();
+        item.codigoAfectacionIgv = afectacion;
+        item.cantidad = new BigDecimal(cantidad);
+        item.valorUnitario = new BigDecimal(valorUnitario);
+        return item;
+    }
+
+    private static FacturaPruebaRequest.ItemDto bolsas() {
+        // 4 × 0.10 = 0.40, IGV 0.072 → 0.07, ICBPER 4 × 0.50
+        FacturaPruebaRequest.ItemDto item = item("10", "4", "0.10");
+        item.afectoIcbper = true;
+        return item;
+    }
+}
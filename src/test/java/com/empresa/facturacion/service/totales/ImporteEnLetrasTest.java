@@ -0,0 +1,46 @@
+package com.empresa.facturacion.service.totales;
+
+import com.empresa.facturacion.service.ubl.UblWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImporteEnLetrasTest {
+
+    @Test
+    void convierteUnidadesDecenasYCentenas() {
+        assertEquals("CERO CON 00/100 SOLES", ImporteEnLetras.convertir(0, "PEN"));
+        assertEquals("CIENTO DIECIOCHO CON 00/100 SOLES", ImporteEnLetras.convertir(11800, "PEN"));
+        assertEquals("CIEN CON 50/100 SOLES", ImporteEnLetras.convertir(10050, "PEN"));
+        assertEquals("CIENTO UNO CON 05/100 SOLES", ImporteEnLetras.convertir(10105, "PEN"));
+        assertEquals("NOVENTA Y NUEVE CON 99/100 EUROS", ImporteEnLetras.convertir(9999, "EUR"));
+        assertEquals("VEINTIDÓS CON 00/100 DÓLARES AMERICANOS", ImporteEnLetras.convertir(2200, "USD"));
+    }
+
+    @Test
+    void apocopaAntesDeMilYMillones() {
+        assertEquals("MIL CON 00/100 SOLES", ImporteEnLetras.convertir(1_000_00, "PEN"));
+        assertEquals("VEINTIÚN MIL CIENTO VEINTIUNO CON 00/100 SOLES", ImporteEnLetras.convertir(21_121_00, "PEN"));
+        assertEquals("TREINTA Y UN MIL TREINTA Y UNO CON 00/100 SOLES", ImporteEnLetras.convertir(31_031_00, "PEN"));
+        assertEquals("UN MILLÓN CON 00/100 SOLES", ImporteEnLetras.convertir(1_000_000_00, "PEN"));
+        assertEquals("DOS MILLONES QUINIENTOS MIL TRESCIENTOS VEINTIUNO CON 05/100 SOLES",
+                ImporteEnLetras.convertir(2_500_321_05, "PEN"));
+        assertEquals("MIL UN MILLONES CON 00/100 SOLES", ImporteEnLetras.convertir(1_001_000_000_00L, "PEN"));
+        assertEquals("UN BILLÓN DOS CON 00/100 SOLES", ImporteEnLetras.convertir(1_000_000_000_002_00L, "PEN"));
+    }
+
+    @Test
+    void escribeLoMismoEnElXml() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UblWriter writer = new UblWriter(out);
+        ImporteEnLetras.escribir(1_216_26_00L, "PEN", writer);
+        writer.flush();
+
+        assertEquals(ImporteEnLetras.convertir(1_216_26_00L, "PEN"), out.toString(StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> ImporteEnLetras.convertir(100, "GBP"));
+    }
+}
@@ -0,0 +1,92 @@
+package com.empresa.facturacion.service.trafico;
+
+import io.smallrye.mutiny.helpers.test.UniAssertSubscriber;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ControlTraficoSunatTest {
+
+    private static final long SEGUNDO = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void cubetaDifiereLosExcesosYRechazaSiLaEsperaEsDemasiadoLarga() {
+        CubetaTokens cubeta = new CubetaTokens(2, 2, 0);
+
+        assertEquals(0, cubeta.reservar(0, SEGUNDO));
+        assertEquals(0, cubeta.reservar(0, SEGUNDO));
+        assertEquals(SEGUNDO / 2, cubeta.reservar(0, SEGUNDO));
+        assertEquals(SEGUNDO, cubeta.reservar(0, SEGUNDO));
+        assertEquals(-1, cubeta.reservar(0, SEGUNDO));
+        // Al segundo se recargaron 2 tokens que ya estaban reservados
+        assertEquals(SEGUNDO / 2, cubeta.reservar(SEGUNDO, SEGUNDO));
+    }
+
+    @Test
+    void circuitoAbrePorFallasYCierraTrasPruebasExitosas() {
+        CircuitoSunat circuito = new CircuitoSunat(10, 4, 0.5, SEGUNDO, 2);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(circuito.permitir(0));
+            circuito.registrar(i % 2 == 0, 0);
+        }
+        assertEquals(CircuitoSunat.Estado.ABIERTO, circuito.estado());
+        assertFalse(circuito.permitir(SEGUNDO - 1));
+
+        assertTrue(circuito.permitir(SEGUNDO));
+        assertTrue(circuito.permitir(SEGUNDO));
+        assertFalse(circuito.permitir(SEGUNDO), "solo pasan las llamadas de prueba");
+        circuito.registrar(true, SEGUNDO);
+        circuito.registrar(true, SEGUNDO);
+        assertEquals(CircuitoSunat.Estado.CERRADO, circuito.estado());
+
+        assertTrue(circuito.permitir(SEGUNDO));
+        circuito.registrar(false, SEGUNDO);
+        assertEquals(CircuitoSunat.Estado.CERRADO, circuito.estado(), "la ventana se reinicia al cerrar");
+    }
+
+    @Test
+    void limitadorEncolaSobreElLimiteYSeAdaptaALaLatencia() {
+        LimitadorAimd limitador = new LimitadorAimd(2, 1, 4, SEGUNDO, 0.5, 1);
+
+        LimitadorAimd.Permiso primero = adquirir(limitador).awaitItem().getItem();
+        LimitadorAimd.Permiso segundo = adquirir(limitador).awaitItem().getItem();
+        UniAssertSubscriber<LimitadorAimd.Permiso> tercero = adquirir(limitador);
+        tercero.assertNotTerminated();
+        adquirir(limitador).assertFailedWith(TraficoSunatException.class);
+        assertEquals(1, limitador.enEspera());
+
+        // Respuesta rápida: el límite crece y el que esperaba recibe el lugar liberado
+        limitador.liberar(primero, SEGUNDO / 10, false);
+        assertEquals(2.5, limitador.limite());
+        LimitadorAimd.Permiso delTercero = tercero.awaitItem().getItem();
+        assertEquals(2, limitador.enCurso());
+
+        // Sobrecarga: se reduce a la mitad una sola vez por latencia objetivo
+        limitador.liberar(segundo, SEGUNDO / 10, true);
+        limitador.liberar(delTercero, 2 * SEGUNDO, false);
+        assertEquals(1.25, limitador.limite());
+        assertEquals(0, limitador.enCurso());
+    }
+
+    @Test
+    void limitadorRecuperaElLugarDeUnaEsperaCancelada() {
+        LimitadorAimd limitador = new LimitadorAimd(1, 1, 1, SEGUNDO, 0.5, 10);
+        LimitadorAimd.Permiso permiso = adquirir(limitador).awaitItem().getItem();
+        UniAssertSubscriber<LimitadorAimd.Permiso> cancelada = adquirir(limitador);
+
+        cancelada.cancel();
+        limitador.descartar(permiso);
+
+        assertEquals(0, limitador.enEspera());
+        assertEquals(0, limitador.enCurso());
+        adquirir(limitador).awaitItem();
+    }
+
+    private static UniAssertSubscriber<LimitadorAimd.Permiso> adquirir(LimitadorAimd limitador) {
+        return limitador.adquirir().subscribe().withSubscriber(UniAssertSubscriber.create());
+    }
+}
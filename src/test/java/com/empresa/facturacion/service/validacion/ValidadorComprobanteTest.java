@@ -0,0 +1,110 @@
+package com.empresa.facturacion.service.validacion;
+
+import com.empresa.facturacion.dto.FacturaPruebaRequest;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.empresa.facturacion.service.ComprobantesPrueba.factura;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ValidadorComprobanteTest {
+
+    private final ValidadorComprobante validador = new ValidadorComprobante();
+
+    @Test
+    void comprobanteDePruebaEsValidoYElRucSeVerificaConModulo11() {
+        assertEquals(List.of(), validador.validar(factura(1L)));
+
+        assertNull(ValidadorComprobante.problemaRuc("20000000001"));
+        assertNull(ValidadorComprobante.problemaRuc("20123456786"));
+        assertNull(ValidadorComprobante.problemaRuc("10467793549"));
+        assertEquals("el dígito verificador del RUC no corresponde", ValidadorComprobante.problemaRuc("20123456789"));
+        assertEquals("el RUC debe empezar con 10, 15, 16, 17 o 20", ValidadorComprobante.problemaRuc("30123456786"));
+        assertEquals("el RUC debe tener 11 dígitos", ValidadorComprobante.problemaRuc("2012345678A"));
+    }
+
+    @Test
+    void informaTodasLasViolacionesJuntas() {
+        FacturaPruebaRequest factura = factura(1L);
+        factura.emisor.ruc = "20123456789";
+        factura.emisor.ubigeo = "300101";
+        factura.serie = "B001";
+        factura.fechaEmision = LocalDate.now(ValidadorComprobante.ZONA_SUNAT).minusDays(10);
+        factura.cliente.tipoDocumento = "1";
+        factura.cliente.numeroDocumento = "4567";
+        FacturaPruebaRequest.ItemDto segundo = new FacturaPruebaRequest.ItemDto();
+        segundo.unidadMedida = "CAJA";
+        segundo.codigoAfectacionIgv = "17";
+        segundo.cantidad = BigDecimal.ZERO;
+        factura.items.add(segundo);
+
+        assertEquals(List.of(
+                "emisor.ruc: el dígito verificador del RUC no corresponde",
+                "emisor.ubigeo: el departamento 30 no existe",
+                "serie: debe empezar con F para el tipo de comprobante 01",
+                "fechaEmision: las facturas y sus notas se envían hasta 3 días después de su emisión",
+                "cliente.numeroDocumento: el DNI debe tener 8 dígitos",
+                "cliente.tipoDocumento: las facturas y sus notas requieren un cliente con RUC (6)",
+                "items[1].unidadMedida: no existe en el catálogo 03",
+                "items[1].codigoAfectacionIgv: las operaciones con IVAP (17) no están soportadas",
+                "items[1].cantidad: debe ser mayor que cero",
+                "items: el número de ítem 1 está repetido"), validador.validar(factura));
+    }
+
+    @Test
+    void notasYTotalesSeVerificanContraLaReferenciaYElImporte() {
+        FacturaPruebaRequest nota = factura(1L);
+        nota.tipoDocumento = "07";
+        nota.documentoReferencia = new FacturaPruebaRequest.DocumentoReferenciaDto();
+        nota.documentoReferencia.tipoDocumento = "03";
+        nota.documentoReferencia.numeroDocumento = "F001-123";
+        nota.documentoReferencia.codigoMotivo = "14";
+        nota.documentoReferencia.motivo = "ANULACION";
+        assertEquals(List.of(
+                "serie: debe empezar con B para el tipo de comprobante 07 que modifica un comprobante 03",
+                "documentoReferencia.numeroDocumento: la serie de un comprobante 03 empieza con B",
+                "documentoReferencia.codigoMotivo: no existe en el catálogo 09"), validador.validar(nota));
+
+        FacturaPruebaRequest boleta = factura(1L);
+        boleta.tipoDocumento = "03";
+        boleta.serie = "B001";
+        boleta.cliente.tipoDocumento = "0";
+        boleta.cliente.numeroDocumento = "-";
+        boleta.items.get(0).valorUnitario = new BigDecimal("600.00");
+        assertEquals(List.of("cliente.numeroDocumento: las boletas de más de S/ 700 deben identificar al cliente"),
+                validador.validar(boleta));
+
+        boleta.items.get(0).valorUnitario = BigDecimal.ZERO;
+        assertEquals(List.of("total: el importe total debe ser mayor que cero"), validador.validar(boleta));
+        boleta.items.get(0).codigoAfectacionIgv = "21";
+        assertEquals(List.of(), validador.validar(boleta));
+    }
+
+    @Test
+    void revisarDevuelveLosTotalesVerificadosParaElXml() {
+        FacturaPruebaRequest factura = factura(1L);
+        ValidadorComprobante.Validacion validacion = validador.revisar(factura);
+        assertEquals(List.of(), validacion.errores());
+        assertEquals(118_00L, validacion.totales().total());
+
+        factura.items.get(0).cantidad = BigDecimal.ZERO;
+        assertNull(validador.revisar(factura).totales(), "sin ítems válidos no hay totales");
+    }
+
+    @Test
+    void unidadFueraDelCatalogoParcialEsAdvertenciaSiTieneFormaRec20() {
+        FacturaPruebaRequest factura = factura(1L);
+        factura.items.get(0).unidadMedida = "ACR";
+        ValidadorComprobante.Validacion validacion = validador.revisar(factura);
+        assertEquals(List.of(), validacion.errores());
+        assertEquals(List.of("items[0].unidadMedida: ACR no está en el catálogo 03 incluido; se envía como código"
+                + " UN/ECE rec. 20"), validacion.advertencias());
+
+        factura.items.get(0).unidadMedida = "kilometro";
+        assertEquals(List.of("items[0].unidadMedida: no existe en el catálogo 03"), validador.validar(factura));
+    }
+}
@@ -0,0 +1,36 @@
+package com.empresa.facturacion.simulador;
+
+import java.util.Random;
+
+/**
+ * Distribución de la latencia que agrega el {@link SimuladorSunat} a cada respuesta.
+ */
+@FunctionalInterface
+public interface Latencia {
+
+    /** z de la normal estándar en el percentil 99. */
+    double Z_P99 = 2.326;
+
+    long muestraMs(Random azar);
+
+    static Latencia fija(long ms) {
+        return azar -> ms;
+    }
+
+    static Latencia uniforme(long minimoMs, long maximoMs) {
+        return azar -> minimoMs + (long) (azar.nextDouble() * (maximoMs - minimoMs + 1));
+    }
+
+    /**
+     * Log-normal con la mediana y el percentil 99 dados: cola larga como la de SUNAT, donde la mayoría
+     * responde rápido y unas pocas llamadas tardan varias veces más.
+     */
+    static Latencia logNormal(long medianaMs, long p99Ms) {
+        if (medianaMs <= 0 || p99Ms < medianaMs) {
+            throw new IllegalArgumentException("Se requiere 0 < mediana <= p99");
+        }
+        double mu = Math.log(medianaMs);
+        double sigma = Math.log((double) p99Ms / medianaMs) / Z_P99;
+        return azar -> Math.round(Math.exp(mu + sigma * azar.nextGaussian()));
+    }
+}
@@ -0,0 +1,503 @@
+package com.empresa.facturacion.simulador;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import org.jboss.logging.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Simulador embebible de billService de SUNAT para pruebas y carga: sendBill (responde con un CDR
+ * ZIP), sendSummary (devuelve un ticket), getStatus (98 mientras el resumen "se procesa", luego 0
+ * con el CDR) y getStatusCdr de billConsultService (el CDR de un sendBill ya recibido).
+ *
+ * Sobre la respuesta normal se pueden configurar, y cambiar en caliente:
+ * <ul>
+ *   <li>la latencia de cada respuesta ({@link Latencia});</li>
+ *   <li>una tasa de SOAP Fault aleatorios y otra de errores HTTP (503, 502...);</li>
+ *   <li>resultados puntuales encolados para las próximas llamadas ({@link #siguiente}).</li>
+ * </ul>
+ * Las demoras usan timers de Vert.x: el simulador no bloquea hilos aunque responda lento.
+ */
+public final class SimuladorSunat implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(SimuladorSunat.class);
+
+    public static final String RUTA = "/ol-ti-itcpfegem-beta/billService";
+    public static final String RUTA_CONSULTA = "/ol-it-wsconscpegem/billConsultService";
+
+    private static final String NS_CBC = "urn:oasis:names:specification:ubl:schema:xsd:CommonBasicComponents-2";
+    private static final String NS_CAC = "urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2";
+    private static final DateTimeFormatter FECHA = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final DateTimeFormatter HORA = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    public enum Operacion { SEND_BILL, SEND_SUMMARY, GET_STATUS, GET_STATUS_CDR, WSDL }
+
+    private final Vertx vertx;
+    private final boolean vertxPropio;
+    private HttpServer servidor;
+
+    private volatile Latencia latencia = Latencia.fija(0);
+    private volatile double tasaFallas;
+    private volatile String[] codigosFalla = {"0109"};
+    private volatile double tasaErroresHttp;
+    private volatile int estadoErrorHttp = 503;
+    private volatile Duration procesamientoResumen = Duration.ofSeconds(2);
+
+    private final Queue<Resultado> programados = new ConcurrentLinkedQueue<>();
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    /** CDR de cada comprobante recibido por sendBill, por RUC-TIPO-SERIE-CORRELATIVO. */
+    private final Map<String, String> constancias = new ConcurrentHashMap<>();
+    /** Nombre (RUC-ID) de cada resumen recibido por sendSummary, en orden y con repeticiones. */
+    private final Queue<String> resumenes = new ConcurrentLinkedQueue<>();
+    private final AtomicLong secuenciaTickets = new AtomicLong(System.currentTimeMillis());
+    private final Map<Operacion, AtomicLong> recibidas = new EnumMap<>(Operacion.class);
+    private final AtomicLong fallasEmitidas = new AtomicLong();
+
+    public SimuladorSunat() {
+        this(Vertx.vertx(), true);
+    }
+
+    /**
+     * Usa un Vert.x existente (p.ej. el de la aplicación o de otra prueba); no lo cierra en {@link #close()}.
+     */
+    public SimuladorSunat(Vertx vertx) {
+        this(vertx, false);
+    }
+
+    private SimuladorSunat(Vertx vertx, boolean vertxPropio) {
+        this.vertx = vertx;
+        this.vertxPropio = vertxPropio;
+        for (Operacion operacion : Operacion.values()) {
+            recibidas.put(operacion, new AtomicLong());
+        }
+    }
+
+    /**
+     * Empieza a escuchar en {@code puerto} (0 = uno libre) y espera a que el servidor esté listo.
+     */
+    public SimuladorSunat iniciar(int puerto) {
+        try {
+            servidor = vertx.createHttpServer()
+                    .requestHandler(this::atender)
+                    .listen(puerto)
+                    .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException("No se pudo iniciar el simulador de SUNAT en el puerto " + puerto, e);
+        }
+        LOG.infof("Simulador de SUNAT escuchando en %s", url());
+        return this;
+    }
+
+    public int puerto() {
+        return servidor.actualPort();
+    }
+
+    /** URL de billService para {@code sunat.conexion.url}. */
+    public String url() {
+        return "http://localhost:" + puerto() + RUTA;
+    }
+
+    /** URL de billConsultService para {@code sunat.conexion.url-consulta}. */
+    public String urlConsulta() {
+        return "http://localhost:" + puerto() + RUTA_CONSULTA;
+    }
+
+    // ---- configuración ----
+
+    public SimuladorSunat latencia(Latencia latencia) {
+        this.latencia = latencia;
+        return this;
+    }
+
+    /**
+     * Responde SOAP Fault en una fracción {@code tasa} de los sendBill, con uno de {@code codigos} al azar.
+     */
+    public SimuladorSunat fallas(double tasa, String... codigos) {
+        this.codigosFalla = codigos.length == 0 ? new String[]{"0109"} : codigos.clone();
+        this.tasaFallas = tasa;
+        return this;
+    }
+
+    /**
+     * Responde HTTP {@code estado} (sin SOAP) en una fracción {@code tasa} de todas las llamadas SOAP.
+     */
+    public SimuladorSunat erroresHttp(double tasa, int estado) {
+        this.estadoErrorHttp = estado;
+        this.tasaErroresHttp = tasa;
+        return this;
+    }
+
+    /** Tiempo que un resumen queda "en proceso" (getStatus 98) después de sendSummary. */
+    public SimuladorSunat procesamientoResumen(Duration duracion) {
+        this.procesamientoResumen = duracion;
+        return this;
+    }
+
+    /**
+     * Encola resultados para las próximas llamadas SOAP, en orden; tienen prioridad sobre las tasas.
+     */
+    public SimuladorSunat siguiente(Resultado... resultados) {
+        programados.addAll(List.of(resultados));
+        return this;
+    }
+
+    /** Vuelve a la configuración inicial: sin latencia, fallas ni resultados programados. */
+    public SimuladorSunat reiniciar() {
+        latencia = Latencia.fija(0);
+        tasaFallas = 0;
+        tasaErroresHttp = 0;
+        procesamientoResumen = Duration.ofSeconds(2);
+        programados.clear();
+        tickets.clear();
+        constancias.clear();
+        resumenes.clear();
+        recibidas.values().forEach(contador -> contador.set(0));
+        fallasEmitidas.set(0);
+        return this;
+    }
+
+    public long recibidas(Operacion operacion) {
+        return recibidas.get(operacion).get();
+    }
+
+    public List<String> resumenes() {
+        return List.copyOf(resumenes);
+    }
+
+    public long fallasEmitidas() {
+        return fallasEmitidas.get();
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (servidor != null) {
+                servidor.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+            }
+            if (vertxPropio) {
+                vertx.close().toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+            }
+        } catch (Exception e) {
+            LOG.warnf("Error cerrando el simulador de SUNAT: %s", e.getMessage());
+        }
+    }
+
+    // ---- atención de solicitudes ----
+
+    private void atender(HttpServerRequest req) {
+        if (req.uri().endsWith("?wsdl")) {
+            recibidas.get(Operacion.WSDL).incrementAndGet();
+            req.response().putHeader("Content-Type", "text/xml; charset=utf-8")
+                    .end("<definitions xmlns=\"http://schemas.xmlsoap.org/wsdl/\" name=\"billService\"/>");
+            return;
+        }
+        req.body().onSuccess(cuerpo -> {
+            String sobre = cuerpo.toString(StandardCharsets.UTF_8);
+            long demora = latencia.muestraMs(ThreadLocalRandom.current());
+            if (demora <= 0) {
+                responder(req, sobre);
+            } else {
+                vertx.setTimer(demora, id -> responder(req, sobre));
+            }
+        });
+    }
+
+    private void responder(HttpServerRequest req, String sobre) {
+        Respuesta respuesta;
+        try {
+            respuesta = procesar(sobre);
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Error en el simulador de SUNAT");
+            respuesta = new Respuesta(500, fault("0200", "Error interno del simulador: " + e.getMessage()));
+        }
+        req.response().setStatusCode(respuesta.estado())
+                .putHeader("Content-Type", "text/xml; charset=utf-8")
+                .end(respuesta.cuerpo());
+    }
+
+    private Respuesta procesar(String sobre) {
+        Operacion operacion = sobre.contains("sendBill>") ? Operacion.SEND_BILL
+                : sobre.contains("sendSummary>") ? Operacion.SEND_SUMMARY
+                : sobre.contains("getStatus>") ? Operacion.GET_STATUS
+                : sobre.contains("getStatusCdr>") ? Operacion.GET_STATUS_CDR : null;
+        if (operacion == null) {
+            return new Respuesta(500, fault("0200", "Operación SOAP no reconocida"));
+        }
+        recibidas.get(operacion).incrementAndGet();
+        if (!sobre.contains("<wsse:Username>")) {
+            return falla("0102", "Usuario o contraseña incorrectos");
+        }
+
+        Resultado programado = programados.poll();
+        ThreadLocalRandom azar = ThreadLocalRandom.current();
+        if (programado == null && tasaErroresHttp > 0 && azar.nextDouble() < tasaErroresHttp) {
+            return new Respuesta(estadoErrorHttp, "Service Unavailable");
+        }
+        if (programado != null && programado.estadoHttp() != 0) {
+            if (programado.recibido() && operacion == Operacion.SEND_BILL) {
+                // SUNAT lo procesa pero la respuesta no llega al cliente
+                sendBill(sobre, null);
+            } else if (programado.recibido() && operacion == Operacion.SEND_SUMMARY) {
+                sendSummary(sobre);
+            }
+            return new Respuesta(programado.estadoHttp(), "Service Unavailable");
+        }
+        if (programado != null && programado.fault()) {
+            return falla(programado.codigo(), programado.mensaje());
+        }
+        if (programado == null && operacion == Operacion.SEND_BILL && tasaFallas > 0 && azar.nextDouble() < tasaFallas) {
+            String[] codigos = codigosFalla;
+            return falla(codigos[azar.nextInt(codigos.length)], "Falla simulada");
+        }
+
+        return switch (operacion) {
+            case SEND_BILL -> sendBill(sobre, programado);
+            case SEND_SUMMARY -> sendSummary(sobre);
+            case GET_STATUS -> getStatus(sobre);
+            case GET_STATUS_CDR -> getStatusCdr(sobre);
+            default -> throw new IllegalStateException(operacion.name());
+        };
+    }
+
+    private Respuesta sendBill(String sobre, Resultado programado) {
+        String nombreZip = elemento(sobre, "fileName");
+        String contenido = elemento(sobre, "contentFile");
+        if (nombreZip == null || contenido == null) {
+            return falla("0151", "El nombre del archivo ZIP es incorrecto");
+        }
+        String nombre = nombreZip.replaceFirst("(?i)\\.zip$", "");
+        String entrada;
+        try {
+            entrada = primeraEntrada(Base64.getMimeDecoder().decode(contenido));
+        } catch (IllegalArgumentException | IOException e) {
+            return falla("0156", "El archivo ZIP esta corrupto");
+        }
+        if (entrada == null) {
+            return falla("0155", "El archivo ZIP esta vacio");
+        }
+        if (!entrada.equals(nombre + ".xml")) {
+            return falla("0161", "El nombre del archivo XML no coincide con el nombre del archivo ZIP");
+        }
+
+        String[] partes = nombre.split("-");
+        String referencia = partes.length == 4 ? partes[2] + "-" + partes[3] : nombre;
+        String codigo = programado != null ? programado.codigo() : "0";
+        String descripcion = programado != null && programado.mensaje() != null ? programado.mensaje()
+                : "0".equals(codigo) ? "La " + documento(partes.length == 4 ? partes[1] : "") + " numero "
+                        + referencia + ", ha sido aceptada"
+                : "El comprobante " + referencia + " ha sido rechazado";
+        String[] notas = programado != null ? programado.observaciones() : new String[0];
+        String cdr = cdr(nombre, partes.length > 0 ? partes[0] : "", referencia, codigo, descripcion, notas);
+        constancias.put(nombre, cdr);
+        return new Respuesta(200, sobre("<br:sendBillResponse xmlns:br=\"http://service.sunat.gob.pe\">"
+                + "<applicationResponse>" + cdr + "</applicationResponse></br:sendBillResponse>"));
+    }
+
+    private Respuesta sendSummary(String sobre) {
+        String nombreZip = elemento(sobre, "fileName");
+        if (nombreZip == null || elemento(sobre, "contentFile") == null) {
+            return falla("0151", "El nombre del archivo ZIP es incorrecto");
+        }
+        String ticket = Long.toString(secuenciaTickets.incrementAndGet());
+        resumenes.add(nombreZip.replaceFirst("(?i)\\.zip$", ""));
+        tickets.put(ticket, new Ticket(nombreZip.replaceFirst("(?i)\\.zip$", ""),
+                System.nanoTime() + procesamientoResumen.toNanos()));
+        return new Respuesta(200, sobre("<br:sendSummaryResponse xmlns:br=\"http://service.sunat.gob.pe\">"
+                + "<ticket>" + ticket + "</ticket></br:sendSummaryResponse>"));
+    }
+
+    private Respuesta getStatus(String sobre) {
+        String numero = elemento(sobre, "ticket");
+        Ticket ticket = numero == null ? null : tickets.get(numero);
+        if (ticket == null) {
+            return falla("0127", "El ticket no existe");
+        }
+        String estado;
+        String contenido = "";
+        if (System.nanoTime() < ticket.listoEn()) {
+            estado = "98";
+        } else {
+            estado = "0";
+            String[] partes = ticket.nombre().split("-");
+            String id = partes.length == 4 ? partes[1] + "-" + partes[2] + "-" + partes[3] : ticket.nombre();
+            contenido = "<content>" + cdr(ticket.nombre(), partes[0], id, "0",
+                    "El Resumen diario " + id + ", ha sido aceptado", new String[0]) + "</content>";
+        }
+        return new Respuesta(200, sobre("<br:getStatusResponse xmlns:br=\"http://service.sunat.gob.pe\"><status>"
+                + contenido + "<statusCode>" + estado + "</statusCode></status></br:getStatusResponse>"));
+    }
+
+    private Respuesta getStatusCdr(String sobre) {
+        String nombre = elemento(sobre, "rucComprobante") + "-" + elemento(sobre, "tipoComprobante") + "-"
+                + elemento(sobre, "serieComprobante") + "-" + elemento(sobre, "numeroComprobante");
+        String cdr = constancias.get(nombre);
+        String estado = cdr != null
+                ? "<content>" + cdr + "</content><statusCode>0004</statusCode><statusMessage>La constancia existe</statusMessage>"
+                : "<statusCode>0011</statusCode><statusMessage>El comprobante de pago electronico no existe</statusMessage>";
+        return new Respuesta(200, sobre("<br:getStatusCdrResponse xmlns:br=\"http://service.sunat.gob.pe\"><statusCdr>"
+                + estado + "</statusCdr></br:getStatusCdrResponse>"));
+    }
+
+    // ---- construcción de respuestas ----
+
+    private Respuesta falla(String codigo, String mensaje) {
+        fallasEmitidas.incrementAndGet();
+        return new Respuesta(500, fault(codigo, mensaje));
+    }
+
+    private static String fault(String codigo, String mensaje) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?><soap-env:Envelope xmlns:soap-env="
+                + "\"http://schemas.xmlsoap.org/soap/envelope/\"><soap-env:Body><soap-env:Fault><faultcode>soap-env:Client."
+                + codigo + "</faultcode><faultstring>" + escapar(mensaje) + "</faultstring></soap-env:Fault>"
+                + "</soap-env:Body></soap-env:Envelope>";
+    }
+
+    private static String sobre(String cuerpo) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?><soap-env:Envelope xmlns:soap-env="
+                + "\"http://schemas.xmlsoap.org/soap/envelope/\"><soap-env:Header/><soap-env:Body>" + cuerpo
+                + "</soap-env:Body></soap-env:Envelope>";
+    }
+
+    /**
+     * CDR en Base64 con la misma forma que el de SUNAT: ZIP con la carpeta {@code dummy/} y
+     * {@code R-<nombre>.xml}, sin firma.
+     */
+    private static String cdr(String nombre, String ruc, String referencia, String codigo, String descripcion,
+                              String[] notas) {
+        LocalDateTime ahora = LocalDateTime.now();
+        StringBuilder xml = new StringBuilder(1024)
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<ar:ApplicationResponse xmlns:ar=\"urn:oasis:names:specification:ubl:schema:xsd:ApplicationResponse-2\"")
+                .append(" xmlns:cac=\"").append(NS_CAC).append("\" xmlns:cbc=\"").append(NS_CBC).append("\">")
+                .append("<cbc:UBLVersionID>2.0</cbc:UBLVersionID><cbc:CustomizationID>1.0</cbc:CustomizationID>")
+                .append("<cbc:ID>").append(System.currentTimeMillis()).append("</cbc:ID>")
+                .append("<cbc:IssueDate>").append(FECHA.format(ahora)).append("</cbc:IssueDate>")
+                .append("<cbc:IssueTime>").append(HORA.format(ahora)).append("</cbc:IssueTime>")
+                .append("<cbc:ResponseDate>").append(FECHA.format(ahora)).append("</cbc:ResponseDate>")
+                .append("<cbc:ResponseTime>").append(HORA.format(ahora)).append("</cbc:ResponseTime>");
+        for (String nota : notas) {
+            xml.append("<cbc:Note>").append(escapar(nota)).append("</cbc:Note>");
+        }
+        xml.append("<cac:SenderParty><cac:PartyIdentification><cbc:ID>20131312955</cbc:ID>")
+                .append("</cac:PartyIdentification></cac:SenderParty>")
+                .append("<cac:ReceiverParty><cac:PartyIdentification><cbc:ID>").append(escapar(ruc))
+                .append("</cbc:ID></cac:PartyIdentification></cac:ReceiverParty>")
+                .append("<cac:DocumentResponse><cac:Response><cbc:ReferenceID>").append(escapar(referencia))
+                .append("</cbc:ReferenceID><cbc:ResponseCode>").append(codigo)
+                .append("</cbc:ResponseCode><cbc:Description>").append(escapar(descripcion))
+                .append("</cbc:Description></cac:Response><cac:DocumentReference><cbc:ID>").append(escapar(referencia))
+                .append("</cbc:ID></cac:DocumentReference></cac:DocumentResponse></ar:ApplicationResponse>");
+
+        ByteArrayOutputStream zip = new ByteArrayOutputStream(1024);
+        try (ZipOutputStream zos = new ZipOutputStream(zip)) {
+            zos.putNextEntry(new ZipEntry("dummy/"));
+            zos.closeEntry();
+            zos.putNextEntry(new ZipEntry("R-" + nombre + ".xml"));
+            zos.write(xml.toString().getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getEncoder().encodeToString(zip.toByteArray());
+    }
+
+    private static String primeraEntrada(byte[] zip) throws IOException {
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entrada = zis.getNextEntry();
+            if (entrada == null) {
+                if (zip.length > 0) {
+                    throw new ZipException("No es un ZIP");
+                }
+                return null;
+            }
+            // Recorre el contenido para detectar un ZIP truncado o con CRC inválido
+            zis.transferTo(OutputStream.nullOutputStream());
+            return entrada.getName();
+        }
+    }
+
+    private static String elemento(String xml, String nombre) {
+        int inicio = xml.indexOf("<" + nombre + ">");
+        if (inicio < 0) {
+            return null;
+        }
+        inicio += nombre.length() + 2;
+        int fin = xml.indexOf("</" + nombre + ">", inicio);
+        return fin < 0 ? null : xml.substring(inicio, fin).trim();
+    }
+
+    private static String documento(String tipo) {
+        return switch (tipo) {
+            case "03" -> "Boleta de Venta";
+            case "07" -> "Nota de Credito";
+            case "08" -> "Nota de Debito";
+            default -> "Factura";
+        };
+    }
+
+    private static String escapar(String texto) {
+        return texto == null ? "" : texto.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private record Respuesta(int estado, String cuerpo) {
+    }
+
+    private record Ticket(String nombre, long listoEn) {
+    }
+
+    /**
+     * Resultado programado para una llamada: SOAP Fault, CDR con un código (rechazo 2000-3999 u
+     * observaciones 4000+) o un error HTTP sin SOAP, con el sendBill procesado o no.
+     */
+    public record Resultado(boolean fault, String codigo, String mensaje, String[] observaciones, int estadoHttp,
+                            boolean recibido) {
+
+        public static Resultado fault(String codigo, String mensaje) {
+            return new Resultado(true, codigo, mensaje, new String[0], 0, false);
+        }
+
+        public static Resultado rechazo(String codigo, String mensaje) {
+            return new Resultado(false, codigo, mensaje, new String[0], 0, false);
+        }
+
+        public static Resultado observado(String... observaciones) {
+            return new Resultado(false, "0", null, observaciones, 0, false);
+        }
+
+        public static Resultado http(int estado) {
+            return new Resultado(false, null, null, new String[0], estado, false);
+        }
+
+        /**
+         * sendBill o sendSummary procesado (queda su CDR para getStatusCdr o su ticket) pero respondido con
+         * HTTP {@code estado}.
+         */
+        public static Resultado respuestaPerdida(int estado) {
+            return new Resultado(false, null, null, new String[0], estado, true);
+        }
+    }
+}
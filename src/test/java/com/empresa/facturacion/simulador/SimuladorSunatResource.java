@@ -0,0 +1,31 @@
+package com.empresa.facturacion.simulador;
+
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+
+import java.util.Map;
+
+/**
+ * Levanta el {@link SimuladorSunat} para las pruebas {@code @QuarkusTest} y apunta la aplicación a él.
+ * Es un recurso global: todas las pruebas comparten la misma instancia y el mismo arranque de Quarkus.
+ */
+public class SimuladorSunatResource implements QuarkusTestResourceLifecycleManager {
+
+    private static volatile SimuladorSunat simulador;
+
+    public static SimuladorSunat simulador() {
+        return simulador;
+    }
+
+    @Override
+    public Map<String, String> start() {
+        simulador = new SimuladorSunat().iniciar(0);
+        return Map.of("sunat.conexion.url", simulador.url(), "sunat.conexion.url-consulta", simulador.urlConsulta());
+    }
+
+    @Override
+    public void stop() {
+        if (simulador != null) {
+            simulador.close();
+        }
+    }
+}